@@ -0,0 +1,121 @@
+
+package chatty.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Access to the bundled corpus of anonymised Twitch IRC lines (irc-corpus.txt),
+ * which contains regular messages, USERNOTICE, CLEARCHAT, CLEARMSG, JOIN/PART
+ * and ROOMSTATE lines from several channels.
+ *
+ * @author tduva
+ */
+public class Corpus {
+
+    private static List<String> lines;
+
+    /**
+     * All raw IRC lines, in the order they were captured.
+     *
+     * @return An unmodifiable list
+     */
+    public static synchronized List<String> lines() {
+        if (lines == null) {
+            lines = Collections.unmodifiableList(load("irc-corpus.txt"));
+        }
+        return lines;
+    }
+
+    /**
+     * The tags part of all lines that have tags (without the leading "@").
+     *
+     * @return
+     */
+    public static List<String> tags() {
+        List<String> result = new ArrayList<>();
+        for (String line : lines()) {
+            if (line.startsWith("@")) {
+                result.add(line.substring(1, line.indexOf(' ')));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The value of the "badges" tag of all lines that have it.
+     *
+     * @return
+     */
+    public static List<String> badges() {
+        List<String> result = new ArrayList<>();
+        for (String tags : tags()) {
+            for (String tag : tags.split(";")) {
+                if (tag.startsWith("badges=")) {
+                    result.add(tag.substring("badges=".length()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The message text of all PRIVMSG and USERNOTICE lines (including the
+     * ACTION characters for /me messages).
+     *
+     * @return
+     */
+    public static List<String> messages() {
+        List<String> result = new ArrayList<>();
+        for (String line : lines()) {
+            if (line.contains(" PRIVMSG #") || line.contains(" USERNOTICE #")) {
+                int start = line.indexOf(" :", line.indexOf(" #"));
+                if (start != -1) {
+                    result.add(line.substring(start + 2));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * All distinct words of all messages.
+     *
+     * @return
+     */
+    public static List<String> words() {
+        List<String> result = new ArrayList<>();
+        for (String message : messages()) {
+            for (String word : message.split(" ")) {
+                if (!word.isEmpty() && !result.contains(word)) {
+                    result.add(word);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<String> load(String name) {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Corpus.class.getResourceAsStream(name), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    result.add(line);
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,85 @@
+
+package chatty.benchmark;
+
+import chatty.util.api.Emoticon;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Finding emotes in messages the same way as ChannelTextPane does (checking
+ * every emote's Matcher against the text), with a set of thousands of
+ * third-party emotes, some of which occur in the corpus messages.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmoticonBenchmark {
+
+    private static final String CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    @Param({"1000", "5000"})
+    public int numEmotes;
+
+    private Set<Emoticon> emotes;
+    private List<String> messages;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        emotes = new HashSet<>();
+        // Words from the corpus that look like emote codes
+        for (String word : Corpus.words()) {
+            if (word.length() > 3 && Character.isUpperCase(word.charAt(word.length() - 1))
+                    || word.matches("[a-z]+[A-Z][a-zA-Z]+")) {
+                emotes.add(create(word, Emoticon.Type.BTTV));
+            }
+        }
+        while (emotes.size() < numEmotes) {
+            StringBuilder b = new StringBuilder();
+            int length = 4 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                b.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            }
+            Emoticon.Type type = random.nextBoolean() ? Emoticon.Type.FFZ : Emoticon.Type.SEVENTV;
+            emotes.add(create(b.toString(), type));
+        }
+        messages = Corpus.messages();
+    }
+
+    private static Emoticon create(String code, Emoticon.Type type) {
+        return new Emoticon.Builder(type, code, "https://example.com/"+code).build();
+    }
+
+    @Benchmark
+    public void findEmotes(Blackhole bh) {
+        for (String message : messages) {
+            int found = 0;
+            for (Emoticon emote : emotes) {
+                if (!emote.matchesUser(null, null)) {
+                    continue;
+                }
+                Matcher m = emote.getMatcher(message);
+                while (m.find()) {
+                    found++;
+                }
+            }
+            bh.consume(found);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+
+package chatty.benchmark;
+
+import chatty.Addressbook;
+import chatty.Room;
+import chatty.User;
+import chatty.gui.Highlighter;
+import chatty.util.Replacer2;
+import chatty.util.irc.IrcBadges;
+import chatty.util.settings.Settings;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Checking all corpus messages against a realistic set of Highlight (and
+ * Ignore-style blacklist) entries, with and without matching substitutes.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HighlighterBenchmark {
+
+    static final List<String> RULES = Arrays.asList(
+            "tduva",
+            "w:chatty",
+            "wcs:Chatty",
+            "start:!song",
+            "start:!uptime",
+            "re:.*\\b(?:giveaway|raffle)\\b.*",
+            "re*:\\bban\\s+him\\b",
+            "regw:p[o0]g",
+            "cat:vip",
+            "cat:friends w:hello",
+            "user:user0001",
+            "user:user0002 w:clip",
+            "reuser:user00[0-9]+ w:insane",
+            "chan:#streamer1 w:first",
+            "chan:#streamer2,#streamer3 start:hi",
+            "!chan:#streamer4 w:mods",
+            "config:info w:subscribed",
+            "config:firstmsg",
+            "config:b|moderator w:ban",
+            "config:b|vip/1 w:LETSGO",
+            "config:!notify cs:Kappa",
+            "color:red w:speedrun",
+            "bgcolor:#FFFF00 w:pb",
+            "n:streamer w:streamer",
+            "text:what happened",
+            "reg:what (rank|game)",
+            "w:discord",
+            "w:copium",
+            "w:Sadge",
+            "start:@",
+            "w:catJAM peepoClap",
+            "if:mod w:please",
+            "blacklist:!uptime");
+
+    static final List<String> BLACKLIST = Arrays.asList(
+            "w:lol",
+            "start:!");
+
+    static final List<String> SUBSTITUTES = Arrays.asList(
+            "a а @ 𝒜 4",
+            "o 0 () о",
+            "e 3 € ë е",
+            "i 1 ! l |",
+            "s $ 5");
+
+    @Param({"false", "true"})
+    public boolean substitutes;
+
+    private Highlighter highlighter;
+    private User[] users;
+    private List<String> messages;
+
+    @Setup
+    public void setup() {
+        highlighter = new Highlighter("benchmark");
+        highlighter.update(RULES);
+        highlighter.updateBlacklist(BLACKLIST);
+        if (substitutes) {
+            highlighter.updateSubstitutes(Replacer2.create(SUBSTITUTES));
+        }
+
+        Settings settings = new Settings("", null);
+        settings.addBoolean("abSaveOnChange", false);
+        Addressbook ab = new Addressbook(null, null, settings);
+        ab.add("user0001", "vip,friends");
+        ab.add("user0100", "friends");
+        User.UserSettings userSettings = new User.UserSettings(100, null, ab, null);
+
+        String[] badges = new String[]{"", "subscriber/12", "moderator/1", "vip/1,subscriber/24"};
+        users = new User[16];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User("user000" + i, Room.createRegular("#streamer" + (i % 8 + 1)));
+            users[i].setUserSettings(userSettings);
+            users[i].setTwitchBadges(IrcBadges.parse(badges[i % badges.length]));
+        }
+        messages = Corpus.messages();
+    }
+
+    @Benchmark
+    public void check(Blackhole bh) {
+        int i = 0;
+        for (String message : messages) {
+            bh.consume(highlighter.check(users[i++ % users.length], message));
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+
+package chatty.benchmark;
+
+import chatty.util.irc.IrcBadges;
+import chatty.util.irc.MsgTags;
+import chatty.util.irc.ParsedMsg;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of received IRC lines. Each invocation parses the whole corpus, so
+ * the time per line is the result divided by the number of lines.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IrcParsingBenchmark {
+
+    private List<String> lines;
+    private List<String> tags;
+    private List<String> badges;
+
+    @Setup
+    public void setup() {
+        lines = Corpus.lines();
+        tags = Corpus.tags();
+        badges = Corpus.badges();
+    }
+
+    @Benchmark
+    public void parsedMsg(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(ParsedMsg.parse(line));
+        }
+    }
+
+    @Benchmark
+    public void msgTags(Blackhole bh) {
+        for (String t : tags) {
+            bh.consume(MsgTags.parse(t));
+        }
+    }
+
+    @Benchmark
+    public void ircBadges(Blackhole bh) {
+        for (String b : badges) {
+            bh.consume(IrcBadges.parse(b));
+        }
+    }
+
+}
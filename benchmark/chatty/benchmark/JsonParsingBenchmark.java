@@ -0,0 +1,134 @@
+
+package chatty.benchmark;
+
+import chatty.util.BTTVEmotes;
+import chatty.util.JSONStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing a BTTV channel emote list response, by reading it into a String and
+ * building the whole tree (as UrlRequest.async() and JSONParser do) compared
+ * to reading the elements directly with JSONStream.
+ *
+ * <p>
+ * The response is generated in the format of the BTTV API, with the given
+ * number of emotes.</p>
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonParsingBenchmark {
+
+    private static final String CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    @Param({"100", "2000"})
+    public int numEmotes;
+
+    private String json;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Random random = new Random(1);
+        JSONObject root = new JSONObject();
+        JSONArray channelEmotes = new JSONArray();
+        JSONArray sharedEmotes = new JSONArray();
+        for (int i = 0; i < numEmotes; i++) {
+            JSONObject emote = new JSONObject();
+            emote.put("id", randomString(random, 24));
+            emote.put("code", randomString(random, 4 + random.nextInt(8)));
+            emote.put("imageType", random.nextInt(4) == 0 ? "gif" : "png");
+            emote.put("animated", false);
+            if (i % 2 == 0) {
+                emote.put("userId", randomString(random, 24));
+                channelEmotes.add(emote);
+            }
+            else {
+                JSONObject user = new JSONObject();
+                user.put("id", randomString(random, 24));
+                user.put("name", randomString(random, 10).toLowerCase());
+                user.put("displayName", randomString(random, 10));
+                user.put("providerId", String.valueOf(random.nextInt(100000000)));
+                emote.put("user", user);
+                sharedEmotes.add(emote);
+            }
+        }
+        JSONArray bots = new JSONArray();
+        bots.add("somebot");
+        root.put("id", randomString(random, 24));
+        root.put("bots", bots);
+        root.put("avatar", "https://static-cdn.jtvnw.net/jtv_user_pictures/abc-profile_image-300x300.png");
+        root.put("channelEmotes", channelEmotes);
+        root.put("sharedEmotes", sharedEmotes);
+        json = root.toJSONString();
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return b.toString();
+    }
+
+    /**
+     * Read into String line by line (like UrlRequest.FullResult) and build
+     * the whole tree.
+     */
+    @Benchmark
+    public void tree(Blackhole bh) throws IOException, ParseException {
+        StringBuilder b = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new StringReader(json))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                b.append(line).append("\n");
+            }
+        }
+        JSONObject root = (JSONObject) new JSONParser().parse(b.toString());
+        for (Object o : (JSONArray) root.get("channelEmotes")) {
+            bh.consume(o);
+        }
+        for (Object o : (JSONArray) root.get("sharedEmotes")) {
+            bh.consume(o);
+        }
+    }
+
+    @Benchmark
+    public void stream(Blackhole bh) throws IOException, ParseException {
+        try (BufferedReader reader = new BufferedReader(new StringReader(json))) {
+            JSONStream.parse(reader, (path, element) -> bh.consume(element),
+                    "channelEmotes", "sharedEmotes");
+        }
+    }
+
+    /**
+     * Streaming and creating the Emoticon objects, as done for actual
+     * requests.
+     */
+    @Benchmark
+    public void streamEmotes(Blackhole bh) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new StringReader(json))) {
+            bh.consume(BTTVEmotes.parse(reader, "channel"));
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+
+package chatty.benchmark;
+
+import chatty.util.Replacer2;
+import chatty.util.StringUtil;
+import chatty.util.commands.CustomCommand;
+import chatty.util.commands.Parameters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Text processing done for messages: matching substitutes, similarity checks
+ * (as used for repeated message detection) and Custom Command replacements.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextBenchmark {
+
+    private static final char[] IGNORED_CHARS = " ".toCharArray();
+
+    private static final String[] COMMANDS = new String[]{
+        "/me $1-",
+        "/timeout $1 $if(2,$2,600) $3-",
+        "$upper($1) $lower($2-) $(chan)",
+        "$if($2,[$2] ,)$replace($1-,a,b) $calc(2*3)",
+        "/announce $join($1-, ) - $datetime(HH:mm)"
+    };
+
+    @Param({"1", "2"})
+    public int similarityMethod;
+
+    private List<String> messages;
+    private List<String> prepared;
+    private Replacer2 replacer;
+    private CustomCommand[] commands;
+    private List<Parameters> parameters;
+
+    @Setup
+    public void setup() {
+        messages = Corpus.messages();
+        prepared = new ArrayList<>();
+        for (String message : messages) {
+            prepared.add(StringUtil.prepareForSimilarityComparison(message, IGNORED_CHARS));
+        }
+        replacer = Replacer2.create(HighlighterBenchmark.SUBSTITUTES);
+        commands = new CustomCommand[COMMANDS.length];
+        for (int i = 0; i < COMMANDS.length; i++) {
+            commands[i] = CustomCommand.parse(COMMANDS[i]);
+        }
+        parameters = new ArrayList<>();
+        for (String message : messages) {
+            Parameters p = Parameters.create(message);
+            p.put("chan", "streamer1");
+            parameters.add(p);
+        }
+    }
+
+    @Benchmark
+    public void replacer2(Blackhole bh) {
+        for (String message : messages) {
+            bh.consume(replacer.replace(message));
+        }
+    }
+
+    /**
+     * Compares each message to the previous 10 messages, similar to checking
+     * a message against the recent messages of a user.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void checkSimilarity(Blackhole bh) {
+        for (int i = 10; i < prepared.size(); i++) {
+            String a = prepared.get(i);
+            for (int j = i - 10; j < i; j++) {
+                bh.consume(StringUtil.checkSimilarity(a, prepared.get(j), 0.8f, similarityMethod));
+            }
+        }
+    }
+
+    @Benchmark
+    public void customCommandReplace(Blackhole bh) {
+        int i = 0;
+        for (Parameters p : parameters) {
+            bh.consume(commands[i++ % commands.length].replace(p));
+        }
+    }
+
+}
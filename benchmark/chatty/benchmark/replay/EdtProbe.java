@@ -0,0 +1,97 @@
+
+package chatty.benchmark.replay;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures how long it takes for something added to the EDT queue to be run,
+ * by regularly posting a timestamped task with invokeLater. The next probe is
+ * only posted once the previous one has run, so a busy EDT isn't flooded.
+ *
+ * @author tduva
+ */
+public class EdtProbe {
+
+    private static final long INTERVAL = 5;
+
+    private final Object lock = new Object();
+    private long[] latencies = new long[1024];
+    private int count;
+    private volatile boolean running;
+
+    public void start() {
+        running = true;
+        Thread thread = new Thread(() -> {
+            while (running) {
+                long posted = System.nanoTime();
+                try {
+                    SwingUtilities.invokeAndWait(() -> add(System.nanoTime() - posted));
+                    Thread.sleep(INTERVAL);
+                }
+                catch (InterruptedException ex) {
+                    return;
+                }
+                catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }, "EdtProbe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Remove all measurements so far.
+     */
+    public void reset() {
+        synchronized (lock) {
+            count = 0;
+        }
+    }
+
+    private void add(long nanos) {
+        synchronized (lock) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+
+    public int getCount() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    /**
+     * Get the latency percentiles of the measurements so far.
+     *
+     * @param percentiles The percentiles (0-100)
+     * @return The latencies for each of the given percentiles, in milliseconds
+     */
+    public double[] getPercentiles(double... percentiles) {
+        long[] sorted;
+        synchronized (lock) {
+            sorted = Arrays.copyOf(latencies, count);
+        }
+        Arrays.sort(sorted);
+        double[] result = new double[percentiles.length];
+        if (sorted.length == 0) {
+            return result;
+        }
+        for (int i = 0; i < percentiles.length; i++) {
+            int index = (int) Math.ceil(percentiles[i] / 100 * sorted.length) - 1;
+            index = Math.max(0, Math.min(sorted.length - 1, index));
+            result[i] = sorted[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,213 @@
+
+package chatty.benchmark.replay;
+
+import chatty.Chatty;
+import chatty.RoomManager;
+import chatty.SettingsManager;
+import chatty.TwitchConnection;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingUtilities;
+
+/**
+ * Replays a recorded IRC log through the client via a local
+ * {@link ReplayServer} and reports throughput, EDT latency, GC and dropped
+ * lines.
+ *
+ * <pre>
+ * Replay [file] [-speed N] [-gui] [-timeout seconds]
+ * </pre>
+ *
+ * <ul>
+ * <li>file - An IRC debug log written by Chatty or a file with raw IRC lines,
+ * if omitted the corpus bundled with the benchmarks is used</li>
+ * <li>-speed - Replay N times faster than recorded, 0 to send lines as fast as
+ * the client can read them (default 1)</li>
+ * <li>-gui - Start the full client (with a temporary settings directory that
+ * isn't saved) instead of only the connection</li>
+ * <li>-timeout - Maximum time to wait for the replay to finish (default
+ * 600)</li>
+ * </ul>
+ *
+ * <p>
+ * In headless mode only {@link TwitchConnection} is run, with a listener that
+ * hands every chat message to the EDT like the client does, so the parsing,
+ * user handling and EDT handoff are measured without any rendering.</p>
+ *
+ * @author tduva
+ */
+public class Replay {
+
+    private static final double[] PERCENTILES = new double[]{50, 90, 99, 99.9, 100};
+
+    public static void main(String[] args) throws Exception {
+        String file = null;
+        double speed = 1;
+        boolean gui = false;
+        long timeout = 600;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-speed":
+                    speed = Double.parseDouble(args[++i]);
+                    break;
+                case "-gui":
+                    gui = true;
+                    break;
+                case "-timeout":
+                    timeout = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    file = args[i];
+            }
+        }
+
+        ReplayLog log;
+        try (InputStream input = file != null
+                ? new FileInputStream(file)
+                : Replay.class.getResourceAsStream("/chatty/benchmark/irc-corpus.txt")) {
+            log = ReplayLog.read(input);
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "Replaying %d lines (%d channels, recorded over %.1fs) at %s",
+                log.getLines().size(),
+                log.getChannels().size(),
+                log.getDuration() / 1000.0,
+                speed > 0 ? speed+"x speed" : "max speed"));
+
+        ReplayServer server = new ReplayServer(log, speed);
+        server.start();
+
+        EdtProbe probe = new EdtProbe();
+        probe.start();
+
+        AtomicLong messages = new AtomicLong();
+        AtomicLong edtMessages = new AtomicLong();
+        if (gui) {
+            startClient(server.getPort(), log);
+        }
+        else {
+            startConnection(server.getPort(), log, messages, edtMessages);
+        }
+
+        // Measure only during the replay itself, not the startup
+        server.awaitStarted(timeout*1000);
+        probe.reset();
+        long[] gcBefore = getGc();
+
+        boolean done = server.awaitFinished(timeout*1000);
+        // Wait for everything that was already added to the EDT queue
+        long edtStart = System.nanoTime();
+        SwingUtilities.invokeAndWait(() -> {});
+        long edtDrain = (System.nanoTime() - edtStart) / 1000000;
+        probe.stop();
+        long[] gcAfter = getGc();
+
+        report(server, probe, done, edtDrain, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1],
+                gui ? -1 : messages.get(), gui ? -1 : edtMessages.get());
+        System.exit(0);
+    }
+
+    /**
+     * Run only the connection, with a listener that does nothing except
+     * counting chat messages and handing them to the EDT.
+     */
+    private static void startConnection(int port, ReplayLog log, AtomicLong messages, AtomicLong edtMessages) {
+        SettingsManager settingsManager = new SettingsManager();
+        settingsManager.defineSettings();
+        RoomManager rooms = new RoomManager(room -> {});
+        TwitchConnection.ConnectionListener listener = (TwitchConnection.ConnectionListener) Proxy.newProxyInstance(
+                Replay.class.getClassLoader(),
+                new Class<?>[]{TwitchConnection.ConnectionListener.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("onChannelMessage")) {
+                        messages.incrementAndGet();
+                        SwingUtilities.invokeLater(() -> edtMessages.incrementAndGet());
+                    }
+                    return null;
+                });
+        TwitchConnection c = new TwitchConnection(listener, settingsManager.settings, "main", rooms);
+        c.connect("127.0.0.1", String.valueOf(port), "replay", "oauth:replay",
+                log.getChannels().toArray(new String[0]));
+    }
+
+    /**
+     * Start the full client, connecting to the replay server.
+     */
+    private static void startClient(int port, ReplayLog log) throws IOException {
+        String dir = Files.createTempDirectory("chatty-replay").toString();
+        Chatty.main(new String[]{
+            "-d", dir,
+            "-ds",
+            "-server", "127.0.0.1",
+            "-port", String.valueOf(port),
+            "-user", "replay",
+            "-password", "oauth:replay",
+            "-channel", String.join(",", log.getChannels()),
+            "-connect"
+        });
+    }
+
+    /**
+     * Total collection count and time of all garbage collectors.
+     */
+    private static long[] getGc() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+
+    private static void report(ReplayServer server, EdtProbe probe, boolean done,
+            long edtDrain, long gcCount, long gcTime, long messages, long edtMessages) {
+        StringBuilder b = new StringBuilder();
+        if (!done || !server.isComplete()) {
+            b.append("Replay did not finish (timeout or connection closed)\n");
+        }
+        double seconds = Math.max(server.getElapsed(), 1) / 1000.0;
+        b.append(String.format(Locale.ROOT, "Lines: %d sent in %.2fs (%.0f/s), %d not sent, max lag behind recording %dms%n",
+                server.getSent(), seconds, server.getSent() / seconds,
+                server.getNotSent(), server.getMaxLag()));
+
+        List<Integer> perSecond = server.getPerSecond();
+        if (!perSecond.isEmpty()) {
+            List<Integer> sorted = new ArrayList<>(perSecond);
+            Collections.sort(sorted);
+            b.append(String.format(Locale.ROOT, "Lines/s over %d full seconds: sustained (90%% of seconds) %d, median %d, max %d%n",
+                    sorted.size(),
+                    sorted.get(sorted.size() / 10),
+                    sorted.get(sorted.size() / 2),
+                    sorted.get(sorted.size() - 1)));
+        }
+
+        if (messages >= 0) {
+            b.append(String.format(Locale.ROOT, "Chat messages: %d sent, %d received, %d reached EDT (%d dropped)%n",
+                    server.getSentMessages(), messages, edtMessages,
+                    server.getSentMessages() - edtMessages));
+        }
+
+        double[] p = probe.getPercentiles(PERCENTILES);
+        b.append(String.format(Locale.ROOT, "EDT latency (%d samples): p50 %.2fms, p90 %.2fms, p99 %.2fms, p99.9 %.2fms, max %.2fms%n",
+                probe.getCount(), p[0], p[1], p[2], p[3], p[4]));
+
+        b.append(String.format(Locale.ROOT, "GC: %d collections, %dms total (%.1f%% of replay time)%n",
+                gcCount, gcTime, gcTime / (seconds * 10)));
+
+        b.append(String.format(Locale.ROOT, "EDT queue drained %dms after the client processed the last line%n",
+                edtDrain));
+        System.out.print(b);
+    }
+
+}
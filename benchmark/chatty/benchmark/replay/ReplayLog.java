@@ -0,0 +1,149 @@
+
+package chatty.benchmark.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A recorded IRC log to be replayed.
+ *
+ * <p>
+ * Accepts the IRC debug log Chatty writes (with the "debugLogIrcFile" setting
+ * enabled), in which case only received lines ("--> ") are used and the time
+ * of each line is taken from the log timestamp. Lines without a log timestamp
+ * are used as-is, with the time taken from the "tmi-sent-ts" tag if present or
+ * otherwise the same time as the previous line.</p>
+ *
+ * @author tduva
+ */
+public class ReplayLog {
+
+    private static final Pattern LOG_LINE = Pattern.compile(
+            "^\\[(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}/\\d{3})\\] (-->|<--) (.*)$");
+
+    private static final Pattern SENT_TS = Pattern.compile("[@;]tmi-sent-ts=(\\d+)[; ]");
+
+    private static final Pattern CHANNEL = Pattern.compile(
+            "^(?:@\\S+ )?:\\S+ (?:PRIVMSG|USERNOTICE|CLEARCHAT|CLEARMSG|ROOMSTATE|USERSTATE|NOTICE|JOIN|PART) (#\\S+)");
+
+    private final List<Line> lines;
+    private final Set<String> channels;
+
+    private ReplayLog(List<Line> lines, Set<String> channels) {
+        this.lines = Collections.unmodifiableList(lines);
+        this.channels = Collections.unmodifiableSet(channels);
+    }
+
+    /**
+     * Read a log from the given stream (closed afterwards).
+     *
+     * @param input The stream to read UTF-8 lines from
+     * @return The log
+     * @throws IOException
+     */
+    public static ReplayLog read(InputStream input) throws IOException {
+        SimpleDateFormat logTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss/SSS");
+        List<Line> lines = new ArrayList<>();
+        Set<String> channels = new LinkedHashSet<>();
+        long time = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Matcher m = LOG_LINE.matcher(line);
+                if (m.matches()) {
+                    if (!m.group(2).equals("-->")) {
+                        continue;
+                    }
+                    line = m.group(3);
+                    try {
+                        time = logTimeFormat.parse(m.group(1)).getTime();
+                    }
+                    catch (ParseException ex) {
+                        // Keep previous time
+                    }
+                }
+                else {
+                    Matcher ts = SENT_TS.matcher(line);
+                    if (ts.find()) {
+                        time = Long.parseLong(ts.group(1));
+                    }
+                }
+                if (isConnectionLine(line)) {
+                    // Registration and pings are handled by the server itself
+                    continue;
+                }
+                Matcher channel = CHANNEL.matcher(line);
+                if (channel.find()) {
+                    channels.add(channel.group(1).toLowerCase());
+                }
+                lines.add(new Line(time, line));
+            }
+        }
+        return new ReplayLog(lines, channels);
+    }
+
+    private static boolean isConnectionLine(String line) {
+        return line.startsWith("PING ")
+                || line.startsWith(":tmi.twitch.tv 00")
+                || line.startsWith(":tmi.twitch.tv 37")
+                || line.startsWith(":tmi.twitch.tv CAP ")
+                || line.startsWith(":tmi.twitch.tv PONG ");
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * All channels that messages in the log are sent to, which should be
+     * joined for the messages to be processed.
+     *
+     * @return The channels (with leading "#")
+     */
+    public Set<String> getChannels() {
+        return channels;
+    }
+
+    /**
+     * The time between the first and last line, in milliseconds.
+     *
+     * @return
+     */
+    public long getDuration() {
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        return lines.get(lines.size() - 1).time - lines.get(0).time;
+    }
+
+    public static class Line {
+
+        /**
+         * The time the line was originally received (in milliseconds).
+         */
+        public final long time;
+        public final String raw;
+
+        public Line(long time, String raw) {
+            this.time = time;
+            this.raw = raw;
+        }
+
+    }
+
+}
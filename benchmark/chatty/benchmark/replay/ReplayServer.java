@@ -0,0 +1,351 @@
+
+package chatty.benchmark.replay;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A minimal local IRC server that accepts a single client connection, answers
+ * the Twitch login and JOINs and then writes the lines of a {@link ReplayLog}
+ * to the client, keeping the original time between lines (divided by the
+ * speed factor).
+ *
+ * <p>
+ * After the last line a PING is sent, and the replay only counts as finished
+ * once the client has answered it, which means all lines before it have been
+ * read and processed by the client's connection thread.</p>
+ *
+ * @author tduva
+ */
+public class ReplayServer {
+
+    private static final String END_TOKEN = "replay-end";
+
+    /**
+     * How long to wait for all channels to be joined before starting the
+     * replay anyway (in milliseconds).
+     */
+    private static final long JOIN_TIMEOUT = 30*1000;
+
+    private final ReplayLog log;
+    private final double speed;
+    private final ServerSocket serverSocket;
+
+    private final Set<String> joined = Collections.synchronizedSet(new HashSet<>());
+    private final CountDownLatch allJoined = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private BufferedWriter writer;
+    private volatile String nick = "replay";
+    private volatile boolean closed;
+
+    //--------------------------
+    // Results (set by the replay thread)
+    //--------------------------
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile long sent;
+    private volatile long sentMessages;
+    private volatile long notSent;
+    private volatile long maxLag;
+    private final List<Integer> perSecond = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Create the server, which binds a free port on the loopback interface.
+     *
+     * @param log The lines to replay
+     * @param speed The factor to speed up the replay by, 0 or less to send
+     * lines as fast as the client reads them
+     * @throws IOException If the server socket couldn't be created
+     */
+    public ReplayServer(ReplayLog log, double speed) throws IOException {
+        this.log = log;
+        this.speed = speed;
+        this.serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Start accepting the client connection, the replay starts automatically
+     * once the client has joined all channels of the log.
+     */
+    public void start() {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setTcpNoDelay(true);
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        socket.getOutputStream(), StandardCharsets.UTF_8));
+                Thread replay = new Thread(this::replay, "ReplayServer-Write");
+                replay.setDaemon(true);
+                replay.start();
+                read(new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.UTF_8)));
+            }
+            catch (IOException ex) {
+                if (!closed) {
+                    System.err.println("Replay server: "+ex);
+                }
+            }
+            finally {
+                closed = true;
+                allJoined.countDown();
+                started.countDown();
+                finished.countDown();
+            }
+        }, "ReplayServer-Read");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wait for the first line of the replay to be sent (or the connection to
+     * be closed).
+     *
+     * @param timeout The maximum time to wait in milliseconds
+     * @return true if started, false if the timeout elapsed
+     * @throws InterruptedException
+     */
+    public boolean awaitStarted(long timeout) throws InterruptedException {
+        return started.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wait for the replay to be finished (including the client having
+     * answered the final PING) or the connection to be closed.
+     *
+     * @param timeout The maximum time to wait in milliseconds
+     * @return true if finished, false if the timeout elapsed
+     * @throws InterruptedException
+     */
+    public boolean awaitFinished(long timeout) throws InterruptedException {
+        return finished.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException ex) {
+            // Ignore
+        }
+    }
+
+    private void read(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("NICK ")) {
+                nick = line.substring(5).trim();
+                send(":tmi.twitch.tv 001 "+nick+" :Welcome, GLHF!");
+                send(":tmi.twitch.tv 002 "+nick+" :Your host is tmi.twitch.tv");
+                send(":tmi.twitch.tv 003 "+nick+" :This server is rather new");
+                send(":tmi.twitch.tv 004 "+nick+" :-");
+                send(":tmi.twitch.tv 375 "+nick+" :-");
+                send(":tmi.twitch.tv 376 "+nick+" :>");
+            }
+            else if (line.startsWith("CAP REQ ")) {
+                send(":tmi.twitch.tv CAP * ACK "+line.substring(8));
+            }
+            else if (line.startsWith("JOIN ")) {
+                for (String channel : line.substring(5).trim().split(",")) {
+                    joined.add(channel.toLowerCase());
+                    send(":"+nick+"!"+nick+"@"+nick+".tmi.twitch.tv JOIN "+channel);
+                    send(":"+nick+".tmi.twitch.tv 353 "+nick+" = "+channel+" :"+nick);
+                    send(":"+nick+".tmi.twitch.tv 366 "+nick+" "+channel+" :End of /NAMES list");
+                }
+                if (joined.containsAll(log.getChannels())) {
+                    allJoined.countDown();
+                }
+            }
+            else if (line.startsWith("PING")) {
+                send(":tmi.twitch.tv PONG tmi.twitch.tv"+line.substring(4));
+            }
+            else if (line.startsWith("PONG") && line.contains(END_TOKEN)) {
+                endNanos = System.nanoTime();
+                finished.countDown();
+            }
+            else if (line.startsWith("QUIT")) {
+                return;
+            }
+        }
+    }
+
+    private void replay() {
+        try {
+            if (!allJoined.await(JOIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                System.err.println("Replay server: Not all channels joined, starting anyway");
+            }
+        }
+        catch (InterruptedException ex) {
+            return;
+        }
+        List<ReplayLog.Line> lines = log.getLines();
+        if (closed || lines.isEmpty()) {
+            notSent = lines.size();
+            started.countDown();
+            return;
+        }
+        long firstTime = lines.get(0).time;
+        long lastTime = firstTime;
+        startNanos = System.nanoTime();
+        started.countDown();
+        long second = startNanos;
+        int secondCount = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            ReplayLog.Line line = lines.get(i);
+            if (speed > 0) {
+                // Time shouldn't go backwards (e.g. tmi-sent-ts may not be in order)
+                lastTime = Math.max(lastTime, line.time);
+                long due = startNanos + (long) ((lastTime - firstTime) / speed * 1000000);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    sleepNanos(wait);
+                }
+                else {
+                    maxLag = Math.max(maxLag, -wait);
+                }
+            }
+            try {
+                send(line.raw);
+            }
+            catch (IOException ex) {
+                notSent = lines.size() - i;
+                return;
+            }
+            sent++;
+            if (line.raw.contains(" PRIVMSG #") && joined.contains(getChannel(line.raw))) {
+                sentMessages++;
+            }
+            secondCount++;
+            long now = System.nanoTime();
+            while (now - second >= 1000000000L) {
+                perSecond.add(secondCount);
+                secondCount = 0;
+                second += 1000000000L;
+            }
+        }
+        try {
+            send("PING :"+END_TOKEN);
+        }
+        catch (IOException ex) {
+            // Not finished
+        }
+    }
+
+    private static String getChannel(String line) {
+        int start = line.indexOf(" #");
+        int end = line.indexOf(' ', start + 1);
+        if (start == -1 || end == -1) {
+            return null;
+        }
+        return line.substring(start + 1, end).toLowerCase();
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(String line) throws IOException {
+        synchronized (this) {
+            writer.write(line);
+            writer.write("\r\n");
+            writer.flush();
+        }
+    }
+
+    //--------------------------
+    // Results
+    //--------------------------
+
+    /**
+     * Whether the client has answered the final PING, so all lines have been
+     * processed by it.
+     *
+     * @return
+     */
+    public boolean isComplete() {
+        return endNanos != 0;
+    }
+
+    /**
+     * The time from sending the first line until the client answered the
+     * final PING (or until now if not complete), in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsed() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return startNanos != 0 ? TimeUnit.NANOSECONDS.toMillis(end - startNanos) : 0;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * The number of PRIVMSG lines sent to joined channels, which should each
+     * result in a chat message in the client.
+     *
+     * @return
+     */
+    public long getSentMessages() {
+        return sentMessages;
+    }
+
+    /**
+     * The number of lines that could not be sent, because the connection was
+     * closed before the replay finished.
+     *
+     * @return
+     */
+    public long getNotSent() {
+        return notSent;
+    }
+
+    /**
+     * How far behind the original timing sending lines got at most, because
+     * the client didn't read them fast enough (in milliseconds).
+     *
+     * @return
+     */
+    public long getMaxLag() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLag);
+    }
+
+    /**
+     * The number of lines sent in each full second of the replay. Since the
+     * socket blocks when the client doesn't keep up, this is limited by how
+     * fast the client processes lines.
+     *
+     * @return
+     */
+    public List<Integer> getPerSecond() {
+        synchronized (perSecond) {
+            return new ArrayList<>(perSecond);
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ package chatty;
 import static chatty.Irc.SSL_ERROR;
 import chatty.util.DateTime;
 import chatty.util.Debugging;
+import chatty.util.MessageLatency;
 import chatty.util.RingBuffer;
 import chatty.util.StringUtil;
 import java.io.*;
@@ -42,6 +43,12 @@ public class Connection implements Runnable {
 
     private int connectionCheckedCount;
     
+    /**
+     * While greater than 0, sent lines are only flushed at the end of the
+     * batch.
+     */
+    private int batch;
+    
     private static final int CONNECT_TIMEOUT = 10*1000; // 10 seconds timeout
     private static final int SOCKET_BLOCK_TIMEOUT = 15*1000; // 15 seconds
     private static final int PING_AFTER_CHECKS = 3; // 45 seconds (3*SOCKET_BLOCK_TIMEOUT)
@@ -168,7 +175,9 @@ public class Connection implements Runnable {
                 
                 // Line was received
                 debugBuffer.add(new Msg(System.currentTimeMillis(), receivedLine, false));
+                MessageLatency.read();
                 irc.received(receivedLine);
+                MessageLatency.done();
                 receivedLine = null;
                 activity();
             } catch (SocketTimeoutException ex) {
@@ -254,7 +263,28 @@ public class Connection implements Runnable {
         debugBuffer.add(new Msg(System.currentTimeMillis(), data, true));
         irc.sent(data);
         out.print(data+"\r\n");
-        out.flush();
+        if (batch == 0) {
+            out.flush();
+        }
+    }
+    
+    /**
+     * Lines sent after this are only written to the socket once
+     * {@link #endBatch()} is called.
+     */
+    synchronized public void startBatch() {
+        batch++;
+    }
+    
+    /**
+     * Ends a batch started with {@link #startBatch()}, flushing the lines
+     * sent since then.
+     */
+    synchronized public void endBatch() {
+        batch--;
+        if (batch == 0 && out != null) {
+            out.flush();
+        }
     }
     
     public void debug() {
@@ -3,14 +3,15 @@ package chatty;
 
 import chatty.util.DateTime;
 import chatty.util.Debugging;
-import chatty.util.DelayedActionQueue;
-import chatty.util.DelayedActionQueue.DelayedActionListener;
+import chatty.util.MessageLatency;
 import chatty.util.irc.MsgParameters;
 import chatty.util.irc.MsgTags;
 import chatty.util.irc.ParsedMsg;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -22,14 +23,12 @@ public abstract class Irc {
     
     private static final Logger LOGGER = Logger.getLogger(Irc.class.getName());
     
+    private final AddressManager addressManager = new AddressManager();
+    
     /**
-     * Delay between JOINs (in milliseconds).
+     * Rate limits JOINs, may be shared with other connections.
      */
-    private static final int JOIN_DELAY = 750;
-    
-    private final AddressManager addressManager = new AddressManager();
-    private final DelayedActionQueue<String> joinQueue
-            = DelayedActionQueue.create(new DelayedJoinAction(), JOIN_DELAY);
+    private final JoinScheduler joinScheduler;
     
     private final Object lock = new Object();
     
@@ -112,8 +111,20 @@ public abstract class Irc {
     private final String idPrefix;
     
     public Irc(String id) {
+        this(id, new JoinScheduler());
+    }
+    
+    /**
+     * Create a connection that uses the given JoinScheduler, which can be
+     * shared with other connections using the same account.
+     * 
+     * @param id The id, used for debug output
+     * @param joinScheduler The JoinScheduler
+     */
+    public Irc(String id, JoinScheduler joinScheduler) {
         this.id = id;
         this.idPrefix = "["+id+"] ";
+        this.joinScheduler = joinScheduler;
     }
     
     private void info(String message) {
@@ -163,6 +174,10 @@ public abstract class Irc {
         return connectedIp;
     }
     
+    public String getId() {
+        return id;
+    }
+    
     public String getConnectionInfo() {
         if (state >= STATE_CONNECTED) {
             return connectedIp+":"+connectedPort;
@@ -306,6 +321,7 @@ public abstract class Irc {
         raw(data);
         
         ParsedMsg p = ParsedMsg.parse(data);
+        MessageLatency.mark(MessageLatency.Stage.PARSE);
 
         if (p != null) {
             receivedCommand(p.getPrefix(), p.getNick(), p.getCommand(),
@@ -488,13 +504,35 @@ public abstract class Irc {
     }
     
     /**
-     * Joins {@code channel} on a queue, that puts some time between each join.
+     * Joins {@code channel} through the {@link JoinScheduler}, which limits
+     * how many channels are joined in a certain time. The priority is
+     * determined by {@link #getJoinPriority(String)}.
      * 
      * @param channel The name of the channel to join
      */
     public void joinChannel(String channel) {
-        info("JOINING: " + channel);
-        joinQueue.add(channel);
+        joinChannel(channel, getJoinPriority(channel));
+    }
+    
+    /**
+     * Joins {@code channel} through the {@link JoinScheduler} with the given
+     * priority.
+     * 
+     * @param channel The name of the channel to join
+     * @param priority The priority
+     */
+    public void joinChannel(String channel, JoinScheduler.Priority priority) {
+        info("JOINING: " + channel + " (" + priority + ")");
+        joinScheduler.add(this, channel, priority);
+    }
+    
+    /**
+     * Remove a channel that is waiting to be joined.
+     * 
+     * @param channel The name of the channel
+     */
+    public void cancelJoinChannel(String channel) {
+        joinScheduler.remove(this, channel);
     }
     
     /**
@@ -503,30 +541,35 @@ public abstract class Irc {
      * @param channel 
      */
     public void joinChannelImmediately(String channel) {
-        if (state >= STATE_REGISTERED) {
-            if (!channel.startsWith("#")) {
-                channel = "#" + channel;
+        joinChannelsImmediately(Collections.singletonList(channel));
+    }
+    
+    /**
+     * Join several channels with a single JOIN command. This adds # in front
+     * if not there.
+     * 
+     * @param channels The channels
+     */
+    public void joinChannelsImmediately(List<String> channels) {
+        if (state >= STATE_REGISTERED && !channels.isEmpty()) {
+            StringBuilder b = new StringBuilder();
+            for (String channel : channels) {
+                if (b.length() > 0) {
+                    b.append(",");
+                }
+                if (!channel.startsWith("#")) {
+                    b.append("#");
+                }
+                b.append(channel);
             }
             // if-condition for testing (to simulate failed joins)
             //if (new Random().nextBoolean()) {
-                send("JOIN " + channel);
+                send("JOIN " + b);
             //}
-            onJoinAttempt(channel);
-        }
-    }
-    
-    /**
-     * Listener for the join queue, which is called when the next channel can
-     * be joined.
-     */
-    private class DelayedJoinAction implements DelayedActionListener<String> {
-
-        @Override
-        public void actionPerformed(String item) {
-            info("JOIN: "+item+" (delayed)");
-            joinChannelImmediately(item);
+            for (String channel : channels) {
+                onJoinAttempt(channel.startsWith("#") ? channel : "#" + channel);
+            }
         }
-        
     }
     
     /**
@@ -569,6 +612,26 @@ public abstract class Irc {
         }
     }
     
+    /**
+     * Run something that sends several lines, which are written to the socket
+     * together at the end.
+     * 
+     * @param sends Sends the lines
+     */
+    synchronized public void sendBatch(Runnable sends) {
+        Connection c = connection;
+        if (state <= STATE_OFFLINE || c == null) {
+            sends.run();
+            return;
+        }
+        c.startBatch();
+        try {
+            sends.run();
+        } finally {
+            c.endBatch();
+        }
+    }
+    
     /**
      * Called from the Connection Thread once the initial connection has
      * been established without an error.
@@ -604,9 +667,9 @@ public abstract class Irc {
      * disconnect
      */
     protected void disconnected(int reason, String reasonMessage) {
-        // Clear any potential join queue, so it doesn't carry over to the next
-        // connection
-        joinQueue.clear();
+        // Clear any channels waiting to be joined, so they don't carry over to
+        // the next connection
+        joinScheduler.clear(this);
         
         // Retrieve state before changing it, but must be changed before calling
         // onDisconnect() which might check the state when trying to reconnect
@@ -653,6 +716,16 @@ public abstract class Irc {
     
     void onJoinAttempt(String channel) {}
     
+    /**
+     * The priority for joining the given channel, if none was specified.
+     * 
+     * @param channel The channel
+     * @return The priority
+     */
+    JoinScheduler.Priority getJoinPriority(String channel) {
+        return JoinScheduler.Priority.NEW;
+    }
+    
     void onJoin(String channel, String nick) {}
     
     void onPart(String channel, String nick) { }
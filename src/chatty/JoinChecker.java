@@ -3,12 +3,11 @@ package chatty;
 
 import static chatty.Logging.USERINFO;
 import chatty.lang.Language;
+import chatty.util.Scheduler;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 /**
@@ -16,6 +15,10 @@ import java.util.logging.Logger;
  * again, unless the timer is canceled, which can be done if the channel join
  * actually succeeds.
  * 
+ * Since this is per channel, only channels that didn't get joined are tried
+ * again (even if they were joined in the same JOIN command as others). Retries
+ * go through the {@link JoinScheduler} with the lowest priority.
+ * 
  * @author tduva
  */
 public class JoinChecker {
@@ -31,9 +34,9 @@ public class JoinChecker {
     private final Irc irc;
     
     /**
-     * Map of timers for channels.
+     * Map of scheduled checks for channels.
      */
-    private final HashMap<String, Timer> pendingChecks = new HashMap<>();
+    private final HashMap<String, Scheduler.Task> pendingChecks = new HashMap<>();
     private final Map<String, Integer> joinAttempts = new HashMap<>();
     
     public JoinChecker(Irc irc) {
@@ -55,18 +58,16 @@ public class JoinChecker {
             delay = DELAY[count - 1];
         }
 
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                LOGGER.warning("Join may have failed ("+channel+")");
-                LOGGER.log(USERINFO, Language.getString("chat.error.joinFailed", channel));
-                irc.joinChannel(channel);
-            }
-        }, delay*1000);
+        Scheduler.Task task = Scheduler.schedule("JoinChecker", delay*1000, () -> {
+            LOGGER.warning("Join may have failed ("+channel+")");
+            LOGGER.log(USERINFO, Language.getString("chat.error.joinFailed", channel));
+            irc.joinChannel(channel, JoinScheduler.Priority.RETRY);
+        });
         
-        pendingChecks.put(channel, timer);
+        Scheduler.Task previous = pendingChecks.put(channel, task);
+        if (previous != null) {
+            previous.cancel();
+        }
         joinAttempts.put(channel, count);
     }
     
@@ -76,9 +77,9 @@ public class JoinChecker {
      * @param channel Then name of the channel to cancel the timer for
      */
     public synchronized void cancel(String channel) {
-        Timer timer = pendingChecks.remove(channel);
-        if (timer != null) {
-            timer.cancel();
+        Scheduler.Task task = pendingChecks.remove(channel);
+        if (task != null) {
+            task.cancel();
         }
         joinAttempts.remove(channel);
     }
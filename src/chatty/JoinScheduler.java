@@ -0,0 +1,263 @@
+
+package chatty;
+
+import chatty.util.Scheduler;
+import chatty.util.TimedCounter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Sends the JOINs of one or several connections, limited to a number of joins
+ * per time window (Twitch limits joins per account, not per connection).
+ *
+ * <p>
+ * The limit is checked over a sliding window, so up to the limit can be joined
+ * right away, after which another channel can be joined whenever a previous
+ * join leaves the window. This way no window of that length ever contains
+ * more joins than allowed. Channels that are due at the same time are joined
+ * with a single JOIN command per connection (comma-separated), and channels
+ * that are currently visible or already open are joined before channels that
+ * aren't open yet or are retried after a join may have failed.</p>
+ *
+ * @author tduva
+ */
+public class JoinScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(JoinScheduler.class.getName());
+
+    /**
+     * The number of joins allowed per window for regular accounts.
+     */
+    public static final int DEFAULT_LIMIT = 20;
+
+    /**
+     * The window the limit applies to (in milliseconds).
+     */
+    private static final long WINDOW = 10*1000;
+
+    /**
+     * How long to wait before sending after a channel has been added, so
+     * channels added in quick succession can be joined together (in
+     * milliseconds).
+     */
+    private static final long BATCH_DELAY = 50;
+
+    /**
+     * Maximum length of the channels of one JOIN command, since an IRC line
+     * can only be 512 bytes.
+     */
+    private static final int MAX_JOIN_LENGTH = 450;
+
+    public enum Priority {
+        /**
+         * The channel is currently shown in a tab or popout.
+         */
+        VISIBLE,
+        /**
+         * The channel is open (e.g. rejoining after a reconnect).
+         */
+        OPEN,
+        /**
+         * The channel isn't open yet (e.g. autojoin or /join).
+         */
+        NEW,
+        /**
+         * Trying again, since the previous join may have failed.
+         */
+        RETRY
+    }
+
+    private static final Comparator<Entry> ORDER
+            = Comparator.comparing((Entry e) -> e.priority).thenComparingLong(e -> e.seq);
+
+    private final List<Entry> pending = new ArrayList<>();
+
+    private final TimedCounter joins = new TimedCounter(WINDOW);
+    private int limit = DEFAULT_LIMIT;
+    private long seq;
+
+    /**
+     * Set how many joins are allowed per 10 seconds.
+     *
+     * @param limit The number of joins, values lower than 1 use the default
+     */
+    public synchronized void setLimit(int limit) {
+        this.limit = limit > 0 ? limit : DEFAULT_LIMIT;
+    }
+
+    /**
+     * Add a channel to join on the given connection. If the channel is
+     * already waiting to be joined on that connection, only the priority is
+     * raised if necessary.
+     *
+     * @param irc The connection
+     * @param channel The channel (with or without leading #)
+     * @param priority The priority
+     */
+    public void add(Irc irc, String channel, Priority priority) {
+        queue(irc, channel, priority);
+        Scheduler.scheduleCoalesced("JoinScheduler", this, BATCH_DELAY, this::process);
+    }
+
+    /**
+     * Add the channel without scheduling the join.
+     */
+    synchronized void queue(Irc irc, String channel, Priority priority) {
+        if (!channel.startsWith("#")) {
+            channel = "#"+channel;
+        }
+        Entry existing = find(irc, channel);
+        if (existing == null) {
+            pending.add(new Entry(irc, channel, priority, seq++));
+        }
+        else if (priority.compareTo(existing.priority) < 0) {
+            existing.priority = priority;
+        }
+    }
+
+    /**
+     * Remove a channel that is waiting to be joined on the given connection.
+     *
+     * @param irc The connection
+     * @param channel The channel (with or without leading #)
+     */
+    public synchronized void remove(Irc irc, String channel) {
+        if (!channel.startsWith("#")) {
+            channel = "#"+channel;
+        }
+        pending.remove(find(irc, channel));
+    }
+
+    /**
+     * Remove all channels waiting to be joined on the given connection.
+     *
+     * @param irc The connection
+     */
+    public synchronized void clear(Irc irc) {
+        pending.removeIf(e -> e.irc == irc);
+    }
+
+    public synchronized int getNumPending() {
+        return pending.size();
+    }
+
+    private Entry find(Irc irc, String channel) {
+        for (Entry entry : pending) {
+            if (entry.irc == irc && entry.channel.equalsIgnoreCase(channel)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void process() {
+        List<Batch> batches;
+        long delay = -1;
+        synchronized (this) {
+            long now = System.nanoTime();
+            batches = takeBatches(now);
+            if (!pending.isEmpty()) {
+                delay = joins.getDelay(limit, now);
+            }
+        }
+        for (Batch batch : batches) {
+            LOGGER.info(String.format("[%s] JOIN: %s (%d waiting)",
+                    batch.irc.getId(), batch.channels, getNumPending()));
+            batch.irc.joinChannelsImmediately(batch.channels);
+        }
+        if (delay >= 0) {
+            Scheduler.scheduleCoalesced("JoinScheduler", this, delay, this::process);
+        }
+    }
+
+    /**
+     * Remove as many channels as the limit allows, in order of priority, and
+     * group them by connection.
+     *
+     * @param now The current time in nanoseconds
+     * @return The JOIN commands to send
+     */
+    synchronized List<Batch> takeBatches(long now) {
+        pending.sort(ORDER);
+        List<Batch> result = new ArrayList<>();
+        Iterator<Entry> it = pending.iterator();
+        while (it.hasNext() && joins.getCount(now) < limit) {
+            Entry entry = it.next();
+            it.remove();
+            if (!entry.irc.isRegistered()) {
+                // Will be joined again once registered
+                continue;
+            }
+            joins.increase(now);
+            Batch batch = null;
+            for (Batch b : result) {
+                if (b.irc == entry.irc && b.length + entry.channel.length() < MAX_JOIN_LENGTH) {
+                    batch = b;
+                    break;
+                }
+            }
+            if (batch == null) {
+                batch = new Batch(entry.irc);
+                result.add(batch);
+            }
+            batch.add(entry.channel);
+        }
+        return result;
+    }
+
+    /**
+     * The time until the next channel can be joined.
+     *
+     * @param now The current time in nanoseconds
+     * @return The time in milliseconds
+     */
+    synchronized long getDelayForNextJoin(long now) {
+        return joins.getDelay(limit, now);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d waiting, %d/%d joins in window",
+                pending.size(), joins.getCount(System.nanoTime()), limit);
+    }
+
+    private static class Entry {
+
+        private final Irc irc;
+        private final String channel;
+        private final long seq;
+        private Priority priority;
+
+        Entry(Irc irc, String channel, Priority priority, long seq) {
+            this.irc = irc;
+            this.channel = channel;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+    }
+
+    /**
+     * The channels to join with a single JOIN command.
+     */
+    static class Batch {
+
+        final Irc irc;
+        final List<String> channels = new ArrayList<>();
+        private int length;
+
+        Batch(Irc irc) {
+            this.irc = irc;
+        }
+
+        private void add(String channel) {
+            channels.add(channel);
+            length += channel.length() + 1;
+        }
+
+    }
+
+}
@@ -1,6 +1,7 @@
 
 package chatty;
 
+import chatty.util.AsyncLogHandler;
 import chatty.util.RingBuffer;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -10,6 +11,8 @@ import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.util.Date;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.*;
 
 /**
@@ -36,6 +39,17 @@ public class Logging {
      */
     private static final int MAX_LOG_FILES = 3;
     
+    /**
+     * Maximum number of log records waiting to be written per handler.
+     */
+    private static final int MAX_QUEUED_RECORDS = 10000;
+    
+    /**
+     * Writing to the console and log files is done in the background, so
+     * logging doesn't slow down whatever is logging (e.g. the EDT).
+     */
+    private static final List<AsyncLogHandler> asyncHandlers = new CopyOnWriteArrayList<>();
+    
     private final RingBuffer<LogRecord> lastMessages = new RingBuffer<>(8);
     
     private static TwitchClient client;
@@ -58,7 +72,7 @@ public class Logging {
                 return record.getLevel() != USERINFO;
             }
         });
-        Logger.getLogger("").addHandler(c);
+        Logger.getLogger("").addHandler(async("console", c));
         
         // Add file handler with custom formatter
         try {
@@ -66,13 +80,13 @@ public class Logging {
             file.setFormatter(new TextFormatter());
             file.setLevel(Level.INFO);
             file.setFilter(new FileFilter());
-            Logger.getLogger("").addHandler(file);
+            Logger.getLogger("").addHandler(async("debug", file));
             
             FileHandler fileSession = new FileHandler(LOG_FILE_SESSION, MAX_SESSION_LOG_SIZE, 1);
             fileSession.setFormatter(new TextFormatter());
             fileSession.setLevel(Level.INFO);
             fileSession.setFilter(new FileFilter());
-            Logger.getLogger("").addHandler(fileSession);
+            Logger.getLogger("").addHandler(async("debug_session", fileSession));
         } catch (IOException | SecurityException ex) {
             fileWarning(ex);
         }
@@ -196,7 +210,7 @@ public class Logging {
         
     }
     
-    public static FileHandler getIrcFileHandler() {
+    public static Handler getIrcFileHandler() {
         createLogDir();
         try {
             FileHandler file = new FileHandler(LOG_FILE_IRC,MAX_LOG_SIZE*4,2,true);
@@ -210,13 +224,40 @@ public class Logging {
                 }
             });
             file.setLevel(Level.INFO);
-            return file;
+            return async("debug_irc", file);
         } catch (IOException | SecurityException ex) {
             fileWarning(ex);
         }
         return null;
     }
     
+    private static Handler async(String name, Handler handler) {
+        AsyncLogHandler result = new AsyncLogHandler(name, handler, MAX_QUEUED_RECORDS);
+        asyncHandlers.add(result);
+        return result;
+    }
+    
+    /**
+     * Wait for all log records logged up to this point to be written, should
+     * be called before exiting.
+     */
+    public static void flush() {
+        for (AsyncLogHandler handler : asyncHandlers) {
+            handler.flush();
+        }
+    }
+    
+    public static String getInfo() {
+        StringBuilder b = new StringBuilder();
+        for (AsyncLogHandler handler : asyncHandlers) {
+            if (b.length() > 0) {
+                b.append("\n");
+            }
+            b.append(handler.getInfo());
+        }
+        return b.toString();
+    }
+    
     public static void createLogDir() {
         try {
             Files.createDirectories(Paths.get(Chatty.getDebugLogDirectory()));
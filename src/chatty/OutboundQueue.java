@@ -0,0 +1,383 @@
+
+package chatty;
+
+import chatty.util.LatencyHistogram;
+import chatty.util.Scheduler;
+import chatty.util.TokenBucket;
+import chatty.util.irc.MsgTags;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues chat messages that can't be sent right away because of the rate
+ * limits, instead of refusing them.
+ *
+ * <p>
+ * A message is sent when the account-wide limit (a {@link SpamProtection} for
+ * channels the local user is a regular user in and one for channels with
+ * moderator or VIP status) and the limit of the channel allow it. Since
+ * Twitch counts all messages of the account together, every message sent is
+ * counted for both account-wide limits. Messages are taken from the lanes in
+ * order of priority (moderation commands, then user input, then timed
+ * commands), while keeping the order of messages to the same channel within a
+ * lane. Messages that waited too long are dropped.
+ * All messages that can be sent at the same time are handed to the
+ * {@link Output} together, so they can be written to the socket at once.</p>
+ *
+ * @author tduva
+ */
+public class OutboundQueue {
+
+    public enum Lane {
+        MOD("Mod", 60),
+        USER("User", 30),
+        TIMER("Timer", 15);
+
+        public final String label;
+
+        /**
+         * How long a message may wait before it is dropped (in seconds).
+         */
+        public final int maxAge;
+
+        Lane(String label, int maxAge) {
+            this.label = label;
+            this.maxAge = maxAge;
+        }
+    }
+
+    /**
+     * Maximum number of waiting messages, after that new messages are
+     * refused.
+     */
+    private static final int MAX_QUEUED = 100;
+
+    /**
+     * Limit per channel for regular users (a small burst, then one message
+     * per second).
+     */
+    private static final int CHANNEL_BURST = 3;
+    private static final double CHANNEL_RATE = 1;
+
+    /**
+     * Limit per channel for moderators and VIPs.
+     */
+    private static final int CHANNEL_BURST_PRIVILEGED = 20;
+    private static final double CHANNEL_RATE_PRIVILEGED = 100 / 30.0;
+
+    /**
+     * How long to wait before trying again if the account-wide limit was
+     * reached (in milliseconds), since it doesn't provide the time when a
+     * message will be allowed again.
+     */
+    private static final long GLOBAL_RETRY_DELAY = 500;
+
+    public interface Output {
+
+        /**
+         * Whether the local user is a moderator, broadcaster or VIP in the
+         * given channel, which allows for higher limits.
+         *
+         * @param channel
+         * @return
+         */
+        boolean isPrivileged(String channel);
+
+        /**
+         * Send the given messages, in order.
+         *
+         * @param messages
+         */
+        void send(List<Message> messages);
+
+        /**
+         * The message waited too long and was removed from the queue.
+         *
+         * @param message
+         */
+        void dropped(Message message);
+    }
+
+    private final Output output;
+    private final SpamProtection regularLimit;
+    private final SpamProtection privilegedLimit;
+
+    /**
+     * Held while selecting and sending messages, so messages are sent in the
+     * order they were selected.
+     */
+    private final Object sendLock = new Object();
+
+    private final Map<Lane, ArrayDeque<Message>> lanes = new EnumMap<>(Lane.class);
+    private final Map<String, ChannelLimit> channelLimits = new HashMap<>();
+
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private long droppedCount;
+
+    /**
+     * Create a new queue.
+     *
+     * @param output Where messages are sent to
+     * @param regularLimit The account-wide limit for channels the local user
+     * has no special status in
+     * @param privilegedLimit The account-wide limit for channels the local
+     * user is a moderator or VIP in
+     */
+    public OutboundQueue(Output output, SpamProtection regularLimit, SpamProtection privilegedLimit) {
+        this.output = output;
+        this.regularLimit = regularLimit;
+        this.privilegedLimit = privilegedLimit;
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Add a message to the queue and send it right away if possible.
+     *
+     * @param channel The channel to send the message to
+     * @param text The message
+     * @param action Whether to send it as an action message
+     * @param tags The tags to send with the message
+     * @param lane The priority lane
+     * @return The message, which can be checked whether it was sent right
+     * away, or null if the queue is full
+     */
+    public Message add(String channel, String text, boolean action, MsgTags tags, Lane lane) {
+        return add(channel, text, action, tags, lane, null);
+    }
+
+    /**
+     * Add a message to the queue and send it right away if possible.
+     *
+     * @param channel The channel to send the message to
+     * @param text The message
+     * @param action Whether to send it as an action message
+     * @param tags The tags to send with the message
+     * @param lane The priority lane
+     * @param onSent Run after the message has been sent (in the thread that
+     * sent it), not run if the message is dropped (may be null)
+     * @return The message, which can be checked whether it was sent right
+     * away, or null if the queue is full
+     */
+    public Message add(String channel, String text, boolean action, MsgTags tags, Lane lane, Runnable onSent) {
+        Message message = new Message(channel, text, action, tags, lane, System.nanoTime(), onSent);
+        synchronized (this) {
+            if (getNumQueued() >= MAX_QUEUED) {
+                return null;
+            }
+            lanes.get(lane).add(message);
+        }
+        process();
+        return message;
+    }
+
+    public synchronized int getNumQueued() {
+        int result = 0;
+        for (ArrayDeque<Message> queue : lanes.values()) {
+            result += queue.size();
+        }
+        return result;
+    }
+
+    /**
+     * Remove all waiting messages without sending them.
+     */
+    public synchronized void clear() {
+        for (ArrayDeque<Message> queue : lanes.values()) {
+            queue.clear();
+        }
+    }
+
+    private void process() {
+        List<Message> dropped = new ArrayList<>();
+        List<Message> send = new ArrayList<>();
+        synchronized (sendLock) {
+            long delay;
+            synchronized (this) {
+                delay = select(System.nanoTime(), send, dropped);
+            }
+            if (!send.isEmpty()) {
+                output.send(send);
+            }
+            if (delay >= 0) {
+                Scheduler.scheduleCoalesced("OutboundQueue", this, Math.max(delay, 1), this::process);
+            }
+        }
+        for (Message message : send) {
+            if (message.onSent != null) {
+                message.onSent.run();
+            }
+        }
+        for (Message message : dropped) {
+            output.dropped(message);
+        }
+    }
+
+    /**
+     * Remove the messages that can be sent now or have waited too long from
+     * the queue.
+     *
+     * @param now The current time in nanoseconds
+     * @param send Messages to send are added to this
+     * @param dropped Messages that waited too long are added to this
+     * @return The time in milliseconds after which the queue should be
+     * checked again, or -1 if the queue is empty
+     */
+    synchronized long select(long now, List<Message> send, List<Message> dropped) {
+        Set<String> blocked = new HashSet<>();
+        long delay = -1;
+        for (Lane lane : Lane.values()) {
+            Iterator<Message> it = lanes.get(lane).iterator();
+            while (it.hasNext()) {
+                Message message = it.next();
+                long waited = now - message.queued;
+                if (waited > TimeUnit.SECONDS.toNanos(lane.maxAge)) {
+                    it.remove();
+                    dropped.add(message);
+                    droppedCount++;
+                    continue;
+                }
+                if (blocked.contains(message.channel)) {
+                    continue;
+                }
+                boolean privileged = output.isPrivileged(message.channel);
+                SpamProtection global = privileged ? privilegedLimit : regularLimit;
+                TokenBucket bucket = getChannelLimit(message.channel, privileged);
+                long messageDelay;
+                if (!global.check()) {
+                    messageDelay = GLOBAL_RETRY_DELAY;
+                }
+                else if (!bucket.tryTake(now)) {
+                    messageDelay = bucket.getDelay(now);
+                }
+                else {
+                    regularLimit.increase();
+                    privilegedLimit.increase();
+                    it.remove();
+                    message.sent = true;
+                    send.add(message);
+                    waitTimes.add(TimeUnit.NANOSECONDS.toMicros(waited));
+                    continue;
+                }
+                // Keep order of messages to the same channel
+                blocked.add(message.channel);
+                delay = delay == -1 ? messageDelay : Math.min(delay, messageDelay);
+            }
+        }
+        if (delay == -1) {
+            // Nothing waiting, so buckets that are full aren't needed anymore
+            channelLimits.values().removeIf(limit -> limit.bucket.isFull(now));
+        }
+        return delay;
+    }
+
+    private TokenBucket getChannelLimit(String channel, boolean privileged) {
+        ChannelLimit limit = channelLimits.get(channel);
+        if (limit == null) {
+            limit = new ChannelLimit(privileged);
+            channelLimits.put(channel, limit);
+        }
+        else if (limit.privileged != privileged) {
+            limit.setPrivileged(privileged);
+        }
+        return limit.bucket;
+    }
+
+    /**
+     * Queue depth and wait times, for display.
+     *
+     * @return A multi-line String
+     */
+    public String getInfo() {
+        long now = System.nanoTime();
+        StringBuilder b = new StringBuilder();
+        synchronized (this) {
+            b.append(String.format(Locale.ROOT, "Send queue: %d waiting", getNumQueued()));
+            for (Lane lane : Lane.values()) {
+                ArrayDeque<Message> queue = lanes.get(lane);
+                Message oldest = queue.peek();
+                b.append(String.format(Locale.ROOT, ", %s: %d", lane.label, queue.size()));
+                if (oldest != null) {
+                    b.append(String.format(Locale.ROOT, " (oldest %.1fs)",
+                            (now - oldest.queued) / (double) TimeUnit.SECONDS.toNanos(1)));
+                }
+            }
+            b.append(String.format(Locale.ROOT, "%nSent %d (waited p50 %.1fms, p99 %.1fms, max %.1fms), dropped %d",
+                    waitTimes.getCount(),
+                    waitTimes.getPercentile(50) / 1000.0,
+                    waitTimes.getPercentile(99) / 1000.0,
+                    waitTimes.getMax() / 1000.0,
+                    droppedCount));
+        }
+        b.append(String.format(Locale.ROOT, "%nLimit: %s (Mod/VIP: %s)",
+                regularLimit, privilegedLimit));
+        return b.toString();
+    }
+
+    private static class ChannelLimit {
+
+        private final TokenBucket bucket;
+        private boolean privileged;
+
+        ChannelLimit(boolean privileged) {
+            this.privileged = privileged;
+            this.bucket = privileged
+                    ? new TokenBucket(CHANNEL_BURST_PRIVILEGED, CHANNEL_RATE_PRIVILEGED)
+                    : new TokenBucket(CHANNEL_BURST, CHANNEL_RATE);
+        }
+
+        void setPrivileged(boolean privileged) {
+            this.privileged = privileged;
+            if (privileged) {
+                bucket.setRate(CHANNEL_BURST_PRIVILEGED, CHANNEL_RATE_PRIVILEGED);
+            }
+            else {
+                bucket.setRate(CHANNEL_BURST, CHANNEL_RATE);
+            }
+        }
+
+    }
+
+    public static class Message {
+
+        public final String channel;
+        public final String text;
+        public final boolean action;
+        public final MsgTags tags;
+        public final Lane lane;
+        private final long queued;
+        private final Runnable onSent;
+        private volatile boolean sent;
+
+        private Message(String channel, String text, boolean action, MsgTags tags, Lane lane, long queued, Runnable onSent) {
+            this.channel = channel;
+            this.text = text;
+            this.action = action;
+            this.tags = tags;
+            this.lane = lane;
+            this.queued = queued;
+            this.onSent = onSent;
+        }
+
+        /**
+         * Whether the message has been taken from the queue for sending.
+         *
+         * @return
+         */
+        public boolean isSent() {
+            return sent;
+        }
+
+    }
+
+}
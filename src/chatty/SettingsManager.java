@@ -9,6 +9,7 @@ import chatty.gui.components.settings.NotificationSettings;
 import chatty.gui.notifications.Notification;
 import chatty.util.DateTime;
 import chatty.util.ElapsedTime;
+import chatty.util.Scheduler;
 import chatty.util.StringUtil;
 import chatty.util.colors.ColorCorrection;
 import chatty.util.hotkeys.Hotkey;
@@ -165,6 +166,10 @@ public class SettingsManager {
         settings.addString("pubsub", "wss://pubsub-edge.twitch.tv");
         
         settings.addLong("maxReconnectionAttempts", -1);
+        // Max channels per connection, additional connections are opened as
+        // needed (0 to use only one connection)
+        settings.addLong("ircShardSize", 0);
+        settings.addLong("joinRateLimit", 20);
 
         // Auto-join channels
         settings.addString("channel", "");
@@ -285,6 +290,8 @@ public class SettingsManager {
                 Setting.STRING);
         
         settings.addBoolean("imageCache", true);
+        settings.addBoolean("apiCache", true);
+        settings.addBoolean("streamHistoryStore", false);
         
         // Colors
         settings.addString("foregroundColor","#111111");
@@ -502,6 +509,7 @@ public class SettingsManager {
         settings.addBoolean("inputEnabled", true);
         settings.addLong("bufferSize", 500);
         settings.addMap("bufferSizes", new HashMap<>(), Setting.LONG);
+        settings.addBoolean("deferHiddenChannels", false);
 
         settings.addString("liveStreamsSorting", "recent");
         settings.addBoolean("liveStreamsSortingFav", true);
@@ -574,6 +582,7 @@ public class SettingsManager {
         //=====================
 
         settings.addString("spamProtection", "18/30");
+        settings.addString("spamProtectionMod", "90/30");
 
         settings.addBoolean("autoScroll", true);
         settings.addLong("autoScrollTimeout", 30);
@@ -708,6 +717,7 @@ public class SettingsManager {
         settings.addLong("completionMixed", 0);
         settings.addBoolean("completionSpace", false);
         settings.addBoolean("completionFavEmotesFirst", true);
+        settings.addBoolean("completionUsedEmotesFirst", false);
         
         // Replying
         settings.addBoolean("mentionReplyRestricted", false);
@@ -1102,33 +1112,28 @@ public class SettingsManager {
     private final ElapsedTime lastAutoSaved = new ElapsedTime(true);
 
     void startAutoSave(TwitchClient c) {
-        Timer timer = new Timer("AutoSaveSettings", false);
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                int delay = (int)settings.getLong("autoSaveSettings")*60;
-                //System.out.println(lastAutoSaved.secondsElapsedSync()+" "+(int)settings.getLong("autoSaveSettings")*60);
-                if (delay > 0 && lastAutoSaved.secondsElapsedSync(delay)) {
-                    lastAutoSaved.setSync();
-                    List<FileManager.SaveResult> results = c.saveSettings(false, false);
-                    if (results == null) {
-                        // Saving settings not currently enabled
-                        return;
-                    }
-                    for (FileManager.SaveResult r : results) {
-                        if (r.writeError != null) {
-                            String msg = "["+r.id+"] "+Helper.getErrorMessageCompact(r.writeError)
-                                    +" (You can save manually under 'Main - Save..' to check if the issue persists.)";
-                            if (r.backupWritten && r.backupError == null) {
-                                msg += "\nBackup was successfully written to: "+r.backupPath;
-                            }
-                            EventLog.addSystemEvent("session.settings.writeError", msg);
+        Scheduler.scheduleRepeating("AutoSaveSettings", 30*1000, 30*1000, () -> {
+            int delay = (int)settings.getLong("autoSaveSettings")*60;
+            //System.out.println(lastAutoSaved.secondsElapsedSync()+" "+(int)settings.getLong("autoSaveSettings")*60);
+            if (delay > 0 && lastAutoSaved.secondsElapsedSync(delay)) {
+                lastAutoSaved.setSync();
+                List<FileManager.SaveResult> results = c.saveSettings(false, false);
+                if (results == null) {
+                    // Saving settings not currently enabled
+                    return;
+                }
+                for (FileManager.SaveResult r : results) {
+                    if (r.writeError != null) {
+                        String msg = "["+r.id+"] "+Helper.getErrorMessageCompact(r.writeError)
+                                +" (You can save manually under 'Main - Save..' to check if the issue persists.)";
+                        if (r.backupWritten && r.backupError == null) {
+                            msg += "\nBackup was successfully written to: "+r.backupPath;
                         }
+                        EventLog.addSystemEvent("session.settings.writeError", msg);
                     }
                 }
             }
-        }, 30*1000, 30*1000);
+        });
     }
     
     private static class DefaultHotkey {
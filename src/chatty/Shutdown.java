@@ -1,6 +1,7 @@
 
 package chatty;
 
+import chatty.util.DiskCache;
 import java.util.logging.Logger;
 
 /**
@@ -29,5 +30,7 @@ public class Shutdown implements Runnable {
         
         client.saveSettings(true, false);
         client.chatLog.close();
+        DiskCache.flushAll();
+        Logging.flush();
     }
 }
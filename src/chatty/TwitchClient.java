@@ -13,6 +13,8 @@ import chatty.ChannelStateManager.ChannelStateListener;
 import chatty.Commands.CommandParsedArgs;
 import chatty.util.api.TwitchApiResultListener;
 import chatty.util.api.Emoticon;
+import chatty.util.api.EmoticonSnapshot;
+import chatty.util.api.StreamHistoryStore;
 import chatty.util.api.StreamInfoListener;
 import chatty.util.api.TokenInfo;
 import chatty.util.api.StreamInfo;
@@ -33,23 +35,31 @@ import chatty.gui.defaults.DefaultsDialog;
 import chatty.splash.Splash;
 import chatty.util.BTTVEmotes;
 import chatty.util.BotNameManager;
+import chatty.util.CachedBulkManager;
 import chatty.util.DateTime;
+import chatty.util.DebugTap;
 import chatty.util.Debugging;
+import chatty.util.DiskCache;
 import chatty.util.EmoticonListener;
+import chatty.util.HttpService;
 import chatty.util.IconManager;
 import chatty.util.ffz.FrankerFaceZ;
 import chatty.util.ffz.FrankerFaceZListener;
 import chatty.util.ImageCache;
 import chatty.util.LogUtil;
+import chatty.util.MessageLatency;
 import chatty.util.MiscUtil;
 import chatty.util.OtherBadges;
 import chatty.util.ProcessManager;
 import chatty.util.RawMessageTest;
 import chatty.util.ReplyManager;
+import chatty.util.Scheduler;
+import chatty.util.Sound;
 import chatty.util.Speedruncom;
 import chatty.util.StreamHighlightHelper;
 import chatty.util.StreamStatusWriter;
 import chatty.util.StringUtil;
+import chatty.util.TaskRunner;
 import chatty.util.Timestamp;
 import chatty.util.TimerCommand;
 import chatty.util.TimerCommand.TimerResult;
@@ -94,7 +104,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.SwingUtilities;
@@ -264,6 +274,13 @@ public class TwitchClient {
          * by some servers.
          */
         System.setProperty("http.agent", "Chatty "+Chatty.VERSION);
+        /**
+         * Keep as many connections per host alive as requests to the same host
+         * may run at the same time.
+         */
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(HttpService.MAX_PER_HOST));
+        }
         System.setProperty("jna.debug_load", "true");
         
         // After graphic settings (what is changed here shouldn't affect stuff before this
@@ -281,6 +298,13 @@ public class TwitchClient {
 
         createTestUser("tduva", "");
         
+        if (settings.getBoolean("apiCache")) {
+            DiskCache.setDirectory(Paths.get(Chatty.getCacheDirectory()+"data"));
+            EmoticonSnapshot.setDirectory(Paths.get(Chatty.getCacheDirectory()+"emotes"));
+        }
+        if (settings.getBoolean("streamHistoryStore")) {
+            StreamHistoryStore.setDirectory(Paths.get(Chatty.getUserDataDirectory()+"streamhistory"));
+        }
         api = new TwitchApi(new TwitchApiResults(), new MyStreamInfoListener());
         bttvEmotes = new BTTVEmotes(new EmoteListener(), api);
         TwitchEmotesApi.api.setTwitchApi(api);
@@ -332,6 +356,12 @@ public class TwitchClient {
         c.setBotNameManager(botNameManager);
         c.addChannelStateListener(new ChannelStateUpdater());
         c.setMaxReconnectionAttempts(settings.getLong("maxReconnectionAttempts"));
+        c.setRawListenerEnabled(settings.getBoolean("debugLogIrcFile"));
+        settings.addSettingChangeListener((setting, type, value) -> {
+            if (setting.equals("debugLogIrcFile")) {
+                c.setRawListenerEnabled((Boolean) value);
+            }
+        });
         
         w = new WhisperManager(new MyWhisperListener(), settings, c, this);
         
@@ -882,6 +912,15 @@ public class TwitchClient {
         c.joinChannel(channels);
     }
     
+    /**
+     * The channels currently shown in the GUI, which are joined first.
+     * 
+     * @param channels 
+     */
+    public void setVisibleChannels(Set<String> channels) {
+        c.setVisibleChannels(channels);
+    }
+    
     public int getState() {
         return c.getState();
     }
@@ -911,7 +950,7 @@ public class TwitchClient {
         }
         else if (!checkRejectTimedMessage(room, commandParameters)) {
             if (c.onChannel(channel)) {
-                sendMessage(channel, text, true);
+                sendMessage(channel, text, true, getLane(commandParameters));
             }
             else if (channel.startsWith("$")) {
                 w.whisperChannel(channel, text);
@@ -936,9 +975,27 @@ public class TwitchClient {
     }
     
     private void sendMessage(String channel, String text) {
+        sendMessage(channel, text, OutboundQueue.Lane.USER);
+    }
+    
+    private void sendMessage(String channel, String text, OutboundQueue.Lane lane) {
         if (c.onChannel(channel, true)) {
-            sendMessage(channel, text, false);
+            sendMessage(channel, text, false, lane);
+        }
+    }
+    
+    /**
+     * Messages from timed commands are sent with a lower priority when the
+     * rate limit is reached.
+     * 
+     * @param parameters The command parameters (may be null)
+     * @return The lane to send messages with
+     */
+    private static OutboundQueue.Lane getLane(Parameters parameters) {
+        if (parameters != null && parameters.hasKey(TimerCommand.TIMER_PARAMETERS_KEY)) {
+            return OutboundQueue.Lane.TIMER;
         }
+        return OutboundQueue.Lane.USER;
     }
     
     /**
@@ -948,18 +1005,21 @@ public class TwitchClient {
      * @param allowCommandMessageLocally Commands like !highlight, which
      * normally only working for received messages, will be triggered when
      * sending a message as well
+     * @param lane The priority lane
      */
-    private void sendMessage(String channel, String text, boolean allowCommandMessageLocally) {
+    private void sendMessage(String channel, String text, boolean allowCommandMessageLocally,
+            OutboundQueue.Lane lane) {
         if (sendAsReply(channel, text)) {
             return;
         }
-        if (c.sendSpamProtectedMessage(channel, text, false)) {
+        // Only output once actually sent, since it may be queued
+        if (!c.sendSpamProtectedMessage(channel, text, false, MsgTags.EMPTY, lane, () -> GuiUtil.edt(() -> {
             User user = c.localUserJoined(channel);
             g.printMessage(user, text, false);
             if (allowCommandMessageLocally) {
                 modCommandAddStreamHighlight(user, text, MsgTags.EMPTY);
             }
-        } else {
+        }))) {
             g.printLine("# Message not sent to prevent ban: " + text);
         }
     }
@@ -1013,7 +1073,7 @@ public class TwitchClient {
      */
     private void sendReply(String channel, String text, String atUsername, String atMsgId, String atMsg) {
         MsgTags tags = MsgTags.create("reply-parent-msg-id", atMsgId);
-        if (c.sendSpamProtectedMessage(channel, text, false, tags)) {
+        if (!c.sendSpamProtectedMessage(channel, text, false, tags, OutboundQueue.Lane.USER, () -> GuiUtil.edt(() -> {
             User user = c.localUserJoined(channel);
             String localOutputText = text;
             if (!text.startsWith("@")) {
@@ -1024,8 +1084,7 @@ public class TwitchClient {
                     String.format("<%s> %s", user.getName(), localOutputText),
                     atMsg != null ? String.format("<%s> %s", atUsername, atMsg) : null);
             g.printMessage(user, localOutputText, false, tags);
-        }
-        else {
+        }))) {
             g.printLine("# Message not sent to prevent ban: " + text);
         }
     }
@@ -1194,14 +1253,14 @@ public class TwitchClient {
             if (checkRejectTimedMessage(p.getRoom(), p.getParameters())) {
                 return;
             }
-            commandActionMessage(p.getChannel(), p.getArgs());
+            commandActionMessage(p.getChannel(), p.getArgs(), getLane(p.getParameters()));
         });
         commands.add("say", p -> {
             if (checkRejectTimedMessage(p.getRoom(), p.getParameters())) {
                 return;
             }
             if (p.hasArgs()) {
-                sendMessage(p.getChannel(), p.getArgs());
+                sendMessage(p.getChannel(), p.getArgs(), getLane(p.getParameters()));
             }
             else {
                 g.printLine(p.getRoom(), "Usage: /say <message>");
@@ -1350,6 +1409,12 @@ public class TwitchClient {
         commands.add("appinfo", p -> {
             g.printSystem(LogUtil.getAppInfo()+" [Connection] "+c.getConnectionInfo());
         });
+        commands.add("perf", p -> {
+            commandPerf(p.getArgs());
+        });
+        commands.add("sendQueue", p -> {
+            g.printSystem(c.getSpamProtectionInfo());
+        });
         commands.add("timer", p -> {
             TimerResult result = timerCommand.command(p.getArgs(), p.getRoom(), p.getParameters());
             if (result.message != null) {
@@ -1722,7 +1787,10 @@ public class TwitchClient {
         
         else if (TwitchCommands.isCommand(command)) {
             if (!checkRejectTimedMessage(room, parameters)) {
-                c.command(channel, command, parameter, null);
+                // Commands entered by the user take priority, timed ones don't
+                OutboundQueue.Lane lane = getLane(parameters) == OutboundQueue.Lane.TIMER
+                        ? OutboundQueue.Lane.TIMER : OutboundQueue.Lane.MOD;
+                c.command(channel, command, parameter, null, lane);
             }
         }
         
@@ -1765,7 +1833,7 @@ public class TwitchClient {
             EventLog.addSystemEvent(split[0], split[1], split[2]);
         } else if (command.equals("addevent2")) {
             String[] split = parameter.split(" ", 3);
-            new Thread(() -> EventLog.addSystemEvent(split[0], split[1], split[2])).start();
+            TaskRunner.execute(TaskRunner.Category.IO, "AddEvent", () -> EventLog.addSystemEvent(split[0], split[1], split[2]));
         } else if (command.equals("removechan")) {
             g.removeChannel(parameter);
         } else if (command.equals("tt")) {
@@ -1820,7 +1888,7 @@ public class TwitchClient {
         } else if (command.equals("testspam")) {
             g.printLine("test" + spamProtection.getAllowance() + spamProtection.tryMessage());
         } else if (command.equals("spamprotectioninfo")) {
-            g.printSystem("Spam Protection: "+spamProtection);
+            g.printSystem("Spam Protection: "+spamProtection+"\n"+c.getSpamProtectionInfo());
         } else if (command.equals("tsv")) {
             testStreamInfo.set("Title", new StreamCategory(null, "Game"), Integer.parseInt(parameter), -1, StreamType.LIVE);
         } else if (command.equals("tsvs")) {
@@ -2033,6 +2101,18 @@ public class TwitchClient {
             }
         } else if (command.equals("threadinfo")) {
             LogUtil.logThreadInfo();
+        } else if (command.equals("scheduler")) {
+            g.printSystem(Scheduler.getDebugInfo());
+        } else if (command.equals("caches")) {
+            g.printSystem(CachedBulkManager.getDebugInfo());
+        } else if (command.equals("logging")) {
+            g.printSystem(Logging.getInfo());
+        } else if (command.equals("sound")) {
+            g.printSystem(Sound.getInfo());
+        } else if (command.equals("http")) {
+            g.printSystem(HttpService.getInfo());
+        } else if (command.equals("tasks")) {
+            g.printSystem(TaskRunner.getInfo());
         } else if (command.equals("addusers")) {
             String[] split = parameter.split(" ", 2);
             int amount = Integer.parseInt(split[0]);
@@ -2247,20 +2327,24 @@ public class TwitchClient {
      * 
      * @param channel The channel to send the message to
      * @param message The message to send
+     * @param lane The priority lane
      */
-    private void commandActionMessage(String channel, String message) {
+    private void commandActionMessage(String channel, String message, OutboundQueue.Lane lane) {
         if (message != null) {
-            sendActionMessage(channel, message);
+            sendActionMessage(channel, message, lane);
         } else {
             g.printLine("Usage: /me <message>");
         }
     }
     
     public void sendActionMessage(String channel, String message) {
+        sendActionMessage(channel, message, OutboundQueue.Lane.USER);
+    }
+    
+    private void sendActionMessage(String channel, String message, OutboundQueue.Lane lane) {
         if (c.onChannel(channel, true)) {
-            if (c.sendSpamProtectedMessage(channel, message, true)) {
-                g.printMessage(c.localUserJoined(channel), message, true);
-            } else {
+            if (!c.sendSpamProtectedMessage(channel, message, true, MsgTags.EMPTY, lane,
+                    () -> g.printMessage(c.localUserJoined(channel), message, true))) {
                 g.printLine("# Action Message not sent to prevent ban: " + message);
             }
         }
@@ -2272,8 +2356,10 @@ public class TwitchClient {
             if (split.length == 2) {
                 String to = split[0];
                 String message = split[1];
-                c.sendSpamProtectedMessage(to, message, false);
-                g.printLine(String.format("-> %s: %s", to, message));
+                if (!c.sendSpamProtectedMessage(to, message, false, MsgTags.EMPTY, OutboundQueue.Lane.USER,
+                        () -> g.printLine(String.format("-> %s: %s", to, message)))) {
+                    g.printLine("# Message not sent to prevent ban: " + message);
+                }
                 return;
             }
         }
@@ -2288,6 +2374,33 @@ public class TwitchClient {
         }
     }
     
+    /**
+     * Enable/disable measuring message latency or output the results.
+     * 
+     * @param parameter "on", "off", "reset", a channel or empty for all
+     * channels
+     */
+    private void commandPerf(String parameter) {
+        if (parameter == null || parameter.isEmpty()) {
+            g.printSystemMultline(null, MessageLatency.getReport(null));
+        }
+        else if (parameter.equals("on")) {
+            MessageLatency.setEnabled(true);
+            g.printSystem("Measuring message latency (show with /perf)");
+        }
+        else if (parameter.equals("off")) {
+            MessageLatency.setEnabled(false);
+            g.printSystem("Stopped measuring message latency");
+        }
+        else if (parameter.equals("reset")) {
+            MessageLatency.reset();
+            g.printSystem("Message latency data cleared");
+        }
+        else {
+            g.printSystemMultline(null, MessageLatency.getReport(Helper.toChannel(parameter)));
+        }
+    }
+    
     public void updateLogin() {
         String username = settings.getString("username");
         String token = settings.getString("token");
@@ -2520,10 +2633,7 @@ public class TwitchClient {
     }
     
     public void debugPubSub(String line) {
-        if (shuttingDown || g == null) {
-            return;
-        }
-        g.printDebugPubSub(line);
+        DebugTap.PUBSUB.add(null, line);
     }
     
     /**
@@ -2567,7 +2677,11 @@ public class TwitchClient {
                      * other reward and user moderation info messages).
                      */
                     if (c.isChannelOpen(Helper.toChannel(data.stream))) {
-                        handleModAction(data);
+                        Set<User> updatedUsers = new HashSet<>();
+                        if (handleModAction(data, updatedUsers)) {
+                            g.printModerationAction(data, data.created_by.equals(c.getUsername()));
+                            g.updateUserinfo(updatedUsers);
+                        }
                     }
                 }
                 else if (message.data instanceof RewardRedeemedMessageData) {
@@ -2584,30 +2698,71 @@ public class TwitchClient {
                 }
             }
         }
-
+        
+        /**
+         * Handle messages for the same channel received within a short time,
+         * so that the GUI only has to be updated once (e.g. during mass bans).
+         */
         @Override
-        public void info(String info) {
-            g.printDebugPubSub(info);
+        public void messagesReceived(List<Message> messages) {
+            List<ModeratorActionData> modActions = new ArrayList<>();
+            Set<User> updatedUsers = new HashSet<>();
+            for (Message message : messages) {
+                if (message.data instanceof ModeratorActionData) {
+                    ModeratorActionData data = (ModeratorActionData) message.data;
+                    if (c.isChannelOpen(Helper.toChannel(data.stream))
+                            && handleModAction(data, updatedUsers)) {
+                        modActions.add(data);
+                    }
+                }
+                else {
+                    // Output collected mod actions first, to keep the order
+                    outputModActions(modActions, updatedUsers);
+                    messageReceived(message);
+                }
+            }
+            outputModActions(modActions, updatedUsers);
         }
         
-        private void handleModAction(ModeratorActionData data) {
+        /**
+         * Output the given mod actions and update the given users, then
+         * clear both.
+         */
+        private void outputModActions(List<ModeratorActionData> modActions, Set<User> updatedUsers) {
+            if (!modActions.isEmpty()) {
+                g.printModerationActions(new ArrayList<>(modActions), c.getUsername());
+                modActions.clear();
+            }
+            if (!updatedUsers.isEmpty()) {
+                g.updateUserinfo(new HashSet<>(updatedUsers));
+                updatedUsers.clear();
+            }
+        }
+        
+        /**
+         * Update users and log the mod action.
+         * 
+         * @param data The mod action
+         * @param updatedUsers Users that were changed are added to this
+         * @return true if the action should be output
+         */
+        private boolean handleModAction(ModeratorActionData data, Set<User> updatedUsers) {
             // A regular mod action that doesn't contain a mod action should be ignored
             boolean empty = data.type == ModeratorActionData.Type.OTHER && data.moderation_action.isEmpty() && data.args.isEmpty();
             if (data.stream != null && !empty) {
                 String channel = Helper.toChannel(data.stream);
-                g.printModerationAction(data, data.created_by.equals(c.getUsername()));
                 chatLog.modAction(data);
 
                 User modUser = c.getUser(channel, data.created_by);
                 modUser.addModAction(data);
-                g.updateUserinfo(modUser);
+                updatedUsers.add(modUser);
 
                 String bannedUsername = ModLogInfo.getBannedUsername(data);
                 if (bannedUsername != null) {
                     // If this is actually a ban, add info to banned user
                     User bannedUser = c.getUser(channel, bannedUsername);
                     bannedUser.addBanInfo(data);
-                    g.updateUserinfo(bannedUser);
+                    updatedUsers.add(bannedUser);
                 }
                 String unbannedUsername = ModLogInfo.getUnbannedUsername(data);
                 if (unbannedUsername != null) {
@@ -2615,9 +2770,11 @@ public class TwitchClient {
                     User unbannedUser = c.getUser(channel, unbannedUsername);
                     int type = User.UnbanMessage.getType(data.moderation_action);
                     unbannedUser.addUnban(type, data.created_by);
-                    g.updateUserinfo(unbannedUser);
+                    updatedUsers.add(unbannedUser);
                 }
+                return true;
             }
+            return false;
         }
         
         private void handleReward(RewardRedeemedMessageData data) {
@@ -2824,7 +2981,7 @@ public class TwitchClient {
     public void startWebserver() {
         if (webserver == null) {
             webserver = new Webserver(new WebserverListener());
-            new Thread(webserver).start();
+            TaskRunner.startThread(TaskRunner.Category.LONG_RUNNING, "Webserver", webserver);
         }
         else {
             LOGGER.warning("Webserver already running");
@@ -3167,6 +3324,15 @@ public class TwitchClient {
         c.setSpamProtection(value);
     }
     
+    /**
+     * The limit for channels with moderator or VIP status.
+     * 
+     * @param value 
+     */
+    public void setModLinesPerSeconds(String value) {
+        c.setSpamProtectionMod(value);
+    }
+    
     /**
      * Exit the program. Do some cleanup first and save stuff to file (settings,
      * addressbook, chatlogs).
@@ -3182,6 +3348,9 @@ public class TwitchClient {
         pubsub.disconnect();
         g.cleanUp();
         chatLog.close();
+        DiskCache.flushAll();
+        StreamHistoryStore.flush();
+        Logging.flush();
         System.exit(0);
     }
     
@@ -3650,28 +3819,25 @@ public class TwitchClient {
         
         IrcLogger() {
             IRC_LOGGER.setUseParentHandlers(false);
-            FileHandler handler = Logging.getIrcFileHandler();
+            Handler handler = Logging.getIrcFileHandler();
             if (handler != null) {
                 IRC_LOGGER.addHandler(handler);
             }
         }
         
+        /**
+         * Only called when enabled via
+         * {@link TwitchConnection#setRawListenerEnabled(boolean)}, the Debug
+         * window gets the lines through the {@link DebugTap}.
+         * 
+         * @param text 
+         */
         public void onRawReceived(String text) {
-            if (settings.getBoolean("debugLogIrc")) {
-                g.printDebugIrc("--> " + text);
-            }
-            if (settings.getBoolean("debugLogIrcFile")) {
-                IRC_LOGGER.info("--> " + text);
-            }
+            IRC_LOGGER.info("--> " + text);
         }
         
         public void onRawSent(String text) {
-            if (settings.getBoolean("debugLogIrc")) {
-                g.printDebugIrc("<-- " + text);
-            }
-            if (settings.getBoolean("debugLogIrcFile")) {
-                IRC_LOGGER.info("<-- " + text);
-            }
+            IRC_LOGGER.info("<-- " + text);
         }
         
     }
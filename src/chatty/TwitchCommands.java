@@ -76,7 +76,8 @@ public class TwitchCommands {
         return false;
     }
     
-    public boolean command(String channel, String msgId, String command, String parameter) {
+    public boolean command(String channel, String msgId, String command, String parameter,
+            OutboundQueue.Lane lane) {
         if (command.equals("host") && parameter == null) {
             commandHostmode2(Helper.toChannel(c.getUsername()), Helper.toStream(channel));
         }
@@ -92,11 +93,11 @@ public class TwitchCommands {
                         || NO_PARAMETER_COMMANDS.contains(command)) {
                     // No parameter
                     String output = message != null ? message : "Trying to "+command+"..";
-                    sendMessage(channel, "/"+command, output);
+                    c.sendCommandMessage(channel, "/"+command, output, MsgTags.EMPTY, lane);
                 } else {
                     // Parameters
                     String output = message != null ? message : "Trying to "+command+" "+parameter+"..";
-                    sendMessage(channel, "/"+command+" "+parameter, output);
+                    c.sendCommandMessage(channel, "/"+command+" "+parameter, output, MsgTags.EMPTY, lane);
                 }
             }
         }
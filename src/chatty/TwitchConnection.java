@@ -8,6 +8,9 @@ import chatty.ChannelStateManager.ChannelStateListener;
 import chatty.User.UserSettings;
 import chatty.gui.emoji.EmojiUtil;
 import chatty.util.BotNameManager;
+import chatty.util.DebugTap;
+import chatty.util.MessageLatency;
+import chatty.util.Scheduler;
 import chatty.util.irc.MsgTags;
 import chatty.util.StringUtil;
 import chatty.util.api.Emoticons;
@@ -20,12 +23,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 /**
@@ -65,7 +67,14 @@ public class TwitchConnection {
      */
     private final static int[] RECONNECTION_DELAY = new int[]{1, 5, 5, 10, 10, 60, 120};
 
-    private volatile Timer reconnectionTimer;
+    private volatile Scheduler.Task reconnectionTimer;
+    
+    /**
+     * Whether raw received/sent lines should be sent to the listener (e.g.
+     * for logging to a file). Output to the Debug window is done through the
+     * {@link DebugTap} instead.
+     */
+    private volatile boolean rawListenerEnabled;
 
     /**
      * The username to send to the server. This is stored to reconnect.
@@ -89,10 +98,43 @@ public class TwitchConnection {
     
     private final RoomManager rooms;
 
+    /**
+     * The main connection, which is used for logging in, whispers and raw
+     * commands, as well as for channels if connections aren't sharded.
+     */
     private final IrcConnection irc;
+    
+    /**
+     * Additional connections when channels are distributed over several
+     * connections (setting "ircShardSize"), not including the main connection.
+     * Each connection only joins and handles the channels assigned to it.
+     */
+    private final List<IrcConnection> shards = new ArrayList<>();
+    
+    /**
+     * Which connection each channel is assigned to. Channels not in here use
+     * the main connection. Only accessed while synchronized on
+     * {@link #shards}.
+     */
+    private final Map<String, IrcConnection> channelConnections = new HashMap<>();
+    
+    private final String label;
+    private int shardCounter;
+    
+    /**
+     * Shared by all connections, since the join limit is per account.
+     */
+    private final JoinScheduler joinScheduler = new JoinScheduler();
+    
+    /**
+     * Channels currently shown in a tab or popout, which are joined first.
+     */
+    private volatile Set<String> visibleChannels = Collections.emptySet();
 
     private final TwitchCommands twitchCommands;
     private final SpamProtection spamProtection;
+    private final SpamProtection spamProtectionMod;
+    private final OutboundQueue outbound;
     private final ChannelStateManager channelStates = new ChannelStateManager();
     
     private final SentMessages sentMessages = new SentMessages();
@@ -100,12 +142,16 @@ public class TwitchConnection {
     public TwitchConnection(final ConnectionListener listener, Settings settings,
             String label, RoomManager rooms) {
         irc = new IrcConnection(label);
+        this.label = label;
         this.listener = listener;
         this.settings = settings;
         this.twitchCommands = new TwitchCommands(this);
         this.rooms = rooms;
         spamProtection = new SpamProtection();
         spamProtection.setLinesPerSeconds(settings.getString("spamProtection"));
+        spamProtectionMod = new SpamProtection();
+        spamProtectionMod.setLinesPerSeconds(settings.getString("spamProtectionMod"));
+        outbound = new OutboundQueue(new OutboundOutput(), spamProtection, spamProtectionMod);
         users.setCapitalizedNames(settings.getBoolean("capitalizedNames"));
         users.setSettings(settings);
         users.addListener(new UserManager.UserManagerListener() {
@@ -119,16 +165,6 @@ public class TwitchConnection {
         });
     }
     
-    private TimerTask getReconnectionTimerTask() {
-        return new TimerTask() {
-
-            @Override
-            public void run() {
-                reconnect();
-            }
-        };
-    }
-    
     public void simulate(String data) {
         irc.simulate(data);
     }
@@ -157,6 +193,10 @@ public class TwitchConnection {
         users.setCustomNamesManager(customNames);
     }
     
+    public void setRawListenerEnabled(boolean enabled) {
+        this.rawListenerEnabled = enabled;
+    }
+    
     public void setMaxReconnectionAttempts(long num) {
         this.maxReconnectionAttempts = num;
     }
@@ -165,8 +205,12 @@ public class TwitchConnection {
         spamProtection.setLinesPerSeconds(setting);
     }
     
+    public void setSpamProtectionMod(String setting) {
+        spamProtectionMod.setLinesPerSeconds(setting);
+    }
+    
     public String getSpamProtectionInfo() {
-        return spamProtection.toString();
+        return outbound.getInfo();
     }
     
     public void updateRoom(Room room) {
@@ -196,7 +240,8 @@ public class TwitchConnection {
     }
     
     public boolean isUserlistLoaded(String channel) {
-        return irc.isRegistered() && irc.userlistReceived.contains(channel);
+        IrcConnection c = getConnection(channel);
+        return c.isRegistered() && c.userlistReceived.contains(channel);
     }
     
     public Set<String> getOpenChannels() {
@@ -254,7 +299,11 @@ public class TwitchConnection {
     }
 
     public Set<String> getJoinedChannels() {
-        return irc.getJoinedChannels();
+        Set<String> result = irc.getJoinedChannels();
+        for (IrcConnection shard : getShards()) {
+            result.addAll(shard.getJoinedChannels());
+        }
+        return result;
     }
     
     public boolean isChannelOpen(String channel) {
@@ -265,10 +314,22 @@ public class TwitchConnection {
         if (channel.equals(WhisperManager.WHISPER_CHANNEL)) {
             return;
         }
+        IrcConnection c = getConnection(channel);
         partChannel(channel);
         openChannels.remove(channel);
         users.clear(channel);
-        irc.cancelJoinAttempt(channel);
+        c.cancelJoinAttempt(channel);
+        releaseChannel(channel);
+    }
+    
+    /**
+     * Set the channels that are currently shown, so they can be joined before
+     * other channels.
+     * 
+     * @param channels The channels (not modified)
+     */
+    public void setVisibleChannels(Set<String> channels) {
+        visibleChannels = channels;
     }
     
     public void setAllOffline() {
@@ -277,14 +338,14 @@ public class TwitchConnection {
     
     public void rejoinChannel(String channel) {
         if (onChannel(channel)) {
-            irc.rejoinChannel.add(channel);
+            getConnection(channel).rejoinChannel.add(channel);
             partChannel(channel);
         }
     }
     
     public void partChannel(String channel) {
         if (onChannel(channel)) {
-            irc.partChannel(channel);
+            getConnection(channel).partChannel(channel);
         }
     }
 
@@ -297,7 +358,7 @@ public class TwitchConnection {
      * @return
      */
     public boolean onChannel(String channel, boolean showMessage) {
-        boolean onChannel = irc.joinedChannels.contains(channel);
+        boolean onChannel = getConnection(channel).joinedChannels.contains(channel);
         if (showMessage && !onChannel) {
             if (channel == null || channel.isEmpty()) {
                 listener.onInfo("Not in a channel");
@@ -309,11 +370,11 @@ public class TwitchConnection {
     }
 
     public boolean onOwnerChannel(String ownerChannel) {
-        if (irc.joinedChannels.contains(ownerChannel)) {
+        if (onChannel(ownerChannel)) {
             return true;
         }
         for (Room room : rooms.getRoomsByOwner(ownerChannel)) {
-            if (irc.joinedChannels.contains(room.getChannel())) {
+            if (onChannel(room.getChannel())) {
                 return true;
             }
         }
@@ -361,6 +422,7 @@ public class TwitchConnection {
         users.setLocalUsername(username);
         this.password = password;
         this.autojoin = autojoin;
+        joinScheduler.setLimit((int) settings.getLong("joinRateLimit"));
         connect();
     }
     
@@ -431,11 +493,14 @@ public class TwitchConnection {
             irc.setState(Irc.STATE_OFFLINE);
             irc.connectionAttempts = 0;
         }
+        disconnectShards();
+        outbound.clear();
         boolean success = irc.disconnect();
         return success;
     }
     
     public void quit() {
+        disconnectShards();
         irc.disconnect();
     }
 
@@ -443,10 +508,34 @@ public class TwitchConnection {
         if (irc.getConnectionInfo() == null) {
             return "Not connected.";
         }
-        return String.format("Connected to: %s (%s, %s channels)",
+        List<IrcConnection> currentShards = getShards();
+        int waiting = joinScheduler.getNumPending();
+        String waitingInfo = waiting > 0 ? String.format(" [%d waiting to be joined]", waiting) : "";
+        if (currentShards.isEmpty()) {
+            return String.format("Connected to: %s (%s, %s channels)%s",
+                    irc.getConnectionInfo(),
+                    irc.getConnectedSince(),
+                    irc.joinedChannels.size(),
+                    waitingInfo);
+        }
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("Connected to: %s (%s, %s channels, %d additional connections:",
                 irc.getConnectionInfo(),
                 irc.getConnectedSince(),
-                irc.joinedChannels.size());
+                getNumJoinedChannels(),
+                currentShards.size()));
+        b.append(" ").append(irc.getId()).append(": ").append(irc.joinedChannels.size());
+        for (IrcConnection shard : currentShards) {
+            b.append(", ").append(shard.getId()).append(": ");
+            if (shard.isRegistered()) {
+                b.append(shard.joinedChannels.size());
+            }
+            else {
+                b.append("not connected");
+            }
+        }
+        b.append(")").append(waitingInfo);
+        return b.toString();
     }
     
     public boolean autoRequestModsEnabled() {
@@ -467,7 +556,12 @@ public class TwitchConnection {
     
     public boolean command(String channel, String command, String parameters,
             String msgId) {
-        return twitchCommands.command(channel, msgId, command, parameters);
+        return command(channel, command, parameters, msgId, OutboundQueue.Lane.MOD);
+    }
+    
+    public boolean command(String channel, String command, String parameters,
+            String msgId, OutboundQueue.Lane lane) {
+        return twitchCommands.command(channel, msgId, command, parameters, lane);
     }
     
     public void addNewCommands(Commands commands, TwitchClient client) {
@@ -491,9 +585,24 @@ public class TwitchConnection {
      */
     public void sendCommandMessage(String channel, String message, String echo,
             MsgTags tags) {
-        if (sendSpamProtectedMessage(channel, message, false, tags)) {
-            info(channel, echo, null);
-        } else {
+        sendCommandMessage(channel, message, echo, tags, OutboundQueue.Lane.MOD);
+    }
+    
+    /**
+     * Send a spam protected command to a channel, with the given echo message
+     * that will be displayed to the user once it has been sent.
+     * 
+     * @param channel The channel to send the message to
+     * @param message The message to send (e.g. a moderation command)
+     * @param echo The message to display to the user
+     * @param tags
+     * @param lane The priority lane (e.g. the timer lane for commands from
+     * timed commands)
+     */
+    public void sendCommandMessage(String channel, String message, String echo,
+            MsgTags tags, OutboundQueue.Lane lane) {
+        if (!sendSpamProtectedMessage(channel, message, false, tags, lane,
+                () -> info(channel, echo, null))) {
             info(channel, "# Command not sent to prevent ban: " + message, null);
         }
     }
@@ -502,46 +611,265 @@ public class TwitchConnection {
         return sendSpamProtectedMessage(channel, message, action, MsgTags.EMPTY);
     }
     
+    public boolean sendSpamProtectedMessage(String channel, String message,
+            boolean action, MsgTags tags) {
+        return sendSpamProtectedMessage(channel, message, action, tags, OutboundQueue.Lane.USER);
+    }
+    
+    public boolean sendSpamProtectedMessage(String channel, String message,
+            boolean action, MsgTags tags, OutboundQueue.Lane lane) {
+        return sendSpamProtectedMessage(channel, message, action, tags, lane, null);
+    }
+    
     /**
-     * Tries to send a spam protected message, which will either be send or not,
-     * depending on the status of the spam protection.
+     * Tries to send a spam protected message. If the rate limit doesn't allow
+     * it to be sent right away it is queued, unless too many messages are
+     * already waiting.
      * 
      * <p>This doesn't check if you're actually on the channel.</p>
      *
      * @param channel The channel to send the message to
      * @param message The message to send
      * @param action
-     * @return true if the message was send, false otherwise
+     * @param tags
+     * @param lane The priority, commands (starting with "/" or ".") in the
+     * user lane use the mod lane instead (timed messages stay in the timer
+     * lane)
+     * @param onSent Run once the message has actually been sent, which may be
+     * right away or later from another thread, not run if the message is
+     * dropped from the queue (may be null)
+     * @return true if the message was sent or queued, false otherwise
      */
     public boolean sendSpamProtectedMessage(String channel, String message,
-            boolean action, MsgTags tags) {
-        if (!spamProtection.check()) {
+            boolean action, MsgTags tags, OutboundQueue.Lane lane, Runnable onSent) {
+        if (settings.getLong("emojiZWJ") == 2) {
+            message = EmojiUtil.encodeZWJ(message);
+        }
+        if (lane == OutboundQueue.Lane.USER && !action
+                && (message.startsWith("/") || message.startsWith("."))) {
+            lane = OutboundQueue.Lane.MOD;
+        }
+        OutboundQueue.Message queued = outbound.add(channel, message, action, tags, lane, onSent);
+        if (queued == null) {
             return false;
-        } else {
-            if (settings.getLong("emojiZWJ") == 2) {
-                message = EmojiUtil.encodeZWJ(message);
-            }
-            if (Helper.isChatroomChannel(channel)) {
-                sentMessages.messageSent(channel, message);
-            }
-            spamProtection.increase();
-            if (action) {
-                irc.sendActionMessage(channel, message);
-            } else {
-                irc.sendMessage(channel, message, tags);
+        }
+        if (!queued.isSent()) {
+            info(channel, String.format("# Message queued to prevent ban (%d waiting)",
+                    outbound.getNumQueued()), null);
+        }
+        return true;
+    }
+    
+    /**
+     * Sends the messages from the {@link OutboundQueue} through the
+     * connection of each channel, writing all lines for a connection at once.
+     */
+    private class OutboundOutput implements OutboundQueue.Output {
+
+        @Override
+        public boolean isPrivileged(String channel) {
+            User user = users.getUserIfExists(channel, username);
+            return user != null && (user.hasChannelModeratorRights() || user.isVip());
+        }
+
+        @Override
+        public void send(List<OutboundQueue.Message> messages) {
+            Map<IrcConnection, List<OutboundQueue.Message>> byConnection = new LinkedHashMap<>();
+            for (OutboundQueue.Message message : messages) {
+                byConnection.computeIfAbsent(getConnection(message.channel), k -> new ArrayList<>()).add(message);
+            }
+            for (Map.Entry<IrcConnection, List<OutboundQueue.Message>> entry : byConnection.entrySet()) {
+                IrcConnection c = entry.getKey();
+                c.sendBatch(() -> {
+                    for (OutboundQueue.Message message : entry.getValue()) {
+                        if (Helper.isChatroomChannel(message.channel)) {
+                            sentMessages.messageSent(message.channel, message.text);
+                        }
+                        if (message.action) {
+                            c.sendActionMessage(message.channel, message.text);
+                        } else {
+                            c.sendMessage(message.channel, message.text, message.tags);
+                        }
+                    }
+                });
             }
-            return true;
         }
+
+        @Override
+        public void dropped(OutboundQueue.Message message) {
+            info(message.channel, "# Message not sent, waited too long to prevent ban: "+message.text, null);
+        }
+        
     }
 
     public int getNumJoinedChannels() {
-        return irc.joinedChannels.size();
+        int result = irc.joinedChannels.size();
+        for (IrcConnection shard : getShards()) {
+            result += shard.joinedChannels.size();
+        }
+        return result;
     }
     
-    
-
     private void join(String channel) {
-        irc.joinChannel(channel);
+        IrcConnection c = assignConnection(channel);
+        if (c == irc || c.isRegistered()) {
+            c.joinChannel(channel);
+        }
+        else if (c.getState() <= Irc.STATE_OFFLINE) {
+            // Joins assigned channels once registered
+            connectShard(c);
+        }
+    }
+    
+    //==========================
+    // Sharding
+    //==========================
+    
+    /**
+     * Get the connection the given channel is assigned to.
+     * 
+     * @param channel The channel
+     * @return The connection (the main connection if not assigned to another
+     * connection)
+     */
+    private IrcConnection getConnection(String channel) {
+        synchronized (shards) {
+            IrcConnection c = channelConnections.get(channel);
+            return c != null ? c : irc;
+        }
+    }
+    
+    private List<IrcConnection> getShards() {
+        synchronized (shards) {
+            return new ArrayList<>(shards);
+        }
+    }
+    
+    /**
+     * Get the connection the given channel should be joined on. If sharding is
+     * enabled and not already assigned, the channel is assigned to the
+     * connection with the fewest channels, or a new connection if all are
+     * full.
+     * 
+     * @param channel The channel
+     * @return The connection
+     */
+    private IrcConnection assignConnection(String channel) {
+        int shardSize = (int) settings.getLong("ircShardSize");
+        synchronized (shards) {
+            IrcConnection current = channelConnections.get(channel);
+            if (current != null) {
+                return current;
+            }
+            if (shardSize <= 0) {
+                return irc;
+            }
+            IrcConnection best = irc;
+            int bestCount = getNumAssigned(irc);
+            for (IrcConnection shard : shards) {
+                int count = getNumAssigned(shard);
+                if (count < bestCount) {
+                    best = shard;
+                    bestCount = count;
+                }
+            }
+            if (bestCount >= shardSize) {
+                shardCounter++;
+                best = new IrcConnection(label+"-"+shardCounter);
+                shards.add(best);
+                LOGGER.info("Added connection "+best.getId()+" ("+(shards.size() + 1)+" total)");
+            }
+            channelConnections.put(channel, best);
+            return best;
+        }
+    }
+    
+    /**
+     * The channels assigned to the given connection. Must be called while
+     * synchronized on {@link #shards}.
+     */
+    private int getNumAssigned(IrcConnection c) {
+        int count = 0;
+        for (IrcConnection assigned : channelConnections.values()) {
+            if (assigned == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private Set<String> getAssignedChannels(IrcConnection c) {
+        Set<String> result = new HashSet<>();
+        synchronized (shards) {
+            for (Map.Entry<String, IrcConnection> entry : channelConnections.entrySet()) {
+                if (entry.getValue() == c) {
+                    result.add(entry.getKey());
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Remove the assignment of the channel (e.g. when closed) and close the
+     * connection it was on if it isn't used anymore.
+     * 
+     * @param channel 
+     */
+    private void releaseChannel(String channel) {
+        IrcConnection c;
+        synchronized (shards) {
+            c = channelConnections.remove(channel);
+        }
+        if (c != null) {
+            removeShardIfUnused(c);
+        }
+    }
+    
+    /**
+     * Disconnect and remove the given connection, if it's not the main
+     * connection and has no channels joined or assigned anymore.
+     * 
+     * @param c 
+     */
+    private void removeShardIfUnused(IrcConnection c) {
+        if (c == irc || !c.joinedChannels.isEmpty()) {
+            return;
+        }
+        synchronized (shards) {
+            if (channelConnections.containsValue(c) || !shards.remove(c)) {
+                return;
+            }
+        }
+        LOGGER.info("Removing unused connection "+c.getId());
+        c.cancelShardReconnect();
+        c.disconnect();
+    }
+    
+    private void connectShard(IrcConnection c) {
+        new Thread("IRC connect "+c.getId()) {
+            @Override
+            public void run() {
+                c.connect(server, serverPorts, username, password, getSecuredPorts());
+            }
+        }.start();
+    }
+    
+    /**
+     * Disconnect and remove all additional connections, e.g. when the main
+     * connection is disconnected on purpose.
+     */
+    private void disconnectShards() {
+        List<IrcConnection> removed;
+        synchronized (shards) {
+            removed = new ArrayList<>(shards);
+            shards.clear();
+            channelConnections.clear();
+        }
+        for (IrcConnection shard : removed) {
+            shard.cancelShardReconnect();
+            shard.disconnect();
+        }
     }
     
     /**
@@ -630,9 +958,15 @@ public class TwitchConnection {
 
         private final JoinChecker joinChecker = new JoinChecker(this);
         
+        /**
+         * Reconnect timer of an additional connection (the main connection
+         * uses {@link TwitchConnection#reconnectionTimer}).
+         */
+        private Scheduler.Task shardReconnect;
+        
         /**
          * Channels that this connection has joined. This is per connection, so
-         * the main and secondary connection have different data here.
+         * each connection (when sharded) has different data here.
          */
         private final Set<String> joinedChannels = Collections.synchronizedSet(new HashSet<>());
         
@@ -643,6 +977,8 @@ public class TwitchConnection {
          * connection it is from.
          */
         private final String idPrefix;
+        private final String idPrefixReceived;
+        private final String idPrefixSent;
         
         /**
          * This only applies to irc2. This is reset on every new connection.
@@ -655,8 +991,10 @@ public class TwitchConnection {
         
         
         public IrcConnection(String id) {
-            super(id);
+            super(id, joinScheduler);
             this.idPrefix= "["+id+"] ";
+            this.idPrefixReceived = "--> "+idPrefix;
+            this.idPrefixSent = "<-- "+idPrefix;
         }
         
         public Set<String> getJoinedChannels() {
@@ -669,8 +1007,17 @@ public class TwitchConnection {
             return joinedChannels.contains(channel);
         }
 
-        public boolean primaryOnChannel(String channel) {
-            return irc.onChannel(channel);
+        private synchronized void cancelShardReconnect() {
+            if (shardReconnect != null) {
+                shardReconnect.cancel();
+                shardReconnect = null;
+            }
+        }
+        
+        private boolean isShard() {
+            synchronized (shards) {
+                return shards.contains(this);
+            }
         }
         
         @Override
@@ -729,15 +1076,13 @@ public class TwitchConnection {
         
         @Override
         void onConnect() {
-            if (this == irc) {
-                send("CAP REQ :twitch.tv/tags");
-                send("CAP REQ :twitch.tv/commands");
-                if (settings.getBoolean("membershipEnabled")) {
-                    send("CAP REQ :twitch.tv/membership");
-                }
-                send("CAP END");
-                //send("TWITCHCLIENT 4");
+            send("CAP REQ :twitch.tv/tags");
+            send("CAP REQ :twitch.tv/commands");
+            if (settings.getBoolean("membershipEnabled")) {
+                send("CAP REQ :twitch.tv/membership");
             }
+            send("CAP END");
+            //send("TWITCHCLIENT 4");
             userlistReceived.clear();
         }
 
@@ -746,10 +1091,20 @@ public class TwitchConnection {
             connectionAttempts = 1;
 
             if (this != irc) {
+                // Additional connection, only join the channels assigned to it
+                Set<String> assigned = getAssignedChannels(this);
+                if (assigned.isEmpty()) {
+                    removeShardIfUnused(this);
+                }
+                else {
+                    listener.onJoinScheduled(assigned);
+                    for (String channel : assigned) {
+                        joinChannel(channel);
+                    }
+                }
                 return;
             }
             
-            
             if (autojoin != null) {
                 listener.onJoinScheduled(Arrays.asList(autojoin));
                 for (String channel : autojoin) {
@@ -761,33 +1116,78 @@ public class TwitchConnection {
                  */
                 autojoin = null;
             } else {
-                joinChannels(getOpenChannels());
+                // Channels on other connections may still be joined
+                Set<String> toJoin = getOpenChannels();
+                toJoin.removeAll(TwitchConnection.this.getJoinedChannels());
+                joinChannels(toJoin);
             }
             listener.onRegistered();
         }
         
         @Override
         void onDisconnect(int reason, String reasonMessage) {
+            Set<String> wasJoined = getJoinedChannels();
             joinedChannels.clear();
             joinChecker.cancelAll();
             
-            if (this == irc) {
+            if (this != irc) {
+                onShardDisconnect(reason, reasonMessage, wasJoined);
+                return;
+            }
+            if (getShards().isEmpty()) {
                 channelStates.reset();
-                listener.onGlobalInfo(Language.getString("chat.disconnected")
-                        +Helper.makeDisconnectReason(reason, reasonMessage));
+            }
+            else {
+                for (String channel : wasJoined) {
+                    channelStates.reset(channel);
+                }
+            }
+            listener.onGlobalInfo(Language.getString("chat.disconnected")
+                    +Helper.makeDisconnectReason(reason, reasonMessage));
 
-                if (reason != Irc.REQUESTED_DISCONNECT) {
-                    if (irc.shouldCancelConnecting()) {
-                        listener.onGlobalInfo("Canceled reconnecting");
-                        connectionAttempts = 0;
-                    }
-                    else {
-                        startReconnectTimer(reason);
-                    }
-                } else {
+            if (reason != Irc.REQUESTED_DISCONNECT) {
+                if (irc.shouldCancelConnecting()) {
+                    listener.onGlobalInfo("Canceled reconnecting");
                     connectionAttempts = 0;
                 }
-                listener.onDisconnect(reason, reasonMessage);
+                else {
+                    startReconnectTimer(reason);
+                }
+            } else {
+                connectionAttempts = 0;
+            }
+            listener.onDisconnect(reason, reasonMessage);
+        }
+        
+        /**
+         * An additional connection was disconnected, so inform the channels
+         * that were on it and reconnect just this connection.
+         */
+        private void onShardDisconnect(int reason, String reasonMessage, Set<String> wasJoined) {
+            for (String channel : wasJoined) {
+                users.setAllOffline(channel);
+                listener.onUserlistCleared(channel);
+                channelStates.reset(channel);
+                info(channel, Language.getString("chat.disconnected")
+                        +Helper.makeDisconnectReason(reason, reasonMessage), null);
+            }
+            if (reason == Irc.REQUESTED_DISCONNECT || !isShard()) {
+                connectionAttempts = 0;
+                return;
+            }
+            synchronized (this) {
+                if (shardReconnect == null) {
+                    int delay = getReconnectionDelay(connectionAttempts);
+                    LOGGER.info(idPrefix+"Reconnecting in "+delay+"s");
+                    shardReconnect = Scheduler.schedule("Reconnect "+getId(), delay * 1000, () -> {
+                        synchronized (this) {
+                            shardReconnect = null;
+                        }
+                        if (isShard() && irc.isRegistered()) {
+                            connectShard(this);
+                        }
+                    });
+                }
             }
         }
         
@@ -804,8 +1204,7 @@ public class TwitchConnection {
                             irc.connectionAttempts,
                             maxReconnectionAttempts < 0 ? "∞" : maxReconnectionAttempts));
                     setState(Irc.STATE_RECONNECTING);
-                    reconnectionTimer = new Timer();
-                    reconnectionTimer.schedule(getReconnectionTimerTask(), delay * 1000);
+                    reconnectionTimer = Scheduler.schedule("Reconnect", delay * 1000, () -> reconnect());
                 }
             }
         }
@@ -814,10 +1213,8 @@ public class TwitchConnection {
         void onJoinAttempt(String channel) {
             channel = StringUtil.toLowerCase(channel);
             joinChecker.joinAttempt(channel);
-            if (this == irc) {
-                listener.onJoinAttempt(rooms.getRoom(channel));
-                openChannels.add(channel);
-            }
+            listener.onJoinAttempt(rooms.getRoom(channel));
+            openChannels.add(channel);
         }
 
         @Override
@@ -830,7 +1227,7 @@ public class TwitchConnection {
                 joinChecker.cancel(channel);
                 debug("JOINED: " + channel);
                 User user = userJoined(channel, nick);
-                if (this == irc && !onChannel(channel)) {
+                if (!onChannel(channel)) {
                     listener.onChannelJoined(user);
                 }
                 joinedChannels.add(channel);
@@ -860,6 +1257,22 @@ public class TwitchConnection {
         
         public void cancelJoinAttempt(String channel) {
             joinChecker.cancel(channel);
+            cancelJoinChannel(channel);
+        }
+        
+        @Override
+        JoinScheduler.Priority getJoinPriority(String channel) {
+            channel = StringUtil.toLowerCase(channel);
+            if (!channel.startsWith("#")) {
+                channel = "#"+channel;
+            }
+            if (visibleChannels.contains(channel)) {
+                return JoinScheduler.Priority.VISIBLE;
+            }
+            if (isChannelOpen(channel)) {
+                return JoinScheduler.Priority.OPEN;
+            }
+            return JoinScheduler.Priority.NEW;
         }
 
         @Override
@@ -877,25 +1290,21 @@ public class TwitchConnection {
                  * Local User Leaving Channel
                  */
                 joinChecker.cancel(channel);
-                if (this == irc) {
-                    userOffline(channel, nick);
-                }
+                userOffline(channel, nick);
                 joinedChannels.remove(channel);
-                if (this == irc) {
-                    if (rejoinChannel.contains(channel)) {
-                        rejoinChannel.remove(channel);
-                        listener.onChannelLeft(rooms.getRoom(channel), false);
-                        rejoin = true;
-                    }
-                    else {
-                        // Remove users for this channel, clearing the userlist in the
-                        // GUI shouldn't be necessary if this channel is closed since
-                        // the GUI userlist is removed as well.
-                        users.clear(channel);
-                        listener.onChannelLeft(rooms.getRoom(channel), true);
-                    }
-                    channelStates.reset(channel);
+                if (rejoinChannel.contains(channel)) {
+                    rejoinChannel.remove(channel);
+                    listener.onChannelLeft(rooms.getRoom(channel), false);
+                    rejoin = true;
+                }
+                else {
+                    // Remove users for this channel, clearing the userlist in the
+                    // GUI shouldn't be necessary if this channel is closed since
+                    // the GUI userlist is removed as well.
+                    users.clear(channel);
+                    listener.onChannelLeft(rooms.getRoom(channel), true);
                 }
+                channelStates.reset(channel);
                 // Leaving the channel on the userlist connection means
                 // the userlist can no longer be considered as received for
                 // this channel.
@@ -904,6 +1313,9 @@ public class TwitchConnection {
                 if (rejoin) {
                     joinChannel(channel);
                 }
+                else {
+                    removeShardIfUnused(this);
+                }
             } else {
                 if (isChannelOpen(channel)) {
                     User user = userOffline(channel, nick);
@@ -922,9 +1334,7 @@ public class TwitchConnection {
             if (modeAdded) {
                 user.setMode(mode);
                 if (mode.equals("o")) {
-                    if (this == irc) {
-                        listener.onMod(user);
-                    }
+                    listener.onMod(user);
                     if (!isUserlistLoaded(channel)) {
                         userJoined(user);
                     }
@@ -932,9 +1342,7 @@ public class TwitchConnection {
             } else {
                 user.setMode("");
                 if (mode.equals("o")) {
-                    if (this == irc) {
-                        listener.onUnmod(user);
-                    }
+                    listener.onUnmod(user);
                 }
             }
             // Notify userlist to update the changed user, but only if he is still
@@ -1030,9 +1438,6 @@ public class TwitchConnection {
         void onChannelMessage(String channel, String nick, String from, String text,
                 MsgTags tags, boolean action) {
             channel = StringUtil.toLowerCase(channel);
-            if (this != irc) {
-                return;
-            }
             if (nick.isEmpty()) {
                 return;
             }
@@ -1047,6 +1452,7 @@ public class TwitchConnection {
                     if (!user.getName().equals(username) || !sentMessages.shouldHide(channel, text)) {
                         // Don't show if own name and message was sent recently,
                         // to prevent echo message from being shown in chatrooms
+                        MessageLatency.dispatch(channel);
                         listener.onChannelMessage(user, text, action, tags);
                     }
                 }
@@ -1065,9 +1471,6 @@ public class TwitchConnection {
         @Override
         void onNotice(String channel, String text, MsgTags tags) {
             channel = StringUtil.toLowerCase(channel);
-            if (this != irc) {
-                return;
-            }
             String msg_id = tags.get("msg-id");
             if (msg_id != null && msg_id.startsWith("whisper_")) {
                 listener.onInfo(text);
@@ -1097,7 +1500,7 @@ public class TwitchConnection {
             private User gifter;
             private String subPlan;
             private String text;
-            private Timer timer;
+            private Scheduler.Task timer;
             
             public synchronized void add(User user, String text, String message, int months, String emotes, MsgTags tags) {
                 String recipient = tags.get("msg-param-recipient-display-name");
@@ -1126,14 +1529,7 @@ public class TwitchConnection {
                 if (recipients.size() == 1) {
                     // First sub of this group
                     this.text = text;
-                    timer = new Timer(true);
-                    timer.schedule(new TimerTask() {
-
-                        @Override
-                        public void run() {
-                            flush();
-                        }
-                    }, COMBINE_INTERVAL);
+                    timer = Scheduler.schedule("GiftedSubCombiner", COMBINE_INTERVAL, () -> flush());
                 }
             }
             
@@ -1352,14 +1748,24 @@ public class TwitchConnection {
 
         @Override
         public void raw(String text) {
-            listener.onRawReceived(idPrefix+text);
+            if (DebugTap.IRC.isActive()) {
+                DebugTap.IRC.add(idPrefixReceived, text);
+            }
+            if (rawListenerEnabled) {
+                listener.onRawReceived(idPrefix+text);
+            }
         }
 
         @Override
         public void sent(String text) {
+            if (!DebugTap.IRC.isActive() && !rawListenerEnabled) {
+                return;
+            }
             if (text.startsWith("PASS")) {
-                listener.onRawSent(idPrefix+"PASS <password>");
-            } else {
+                text = "PASS <password>";
+            }
+            DebugTap.IRC.add(idPrefixSent, text);
+            if (rawListenerEnabled) {
                 listener.onRawSent(idPrefix+text);
             }
         }
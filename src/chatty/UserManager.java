@@ -5,6 +5,7 @@ import chatty.User.UserSettings;
 import chatty.gui.colors.UsercolorManager;
 import chatty.util.api.usericons.UsericonManager;
 import chatty.util.BotNameManager;
+import chatty.util.Scheduler;
 import chatty.util.StringUtil;
 import chatty.util.settings.Settings;
 import java.util.Map.Entry;
@@ -45,14 +46,9 @@ public class UserManager {
     private UserSettings userSettings;
     
     public UserManager() {
-        Timer clearMessageTimer = new Timer("Clear User Messages", true);
-        clearMessageTimer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                clearLinesOfInactiveUsers();
-            }
-        }, CLEAR_MESSAGES_TIMER, CLEAR_MESSAGES_TIMER);
+        Scheduler.scheduleRepeating("Clear User Messages",
+                CLEAR_MESSAGES_TIMER, CLEAR_MESSAGES_TIMER,
+                () -> clearLinesOfInactiveUsers());
     }
     
     public void setLocalUsername(String username) {
@@ -1334,6 +1334,22 @@ public class Channels {
         return channels.get(channel);
     }
     
+    /**
+     * Get the channels that are currently shown (the selected tab in the main
+     * window and popouts).
+     * 
+     * @return A new Set of channel names
+     */
+    public Set<String> getVisibleChannels() {
+        Set<String> result = new HashSet<>();
+        for (Channel chan : channels.values()) {
+            if (dock.isContentVisible(chan.getDockContent())) {
+                result.add(chan.getChannel());
+            }
+        }
+        return result;
+    }
+    
     /**
      * Check if the given channel is currently present.
      * 
@@ -1498,6 +1514,12 @@ public class Channels {
         }
     }
     
+    public void setDeferOutput(boolean enabled) {
+        for (Channel channel : getChannels()) {
+            channel.setDeferOutput(enabled);
+        }
+    }
+    
     public void setDefaultUserlistWidth(int width, int minWidth) {
         defaultUserlistWidth = width;
         minUserlistWidth = minWidth;
@@ -1803,6 +1803,18 @@ public class Highlighter {
             return overrideIgnored;
         }
         
+        /**
+         * Whether this item can match messages of the given type at all,
+         * without checking anything else.
+         * 
+         * @param type The type of message
+         * @return false if this item never matches the given type
+         */
+        public boolean appliesToType(Type type) {
+            return type == appliesToType || appliesToType == Type.ANY
+                    || type == Type.ANY || type == Type.TEXT_MATCH_TEST;
+        }
+        
         public boolean substitutesEnabled(boolean substitutesDefault) {
             if (substitutesEnabled == 0) {
                 return false;
@@ -1900,8 +1912,7 @@ public class Highlighter {
             //------
             // Type
             //------
-            if (type != appliesToType && appliesToType != Type.ANY
-                    && type != Type.ANY && type != Type.TEXT_MATCH_TEST) {
+            if (!appliesToType(type)) {
                 return false;
             }
             
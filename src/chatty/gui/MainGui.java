@@ -1439,6 +1439,19 @@ public class MainGui extends JFrame implements Runnable {
         });
     }
     
+    /**
+     * Update the User Info Dialog for several users at once.
+     * 
+     * @param users The users
+     */
+    public void updateUserinfo(final Collection<User> users) {
+        SwingUtilities.invokeLater(() -> {
+            for (User user : users) {
+                updateUserInfoDialog(user);
+            }
+        });
+    }
+    
     private void updateUserInfoDialog(User user) {
         userInfoDialog.update(user, client.getUsername());
     }
@@ -2471,6 +2484,7 @@ public class MainGui extends JFrame implements Runnable {
             updateChannelInfoDialog(null);
             emotesDialog.updateStream(channels.getLastActiveChannel().getStreamName());
             moderationLog.setChannel(channels.getLastActiveChannel().getStreamName());
+            client.setVisibleChannels(channels.getVisibleChannels());
             if (!openedFirstChannel
                     && channels.getLastActiveChannel().getType() == Channel.Type.CHANNEL) {
                 openedFirstChannel = true;
@@ -3312,9 +3326,12 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void printMessage(User user, String text2, boolean action, MsgTags tags0) {
+        MessageLatency.Trace trace = MessageLatency.current();
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
+                MessageLatency.mark(trace, MessageLatency.Stage.PRINT);
+                
                 /**
                  * Replace the ZWF replacement (which consists of two chars)
                  * with the ZFW before anything that relies on character
@@ -3394,6 +3411,7 @@ public class MainGui extends JFrame implements Runnable {
                         }
                     }
                 }
+                MessageLatency.mark(trace, MessageLatency.Stage.CHECK);
                 
                 if (!ignored || client.settings.getBoolean("logIgnored")) {
                     client.chatLog.bits(chan.getFilename(), user, bitsAmount);
@@ -3491,6 +3509,7 @@ public class MainGui extends JFrame implements Runnable {
                         message.ignored_compact = true;
                     }
                     chan.printMessage(message);
+                    MessageLatency.mark(trace, MessageLatency.Stage.INSERT);
                     if (highlighted) {
                         highlightedMessages.addMessage(channel, message);
                         client.chatLog.message("highlighted", user, text, action, channel);
@@ -3508,6 +3527,8 @@ public class MainGui extends JFrame implements Runnable {
                     user.setHighlighted();
                 }
                 updateUserInfoDialog(user);
+                // Not painted until the channel is shown if output is deferred
+                MessageLatency.finish(trace, chan.hasPendingOutput() ? null : chan.getTextPane());
             }
         });
     }
@@ -3969,16 +3990,6 @@ public class MainGui extends JFrame implements Runnable {
         });
     }
     
-    public void printDebugPubSub(final String line) {
-        SwingUtilities.invokeLater(new Runnable() {
-
-            @Override
-            public void run() {
-                debugWindow.printLinePubSub(line);
-            }
-        });
-    }
-    
     public void printTimerLog(String line) {
         GuiUtil.edt(() -> debugWindow.printTimerLog(line));
     }
@@ -3990,51 +4001,73 @@ public class MainGui extends JFrame implements Runnable {
             @Override
             public void run() {
                 moderationLog.add(data);
-                autoModDialog.addData(data);
-                
-                String channel = Helper.toValidChannel(data.stream);
-                
-                // AutoMod only seems to work in Stream Chat
-                if (channels.isChannel(channel)) {
-                    Channel chan = channels.getExistingChannel(channel);
-                    if (data.type == ModeratorActionData.Type.AUTOMOD_REJECTED
-                            && data.args.size() > 1) {
-                        // Automod
-                        String username = data.args.get(0);
-                        String message = data.args.get(1);
-                        if (client.settings.getBoolean("showAutoMod")) {
-                            User user = client.getUser(channel, username);
-                            printInfo(chan, new AutoModMessage(user, message, data.msgId));
-                        }
-                        notificationManager.autoModMessage(channel, username, message);
-                    }
-                }
-                
-                // Moderator Actions apparently apply to all rooms
-                Collection<Channel> chans = channels.getExistingChannelsByOwner(channel);
-                if (!chans.isEmpty()
-                        && data.type != ModeratorActionData.Type.AUTOMOD_REJECTED
-                        && data.type != ModeratorActionData.Type.UNMODDED) {
-                    boolean showActions = client.settings.getBoolean("showModActions");
-                    boolean showActionsRestrict = client.settings.getBoolean("showModActionsRestrict");
-                    boolean showMessage =
-                               showActions
-                            && (!ownAction || ModLogInfo.isIndirectAction(data))
-                            && !(showActionsRestrict && ModLogInfo.isAssociated(data));
-                    boolean showActionby = client.settings.getBoolean("showActionBy");
-                    for (Channel chan : chans) {
-                        // Create for each channel, just in case (since they get
-                        // modified)
-                        // TODO: Output that output of reason or by isn't affected by ignore etc.
-                        ModLogInfo infoMessage = new ModLogInfo(chan, data, showActionby, ownAction);
-                        infoMessage.setHidden(!showMessage);
-                        printInfo(chan, infoMessage);
-                    }
-                }
+                printModerationActionInChat(data, ownAction);
             }
         });
     }
     
+    /**
+     * Output several moderator actions (e.g. received for the same channel
+     * within a short time) at once.
+     * 
+     * @param data The actions, in order
+     * @param localUsername The local username, to check which actions were
+     * performed by the local user
+     */
+    public void printModerationActions(List<ModeratorActionData> data,
+            String localUsername) {
+        SwingUtilities.invokeLater(() -> {
+            moderationLog.add(data);
+            for (ModeratorActionData action : data) {
+                printModerationActionInChat(action, action.created_by.equals(localUsername));
+            }
+        });
+    }
+    
+    private void printModerationActionInChat(ModeratorActionData data, boolean ownAction) {
+        autoModDialog.addData(data);
+        
+        String channel = Helper.toValidChannel(data.stream);
+        
+        // AutoMod only seems to work in Stream Chat
+        if (channels.isChannel(channel)) {
+            Channel chan = channels.getExistingChannel(channel);
+            if (data.type == ModeratorActionData.Type.AUTOMOD_REJECTED
+                    && data.args.size() > 1) {
+                // Automod
+                String username = data.args.get(0);
+                String message = data.args.get(1);
+                if (client.settings.getBoolean("showAutoMod")) {
+                    User user = client.getUser(channel, username);
+                    printInfo(chan, new AutoModMessage(user, message, data.msgId));
+                }
+                notificationManager.autoModMessage(channel, username, message);
+            }
+        }
+        
+        // Moderator Actions apparently apply to all rooms
+        Collection<Channel> chans = channels.getExistingChannelsByOwner(channel);
+        if (!chans.isEmpty()
+                && data.type != ModeratorActionData.Type.AUTOMOD_REJECTED
+                && data.type != ModeratorActionData.Type.UNMODDED) {
+            boolean showActions = client.settings.getBoolean("showModActions");
+            boolean showActionsRestrict = client.settings.getBoolean("showModActionsRestrict");
+            boolean showMessage =
+                       showActions
+                    && (!ownAction || ModLogInfo.isIndirectAction(data))
+                    && !(showActionsRestrict && ModLogInfo.isAssociated(data));
+            boolean showActionby = client.settings.getBoolean("showActionBy");
+            for (Channel chan : chans) {
+                // Create for each channel, just in case (since they get
+                // modified)
+                // TODO: Output that output of reason or by isn't affected by ignore etc.
+                ModLogInfo infoMessage = new ModLogInfo(chan, data, showActionby, ownAction);
+                infoMessage.setHidden(!showMessage);
+                printInfo(chan, infoMessage);
+            }
+        }
+    }
+    
     /**
      * If not matching message was found for the ModAction to append the @mod,
      * then output anyway.
@@ -4054,24 +4087,6 @@ public class MainGui extends JFrame implements Runnable {
         });
     }
     
-    /**
-     * Outputs a line to the debug window
-     * 
-     * @param line 
-     */
-    public void printDebugIrc(final String line) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            debugWindow.printLineIrc(line);
-        } else {
-            SwingUtilities.invokeLater(new Runnable() {
-                @Override
-                public void run() {
-                    debugWindow.printLineIrc(line);
-                }
-            });
-        }
-    }
-    
     // User stuff
     
     /**
@@ -5176,6 +5191,8 @@ public class MainGui extends JFrame implements Runnable {
                     tokenDialog.setForeignToken(bool);
                 } else if (setting.equals("completionEnabled")) {
                     channels.setCompletionEnabled(bool);
+                } else if (setting.equals("deferHiddenChannels")) {
+                    channels.setDeferOutput(bool);
                 } else if (setting.equals("animatedEmotes")) {
                     emotesDialog.setEmoteImageType(Emoticon.makeImageType(bool));
                 } else if (setting.equals("matchingSubstitutesEnabled")) {
@@ -5274,6 +5291,9 @@ public class MainGui extends JFrame implements Runnable {
             if (setting.equals("spamProtection")) {
                 client.setLinesPerSeconds((String)value);
             }
+            if (setting.equals("spamProtectionMod")) {
+                client.setModLinesPerSeconds((String)value);
+            }
             if (setting.equals("urlPrompt")) {
                 UrlOpener.setPrompt((Boolean)value);
             }
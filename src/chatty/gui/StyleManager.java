@@ -240,6 +240,8 @@ public class StyleManager implements StyleServer {
         other.addAttribute(Setting.DELETED_MESSAGES_MODE, deletedMessagesModeNumeric);
         addLongSetting(Setting.DISPLAY_NAMES_MODE, "displayNamesMode");
         
+        // Background may have changed, so old corrected colors may not be used anymore
+        ColorCorrector.clearCache();
         colorCorrector = ColorCorrector.get(settings.getString("nickColorCorrection"));
     }
     
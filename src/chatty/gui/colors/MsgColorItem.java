@@ -28,4 +28,8 @@ public class MsgColorItem extends ColorItem {
         return search.matches(type, text, msgStart, msgEnd, null, channel, ab, user, localUser, tags);
     }
     
+    public boolean appliesToType(HighlightItem.Type type) {
+        return search.appliesToType(type);
+    }
+    
 }
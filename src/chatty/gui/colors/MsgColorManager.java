@@ -28,6 +28,7 @@ public class MsgColorManager {
     
     private final Settings settings;
     private volatile List<MsgColorItem> data;
+    private volatile Compiled compiled = new Compiled(new ArrayList<>());
     
     public MsgColorManager(Settings settings) {
         this.settings = settings;
@@ -76,6 +77,7 @@ public class MsgColorManager {
             }
         }
         data = loadedData;
+        compiled = new Compiled(loadedData);
     }
     
     /**
@@ -110,6 +112,7 @@ public class MsgColorManager {
      */
     public synchronized void setData(List<MsgColorItem> newData) {
         data = new ArrayList<>(newData);
+        compiled = new Compiled(data);
         saveToSettings();
     }
     
@@ -117,16 +120,20 @@ public class MsgColorManager {
      * Returns the color for this user and text (message), or null if no items
      * matched.
      * 
+     * <p>
+     * Doesn't lock, but should only be called from one thread at a time (the
+     * EDT), since the items store the state of the last match.</p>
+     * 
      * @param user
      * @param text
      * @return 
      */
-    public synchronized ColorItem getColor(HighlightItem.Type type, User user, User localUser,
+    public ColorItem getColor(HighlightItem.Type type, User user, User localUser,
             String text, int msgStart, int msgEnd, String channel, MsgTags tags, Addressbook ab) {
-        if (data == null || !settings.getBoolean(ENABLED_SETTING)) {
+        if (!settings.getBoolean(ENABLED_SETTING)) {
             return EMPTY;
         }
-        for (MsgColorItem item : data) {
+        for (MsgColorItem item : compiled.get(type)) {
             if (item.matches(type, text, msgStart, msgEnd, channel, ab, user, localUser, tags)) {
                 return item;
             }
@@ -134,12 +141,51 @@ public class MsgColorManager {
         return EMPTY;
     }
     
-    public synchronized ColorItem getMsgColor(User user, User localUser, String text, int msgStart, int msgEnd, MsgTags tags) {
+    public ColorItem getMsgColor(User user, User localUser, String text, int msgStart, int msgEnd, MsgTags tags) {
         return getColor(HighlightItem.Type.REGULAR, user, localUser, text, msgStart, msgEnd, user.getChannel(), tags, user.getAddressbook());
     }
     
-    public synchronized ColorItem getInfoColor(String text, int msgStart, int msgEnd, String channel, Addressbook ab, User user, User localUser, MsgTags tags) {
+    public ColorItem getInfoColor(String text, int msgStart, int msgEnd, String channel, Addressbook ab, User user, User localUser, MsgTags tags) {
         return getColor(HighlightItem.Type.INFO, user, localUser, text, msgStart, msgEnd, channel, tags, ab);
     }
     
+    /**
+     * The items split up by the type of message they can apply to, in the
+     * original order, so items that can't match anyway (e.g. info message
+     * items for regular messages) don't have to be checked for every
+     * message.
+     * 
+     * <p>
+     * Immutable, a new instance is created whenever the data changes.</p>
+     */
+    private static class Compiled {
+        
+        private final List<MsgColorItem> regular = new ArrayList<>();
+        private final List<MsgColorItem> info = new ArrayList<>();
+        private final List<MsgColorItem> all;
+        
+        Compiled(List<MsgColorItem> data) {
+            all = new ArrayList<>(data);
+            for (MsgColorItem item : data) {
+                if (item.appliesToType(HighlightItem.Type.REGULAR)) {
+                    regular.add(item);
+                }
+                if (item.appliesToType(HighlightItem.Type.INFO)) {
+                    info.add(item);
+                }
+            }
+        }
+        
+        List<MsgColorItem> get(HighlightItem.Type type) {
+            switch (type) {
+                case REGULAR:
+                    return regular;
+                case INFO:
+                    return info;
+            }
+            return all;
+        }
+        
+    }
+    
 }
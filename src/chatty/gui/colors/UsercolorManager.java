@@ -9,8 +9,11 @@ import chatty.util.irc.MsgTags;
 import chatty.util.settings.Settings;
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Manages {@link UsercolorItem}s, loading them from the settings on start,
@@ -30,6 +33,7 @@ public class UsercolorManager {
     
     private final Settings settings;
     private volatile List<UsercolorItem> data;
+    private volatile Compiled compiled = new Compiled(new ArrayList<>());
     
     public UsercolorManager(Settings settings) {
         this.settings = settings;
@@ -62,6 +66,7 @@ public class UsercolorManager {
             }
         }
         data = loadedData;
+        compiled = new Compiled(loadedData);
     }
     
     /**
@@ -91,6 +96,7 @@ public class UsercolorManager {
      */
     public synchronized void setData(List<UsercolorItem> newData) {
         data = new ArrayList<>(newData);
+        compiled = new Compiled(data);
         saveToSettings();
     }
     
@@ -102,46 +108,114 @@ public class UsercolorManager {
      * @param user
      * @return 
      */
-    public synchronized Color getColor(User user) {
-        if (data == null || !settings.getBoolean("customUsercolors")) {
+    public Color getColor(User user) {
+        if (!settings.getBoolean("customUsercolors")) {
             return null;
         }
-        for (UsercolorItem item : data) {
-            if (item.type == UsercolorItem.TYPE_COLOR) {
-                if (item.idColor.equals(user.getPlainColor())) {
-                    return item.color;
+        return compiled.getColor(user);
+    }
+    
+    /**
+     * The items prepared for looking up a color. Name and color items are
+     * looked up by a map, so only the other items have to be checked one by
+     * one, while still returning the first matching item in the original
+     * order.
+     * 
+     * <p>
+     * Immutable, a new instance is created whenever the data changes.</p>
+     */
+    private static class Compiled {
+        
+        /**
+         * Lowercase name to index of the first item with that name.
+         */
+        private final Map<String, Integer> names = new HashMap<>();
+        
+        /**
+         * Color to index of the first item with that color.
+         */
+        private final Map<Color, Integer> colors = new HashMap<>();
+        
+        /**
+         * All other items that have to be checked for each user, in order.
+         */
+        private final List<UsercolorItem> others = new ArrayList<>();
+        private final int[] othersIndex;
+        
+        private final List<UsercolorItem> items;
+        
+        Compiled(List<UsercolorItem> data) {
+            this.items = new ArrayList<>(data);
+            List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                UsercolorItem item = items.get(i);
+                switch (item.type) {
+                    case UsercolorItem.TYPE_NAME:
+                        names.putIfAbsent(item.id.toLowerCase(Locale.ROOT), i);
+                        break;
+                    case UsercolorItem.TYPE_COLOR:
+                        colors.putIfAbsent(item.idColor, i);
+                        break;
+                    case UsercolorItem.TYPE_STATUS:
+                    case UsercolorItem.TYPE_CATEGORY:
+                    case UsercolorItem.TYPE_MATCH:
+                    case UsercolorItem.TYPE_DEFAULT_COLOR:
+                    case UsercolorItem.TYPE_ALL:
+                        others.add(item);
+                        indices.add(i);
+                        break;
                 }
             }
-            else if (item.type == UsercolorItem.TYPE_NAME) {
-                if (item.id.equalsIgnoreCase(user.getName())) {
-                    return item.color;
-                }
+            othersIndex = new int[indices.size()];
+            for (int i = 0; i < othersIndex.length; i++) {
+                othersIndex[i] = indices.get(i);
             }
-            else if (item.type == UsercolorItem.TYPE_STATUS) {
-                if (Helper.matchUserStatus(item.id, user)) {
-                    return item.color;
+        }
+        
+        Color getColor(User user) {
+            // Index of the first matching name or color item
+            int best = Integer.MAX_VALUE;
+            if (!names.isEmpty()) {
+                Integer index = names.get(user.getName().toLowerCase(Locale.ROOT));
+                if (index != null) {
+                    best = index;
                 }
             }
-            else if (item.type == UsercolorItem.TYPE_CATEGORY) {
-                if (user.hasCategory(item.category)) {
-                    return item.color;
+            Color plainColor = user.getPlainColor();
+            if (!colors.isEmpty() && plainColor != null) {
+                Integer index = colors.get(plainColor);
+                if (index != null && index < best) {
+                    best = index;
                 }
             }
-            else if (item.type == UsercolorItem.TYPE_MATCH) {
-                if (item.match.matches(user)) {
-                    return item.color;
+            // Other items before that may still match first
+            for (int i = 0; i < othersIndex.length && othersIndex[i] < best; i++) {
+                if (matches(others.get(i), user)) {
+                    return others.get(i).color;
                 }
             }
-            else if (item.type == UsercolorItem.TYPE_DEFAULT_COLOR) {
-                if (user.hasDefaultColor()) {
-                    return item.color;
-                }
+            if (best != Integer.MAX_VALUE) {
+                return items.get(best).color;
             }
-            else if (item.type == UsercolorItem.TYPE_ALL) {
-                return item.color;
+            return null;
+        }
+        
+        private static boolean matches(UsercolorItem item, User user) {
+            switch (item.type) {
+                case UsercolorItem.TYPE_STATUS:
+                    return Helper.matchUserStatus(item.id, user);
+                case UsercolorItem.TYPE_CATEGORY:
+                    return user.hasCategory(item.category);
+                case UsercolorItem.TYPE_MATCH:
+                    return item.match.matches(user);
+                case UsercolorItem.TYPE_DEFAULT_COLOR:
+                    return user.hasDefaultColor();
+                case UsercolorItem.TYPE_ALL:
+                    return true;
             }
+            return false;
         }
-        return null;
+        
     }
     
 }
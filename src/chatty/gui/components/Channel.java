@@ -19,7 +19,10 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
 import java.awt.event.KeyEvent;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
 import javax.swing.AbstractAction;
 import javax.swing.InputMap;
 import javax.swing.JPanel;
@@ -46,6 +49,7 @@ public final class Channel extends JPanel {
     private static final int DIVIDER_SIZE = 5;
     
     private final ChannelEditBox input;
+    private final ChannelCompletion completion;
     private final ChannelTextPane text;
     private final UserList users;
     private final JSplitPane mainPane;
@@ -62,6 +66,13 @@ public final class Channel extends JPanel {
     private int userlistMinWidth;
 
     private Room room;
+    
+    /**
+     * Output for the text pane that is waiting for the channel to become
+     * visible, if enabled.
+     */
+    private final ArrayDeque<PendingOutput> pendingOutput = new ArrayDeque<>();
+    private boolean deferOutput;
 
     public Channel(final Room room, Type type, MainGui main, StyleManager styleManager,
             ContextMenuListener contextMenuListener) {
@@ -107,7 +118,8 @@ public final class Channel extends JPanel {
         // Text input
         input = new ChannelEditBox(40);
         input.addActionListener(main.getActionListener());
-        input.setCompletionServer(new ChannelCompletion(this, main, input, users));
+        completion = new ChannelCompletion(this, main, input);
+        input.setCompletionServer(completion);
         input.setCompletionEnabled(main.getSettings().getBoolean("completionEnabled"));
         // Remove PAGEUP/DOWN so it can scroll chat (as before JTextArea)
         input.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_PAGE_UP, 0), "-");
@@ -118,6 +130,14 @@ public final class Channel extends JPanel {
         // Add components
         add(mainPane, BorderLayout.CENTER);
         add(input, BorderLayout.SOUTH);
+        
+        deferOutput = main.getSettings().getBoolean("deferHiddenChannels");
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0
+                    && isShowing()) {
+                flushPendingOutput();
+            }
+        });
     }
     
     public DockChannelContainer getDockContent() {
@@ -159,6 +179,7 @@ public final class Channel extends JPanel {
     }
     
     public void cleanUp() {
+        pendingOutput.clear();
         text.cleanUp();
         input.cleanUp();
     }
@@ -217,14 +238,18 @@ public final class Channel extends JPanel {
     
     public void addUser(User user) {
         users.addUser(user);
+        completion.addUser(user);
     }
     
     public void removeUser(User user) {
         users.removeUser(user);
+        completion.removeUser(user);
     }
     
     public void updateUser(User user) {
         users.updateUser(user);
+        // Names may have changed
+        completion.addUser(user);
     }
     
     public void resortUserlist() {
@@ -233,6 +258,7 @@ public final class Channel extends JPanel {
     
     public void clearUsers() {
         users.clearUsers();
+        completion.clearUsers();
     }
     
     public int getNumUsers() {
@@ -247,6 +273,10 @@ public final class Channel extends JPanel {
         return input;
     }
     
+    public ChannelTextPane getTextPane() {
+        return text;
+    }
+    
     public String getInputText() {
         return input.getText();
     }
@@ -268,23 +298,102 @@ public final class Channel extends JPanel {
     }
     
     public void printLine(String line) {
-        text.printLine(line);
+        output(t -> t.printLine(line));
     }
     
     public void printInfoMessage(InfoMessage message) {
-        text.printInfoMessage(message);
+        output(t -> t.printInfoMessage(message));
     }
     
     public void userBanned(User user, long duration, String reason, String id) {
-        text.userBanned(user, duration, reason, id);
+        output(t -> t.userBanned(user, duration, reason, id));
     }
     
     public void printCompact(String type, User user) {
-        text.printCompact(type, user);
+        output(t -> t.printCompact(type, user));
     }
     
     public void printMessage(Message message) {
-        text.printMessage(message);
+        output(t -> t.printMessage(message));
+    }
+    
+    //--------------------------
+    // Deferred output
+    //--------------------------
+    
+    /**
+     * Only add output to the text pane while the channel is visible, otherwise
+     * queue it until it becomes visible.
+     * 
+     * @param enabled 
+     */
+    public void setDeferOutput(boolean enabled) {
+        deferOutput = enabled;
+        if (!enabled) {
+            flushPendingOutput();
+        }
+    }
+    
+    /**
+     * Whether there is output waiting for the channel to become visible.
+     * 
+     * @return 
+     */
+    public boolean hasPendingOutput() {
+        return !pendingOutput.isEmpty();
+    }
+    
+    /**
+     * Perform the given output on the text pane, or queue it if deferring is
+     * enabled and the channel isn't visible. The queue is limited to the
+     * buffer size, since older lines would be removed from the chat anyway
+     * (this isn't exact, since not every output is a new line).
+     * 
+     * @param action 
+     */
+    private void output(Consumer<ChannelTextPane> action) {
+        if (deferOutput && !isShowing()) {
+            pendingOutput.add(new PendingOutput(action, System.currentTimeMillis()));
+            int max = text.getBufferSize();
+            while (pendingOutput.size() > max) {
+                pendingOutput.remove();
+            }
+            return;
+        }
+        flushPendingOutput();
+        action.accept(text);
+    }
+    
+    /**
+     * Add all queued output to the text pane, with timestamps based on when
+     * it was queued.
+     */
+    private void flushPendingOutput() {
+        if (pendingOutput.isEmpty()) {
+            return;
+        }
+        try {
+            PendingOutput item;
+            while ((item = pendingOutput.poll()) != null) {
+                text.setTimestampTime(item.time);
+                item.action.accept(text);
+            }
+        }
+        finally {
+            text.setTimestampTime(-1);
+        }
+    }
+    
+    private static class PendingOutput {
+        
+        private final Consumer<ChannelTextPane> action;
+        private final long time;
+        
+        PendingOutput(Consumer<ChannelTextPane> action, long time) {
+            this.action = action;
+            this.time = time;
+        }
+        
     }
     
     
@@ -313,6 +422,7 @@ public final class Channel extends JPanel {
     }
     
     public void clearChat() {
+        pendingOutput.clear();
         text.clearAll();
     }
     
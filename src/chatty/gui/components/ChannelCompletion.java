@@ -2,6 +2,7 @@
 package chatty.gui.components;
 
 import chatty.gui.components.completion.AutoCompletionServer;
+import chatty.gui.components.completion.CompletionIndex;
 import chatty.Room;
 import chatty.User;
 import chatty.gui.MainGui;
@@ -25,6 +26,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Function;
@@ -42,14 +44,12 @@ public class ChannelCompletion implements AutoCompletionServer {
     private final Channel channel;
     private final ChannelEditBox input;
     private final MainGui main;
-    private final UserList users;
 
     public ChannelCompletion(Channel channel, MainGui main,
-            ChannelEditBox input, UserList users) {
+            ChannelEditBox input) {
         this.channel = channel;
         this.main = main;
         this.input = input;
-        this.users = users;
     }
     
     /**
@@ -259,12 +259,54 @@ public class ChannelCompletion implements AutoCompletionServer {
         }
     }
 
+    //========
+    // Emotes
+    //========
+    /**
+     * The emotes usable in this channel, rebuilt when the usable emotes have
+     * changed.
+     */
+    private final CompletionIndex<Emoticon> emoteIndex = new CompletionIndex<>();
+    private int emoteIndexVersion = -1;
+    private String emoteIndexStream;
+    
+    private void updateEmoteIndex() {
+        int version = main.emoticons.getUsableEmotesVersion();
+        String stream = channel.getStreamName();
+        if (version == emoteIndexVersion && Objects.equals(stream, emoteIndexStream)) {
+            return;
+        }
+        emoteIndexVersion = version;
+        emoteIndexStream = stream;
+        emoteIndex.clear();
+        // Earlier added emotes take precedence for the same code
+        addToEmoteIndex(main.emoticons.getUsableGlobalTwitchEmotes());
+        addToEmoteIndex(main.emoticons.getUsableEmotesByStream(stream));
+        addToEmoteIndex(main.emoticons.getUsableGlobalOtherEmotes());
+    }
+    
+    private void addToEmoteIndex(Collection<Emoticon> emotes) {
+        for (Emoticon emote : emotes) {
+            if (!emoteIndex.contains(emote)) {
+                emoteIndex.add(emote, emote.code);
+            }
+        }
+    }
+    
+    @Override
+    public void itemUsed(CompletionItem item) {
+        if (item instanceof EmoteCompletionItem) {
+            emoteIndex.use(((EmoteCompletionItem) item).emote.code);
+        }
+    }
+    
     private AutoCompletionServer.CompletionItems getCompletionItemsEmotes(String search, String prefix) {
-        Collection<Emoticon> allEmotes = new LinkedList<>();
-        allEmotes.addAll(main.emoticons.getUsableGlobalTwitchEmotes());
-        allEmotes.addAll(main.emoticons.getUsableEmotesByStream(channel.getStreamName()));
-        allEmotes.addAll(main.emoticons.getUsableGlobalOtherEmotes());
-        List<Emoticon> result = filterCompletionItems(allEmotes, search, SORT_EMOTES_BY_NAME, item -> {
+        updateEmoteIndex();
+        Comparator<Emoticon> sorting = null;
+        if (settings().getBoolean("completionUsedEmotesFirst")) {
+            sorting = Comparator.comparingInt(e -> -emoteIndex.getUses(e.code));
+        }
+        List<Emoticon> result = filterCompletionItems(emoteIndex, search, sorting, item -> {
             if (main.isEmoteIgnored(item, IgnoredEmotes.TAB_COMPLETION)) {
                 return null;
             }
@@ -319,14 +361,6 @@ public class ChannelCompletion implements AutoCompletionServer {
         return new EmoteCompletionItem(code, info, emote);
     }
     
-    private static final Comparator<Emoticon> SORT_EMOTES_BY_NAME = new Comparator<Emoticon>() {
-
-        @Override
-        public int compare(Emoticon o1, Emoticon o2) {
-            return o1.code.compareToIgnoreCase(o2.code);
-        }
-    };
-    
     private final Comparator<CompletionItem> SORT_FAV_EMOTES_FIRST = new Comparator<CompletionItem>() {
 
         @Override
@@ -479,6 +513,57 @@ public class ChannelCompletion implements AutoCompletionServer {
         return matched;
     }
     
+    /**
+     * Filter the items of the given index based on the given search, with the
+     * same matching as
+     * {@link #filterCompletionItems(Collection, String, Comparator, Function)}.
+     *
+     * @param index
+     * @param search Should be all-lowercase
+     * @param sorting Sorts items matching at the start and other items before
+     * alphabetical order (stable), may be null
+     * @param getString Returns the String to match and add only once for an
+     * item, or null to skip the item
+     * @return Items matching at the start first, each in alphabetical order
+     * (unless sorted otherwise)
+     */
+    private <T> List<T> filterCompletionItems(CompletionIndex<T> index,
+            String search, Comparator<T> sorting, Function<T, String> getString) {
+        List<T> result = new ArrayList<>();
+        List<T> containing = new ArrayList<>();
+        Set<String> added = new HashSet<>();
+        for (T item : index.findPrefix(search)) {
+            String itemString = getString.apply(item);
+            if (!StringUtil.isNullOrEmpty(itemString) && added.add(itemString)) {
+                result.add(item);
+            }
+        }
+        String searchMode = main.getSettings().getString("completionSearch");
+        boolean words = searchMode.equals("words") && !input.getCompleteToCommonPrefix();
+        if (words || searchMode.equals("anywhere")) {
+            Pattern cSearch = Pattern.compile(
+                    Pattern.quote(search.substring(0, 1).toUpperCase(Locale.ENGLISH))
+                    + "(?i)" + Pattern.quote(search.substring(1))
+            );
+            for (T item : index.findContaining(search)) {
+                String itemString = getString.apply(item);
+                if (StringUtil.isNullOrEmpty(itemString) || added.contains(itemString)) {
+                    continue;
+                }
+                if (!words || cSearch.matcher(itemString).find()) {
+                    containing.add(item);
+                    added.add(itemString);
+                }
+            }
+        }
+        if (sorting != null) {
+            result.sort(sorting);
+            containing.sort(sorting);
+        }
+        result.addAll(containing);
+        return result;
+    }
+    
     private static void sortMixed(CompletionItems items, String search) {
         String emojiSearch = ":"+search;
         Collections.sort(items.items, new Comparator<CompletionItem>() {
@@ -514,12 +599,31 @@ public class ChannelCompletion implements AutoCompletionServer {
     private final UserSorterNew userSorterNew = new UserSorterNew();
     private final UserSorterAlphabetic userSorterAlphabetical = new UserSorterAlphabetic();
 
+    /**
+     * The users in the userlist, by all their names. Should be updated
+     * whenever the userlist is changed.
+     */
+    private final CompletionIndex<User> userIndex = new CompletionIndex<>();
+    
+    public void addUser(User user) {
+        userIndex.add(user, user.getName(), user.getDisplayNick(),
+                user.hasCustomNickSet() ? user.getCustomNick() : null);
+    }
+    
+    public void removeUser(User user) {
+        userIndex.remove(user);
+    }
+    
+    public void clearUsers() {
+        userIndex.clear();
+    }
+    
     private AutoCompletionServer.CompletionItems getCompletionItemsNames(String search, boolean preferUsernames) {
         List<User> matchedUsers = new ArrayList<>();
         Set<User> regularMatched = new HashSet<>();
         Set<User> customMatched = new HashSet<>();
         Set<User> localizedMatched = new HashSet<>();
-        for (User user : users.getData()) {
+        for (User user : userIndex.findPrefix(search)) {
             matchUser(user, search, matchedUsers, regularMatched, localizedMatched, customMatched);
         }
         
@@ -16,9 +16,11 @@ import static chatty.util.DateTime.H;
 import static chatty.util.DateTime.S;
 import chatty.util.MiscUtil;
 import chatty.util.StringUtil;
+import chatty.util.TaskRunner;
 import chatty.util.api.StreamTagManager.StreamTag;
 import chatty.util.api.StreamInfo;
 import chatty.util.api.StreamInfo.StreamType;
+import chatty.util.api.StreamHistoryStore;
 import chatty.util.api.StreamInfoHistoryItem;
 import chatty.util.dnd.DockContent;
 import chatty.util.dnd.DockContentContainer;
@@ -38,7 +40,9 @@ import java.awt.event.ItemEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.swing.*;
 
 /**
@@ -75,6 +79,18 @@ public class ChannelInfoDialog extends JDialog implements ViewerHistoryListener
     
     private StreamInfo currentStreamInfo;
     
+    /**
+     * How far back history is loaded from the StreamHistoryStore.
+     */
+    private static final long STORED_HISTORY_LENGTH = 7*24*60*60*1000L;
+    
+    /**
+     * History loaded from the StreamHistoryStore, only for the stream
+     * currently shown (null while loading).
+     */
+    private String storedHistoryStream;
+    private LinkedHashMap<Long, StreamInfoHistoryItem> storedHistory;
+    
     private String statusText = "";
     private String gameText = "";
     
@@ -326,13 +342,58 @@ public class ChannelInfoDialog extends JDialog implements ViewerHistoryListener
         game.setText(gameText);
         updateCommunities();
         if (!Chatty.DEBUG || streamInfo.isValid()) {
-            history.setHistory(streamInfo.getStream(), streamInfo.getHistory());
+            history.setHistory(streamInfo.getStream(), getHistory(streamInfo));
         }
         currentStreamInfo = streamInfo;
         updateOnlineTime(streamInfo);
         updateStatusLabel();
     }
     
+    /**
+     * Gets the history of the given StreamInfo, with older entries from the
+     * StreamHistoryStore added if it is enabled. Stored entries are loaded in
+     * the background the first time for a stream, updating the dialog when
+     * done.
+     * 
+     * @param streamInfo
+     * @return The history, ordered by time
+     */
+    private LinkedHashMap<Long, StreamInfoHistoryItem> getHistory(StreamInfo streamInfo) {
+        LinkedHashMap<Long, StreamInfoHistoryItem> recent = streamInfo.getHistory();
+        if (!StreamHistoryStore.isEnabled()) {
+            return recent;
+        }
+        String stream = streamInfo.getStream();
+        if (!stream.equals(storedHistoryStream)) {
+            storedHistoryStream = stream;
+            storedHistory = null;
+            TaskRunner.execute(TaskRunner.Category.IO, "StreamHistory", () -> {
+                long start = System.currentTimeMillis() - STORED_HISTORY_LENGTH;
+                LinkedHashMap<Long, StreamInfoHistoryItem> loaded = StreamHistoryStore.read(stream, start, Long.MAX_VALUE);
+                SwingUtilities.invokeLater(() -> {
+                    if (stream.equals(storedHistoryStream)) {
+                        storedHistory = loaded;
+                        if (currentStreamInfo != null && !loaded.isEmpty()) {
+                            update(currentStreamInfo);
+                        }
+                    }
+                });
+            });
+        }
+        if (storedHistory == null || storedHistory.isEmpty()) {
+            return recent;
+        }
+        long recentStart = recent.isEmpty() ? Long.MAX_VALUE : recent.keySet().iterator().next();
+        LinkedHashMap<Long, StreamInfoHistoryItem> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, StreamInfoHistoryItem> entry : storedHistory.entrySet()) {
+            if (entry.getKey() < recentStart) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        result.putAll(recent);
+        return result;
+    }
+    
     /**
      * Updates the dialog if the given StreamInfo object is the one already
      * set, or does nothing otherwise.
@@ -3,10 +3,14 @@ package chatty.gui.components;
 
 import chatty.gui.components.textpane.ChannelTextPane;
 import chatty.util.DateTime;
+import chatty.util.DebugTap;
 import chatty.util.Debugging;
+import chatty.util.MessageLatency;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.ItemListener;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,14 +28,24 @@ public class DebugWindow extends JFrame {
     
     private static final int MAX_NUMBER_LINES = 250;
     
+    /**
+     * How often to get new lines from the {@link DebugTap} buffers.
+     */
+    private static final int TAP_POLL_DELAY = 250;
+    
     private final JCheckBox autoscroll = new JCheckBox("Autoscroll", true);
     private final JCheckBox logIrc = new JCheckBox("Irc log", false);
+    private final JCheckBox measureLatency = new JCheckBox("Latency", false);
     private final JTextArea text;
     private final JTextArea textIrcLog;
     private final JTextArea textFFZLog;
     private final JTextArea textPubSubLog;
     private final JTextArea otherLog;
     private final JTextArea timerLog;
+    private final JTextArea latency;
+    private final JScrollPane latencyScroll;
+    private final JTabbedPane tabs;
+    private final Timer tapTimer;
     
     public DebugWindow(ItemListener listener) {
         setTitle("Debug");
@@ -57,21 +71,27 @@ public class DebugWindow extends JFrame {
         // Timer Log
         timerLog = createLogArea();
         
+        // Message latency (MessageLatency class)
+        latency = createLogArea();
+        latencyScroll = new JScrollPane(latency);
 
         // Tabs
-        JTabbedPane tabs = new JTabbedPane();
+        tabs = new JTabbedPane();
         tabs.addTab("Log", new JScrollPane(text));
         tabs.addTab("Irc log", new JScrollPane(textIrcLog));
         tabs.addTab("FFZ-WS", new JScrollPane(textFFZLog));
         tabs.addTab("PubSub", new JScrollPane(textPubSubLog));
         tabs.addTab("Other", new JScrollPane(otherLog));
         tabs.addTab("Timers", new JScrollPane(timerLog));
+        tabs.addTab("Latency", latencyScroll);
         
         // Settings (Checkboxes)
         logIrc.setToolTipText("Logging IRC traffic can reduce performance");
+        measureLatency.setToolTipText("Measure the time chat messages take from being received to being painted (same as /perf on)");
         JPanel settingsPanel = new JPanel();
         settingsPanel.add(autoscroll);
         settingsPanel.add(logIrc);
+        settingsPanel.add(measureLatency);
         
         // Add everything
         add(tabs, BorderLayout.CENTER);
@@ -80,6 +100,24 @@ public class DebugWindow extends JFrame {
         pack();
         
         logIrc.addItemListener(listener);
+        logIrc.addItemListener(e -> updateTaps());
+        measureLatency.addItemListener(e -> MessageLatency.setEnabled(measureLatency.isSelected()));
+        
+        // Only collect tapped lines while the window is showing
+        tapTimer = new Timer(TAP_POLL_DELAY, e -> pollTaps());
+        addComponentListener(new ComponentAdapter() {
+            
+            @Override
+            public void componentShown(ComponentEvent e) {
+                updateTaps();
+            }
+            
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                updateTaps();
+            }
+        });
+        
         setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
         setSize(new Dimension(600,500));
     }
@@ -100,18 +138,10 @@ public class DebugWindow extends JFrame {
         printLine(text, line);
     }
     
-    public void printLineIrc(String line) {
-        printLine(textIrcLog, line);
-    }
-    
     public void printLineFFZ(String line) {
         printLine(textFFZLog, line);
     }
     
-    public void printLinePubSub(String line) {
-        printLine(textPubSubLog, line);
-    }
-    
     public void printTimerLog(String line) {
         printLine(timerLog, line);
     }
@@ -129,6 +159,65 @@ public class DebugWindow extends JFrame {
         }
     }
     
+    private void updateTaps() {
+        boolean showing = isVisible();
+        measureLatency.setSelected(MessageLatency.isEnabled());
+        DebugTap.IRC.setActive(showing && logIrc.isSelected());
+        DebugTap.PUBSUB.setActive(showing);
+        if (showing) {
+            tapTimer.start();
+        }
+        else {
+            tapTimer.stop();
+        }
+    }
+    
+    private void pollTaps() {
+        pollTap(DebugTap.IRC, textIrcLog);
+        pollTap(DebugTap.PUBSUB, textPubSubLog);
+        if (tabs.getSelectedComponent() == latencyScroll) {
+            measureLatency.setSelected(MessageLatency.isEnabled());
+            String report = MessageLatency.getReport(null);
+            for (String channel : MessageLatency.getChannels()) {
+                report += "\n\n"+MessageLatency.getReport(channel);
+            }
+            if (!report.equals(latency.getText())) {
+                latency.setText(report);
+            }
+        }
+    }
+    
+    /**
+     * Adds all lines collected by the tap since the last poll in one go.
+     * 
+     * @param tap
+     * @param text 
+     */
+    private void pollTap(DebugTap tap, JTextArea text) {
+        StringBuilder b = new StringBuilder();
+        long droppedBefore = tap.getDropped();
+        if (tap.drain(b, MAX_NUMBER_LINES) == 0) {
+            return;
+        }
+        long dropped = tap.getDropped() - droppedBefore;
+        if (dropped > 0) {
+            b.insert(0, "[" + dropped + " lines skipped]\n");
+        }
+        try {
+            Document doc = text.getDocument();
+            doc.insertString(doc.getLength(), b.toString(), null);
+            if (autoscroll.isSelected()) {
+                text.setCaretPosition(doc.getLength());
+            }
+            int remove = doc.getDefaultRootElement().getElementCount() - MAX_NUMBER_LINES;
+            if (remove > 0) {
+                removeFirstLines(doc, remove);
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+    
     /**
      * Removes some lines from the given Document so it won't exceed the maximum
      * number of lines.
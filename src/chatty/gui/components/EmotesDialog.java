@@ -28,16 +28,21 @@ import chatty.util.colors.HtmlColors;
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
 import java.awt.Color;
+import java.awt.Container;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.Graphics;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Image;
 import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseMotionAdapter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -54,6 +59,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
+import javax.swing.CellRendererPane;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -65,9 +71,11 @@ import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JToggleButton;
+import javax.swing.JViewport;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
+import javax.swing.ToolTipManager;
 import javax.swing.border.Border;
 import chatty.util.api.CachedImage.CachedImageUser;
 import chatty.util.api.Emoticon.TypeCategory;
@@ -271,21 +279,13 @@ public class EmotesDialog extends JDialog {
             
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (SwingUtilities.isLeftMouseButton(e)) {
-                    if (e.getClickCount() == 2 && closeOnDoubleClick && !e.isShiftDown()) {
-                        setVisible(false);
-                    } else {
-                        EmoteLabel label = (EmoteLabel) e.getSource();
-                        if (!label.noInsert) {
-                            main.insert(Emoticons.toWriteable(label.code), true, true);
-                        }
-                    }
-                }
+                EmoteLabel label = (EmoteLabel) e.getSource();
+                emoteClicked(e, label.code, label.noInsert);
             }
 
             @Override
             public void contextMenu(MouseEvent e) {
-                openContextMenu(e);
+                openContextMenu(((EmoteLabel) e.getSource()).emote, e);
             }
             
         };
@@ -368,13 +368,31 @@ public class EmotesDialog extends JDialog {
         return scroll;
     }
     
+    /**
+     * On left-click on an emote, insert the code or close the dialog on
+     * double-click.
+     * 
+     * @param e
+     * @param code The emote code
+     * @param noInsert Whether the code should not be inserted
+     */
+    private void emoteClicked(MouseEvent e, String code, boolean noInsert) {
+        if (SwingUtilities.isLeftMouseButton(e)) {
+            if (e.getClickCount() == 2 && closeOnDoubleClick && !e.isShiftDown()) {
+                setVisible(false);
+            } else if (!noInsert) {
+                main.insert(Emoticons.toWriteable(code), true, true);
+            }
+        }
+    }
+    
     /**
      * On right-click on an emote, open the appropriate context menu.
      * 
+     * @param emote
      * @param e 
      */
-    private void openContextMenu(MouseEvent e) {
-        CachedImage<Emoticon> emote = ((EmoteLabel) e.getSource()).emote;
+    private void openContextMenu(CachedImage<Emoticon> emote, MouseEvent e) {
         JPopupMenu m = new EmoteContextMenu(emote, contextMenuListener);
         m.show(e.getComponent(), e.getX(), e.getY());
     }
@@ -669,18 +687,8 @@ public class EmotesDialog extends JDialog {
             this.code = emote.code;
             this.emote = emoteImage;
             setIcon(emoteImage.getImageIcon());
-            setToolTipText(emote.code);
-            if (emote.type == Emoticon.Type.EMOJI) {
-                setToolTipText(emote.getInfos().toString());
-            }
-            if (emote.subType == Emoticon.SubType.CHEER) {
-                setToolTipText(emote.getInfos().toString());
-            }
-            if (emote.subType == Emoticon.SubType.CHEER) {
-                noInsert = true;
-            } else {
-                noInsert = false;
-            }
+            setToolTipText(getToolTip(emote));
+            noInsert = isNoInsert(emote);
             if (extraBorder != null) {
                 setBorder(BorderFactory.createCompoundBorder(BORDER, extraBorder));
             }
@@ -691,10 +699,384 @@ public class EmotesDialog extends JDialog {
         
     }
     
+    private static String getToolTip(Emoticon emote) {
+        if (emote.type == Emoticon.Type.EMOJI
+                || emote.subType == Emoticon.SubType.CHEER) {
+            return emote.getInfos().toString();
+        }
+        return emote.code;
+    }
+    
+    private static boolean isNoInsert(Emoticon emote) {
+        return emote.subType == Emoticon.SubType.CHEER;
+    }
+    
     private EmoteLabel createEmoteLabel(Emoticon emote, float scale) {
         return new EmoteLabel(emote, mouseListener, scale, imageType, emoteUser, getEndangeredBorder(emote));
     }
     
+    /**
+     * Shows emotes, text and separators in rows that wrap like in a
+     * {@link WrapLayout}, but painted directly instead of using a component
+     * for each emote, so it stays fast with a lot of emotes. Emote images are
+     * only requested when they are painted, which is when they are in the
+     * visible area.
+     */
+    private class EmoteGrid extends JComponent {
+        
+        private static final int GAP = 5;
+        
+        private final List<GridCell> cells = new ArrayList<>();
+        private final List<GridRow> rows = new ArrayList<>();
+        private final CellRendererPane rendererPane = new CellRendererPane();
+        private final JLabel textRenderer = new JLabel();
+        private final JSeparator separatorRenderer = new JSeparator(SwingConstants.VERTICAL);
+        
+        /**
+         * Only referenced here, since the CachedImage only keeps a weak
+         * reference.
+         */
+        private final CachedImageUser user;
+        
+        /**
+         * The width the cells were last positioned for, -1 if they have to be
+         * positioned again.
+         */
+        private int layoutWidth = -1;
+        private int layoutHeight;
+        private int minWidth;
+        
+        EmoteGrid() {
+            setOpaque(true);
+            setBackground(emotesBackground);
+            textRenderer.setForeground(emotesForeground);
+            add(rendererPane);
+            user = new CachedImageUser() {
+                
+                @Override
+                public void iconLoaded(Image oldImage, Image newImage, boolean sizeChanged) {
+                    if (sizeChanged) {
+                        layoutWidth = -1;
+                        revalidate();
+                    }
+                    repaint();
+                }
+            };
+            GuiUtil.addSimpleMouseListener(this, new SimpleMouseListener() {
+                
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    GridCell cell = getCellAt(e.getPoint());
+                    if (cell != null && cell.emote != null) {
+                        emoteClicked(e, cell.emote.code, isNoInsert(cell.emote));
+                    }
+                }
+                
+                @Override
+                public void contextMenu(MouseEvent e) {
+                    GridCell cell = getCellAt(e.getPoint());
+                    if (cell != null && cell.emote != null) {
+                        openContextMenu(getImage(cell.emote), e);
+                    }
+                }
+            });
+            addMouseMotionListener(new MouseMotionAdapter() {
+                
+                @Override
+                public void mouseMoved(MouseEvent e) {
+                    GridCell cell = getCellAt(e.getPoint());
+                    Cursor cursor = Cursor.getPredefinedCursor(cell != null && cell.emote != null
+                            ? Cursor.HAND_CURSOR : Cursor.DEFAULT_CURSOR);
+                    if (getCursor() != cursor) {
+                        setCursor(cursor);
+                    }
+                }
+            });
+            ToolTipManager.sharedInstance().registerComponent(this);
+        }
+        
+        public void addEmote(Emoticon emote, Border extraBorder) {
+            Border border = EmoteLabel.BORDER;
+            if (extraBorder != null) {
+                border = BorderFactory.createCompoundBorder(border, extraBorder);
+            }
+            cells.add(new GridCell(emote, border, null));
+            layoutWidth = -1;
+        }
+        
+        public void addText(String text) {
+            cells.add(new GridCell(null, null, text));
+            layoutWidth = -1;
+        }
+        
+        public void addSeparator() {
+            cells.add(new GridCell(null, null, null));
+            layoutWidth = -1;
+        }
+        
+        private CachedImage<Emoticon> getImage(Emoticon emote) {
+            return emote.getIcon(scale, 0, imageType, user);
+        }
+        
+        //--------------------------
+        // Layout
+        //--------------------------
+        
+        @Override
+        public Dimension getPreferredSize() {
+            if (isPreferredSizeSet()) {
+                return super.getPreferredSize();
+            }
+            int width = getWidth();
+            if (width == 0) {
+                width = getAvailableWidth();
+            }
+            if (width != layoutWidth) {
+                layoutCells(width);
+            }
+            /**
+             * Only request the width of the widest cell, so the grid can
+             * shrink when the dialog gets smaller (the layout stretches it to
+             * the available width anyway).
+             */
+            return new Dimension(minWidth, layoutHeight);
+        }
+        
+        @Override
+        public Dimension getMinimumSize() {
+            if (isMinimumSizeSet()) {
+                return super.getMinimumSize();
+            }
+            return getPreferredSize();
+        }
+        
+        @Override
+        @SuppressWarnings("deprecation")
+        public void reshape(int x, int y, int width, int height) {
+            super.reshape(x, y, width, height);
+            if (width != layoutWidth) {
+                layoutCells(width);
+                if (layoutHeight != height) {
+                    // Height depends on width, so the parent has to layout again
+                    revalidate();
+                }
+            }
+        }
+        
+        /**
+         * The width of the scroll pane viewport, used before the grid has
+         * been given a size.
+         * 
+         * @return 
+         */
+        private int getAvailableWidth() {
+            Container viewport = SwingUtilities.getAncestorOfClass(JViewport.class, this);
+            if (viewport != null && viewport.getWidth() > 0) {
+                return viewport.getWidth() - EMOTE_INSETS.left - EMOTE_INSETS.right;
+            }
+            return Integer.MAX_VALUE;
+        }
+        
+        /**
+         * Position all cells in rows for the given width. Each row is
+         * centered and cells are vertically centered within their row, same
+         * as in a {@link WrapLayout} with center alignment.
+         * 
+         * @param width 
+         */
+        private void layoutCells(int width) {
+            rows.clear();
+            minWidth = GAP * 2;
+            int maxWidth = width - GAP * 2;
+            int y = GAP;
+            int rowStart = 0;
+            int rowWidth = 0;
+            int rowHeight = 0;
+            for (int i = 0; i < cells.size(); i++) {
+                GridCell cell = cells.get(i);
+                cell.updateSize();
+                minWidth = Math.max(minWidth, cell.width + GAP * 2);
+                if (i > rowStart && rowWidth + GAP + cell.width > maxWidth) {
+                    addRow(rowStart, i, y, rowWidth, rowHeight, maxWidth);
+                    y += rowHeight + GAP;
+                    rowStart = i;
+                    rowWidth = 0;
+                    rowHeight = 0;
+                }
+                if (rowWidth > 0) {
+                    rowWidth += GAP;
+                }
+                rowWidth += cell.width;
+                rowHeight = Math.max(rowHeight, cell.height);
+            }
+            if (rowStart < cells.size()) {
+                addRow(rowStart, cells.size(), y, rowWidth, rowHeight, maxWidth);
+                y += rowHeight + GAP;
+            }
+            layoutWidth = width;
+            layoutHeight = y;
+        }
+        
+        private void addRow(int start, int end, int y, int rowWidth, int rowHeight, int maxWidth) {
+            int x = GAP + Math.max(0, (maxWidth - rowWidth) / 2);
+            for (int i = start; i < end; i++) {
+                GridCell cell = cells.get(i);
+                cell.x = x;
+                cell.y = y + (rowHeight - cell.height) / 2;
+                x += cell.width + GAP;
+            }
+            rows.add(new GridRow(start, end, y, rowHeight));
+        }
+        
+        private GridCell getCellAt(Point p) {
+            for (GridRow row : rows) {
+                if (p.y >= row.y && p.y < row.y + row.height) {
+                    for (int i = row.start; i < row.end; i++) {
+                        GridCell cell = cells.get(i);
+                        if (cell.contains(p)) {
+                            return cell;
+                        }
+                    }
+                    return null;
+                }
+            }
+            return null;
+        }
+        
+        //--------------------------
+        // Painting
+        //--------------------------
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            for (GridRow row : rows) {
+                if (row.y + row.height < clip.y) {
+                    continue;
+                }
+                if (row.y > clip.y + clip.height) {
+                    break;
+                }
+                for (int i = row.start; i < row.end; i++) {
+                    cells.get(i).paint(g);
+                }
+            }
+        }
+        
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            GridCell cell = getCellAt(e.getPoint());
+            if (cell != null && cell.emote != null) {
+                return getToolTip(cell.emote);
+            }
+            return null;
+        }
+        
+        private class GridRow {
+            
+            private final int start;
+            private final int end;
+            private final int y;
+            private final int height;
+            
+            GridRow(int start, int end, int y, int height) {
+                this.start = start;
+                this.end = end;
+                this.y = y;
+                this.height = height;
+            }
+            
+        }
+        
+        /**
+         * An emote, text or separator (if neither emote nor text is set).
+         */
+        private class GridCell {
+            
+            private final Emoticon emote;
+            private final Border border;
+            private final String text;
+            
+            private int x;
+            private int y;
+            private int width;
+            private int height;
+            
+            GridCell(Emoticon emote, Border border, String text) {
+                this.emote = emote;
+                this.border = border;
+                this.text = text;
+            }
+            
+            void updateSize() {
+                Dimension d;
+                if (emote != null) {
+                    /**
+                     * Use the expected size if the image hasn't been loaded
+                     * yet, so it doesn't get requested here.
+                     */
+                    CachedImage<Emoticon> image = getImage(emote);
+                    if (image.isLoaded()) {
+                        ImageIcon icon = image.getImageIcon();
+                        d = new Dimension(icon.getIconWidth(), icon.getIconHeight());
+                    }
+                    else {
+                        d = emote.getScaledSize(scale, 0);
+                    }
+                    Insets insets = border.getBorderInsets(EmoteGrid.this);
+                    d.width += insets.left + insets.right;
+                    d.height += insets.top + insets.bottom;
+                }
+                else if (text != null) {
+                    textRenderer.setText(text);
+                    d = textRenderer.getPreferredSize();
+                }
+                else {
+                    d = new Dimension(2, 24);
+                }
+                width = d.width;
+                height = d.height;
+            }
+            
+            boolean contains(Point p) {
+                return p.x >= x && p.x < x + width && p.y >= y && p.y < y + height;
+            }
+            
+            void paint(Graphics g) {
+                if (emote != null) {
+                    ImageIcon icon = getImage(emote).getImageIcon();
+                    Insets insets = border.getBorderInsets(EmoteGrid.this);
+                    int contentWidth = width - insets.left - insets.right;
+                    int contentHeight = height - insets.top - insets.bottom;
+                    icon.paintIcon(EmoteGrid.this, g,
+                            x + insets.left + (contentWidth - icon.getIconWidth()) / 2,
+                            y + insets.top + (contentHeight - icon.getIconHeight()) / 2);
+                    border.paintBorder(EmoteGrid.this, g, x, y, width, height);
+                    if (icon.getIconWidth() != contentWidth
+                            || icon.getIconHeight() != contentHeight) {
+                        // Size was different than expected
+                        layoutWidth = -1;
+                        revalidate();
+                    }
+                }
+                else if (text != null) {
+                    textRenderer.setText(text);
+                    rendererPane.paintComponent(g, textRenderer, EmoteGrid.this, x, y, width, height);
+                }
+                else {
+                    rendererPane.paintComponent(g, separatorRenderer, EmoteGrid.this, x, y, width, height);
+                }
+            }
+            
+        }
+        
+    }
+    
     private static final Border ENDANGERED_BORDER_ADDED = BorderFactory.createLineBorder(Color.LIGHT_GRAY, 2);
     private static final Border ENDANGERED_BORDER = BorderFactory.createLineBorder(Color.MAGENTA, 2);
     
@@ -1015,24 +1397,12 @@ public class EmotesDialog extends JDialog {
         }
         
         /**
-         * Adds the given emotes to a new panel.
+         * Adds the given emotes to a new grid.
          *
          * @param emotes The emotes to add
          */
         private void addEmotesPanel(Collection<Emoticon> emotes) {
-            JPanel panel = new JPanel();
-            panel.setBackground(emotesBackground);
-            panel.setLayout(new WrapLayout());
-            /**
-             * Using getParent() twice to get to JScrollPane viewport width,
-             * however it still doesn't always seem to work, depending on the
-             * width of the dialog. Substracting too much increases the gap in
-             * between panels (probably because it layouts the emotes in a
-             * narrower but higher panel). Manually resizing the dialog fixes
-             * the layout.
-             */
-            panel.setSize(getParent().getParent().getWidth() - 20, 1);
-            //System.out.println(targetPanel.getParent().getParent());
+            EmoteGrid grid = new EmoteGrid();
 
             String prevEmoteset = null;
             String prevEmotesetInfo = null;
@@ -1047,33 +1417,33 @@ public class EmotesDialog extends JDialog {
                             || emote.getEmotesetInfo() == null)
                         ) {
                     // Separator between different emotesets (and thus tiers)
-                    panel.add(makeSeparator());
-                    addSeparatorEmotesetInfo(panel, emote);
+                    grid.addSeparator();
+                    addSeparatorEmotesetInfo(grid, emote);
                     separatorAdded = true;
                 }
                 else if (prevEmoteset == null) {
-                    addSeparatorEmotesetInfo(panel, emote);
+                    addSeparatorEmotesetInfo(grid, emote);
                 }
                 // Separator between types (only third-party)
                 if (!allSameType
                         && emote.type.category != TypeCategory.OFFICIAL
                         && !Objects.equals(prevType, emote.type.label)) {
                     if (prevType != null && !separatorAdded) {
-                        panel.add(makeSeparator());
+                        grid.addSeparator();
                     }
-                    panel.add(createLabel(emote.type.label));
+                    grid.addText(emote.type.label);
                 }
                 prevEmoteset = emote.emoteset;
                 prevEmotesetInfo = emote.getEmotesetInfo();
                 prevType = emote.type.label;
-                panel.add(createEmoteLabel(emote, scale));
+                grid.addEmote(emote, getEndangeredBorder(emote));
             }
             gbc.fill = GridBagConstraints.HORIZONTAL;
             gbc.insets = EMOTE_INSETS;
             gbc.anchor = GridBagConstraints.WEST;
             gbc.weightx = 1;
             gbc.gridwidth = GridBagConstraints.REMAINDER;
-            add(panel, gbc);
+            add(grid, gbc);
             gbc.gridx = 0;
             gbc.gridy++;
         }
@@ -1092,30 +1462,18 @@ public class EmotesDialog extends JDialog {
         /**
          * Add a label with a short description of the emoteset for some types.
          * 
-         * @param panel
+         * @param grid
          * @param emote 
          */
-        private void addSeparatorEmotesetInfo(JPanel panel, Emoticon emote) {
+        private void addSeparatorEmotesetInfo(EmoteGrid grid, Emoticon emote) {
             if (StringUtil.isNullOrEmpty(emote.getEmotesetInfo())) {
                 return;
             }
             if (Arrays.asList(new String[]{"Tier 2", "Tier 3", "Bits", "Follower"}).contains(emote.getEmotesetInfo())) {
-                panel.add(createLabel(emote.getEmotesetInfo()));
+                grid.addText(emote.getEmotesetInfo());
             }
         }
         
-        private JLabel createLabel(String text) {
-            JLabel label = new JLabel(text);
-            label.setForeground(emotesForeground);
-            return label;
-        }
-        
-        private JSeparator makeSeparator() {
-            JSeparator separator = new JSeparator(SwingConstants.VERTICAL);
-            separator.setPreferredSize(new Dimension(2, 24));
-            return separator;
-        }
-        
         void addEmotesSection(Collection<Emoticon> emotes, String title) {
             addEmotesSection(emotes, title, (String) null);
         }
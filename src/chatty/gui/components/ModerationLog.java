@@ -14,6 +14,7 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Window;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -170,41 +171,63 @@ public class ModerationLog extends JDialog {
     }
     
     public void add(ModeratorActionData data) {
-        if (data.stream == null) {
-            return;
+        add(Collections.singletonList(data));
+    }
+    
+    /**
+     * Add several actions at once, so that the log only has to be updated
+     * once.
+     * 
+     * @param data The actions, in order
+     */
+    public void add(List<ModeratorActionData> data) {
+        List<String> currentLines = new ArrayList<>();
+        for (ModeratorActionData action : data) {
+            if (action.stream == null) {
+                continue;
+            }
+            String channel = action.stream;
+
+            String line = String.format("[%s] <%s> /%s %s",
+                    DateTime.currentTime(),
+                    action.created_by,
+                    action.moderation_action,
+                    ModLogInfo.makeArgsText(action));
+
+            if (channel.equals(currentLoadedChannel)) {
+                currentLines.add(line);
+            }
+            // Should be added for non-active channels, so on switch it can be set
+            if (!helper.isContentVisible()) {
+                unread.add(channel);
+            }
+
+            if (!cache.containsKey(channel)) {
+                cache.put(channel, new ArrayList<>());
+            }
+            cache.get(channel).add(line);
+            if (cache.get(channel).size() > MAX_NUMBER_LINES) {
+                cache.get(channel).remove(0);
+            }
         }
-        String channel = data.stream;
-        
-        String line = String.format("[%s] <%s> /%s %s",
-                DateTime.currentTime(),
-                data.created_by,
-                data.moderation_action,
-                ModLogInfo.makeArgsText(data));
-        
-        if (channel.equals(currentLoadedChannel)) {
-            printLine(log, line);
+        if (!currentLines.isEmpty()) {
+            printLines(log, currentLines);
             // Only set for current channel (automatically checks for visible)
             helper.setNewMessage();
         }
-        // Should be added for non-active channels, so on switch it can be set
-        if (!helper.isContentVisible()) {
-            unread.add(channel);
-        }
-        
-        if (!cache.containsKey(channel)) {
-            cache.put(channel, new ArrayList<>());
-        }
-        cache.get(channel).add(line);
-        if (cache.get(channel).size() > MAX_NUMBER_LINES) {
-            cache.get(channel).remove(0);
-        }
     }
     
-    private void printLine(JTextArea text, String line) {
+    private void printLines(JTextArea text, List<String> lines) {
         try {
             Document doc = text.getDocument();
-            String linebreak = doc.getLength() > 0 ? "\n" : "";
-            doc.insertString(doc.getLength(), linebreak+line, null);
+            StringBuilder b = new StringBuilder();
+            for (String line : lines) {
+                if (doc.getLength() > 0 || b.length() > 0) {
+                    b.append("\n");
+                }
+                b.append(line);
+            }
+            doc.insertString(doc.getLength(), b.toString(), null);
             JScrollBar bar = scroll.getVerticalScrollBar();
             boolean scrollDown = bar.getValue() > bar.getMaximum() - bar.getVisibleAmount() - 4;
             if (scrollDown) {
@@ -237,7 +260,8 @@ public class ModerationLog extends JDialog {
     public void clearSomeChat(Document doc) {
         int count = doc.getDefaultRootElement().getElementCount();
         if (count > MAX_NUMBER_LINES) {
-            removeFirstLines(doc, 10);
+            // Several lines may have been added at once
+            removeFirstLines(doc, Math.max(10, count - MAX_NUMBER_LINES));
         }
     }
     
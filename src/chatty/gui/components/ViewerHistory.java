@@ -17,6 +17,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
@@ -117,10 +118,11 @@ public class ViewerHistory extends JComponent {
     
     
     /**
-     * Store the actual locations of points on the component, this is updated
-     * with every redraw.
+     * The locations of the points on the component and the rendered graph,
+     * only updated when something changes that affects the graph (not when
+     * only the hovered entry changes). May be null.
      */
-    private LinkedHashMap<Point, Long> locations = new LinkedHashMap<>();
+    private Plot plot;
     /**
      * Store color for every entry, this is updated when a new history is set.
      */
@@ -265,8 +267,6 @@ public class ViewerHistory extends JComponent {
      */
     @Override
     public void paintComponent(Graphics g) {
-        locations.clear();
-        
         // This color is used for everything until drawing the points
         g.setColor(foreground_color);
         
@@ -335,6 +335,7 @@ public class ViewerHistory extends JComponent {
             if (drawInfoText) {
                 g.drawString(text, x, y);
             }
+            plot = null;
             return;
         }
         
@@ -395,9 +396,35 @@ public class ViewerHistory extends JComponent {
         
         // If height available for the graph is too small, don't draw graph
         if (height < 5) {
+            plot = null;
             return;
         }
-
+        
+        double scale = g2.getTransform().getScaleX();
+        if (plot == null || !plot.isValidFor(getWidth(), getHeight(), vMargin, scale)) {
+            plot = createPlot(getWidth(), getHeight(), vMargin, hMargin, width, height, scale);
+        }
+        g.drawImage(plot.image, 0, 0, getWidth(), getHeight(), null);
+        
+        // Only the hovered entry is drawn on top of the cached graph
+        int hoverIndex = plot.indexOf(hoverEntry);
+        if (hoverIndex != -1) {
+            g.setColor(HOVER_COLOR);
+            plot.drawPoint(g, hoverIndex);
+        }
+    }
+    
+    /**
+     * Calculate the locations of all entries in the displayed range and render
+     * the graph into an image.
+     * 
+     * <p>
+     * If there are more entries than horizontal pixels, only the entries with
+     * the lowest and highest viewercount of each pixel column are used (which
+     * still shows the same shape of the graph).</p>
+     */
+    private Plot createPlot(int compWidth, int compHeight, int vMargin, int hMargin,
+            double width, double height, double scale) {
         // Calculation factors for calculating the points location
         int range = maxValue - minValue;
         if (!verticalZoom) {
@@ -411,22 +438,18 @@ public class ViewerHistory extends JComponent {
         double pixelPerTime = width / duration;
         
         // Go through all entries and calculate positions
-        
-        int prevX = -1;
-        int prevY = -1;
+        java.util.List<Long> times = new ArrayList<>();
+        java.util.List<Point> points = new ArrayList<>();
+        java.util.List<Boolean> changed = new ArrayList<>();
         StreamInfoHistoryItem prevItem = null;
-        Iterator<Entry<Long,StreamInfoHistoryItem>> it = history.entrySet().iterator();
-        while (it.hasNext()) { 
-            Entry<Long,StreamInfoHistoryItem> entry = it.next();
-            
-            // Get time and value to draw next
-            long time = entry.getKey();
+        for (long time : history.keySet()) {
             if (time < startTime || time > endTime) {
                 continue;
             }
             long offsetTime = time - startTime;
             
-            int viewers = entry.getValue().getViewers();
+            StreamInfoHistoryItem item = history.get(time);
+            int viewers = item.getViewers();
             if (viewers == -1) {
                 viewers = 0;
             }
@@ -435,65 +458,215 @@ public class ViewerHistory extends JComponent {
             int x = (int)(hMargin + offsetTime * pixelPerTime);
             int y;
             if (!verticalZoom) {
-                y = (int)(-vMargin + getHeight() - (viewers) * pixelPerViewer);
+                y = (int)(-vMargin + compHeight - (viewers) * pixelPerViewer);
             }
             else {
-                y = (int)(-vMargin + getHeight() - (viewers - minValue) * pixelPerViewer);
+                y = (int)(-vMargin + compHeight - (viewers - minValue) * pixelPerViewer);
             }
-            
-            // Draw connecting line
-            if (prevX != -1) {
-                if (entry.getValue().getStreamType() != StreamType.LIVE &&
-                        prevItem != null && prevItem.getStreamType() != StreamType.LIVE) {
-                    g.setColor(Color.LIGHT_GRAY);
-                } else {
-                    g.setColor(foreground_color);
+            times.add(time);
+            points.add(new Point(x, y));
+            // Bigger square point if communities changed
+            changed.add(prevItem != null && !Objects.equals(prevItem.getCommunities(), item.getCommunities()));
+            prevItem = item;
+        }
+        if (times.size() > width) {
+            downsample(times, points, changed);
+        }
+        
+        Plot result = new Plot(compWidth, compHeight, vMargin, scale, times.size());
+        for (int i = 0; i < times.size(); i++) {
+            long time = times.get(i);
+            StreamInfoHistoryItem item = history.get(time);
+            result.times[i] = time;
+            result.x[i] = points.get(i).x;
+            result.y[i] = points.get(i).y;
+            result.streamType[i] = item.getStreamType();
+            result.online[i] = item.isOnline();
+            result.colors[i] = colors.get(time);
+            result.changed[i] = changed.get(i);
+        }
+        result.render(foreground_color);
+        return result;
+    }
+    
+    /**
+     * Reduce the entries to the ones with the lowest and highest value for
+     * each x coordinate, keeping the order. The first entry kept for an x
+     * coordinate is marked as changed if any entry for it was changed.
+     * 
+     * @param times The times of the entries, modified
+     * @param points The locations of the entries, modified
+     * @param changed Whether the entries changed, modified
+     */
+    static void downsample(java.util.List<Long> times, java.util.List<Point> points,
+            java.util.List<Boolean> changed) {
+        java.util.List<Long> resultTimes = new ArrayList<>();
+        java.util.List<Point> resultPoints = new ArrayList<>();
+        java.util.List<Boolean> resultChanged = new ArrayList<>();
+        int columnStart = 0;
+        for (int i = 1; i <= points.size(); i++) {
+            if (i < points.size() && points.get(i).x == points.get(columnStart).x) {
+                continue;
+            }
+            // End of column, find lowest and highest point
+            int top = columnStart;
+            int bottom = columnStart;
+            boolean columnChanged = false;
+            for (int j = columnStart; j < i; j++) {
+                columnChanged |= changed.get(j);
+                if (points.get(j).y < points.get(top).y) {
+                    top = j;
+                }
+                if (points.get(j).y > points.get(bottom).y) {
+                    bottom = j;
                 }
-                g.drawLine(x,y,prevX,prevY);
             }
-            
-            // Save point coordinates to be able to draw the line next iteration
-            prevX = x;
-            prevY = y;
-            prevItem = entry.getValue();
-            
-            // Save point locations to draw points and to find entries on hover
-            locations.put(new Point(x,y),time);
+            int first = Math.min(top, bottom);
+            int second = Math.max(top, bottom);
+            resultTimes.add(times.get(first));
+            resultPoints.add(points.get(first));
+            resultChanged.add(columnChanged);
+            if (second != first) {
+                resultTimes.add(times.get(second));
+                resultPoints.add(points.get(second));
+                resultChanged.add(false);
+            }
+            columnStart = i;
         }
+        times.clear();
+        times.addAll(resultTimes);
+        points.clear();
+        points.addAll(resultPoints);
+        changed.clear();
+        changed.addAll(resultChanged);
+    }
+    
+    /**
+     * The locations of the displayed entries (ordered by time, so also by x
+     * coordinate) and the graph rendered from them.
+     */
+    private static class Plot {
         
+        private final int compWidth;
+        private final int compHeight;
+        private final int vMargin;
+        private final double scale;
         
-        prevItem = null;
-        // Draw points (after lines, so they are in front)
-        for (Point point : locations.keySet()) {
-            int x = point.x;
-            int y = point.y;
-            long seconds = locations.get(point);
+        private final long[] times;
+        private final int[] x;
+        private final int[] y;
+        private final StreamType[] streamType;
+        private final boolean[] online;
+        private final boolean[] changed;
+        private final Color[] colors;
+        
+        private BufferedImage image;
+        
+        Plot(int compWidth, int compHeight, int vMargin, double scale, int size) {
+            this.compWidth = compWidth;
+            this.compHeight = compHeight;
+            this.vMargin = vMargin;
+            this.scale = scale;
+            this.times = new long[size];
+            this.x = new int[size];
+            this.y = new int[size];
+            this.streamType = new StreamType[size];
+            this.online = new boolean[size];
+            this.changed = new boolean[size];
+            this.colors = new Color[size];
+        }
+        
+        boolean isValidFor(int compWidth, int compHeight, int vMargin, double scale) {
+            return this.compWidth == compWidth
+                    && this.compHeight == compHeight
+                    && this.vMargin == vMargin
+                    && this.scale == scale;
+        }
+        
+        /**
+         * Draw lines and points into the image, with the size of the
+         * component (scaled for HiDPI).
+         */
+        void render(Color foreground) {
+            image = new BufferedImage(
+                    Math.max(1, (int) Math.ceil(compWidth * scale)),
+                    Math.max(1, (int) Math.ceil(compHeight * scale)),
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.scale(scale, scale);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             
-            StreamInfoHistoryItem historyObject = history.get(seconds);
+            // Draw connecting lines
+            for (int i = 1; i < times.length; i++) {
+                if (streamType[i] != StreamType.LIVE && streamType[i - 1] != StreamType.LIVE) {
+                    g.setColor(Color.LIGHT_GRAY);
+                } else {
+                    g.setColor(foreground);
+                }
+                g.drawLine(x[i], y[i], x[i - 1], y[i - 1]);
+            }
             
-            // Highlight hovered entry
-            if (seconds == hoverEntry) {
-                g.setColor(HOVER_COLOR);
-            } else {
+            // Draw points (after lines, so they are in front)
+            for (int i = 0; i < times.length; i++) {
                 // Draw offline points differently
-                if (!historyObject.isOnline()) {
+                if (!online[i]) {
                     g.setColor(OFFLINE_COLOR);
                 } else {
-                    g.setColor(colors.get(seconds));
+                    g.setColor(colors[i]);
                 }
+                drawPoint(g, i);
             }
+            g.dispose();
+        }
+        
+        void drawPoint(Graphics g, int index) {
             int pointSize = POINT_SIZE;
-            
-            if (prevItem != null && !Objects.equals(prevItem.getCommunities(), historyObject.getCommunities())) {
+            if (changed[index]) {
                 pointSize += 1;
-                g.fillRect(x - pointSize / 2, y - pointSize / 2, pointSize, pointSize);
+                g.fillRect(x[index] - pointSize / 2, y[index] - pointSize / 2, pointSize, pointSize);
             } else {
-                g.fillOval(x - pointSize / 2, y - pointSize / 2, pointSize, pointSize);
+                g.fillOval(x[index] - pointSize / 2, y[index] - pointSize / 2, pointSize, pointSize);
             }
-            
-            
-            prevItem = historyObject;
         }
+        
+        int indexOf(long time) {
+            int index = Arrays.binarySearch(times, time);
+            return index >= 0 ? index : -1;
+        }
+        
+        /**
+         * Find the entry closest to the given point, within the
+         * {@link #HOVER_RADIUS}. Since the entries are ordered by x
+         * coordinate, only the ones within the radius on the x axis have to
+         * be checked.
+         * 
+         * @param p The point
+         * @return The time of the entry, or -1 if none was found
+         */
+        long find(Point p) {
+            // First entry with x >= p.x - HOVER_RADIUS
+            int low = 0;
+            int high = x.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (x[mid] < p.x - HOVER_RADIUS) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            double smallestDistance = HOVER_RADIUS;
+            long found = -1;
+            for (int i = low; i < x.length && x[i] <= p.x + HOVER_RADIUS; i++) {
+                double distance = p.distance(x[i], y[i]);
+                if (distance < smallestDistance) {
+                    found = times[i];
+                    smallestDistance = distance;
+                }
+            }
+            return found;
+        }
+        
     }
     
     /**
@@ -665,6 +838,7 @@ public class ViewerHistory extends JComponent {
         } else {
             history = null;
         }
+        plot = null;
         repaint();
     }
     
@@ -714,6 +888,7 @@ public class ViewerHistory extends JComponent {
      */
     public void setForegroundColor(Color color) {
         foreground_color = color;
+        plot = null;
         repaint();
     }
     
@@ -735,12 +910,14 @@ public class ViewerHistory extends JComponent {
         if (history != null) {
             updateVars();
         }
+        plot = null;
         repaint();
     }
     
     public void setVerticalZoom(boolean zoom) {
         contextMenu.setZoom(zoom);
         verticalZoom = zoom;
+        plot = null;
         repaint();
     }
     
@@ -766,6 +943,7 @@ public class ViewerHistory extends JComponent {
         if (history != null) {
             updateVars();
         }
+        plot = null;
         repaint();
     }
     
@@ -860,18 +1038,10 @@ public class ViewerHistory extends JComponent {
      * @return 
      */
     private long findHoverEntry(Point p) {
-        double smallestDistance = HOVER_RADIUS;
-        long foundHoverEntry = -1;
-        for (Point point : locations.keySet()) {
-            double distance = p.distance(point);
-            if (distance < HOVER_RADIUS) {
-                if (distance < smallestDistance) {
-                    foundHoverEntry = locations.get(point);
-                    smallestDistance = distance;
-                }
-            }
+        if (plot == null) {
+            return -1;
         }
-        return foundHoverEntry;
+        return plot.find(p);
     }
     
     /**
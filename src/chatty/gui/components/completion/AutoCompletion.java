@@ -86,6 +86,7 @@ public class AutoCompletion {
             } else {
                 insertWord(clickedIndex, appendSpace, false);
                 if (!SwingUtilities.isMiddleMouseButton(e)) {
+                    resultIndex = clickedIndex;
                     end();
                 }
             }
@@ -427,6 +428,10 @@ public class AutoCompletion {
     
     private void end() {
         Debugging.println("completion", "END");
+        if (inCompletion && results != null
+                && resultIndex >= 0 && resultIndex < results.items.size()) {
+            server.itemUsed(results.items.get(resultIndex));
+        }
         inCompletion = false;
         w.close();
         autoSetText = null;
@@ -56,6 +56,16 @@ public interface AutoCompletionServer {
      */
     public boolean isAutostartPrefix(String prefix);
     
+    /**
+     * The given item was inserted and the completion ended without being
+     * cancelled, so the item was presumably the one the user wanted. This is
+     * called by the completion instance.
+     * 
+     * @param item The item
+     */
+    public default void itemUsed(CompletionItem item) {
+    }
+    
     /**
      * A container for the data the CompletionServer returns.
      */
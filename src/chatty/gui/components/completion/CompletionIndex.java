@@ -0,0 +1,211 @@
+
+package chatty.gui.components.completion;
+
+import chatty.util.StringUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An index of completion items, each with one or several keys (e.g. emote
+ * code or the different names of a user), that can be searched without going
+ * through all items.
+ *
+ * <p>
+ * Keys are stored lowercase in a sorted map, so the keys starting with the
+ * search are a continuous range of that map, already in alphabetical order.
+ * For searching anywhere in the keys, each key is also indexed by all its
+ * substrings of length 3, so only the keys that contain the rarest of those
+ * of the search have to be checked (shorter searches check all keys).</p>
+ *
+ * <p>
+ * The index also counts how often keys have been used, so items can be sorted
+ * by that. This count is kept when items are removed.</p>
+ *
+ * <p>
+ * Not thread-safe, should only be used in the EDT.</p>
+ *
+ * @author tduva
+ * @param <T> The type of items
+ */
+public class CompletionIndex<T> {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final NavigableMap<String, Set<T>> byKey = new TreeMap<>();
+    private final Map<T, String[]> keysByItem = new HashMap<>();
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    private final Map<String, Integer> uses = new HashMap<>();
+
+    /**
+     * Add an item with the given keys, replacing the keys if the item has
+     * already been added.
+     *
+     * @param item The item
+     * @param keys The keys (case doesn't matter, null or empty keys are
+     * ignored)
+     */
+    public void add(T item, String... keys) {
+        remove(item);
+        Set<String> folded = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (!StringUtil.isNullOrEmpty(key)) {
+                folded.add(StringUtil.toLowerCase(key));
+            }
+        }
+        keysByItem.put(item, folded.toArray(new String[folded.size()]));
+        for (String key : folded) {
+            Set<T> items = byKey.get(key);
+            if (items == null) {
+                items = new LinkedHashSet<>(2);
+                byKey.put(key, items);
+                addGrams(key);
+            }
+            items.add(item);
+        }
+    }
+
+    public void remove(T item) {
+        String[] keys = keysByItem.remove(item);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Set<T> items = byKey.get(key);
+            if (items != null) {
+                items.remove(item);
+                if (items.isEmpty()) {
+                    byKey.remove(key);
+                    removeGrams(key);
+                }
+            }
+        }
+    }
+
+    public boolean contains(T item) {
+        return keysByItem.containsKey(item);
+    }
+
+    /**
+     * Remove all items (but keep the use counts).
+     */
+    public void clear() {
+        byKey.clear();
+        keysByItem.clear();
+        grams.clear();
+    }
+
+    public int size() {
+        return keysByItem.size();
+    }
+
+    /**
+     * Find items with a key that starts with the given search.
+     *
+     * @param search The search, must be lowercase
+     * @return The items, in alphabetical order of the matching key (an item
+     * is only included once, for the first matching key)
+     */
+    public List<T> findPrefix(String search) {
+        Set<T> result = new LinkedHashSet<>();
+        for (Set<T> items : byKey.subMap(search, true, search + Character.MAX_VALUE, false).values()) {
+            result.addAll(items);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Find items with a key that contains the given search anywhere, including
+     * at the start.
+     *
+     * @param search The search, must be lowercase
+     * @return The items, in alphabetical order of the matching key (an item
+     * is only included once, for the first matching key)
+     */
+    public List<T> findContaining(String search) {
+        List<String> keys = new ArrayList<>();
+        if (search.length() < GRAM_LENGTH) {
+            for (String key : byKey.keySet()) {
+                if (key.contains(search)) {
+                    keys.add(key);
+                }
+            }
+        }
+        else {
+            Set<String> candidates = null;
+            for (int i = 0; i <= search.length() - GRAM_LENGTH; i++) {
+                Set<String> gramKeys = grams.get(search.substring(i, i + GRAM_LENGTH));
+                if (gramKeys == null) {
+                    return new ArrayList<>();
+                }
+                if (candidates == null || gramKeys.size() < candidates.size()) {
+                    candidates = gramKeys;
+                }
+            }
+            for (String key : candidates) {
+                if (key.contains(search)) {
+                    keys.add(key);
+                }
+            }
+            Collections.sort(keys);
+        }
+        Set<T> result = new LinkedHashSet<>();
+        for (String key : keys) {
+            result.addAll(byKey.get(key));
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Count a use of the given key.
+     *
+     * @param key The key (case doesn't matter)
+     */
+    public void use(String key) {
+        uses.merge(StringUtil.toLowerCase(key), 1, Integer::sum);
+    }
+
+    /**
+     * How often the given key has been used.
+     *
+     * @param key The key (case doesn't matter)
+     * @return
+     */
+    public int getUses(String key) {
+        return uses.getOrDefault(StringUtil.toLowerCase(key), 0);
+    }
+
+    private void addGrams(String key) {
+        for (String gram : getGrams(key)) {
+            grams.computeIfAbsent(gram, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void removeGrams(String key) {
+        for (String gram : getGrams(key)) {
+            Set<String> keys = grams.get(gram);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> getGrams(String key) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i <= key.length() - GRAM_LENGTH; i++) {
+            result.add(key.substring(i, i + GRAM_LENGTH));
+        }
+        return result;
+    }
+
+}
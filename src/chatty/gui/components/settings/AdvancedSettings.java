@@ -3,6 +3,7 @@ package chatty.gui.components.settings;
 
 import chatty.WhisperManager;
 import chatty.gui.components.LinkLabel;
+import java.awt.FlowLayout;
 import java.awt.GridBagConstraints;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -38,6 +39,22 @@ public class AdvancedSettings extends SettingsPanel {
                 "Enables the membership capability while connecting, which allows receiving of joins/parts/userlist"),
                 d.makeGbc(0, 4, 2, 1, GridBagConstraints.NORTHWEST));
         
+        JPanel shardPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        shardPanel.add(new JLabel("Max. channels per connection: "));
+        shardPanel.add(d.addSimpleLongSetting("ircShardSize", 3, true));
+        shardPanel.add(new JLabel(" (0 = no limit)"));
+        shardPanel.setToolTipText("When joining many channels, distribute them over several connections (each reconnecting independently)");
+        connection.add(shardPanel,
+                d.makeGbc(0, 5, 2, 1, GridBagConstraints.WEST));
+        
+        JPanel joinRatePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        joinRatePanel.add(new JLabel("Max. channel joins per 10 seconds: "));
+        joinRatePanel.add(d.addSimpleLongSetting("joinRateLimit", 3, true));
+        joinRatePanel.add(new JLabel(" (Twitch limit, default 20)"));
+        joinRatePanel.setToolTipText("Only increase this if your account is allowed to join more channels");
+        connection.add(joinRatePanel,
+                d.makeGbc(0, 6, 2, 1, GridBagConstraints.WEST));
+        
         JPanel login = addTitledPanel("Login Settings (login under <Main Menu - Login>)", 2);
         
         login.add(d.addSimpleBooleanSetting("allowTokenOverride",
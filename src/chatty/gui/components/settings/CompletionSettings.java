@@ -171,6 +171,9 @@ public class CompletionSettings extends SettingsPanel {
         
         appearance.add(d.addSimpleBooleanSetting("completionFavEmotesFirst"),
                 d.makeGbc(0, 5, 2, 1, GridBagConstraints.WEST));
+        
+        appearance.add(d.addSimpleBooleanSetting("completionUsedEmotesFirst"),
+                d.makeGbc(0, 6, 2, 1, GridBagConstraints.WEST));
     }
     
     private class CustomCompletionEntries extends LazyDialog {
@@ -109,7 +109,7 @@ public class SettingsDialog extends JDialog implements ActionListener {
     ));
     
     private final Set<String> reconnectRequiredDef = new HashSet<>(Arrays.asList(
-            "membershipEnabled"
+            "membershipEnabled", "ircShardSize", "joinRateLimit"
     ));
     
     private boolean restartRequired = false;
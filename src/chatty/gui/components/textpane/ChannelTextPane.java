@@ -23,6 +23,7 @@ import chatty.util.ChattyMisc;
 import chatty.util.ChattyMisc.CombinedEmotesInfo;
 import chatty.util.DateTime;
 import chatty.util.Debugging;
+import chatty.util.MessageLatency;
 import chatty.util.MiscUtil;
 import chatty.util.Pair;
 import chatty.util.RepeatMsgHelper;
@@ -225,6 +226,11 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
     
     private int messageTimeout = -1;
     
+    /**
+     * The time timestamps are based on, -1 for the current time.
+     */
+    private long timestampTime = -1;
+    
     private final MyEditorKit kit;
     
     private final javax.swing.Timer updateTimer;
@@ -305,6 +311,12 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
         }
     }
     
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        MessageLatency.painted(this);
+    }
+    
     /**
      * This has to be called when the ChannelTextPane is no longer used, so it
      * can be gargabe collected.
@@ -3060,6 +3072,16 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
         });
     }
     
+    /**
+     * Set the time that timestamps of following lines are based on, for lines
+     * that are added some time after they were received.
+     * 
+     * @param time The time in milliseconds, -1 for the current time
+     */
+    public void setTimestampTime(long time) {
+        this.timestampTime = time;
+    }
+    
     /**
      * Makes the time prefix.
      * 
@@ -3068,7 +3090,7 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
     protected void printTimestamp(AttributeSet style) {
         Timestamp timestamp = styles.timestampFormat();
         if (timestamp != null) {
-            print(timestamp.make(-1, channel != null ? channel.getRoom() : null)+" ", styles.timestamp(style));
+            print(timestamp.make(timestampTime, channel != null ? channel.getRoom() : null)+" ", styles.timestamp(style));
         }
         else {
             // Inserts the linebreak with a style that shouldn't break anything
@@ -3083,6 +3105,15 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
     public void setBufferSize(int size) {
         styles.setBufferSize(size);
     }
+    
+    /**
+     * The maximum number of lines kept in the chat.
+     * 
+     * @return 
+     */
+    public int getBufferSize() {
+        return styles.bufferSize();
+    }
 
     /**
      * Simply uses UrlOpener to prompt the user to open the given URL. The
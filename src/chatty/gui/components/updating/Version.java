@@ -7,6 +7,7 @@ import chatty.gui.components.updating.Stuff;
 import chatty.util.GitHub;
 import chatty.util.GitHub.Release;
 import chatty.util.GitHub.Releases;
+import chatty.util.TaskRunner;
 import chatty.util.settings.Settings;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -71,11 +72,11 @@ public class Version {
     public void checkForNewVersionForced() {
         settings.setLong("versionLastChecked", System.currentTimeMillis());
         LOGGER.log(USERINFO, "Checking for new version..");
-        new Thread(() -> {
+        TaskRunner.execute(TaskRunner.Category.IO, "VersionCheck", () -> {
             Stuff.init();
             Stuff.clearOldSetups();
             versionReceived(GitHub.getReleases());
-        }).start();
+        });
     }
     
     /**
@@ -0,0 +1,246 @@
+
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Wraps another handler, so that formatting and writing log records happens
+ * in a separate thread instead of the thread that is logging.
+ *
+ * <p>
+ * The level, filter and formatter of the wrapped handler are taken over when
+ * creating this handler. The level and filter are checked right away, so
+ * records that are filtered out are never formatted or queued. Queued records
+ * are formatted in the background thread and all records waiting at that
+ * point are given to the wrapped handler as a single record (so e.g. a
+ * FileHandler only writes and flushes once for several records).</p>
+ *
+ * <p>
+ * The queue has a maximum size, if it is full the oldest records are dropped
+ * and a note about that is logged instead.</p>
+ *
+ * @author tduva
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * Maximum number of records given to the wrapped handler at once.
+     */
+    private static final int MAX_BATCH = 500;
+
+    /**
+     * How long to wait at most for queued records to be written when flushing
+     * (in milliseconds).
+     */
+    private static final long FLUSH_TIMEOUT = 3000;
+
+    /**
+     * Given to the wrapped handler, since the records given to it are already
+     * formatted.
+     */
+    private static final Formatter PREFORMATTED = new Formatter() {
+
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage();
+        }
+    };
+
+    private final String name;
+    private final Handler target;
+    private final Formatter formatter;
+    private final LogRecord[] queue;
+    private final Thread thread;
+
+    private int head;
+    private int size;
+    private boolean closed;
+
+    /**
+     * Records added to the queue and records removed from it (written or
+     * dropped), used to wait for everything up to a certain point to be
+     * written.
+     */
+    private long added;
+    private long removed;
+
+    private int droppedPending;
+    private long droppedTotal;
+    private long written;
+    private long batches;
+
+    /**
+     * Create a new handler and start the background thread.
+     *
+     * @param name The name, used for the thread and info
+     * @param target The handler to wrap, should already be configured
+     * @param capacity The maximum number of queued records
+     */
+    public AsyncLogHandler(String name, Handler target, int capacity) {
+        this.name = name;
+        this.target = target;
+        this.formatter = target.getFormatter() != null ? target.getFormatter() : new SimpleFormatter();
+        this.queue = new LogRecord[capacity];
+        setLevel(target.getLevel());
+        setFilter(target.getFilter());
+        setFormatter(formatter);
+        target.setFormatter(PREFORMATTED);
+        target.setLevel(Level.ALL);
+        target.setFilter(null);
+
+        thread = new Thread(this::run, "AsyncLog-"+name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        // The source is determined from the stack, so must be done here
+        record.getSourceClassName();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (size == queue.length) {
+                // Drop oldest
+                queue[head] = null;
+                head = (head + 1) % queue.length;
+                size--;
+                removed++;
+                droppedPending++;
+                droppedTotal++;
+            }
+            queue[(head + size) % queue.length] = record;
+            size++;
+            added++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait for all records queued up to this point to be written (or until a
+     * timeout occurs).
+     */
+    @Override
+    public void flush() {
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+        synchronized (this) {
+            long until = added;
+            while (removed < until && thread.isAlive()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(remaining);
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        target.flush();
+    }
+
+    /**
+     * Write all queued records, then stop the background thread and close the
+     * wrapped handler.
+     */
+    @Override
+    public void close() throws SecurityException {
+        flush();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join(FLUSH_TIMEOUT);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    private void run() {
+        List<LogRecord> batch = new ArrayList<>();
+        while (true) {
+            int dropped;
+            synchronized (this) {
+                while (size == 0 && !closed) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (size == 0) {
+                    return;
+                }
+                while (size > 0 && batch.size() < MAX_BATCH) {
+                    batch.add(queue[head]);
+                    queue[head] = null;
+                    head = (head + 1) % queue.length;
+                    size--;
+                }
+                dropped = droppedPending;
+                droppedPending = 0;
+            }
+            write(batch, dropped);
+            synchronized (this) {
+                removed += batch.size();
+                written += batch.size();
+                batches++;
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<LogRecord> batch, int dropped) {
+        StringBuilder b = new StringBuilder();
+        if (dropped > 0) {
+            b.append(String.format(Locale.ROOT, "[%d log records dropped (queue full)]%n", dropped));
+        }
+        for (LogRecord record : batch) {
+            try {
+                b.append(formatter.format(record));
+            }
+            catch (Exception ex) {
+                reportError(null, ex, ErrorManager.FORMAT_FAILURE);
+            }
+        }
+        if (b.length() > 0) {
+            try {
+                target.publish(new LogRecord(Level.INFO, b.toString()));
+            }
+            catch (Exception ex) {
+                reportError(null, ex, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Queue size and numbers of written and dropped records, for display.
+     *
+     * @return
+     */
+    public synchronized String getInfo() {
+        return String.format(Locale.ROOT, "%s: queued %d/%d, written %d (%d batches), dropped %d",
+                name, size, queue.length, written, batches, droppedTotal);
+    }
+
+}
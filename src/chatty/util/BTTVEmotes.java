@@ -3,14 +3,16 @@ package chatty.util;
 
 import chatty.Helper;
 import chatty.util.api.Emoticon;
+import chatty.util.api.EmoticonSnapshot;
 import chatty.util.api.EmoticonUpdate;
 import chatty.util.api.TwitchApi;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 /**
@@ -26,7 +28,9 @@ public class BTTVEmotes {
     private static final String URL_CHANNEL = "https://api.betterttv.net/3/cached/users/twitch/";
     private static final String TEMPLATE = "https://cdn.betterttv.net/emote/{{id}}/{{image}}";
     
-    public static final String GLOBAL = "$global$";
+    public static final String GLOBAL = EmoticonSnapshot.GLOBAL;
+    
+    private static final String SNAPSHOT_SOURCE = "bttv";
     
     private final EmoticonListener listener;
     private final TwitchApi api;
@@ -41,6 +45,9 @@ public class BTTVEmotes {
         if (!Helper.isValidStream(stream) && !GLOBAL.equals(stream)) {
             return;
         }
+        if (!forcedUpdate) {
+            loadSnapshot(stream);
+        }
         if (stream.equals(GLOBAL)) {
             request(GLOBAL, null, forcedUpdate);
         } else {
@@ -55,21 +62,21 @@ public class BTTVEmotes {
     private void request(String stream, String id, boolean forceRefresh) {
         String url = getUrlForStream(id);
         if (forceRefresh) {
-            requestNow(url, stream);
+            requestNow(url, stream, true);
         }
         else {
             RetryManager.getInstance().retry(url, k -> {
-                requestNow(url, stream);
+                requestNow(url, stream, false);
             });
         }
     }
     
-    private void requestNow(String url, String stream) {
+    private void requestNow(String url, String stream, boolean forceRefresh) {
         UrlRequest request = new UrlRequest(url);
         request.setLabel("BTTV");
-        request.async((result, responseCode) -> {
+        request.asyncParsed(reader -> parse(reader, stream), (result, responseCode) -> {
             if (responseCode == 200 && result != null) {
-                loadEmotes(result, stream);
+                loadEmotes(result, stream, forceRefresh);
                 RetryManager.getInstance().setSuccess(url);
             }
             else if (String.valueOf(responseCode).startsWith("4")) {
@@ -89,121 +96,108 @@ public class BTTVEmotes {
     }
     
     /**
-     * Load stuff from the given JSON in the context of the given channel
+     * Add the emotes stored from the previous session for the given channel
+     * (or "$global$"), if not already added.
+     * 
+     * @param stream 
+     */
+    private void loadSnapshot(String stream) {
+        EmoticonUpdate update = EmoticonSnapshot.load(SNAPSHOT_SOURCE, stream);
+        if (update != null) {
+            listener.receivedEmoticons(update);
+        }
+    }
+    
+    /**
+     * Load the parsed emotes and bots in the context of the given channel
      * restriction. The channel restriction can be "$global$" which means all
      * channels.
      * 
-     * @param json The JSON
+     * @param parsed The parsed emotes and bots
      * @param streamRestriction
+     * @param forceRefresh If false, the emotes are only updated if they
+     * changed
      * @return 
      */
-    private int loadEmotes(String json, String streamRestriction) {
-        Set<Emoticon> emotes;
-        Set<String> bots = new HashSet<>();
+    private int loadEmotes(Parsed parsed, String streamRestriction, boolean forceRefresh) {
+        String snapshotKey = streamRestriction;
         if (streamRestriction != null && streamRestriction.equals(GLOBAL)) {
             streamRestriction = null;
         }
-        
-        if (streamRestriction == null) {
-            emotes = parseGlobalEmotes(json);
-        }
-        else {
-            emotes = parseChannelEmotes(json, streamRestriction);
-            bots = parseBots(json);
-        }
+        Set<Emoticon> emotes = parsed.emotes;
+        Set<String> bots = parsed.bots;
         LOGGER.info("|[BTTV] Found " + emotes.size() + " emotes / "+bots.size()+" bots");
         EmoticonUpdate.Builder updateBuilder = new EmoticonUpdate.Builder(emotes);
         updateBuilder.setTypeToRemove(Emoticon.Type.BTTV);
         updateBuilder.setRoomToRemove(streamRestriction);
-        listener.receivedEmoticons(updateBuilder.build());
+        EmoticonUpdate update = updateBuilder.build();
+        if (EmoticonSnapshot.store(SNAPSHOT_SOURCE, snapshotKey, update) || forceRefresh) {
+            listener.receivedEmoticons(update);
+        }
         listener.receivedBotNames(streamRestriction, bots);
         return emotes.size();
     }
     
     /**
-     * Parse list of bots from the given JSON.
-     * 
-     * @param json
-     * @return 
+     * Emotes and bots parsed from a response.
      */
-    private static Set<String> parseBots(String json) {
-        Set<String> result = new HashSet<>();
-        if (json == null) {
-            return result;
-        }
-        JSONParser parser = new JSONParser();
-        try {
-            JSONObject root = (JSONObject)parser.parse(json);
-            JSONArray botsArray = (JSONArray)root.get("bots");
-            if (botsArray == null) {
-                // No bots for this channel
-                return result;
-            }
-            for (Object o : botsArray) {
-                result.add((String)o);
-            }
-        } catch (ParseException | ClassCastException ex) {
-            LOGGER.warning("|[BTTV] Error parsing bots: "+ex);
-        }
-        return result;
+    public static class Parsed {
+        
+        public final Set<Emoticon> emotes = new HashSet<>();
+        public final Set<String> bots = new HashSet<>();
+        
     }
     
-    private static Set<Emoticon> parseGlobalEmotes(String json) {
-        try {
-            JSONParser parser = new JSONParser();
-            JSONArray root = (JSONArray)parser.parse(json);
-            if (root != null) {
-                return parseEmotes(root, null);
-            }
-        }
-        catch (Exception ex) {
-            LOGGER.warning("|[BTTV] Error parsing global emotes: "+ex);
+    /**
+     * Parse emotes (and bots for channels) from the given JSON, reading it
+     * directly from the Reader without building the whole JSON tree first.
+     * 
+     * @param reader The response
+     * @param streamRestriction The channel, or null or "$global$" for global
+     * emotes
+     * @return The parsed emotes and bots, or null if the JSON is invalid
+     * @throws IOException If an error occured reading
+     */
+    public static Parsed parse(Reader reader, String streamRestriction) throws IOException {
+        if (GLOBAL.equals(streamRestriction)) {
+            streamRestriction = null;
         }
-        return new HashSet<>();
-    }
-    
-    private static Set<Emoticon> parseChannelEmotes(String json, String streamRestriction) {
-        Set<Emoticon> result = new HashSet<>();
+        String channelRestriction = streamRestriction;
+        Parsed result = new Parsed();
         try {
-            JSONParser parser = new JSONParser();
-            JSONObject root = (JSONObject)parser.parse(json);
-            if (root != null) {
-                
-                result.addAll(parseEmotes((JSONArray)root.get("channelEmotes"), streamRestriction));
-                result.addAll(parseEmotes((JSONArray)root.get("sharedEmotes"), streamRestriction));
+            if (channelRestriction == null) {
+                JSONStream.parse(reader, (path, element) -> {
+                    addEmote(result, element, null);
+                }, "");
+            }
+            else {
+                JSONStream.parse(reader, (path, element) -> {
+                    if (path.equals("bots")) {
+                        if (element instanceof String) {
+                            result.bots.add((String) element);
+                        }
+                    }
+                    else {
+                        addEmote(result, element, channelRestriction);
+                    }
+                }, "channelEmotes", "sharedEmotes", "bots");
             }
         }
-        catch (Exception ex) {
-            LOGGER.warning("|[BTTV] Error parsing channel emotes: "+ex);
+        catch (ParseException ex) {
+            LOGGER.warning("|[BTTV] Error parsing emotes: "+ex);
+            return null;
         }
         return result;
     }
     
-    /**
-     * Parse emotes from the given JSON.
-     * 
-     * @param json
-     * @param channelRestriction
-     * @return 
-     */
-    private static Set<Emoticon> parseEmotes(JSONArray data, String channelRestriction) {
-        Set<Emoticon> emotes = new HashSet<>();
-        try {
-            for (Object o : data) {
-                if (o instanceof JSONObject) {
-                    Emoticon emote = parseEmote((JSONObject)o, TEMPLATE,
-                            channelRestriction);
-                    if (emote != null) {
-                        emotes.add(emote);
-                    }
-                }
+    private static void addEmote(Parsed result, Object element, String channelRestriction) {
+        if (element instanceof JSONObject) {
+            Emoticon emote = parseEmote((JSONObject) element, TEMPLATE,
+                    channelRestriction);
+            if (emote != null) {
+                result.emotes.add(emote);
             }
-        } catch (ClassCastException ex) {
-            // ClassCastException is also caught in parseEmote(), so it won't
-            // quit completely when one emote is invalid.
-            LOGGER.warning("|[BTTV] Error parsing emotes: "+ex);
         }
-        return emotes;
     }
     
     /**
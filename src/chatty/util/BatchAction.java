@@ -3,8 +3,6 @@ package chatty.util;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import javax.swing.SwingUtilities;
 
 /**
@@ -14,7 +12,6 @@ import javax.swing.SwingUtilities;
 public class BatchAction {
     
     private static final Map<Object, Runnable> queued = new HashMap<>();
-    private static Timer timer;
     
     /**
      * When the id is not currently queued, the given Runnable will be executed
@@ -44,35 +41,28 @@ public class BatchAction {
     public static void queue(Object id, long delay, boolean edt, boolean overwrite, Runnable runnable) {
         boolean scheduleTask = prepare(id, overwrite, runnable);
         if (scheduleTask) {
-            timer.schedule(new TimerTask() {
-
-                @Override
-                public void run() {
-                    Runnable r;
-                    synchronized (queued) {
-                        r = queued.remove(id);
-                    }
-                    if (r != null) {
-                        if (edt) {
-                            SwingUtilities.invokeLater(() -> {
-                                r.run();
-                            });
-                        }
-                        else {
+            Scheduler.schedule("BatchAction", delay, () -> {
+                Runnable r;
+                synchronized (queued) {
+                    r = queued.remove(id);
+                }
+                if (r != null) {
+                    if (edt) {
+                        SwingUtilities.invokeLater(() -> {
                             r.run();
-                        }
+                        });
+                    }
+                    else {
+                        r.run();
                     }
                 }
-            }, delay);
+            });
         }
     }
     
     private static boolean prepare(Object id, boolean overwrite, Runnable runnable) {
         synchronized (queued) {
             if (!queued.containsKey(id)) {
-                if (timer == null) {
-                    timer = new Timer("BatchAction", true);
-                }
                 queued.put(id, runnable);
                 return true;
             }
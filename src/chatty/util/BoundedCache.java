@@ -0,0 +1,272 @@
+
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe in-memory cache with a maximum size and an optional time after
+ * which entries expire.
+ *
+ * <p>
+ * The entries are split into several segments by the hash of the key, each
+ * with its own lock, so lookups of different keys don't have to wait for
+ * each other. When a segment is full, the least recently used entry of that
+ * segment is removed (so it's only approximately LRU overall). Values may be
+ * null.</p>
+ *
+ * @author tduva
+ * @param <K> The class of keys
+ * @param <V> The class of values
+ */
+public class BoundedCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final List<Segment<K, V>> segments;
+
+    private volatile int maxSize;
+    private volatile long expireAfter;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize The maximum number of entries (0 for no limit)
+     * @param expireAfter How long after adding an entry it expires (in
+     * milliseconds, 0 for never)
+     */
+    public BoundedCache(int maxSize, long expireAfter) {
+        segments = new ArrayList<>(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment<>(this));
+        }
+        setLimits(maxSize, expireAfter);
+    }
+
+    /**
+     * Change the maximum size and expire time. Only applies to new entries and
+     * segments that are changed from now on.
+     *
+     * @param maxSize The maximum number of entries (0 for no limit)
+     * @param expireAfter How long after adding an entry it expires (in
+     * milliseconds, 0 for never)
+     */
+    public final void setLimits(int maxSize, long expireAfter) {
+        this.maxSize = maxSize;
+        this.expireAfter = expireAfter;
+    }
+
+    private Segment<K, V> segment(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return segments.get((h & 0x7fffffff) % SEGMENTS);
+    }
+
+    private int maxPerSegment() {
+        int max = maxSize;
+        return max > 0 ? Math.max(1, max / SEGMENTS) : 0;
+    }
+
+    /**
+     * Get the value for the given key.
+     *
+     * @param key
+     * @return The value, or null if not present, expired or the value is null
+     */
+    public V get(K key) {
+        Entry<V> entry = segment(key).get(key, MiscUtil.ems());
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Check if an entry for the given key is present, which may be used to
+     * check for null values. This doesn't count as hit or miss.
+     *
+     * @param key
+     * @return
+     */
+    public boolean containsKey(K key) {
+        return segment(key).contains(key, MiscUtil.ems());
+    }
+
+    public void put(K key, V value) {
+        long expires = expireAfter != 0 ? MiscUtil.ems() + expireAfter : 0;
+        segment(key).put(key, new Entry<>(value, expires), maxPerSegment());
+    }
+
+    /**
+     * Only add the entry if no entry for the key is present yet.
+     *
+     * @param key
+     * @param value
+     */
+    public void putIfAbsent(K key, V value) {
+        if (!containsKey(key)) {
+            put(key, value);
+        }
+    }
+
+    public void remove(K key) {
+        segment(key).remove(key);
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int result = 0;
+        for (Segment<K, V> segment : segments) {
+            result += segment.size();
+        }
+        return result;
+    }
+
+    /**
+     * Remove all expired entries (otherwise they are only removed when
+     * accessed or when the segment is full).
+     */
+    public void cleanUp() {
+        long now = MiscUtil.ems();
+        for (Segment<K, V> segment : segments) {
+            segment.cleanUp(now);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Size and stats, for display.
+     *
+     * @return
+     */
+    public String getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        return String.format(Locale.ROOT, "size: %d/%s hits: %d misses: %d (%.1f%% hit) evicted: %d expired: %d",
+                size(),
+                maxSize > 0 ? String.valueOf(maxSize) : "-",
+                h, m,
+                h + m > 0 ? h * 100.0 / (h + m) : 0,
+                evictions.get(),
+                expirations.get());
+    }
+
+    @Override
+    public String toString() {
+        return getStats();
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires != 0 && expires <= now;
+        }
+
+    }
+
+    private static class Segment<K, V> {
+
+        private final BoundedCache<K, V> cache;
+        private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(BoundedCache<K, V> cache) {
+            this.cache = cache;
+        }
+
+        synchronized Entry<V> get(Object key, long now) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(key);
+                cache.expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                cache.misses.incrementAndGet();
+            }
+            else {
+                cache.hits.incrementAndGet();
+            }
+            return entry;
+        }
+
+        synchronized boolean contains(Object key, long now) {
+            Entry<V> entry = entries.get(key);
+            return entry != null && !entry.isExpired(now);
+        }
+
+        synchronized void put(K key, Entry<V> entry, int max) {
+            entries.put(key, entry);
+            if (max > 0 && entries.size() > max) {
+                long now = MiscUtil.ems();
+                Iterator<Entry<V>> it = entries.values().iterator();
+                while (entries.size() > max && it.hasNext()) {
+                    if (it.next().isExpired(now)) {
+                        cache.expirations.incrementAndGet();
+                    }
+                    else {
+                        cache.evictions.incrementAndGet();
+                    }
+                    it.remove();
+                }
+            }
+        }
+
+        synchronized void remove(Object key) {
+            entries.remove(key);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void cleanUp(long now) {
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                    cache.expirations.incrementAndGet();
+                }
+            }
+        }
+
+    }
+
+}
@@ -8,12 +8,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -25,7 +25,8 @@ import java.util.logging.Logger;
  * <li>Aggregating several keys into one request
  * <li>Calling result listeners
  * <li>Retrying requests on error
- * <li>Caching results
+ * <li>Caching results (limited in size and optionally time, see
+ * {@link #setCacheLimits(int, long)})
  * </ul>
  * 
  * <p>The actual data gathering is performed by the Requester, which has to be
@@ -49,6 +50,25 @@ public class CachedBulkManager<Key,Item> {
     
     private static final Logger LOGGER = Logger.getLogger(CachedBulkManager.class.getName());
     
+    /**
+     * Default maximum number of cached items (and "not found" keys).
+     */
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    
+    /**
+     * Errors older than this (in seconds) are removed, since the error delay
+     * is at most this long anyway.
+     */
+    private static final long MAX_ERROR_DELAY = 1800;
+    
+    private static final int CLEAN_UP_DELAY = 5*60*1000;
+    
+    /**
+     * All instances, for debug output.
+     */
+    private static final Set<CachedBulkManager<?, ?>> instances
+            = Collections.newSetFromMap(new WeakHashMap<>());
+    
     private final Object LOCK = new Object();
     
     //---------
@@ -91,8 +111,9 @@ public class CachedBulkManager<Key,Item> {
     public static final int REFRESH = 8;
     
     /**
-     * Runs the request timer in daemon mode. Only has an effect on instance
-     * creation, not queries.
+     * Previously ran the request timer in daemon mode. The request timer now
+     * runs on the shared {@link Scheduler}, which always uses daemon threads,
+     * so this doesn't have an effect anymore.
      */
     public static final int DAEMON = 16;
     
@@ -129,13 +150,14 @@ public class CachedBulkManager<Key,Item> {
     private final Requester<Key, Item> requester;
     private final Map<Key, Long> requestPending = new HashMap<>();
     
-    // Data
-    private final Map<Key, Item> cache = new HashMap<>();
+    // Data (not guarded by LOCK, so lookups don't have to wait)
+    private final BoundedCache<Key, Item> cache = new BoundedCache<>(DEFAULT_MAX_SIZE, 0);
+    private Store<Key, Item> store;
     
     // Errors
     private final Map<Key, Long> lastError = new HashMap<>();
     private final Map<Key, Integer> errorCount = new HashMap<>();
-    private final Set<Key> notFound = new HashSet<>();
+    private final BoundedCache<Key, Boolean> notFound = new BoundedCache<>(DEFAULT_MAX_SIZE, 0);
     
     public CachedBulkManager(Requester<Key, Item> requester, int settings) {
         this(requester, "Default", settings);
@@ -146,14 +168,45 @@ public class CachedBulkManager<Key,Item> {
         this.options = new Options(settings);
         this.debugPrefix = debugPrefix;
         int timerDelay = 10*1000;
-        Timer timer = new Timer("CachedBulkManager."+debugPrefix, options.contains(DAEMON));
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                doRequests();
+        Scheduler.scheduleRepeating("CachedBulkManager."+debugPrefix,
+                timerDelay, timerDelay,
+                () -> doRequests());
+        Scheduler.scheduleRepeating("CachedBulkManager.cleanUp."+debugPrefix,
+                CLEAN_UP_DELAY, CLEAN_UP_DELAY,
+                () -> cleanUp());
+        synchronized (instances) {
+            instances.add(this);
+        }
+    }
+    
+    /**
+     * Set the limits for cached items and "not found" keys. Items that are
+     * removed from the cache are requested again when queried.
+     * 
+     * @param maxSize The maximum number of items (0 for no limit)
+     * @param expireAfter How long items stay cached (in milliseconds, 0 for
+     * no limit)
+     */
+    public void setCacheLimits(int maxSize, long expireAfter) {
+        cache.setLimits(maxSize, expireAfter);
+        notFound.setLimits(maxSize, expireAfter);
+    }
+    
+    /**
+     * Use the given store to persist results, adding all items currently in
+     * the store to the cache.
+     * 
+     * @param store 
+     */
+    public void setStore(Store<Key, Item> store) {
+        Map<Key, Item> loaded = store.load();
+        synchronized (LOCK) {
+            this.store = store;
+            for (Map.Entry<Key, Item> entry : loaded.entrySet()) {
+                cache.putIfAbsent(entry.getKey(), entry.getValue());
             }
-        }, timerDelay, timerDelay);
+        }
+        LOGGER.info(String.format("%s: Loaded %d cached items", debugPrefix, loaded.size()));
     }
     
     //=============
@@ -249,17 +302,13 @@ public class CachedBulkManager<Key,Item> {
     //=================
     
     public Item get(Key key) {
-        synchronized(LOCK) {
-            return cache.get(key);
-        }
+        return cache.get(key);
     }
     
     public Item getOrQuerySingle(Object unique, ResultListener<Key, Item> listener, int settings, Key key) {
-        synchronized(LOCK) {
-            Item cached = cache.get(key);
-            if (cached != null) {
-                return cached;
-            }
+        Item cached = cache.get(key);
+        if (cached != null) {
+            return cached;
         }
         query(unique, listener, settings, key);
         return null;
@@ -311,8 +360,8 @@ public class CachedBulkManager<Key,Item> {
     
     public void setNotFound(Collection<Key> keys) {
         synchronized(LOCK) {
-            notFound.addAll(keys);
             for (Key key : keys) {
+                notFound.put(key, Boolean.TRUE);
                 errorCount.remove(key);
                 setResponseReceived(key);
             }
@@ -345,6 +394,9 @@ public class CachedBulkManager<Key,Item> {
      */
     private void setResultInternal(Key key, Item item) {
         cache.put(key, item);
+        if (store != null) {
+            store.put(key, item);
+        }
         errorCount.remove(key);
         notFound.remove(key);
         setResponseReceived(key);
@@ -369,8 +421,9 @@ public class CachedBulkManager<Key,Item> {
     
     public String debug() {
         synchronized(LOCK) {
-            return String.format("requests: %d pending: %d",
-                    queries.size(), requestPending.size());
+            return String.format("requests: %d pending: %d errors: %d cache: %s notFound: %d",
+                    queries.size(), requestPending.size(), lastError.size(),
+                    cache.getStats(), notFound.size());
         }
     }
     
@@ -381,6 +434,44 @@ public class CachedBulkManager<Key,Item> {
         }
     }
     
+    /**
+     * Cache stats of all instances.
+     * 
+     * @return A multi-line String
+     */
+    public static String getDebugInfo() {
+        List<CachedBulkManager<?, ?>> all;
+        synchronized (instances) {
+            all = new ArrayList<>(instances);
+        }
+        StringBuilder b = new StringBuilder();
+        for (CachedBulkManager<?, ?> m : all) {
+            if (b.length() > 0) {
+                b.append("\n");
+            }
+            b.append(m.debugPrefix.trim()).append(" ").append(m.debug());
+        }
+        return b.toString();
+    }
+    
+    /**
+     * Remove expired items and old errors.
+     */
+    private void cleanUp() {
+        cache.cleanUp();
+        notFound.cleanUp();
+        synchronized (LOCK) {
+            Iterator<Key> it = lastError.keySet().iterator();
+            while (it.hasNext()) {
+                Key key = it.next();
+                if (secondsPassed(lastError, key) > MAX_ERROR_DELAY) {
+                    it.remove();
+                    errorCount.remove(key);
+                }
+            }
+        }
+    }
+    
     public int pendingRequests() {
         synchronized(LOCK) {
             return queries.size();
@@ -564,10 +655,11 @@ public class CachedBulkManager<Key,Item> {
                     continue;
                 }
 
-                if (cache.containsKey(k)) {
-                    results.put(k, cache.get(k));
+                Item item = cache.get(k);
+                if (item != null || cache.containsKey(k)) {
+                    results.put(k, item);
                 }
-                else if (notFound.contains(k)) {
+                else if (notFound.containsKey(k)) {
                     results.put(k, null);
                 }
                 else if (secondsPassed(lastError, k) < errorDelay(k, q)) {
@@ -640,6 +732,27 @@ public class CachedBulkManager<Key,Item> {
         
     }
     
+    /**
+     * Stores results, so they are available again after a restart.
+     */
+    public interface Store<Key, Item> {
+        
+        /**
+         * Get all stored items.
+         * 
+         * @return A new map
+         */
+        public Map<Key, Item> load();
+        
+        /**
+         * Store an item.
+         * 
+         * @param key
+         * @param item May be null
+         */
+        public void put(Key key, Item item);
+    }
+    
     public interface Requester<Key, Item> {
         
         /**
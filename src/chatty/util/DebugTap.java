@@ -0,0 +1,145 @@
+
+package chatty.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Debug output that is only collected while something is actually looking at
+ * it (e.g. the Debug window being open).
+ *
+ * <p>
+ * Producers should check {@link #isActive()} before building the debug line,
+ * so that nothing is done except reading a volatile field when the tap isn't
+ * active. When active, lines are added to a fixed size lock-free ring buffer,
+ * which the consumer polls regularly with {@link #drain(StringBuilder, int)}.
+ * If the consumer doesn't keep up, the oldest lines are overwritten and
+ * counted as dropped.</p>
+ *
+ * <p>
+ * Multiple producer threads can add lines at the same time, but there should
+ * only be a single consumer (usually the EDT).</p>
+ *
+ * @author tduva
+ */
+public enum DebugTap {
+
+    IRC, PUBSUB;
+
+    /**
+     * Must be a power of two.
+     */
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+
+    private final AtomicReferenceArray<Entry> buffer = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong writeSeq = new AtomicLong();
+    private long readSeq;
+    private long dropped;
+
+    private volatile boolean active;
+
+    /**
+     * Whether lines should currently be added. Producers should check this
+     * before doing any work to create the line.
+     *
+     * @return true if lines are currently being collected
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Enable or disable collecting lines. When disabled, lines still in the
+     * buffer will be skipped on the next drain.
+     *
+     * @param active
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    /**
+     * Add a line, if the tap is active. The prefix and text are only
+     * concatenated when the line is actually output.
+     *
+     * @param prefix Prefix for the line, may be null
+     * @param text The text
+     */
+    public void add(String prefix, String text) {
+        if (!active) {
+            return;
+        }
+        long seq = writeSeq.getAndIncrement();
+        buffer.set((int) (seq & MASK), new Entry(seq, System.currentTimeMillis(), prefix, text));
+    }
+
+    /**
+     * Append the lines added since the last drain to the given StringBuilder,
+     * each one prefixed with the time it was added and ending with a newline.
+     * Should only be called from one thread.
+     *
+     * @param b The StringBuilder to append to
+     * @param max The maximum number of lines to append, older lines beyond
+     * that are skipped (and counted as dropped)
+     * @return The number of lines appended
+     */
+    public int drain(StringBuilder b, int max) {
+        long available = writeSeq.get();
+        if (!active) {
+            readSeq = available;
+            return 0;
+        }
+        long start = Math.max(readSeq, available - Math.min(CAPACITY, max));
+        dropped += start - readSeq;
+        int count = 0;
+        for (long seq = start; seq < available; seq++) {
+            Entry entry = buffer.get((int) (seq & MASK));
+            if (entry == null || entry.seq < seq) {
+                // Sequence number reserved, but entry not yet written
+                available = seq;
+                break;
+            }
+            if (entry.seq > seq) {
+                // Already overwritten
+                dropped++;
+                continue;
+            }
+            b.append("[").append(DateTime.formatExact(entry.time)).append("] ");
+            if (entry.prefix != null) {
+                b.append(entry.prefix);
+            }
+            b.append(entry.text).append("\n");
+            count++;
+        }
+        readSeq = available;
+        return count;
+    }
+
+    /**
+     * The number of lines that were skipped because the consumer didn't keep
+     * up. Should only be called from the consumer thread.
+     *
+     * @return
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    private static class Entry {
+
+        private final long seq;
+        private final long time;
+        private final String prefix;
+        private final String text;
+
+        Entry(long seq, long time, String prefix, String text) {
+            this.seq = seq;
+            this.time = time;
+            this.prefix = prefix;
+            this.text = text;
+        }
+
+    }
+
+}
@@ -16,8 +16,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 import javax.swing.SwingUtilities;
 
@@ -37,27 +35,21 @@ public class Debugging {
     private static final Set<OutputListener> outputListeners = new HashSet<>();
     private static final Map<String, String> timedOutput = new HashMap<>();
     private static final Map<String, Long> timedOutputTimes = new HashMap<>();
-    private static final Timer timer;
     private static final Map<String, Long> counter = new HashMap<>();
     
     static {
-        timer = new Timer("Debugging", true);
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                if (!isEnabled("rt")) {
-                    for (Map.Entry<String, String> entry : timedOutput.entrySet()) {
-                        String type = entry.getKey();
-                        String value = entry.getValue();
-                        long lastValueAgo = System.currentTimeMillis() - timedOutputTimes.get(type);
-                        if (lastValueAgo < TIMED_OUTPUT_DELAY) {
-                            println(String.format("[%s] %s", type, value));
-                        }
+        Scheduler.scheduleRepeating("Debugging", TIMED_OUTPUT_DELAY, TIMED_OUTPUT_DELAY, () -> {
+            if (!isEnabled("rt")) {
+                for (Map.Entry<String, String> entry : timedOutput.entrySet()) {
+                    String type = entry.getKey();
+                    String value = entry.getValue();
+                    long lastValueAgo = System.currentTimeMillis() - timedOutputTimes.get(type);
+                    if (lastValueAgo < TIMED_OUTPUT_DELAY) {
+                        println(String.format("[%s] %s", type, value));
                     }
                 }
             }
-        }, TIMED_OUTPUT_DELAY, TIMED_OUTPUT_DELAY);
+        });
     }
     
     public synchronized static String command(String parameter) {
@@ -1,27 +1,34 @@
 
 package chatty.util;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.logging.Logger;
+import java.util.LinkedList;
+import java.util.Queue;
 
 /**
  * A queue that items can be added to, that are send to the registered action
  * listener on a fixed delay (in between each item). The queue is FIFO.
  * 
+ * <p>
+ * The items are sent from the shared {@link Scheduler}, which is only used
+ * while there are items in the queue (so no thread is kept waiting).</p>
+ * 
  * @author tduva
  * @param <E> The type of the items
  */
 public class DelayedActionQueue<E> {
     
-    private static final Logger LOGGER = Logger.getLogger(DelayedActionQueue.class.getName());
-    
     private final DelayedActionListener<E> listener;
     private final long delay;
-    private final BlockingQueue<E> q = new LinkedBlockingQueue<>();
+    private final Queue<E> q = new LinkedList<>();
+    
+    /**
+     * Whether the next item is currently scheduled to be sent (or the delay
+     * after the previous item is still running).
+     */
+    private boolean scheduled;
 
     /**
-     * Create a new queue object and start it.
+     * Create a new queue object.
      * 
      * @param <T>
      * @param listener
@@ -29,9 +36,7 @@ public class DelayedActionQueue<E> {
      * @return 
      */
     public static<T> DelayedActionQueue<T> create(DelayedActionListener<T> listener, long delay) {
-        DelayedActionQueue<T> q = new DelayedActionQueue<>(listener, delay);
-        q.start();
-        return q;
+        return new DelayedActionQueue<>(listener, delay);
     }
     
     /**
@@ -45,53 +50,46 @@ public class DelayedActionQueue<E> {
         this.delay = delay;
     }
     
-    /**
-     * Start a new reader thread. This should only be called once per instance.
-     */
-    private void start() {
-        new Reader().start();
-    }
-    
     /**
      * Adds an item to the queue.
      * 
      * @param item 
      */
-    public void add(E item) {
+    public synchronized void add(E item) {
         q.add(item);
+        if (!scheduled) {
+            scheduled = true;
+            Scheduler.schedule("DelayedActionQueue", 0, this::next);
+        }
     }
     
     /**
      * Clears all elements from the queue.
      */
-    public void clear() {
+    public synchronized void clear() {
         q.clear();
     }
     
     /**
-     * Thread that reads an item (or blocks if none is available) sends it to
-     * the listener and then waits for the specified delay.
+     * Sends the next item to the listener (if one is available) and schedules
+     * the next run after the specified delay. If no item is available, the
+     * delay is over and the next added item can be sent immediately.
      */
-    private class Reader extends Thread {
-        
-        private Reader() {
-            super("DelayedActionQueue");
-        }
-        
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    E item = q.take();
-                    listener.actionPerformed(item);
-                    sleep(delay);
-                } catch (InterruptedException ex) {
-                    LOGGER.warning("Reader Thread interrupted.");
-                    break;
-                }
+    private void next() {
+        E item;
+        synchronized (this) {
+            item = q.poll();
+            if (item == null) {
+                scheduled = false;
+                return;
             }
         }
-        
+        try {
+            listener.actionPerformed(item);
+        }
+        finally {
+            Scheduler.schedule("DelayedActionQueue", delay, this::next);
+        }
     }
 
     public static interface DelayedActionListener<E> {
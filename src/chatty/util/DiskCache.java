@@ -0,0 +1,453 @@
+
+package chatty.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * A simple persistent key/value cache, where each entry expires after a
+ * certain time.
+ *
+ * <p>
+ * All entries are kept in memory (limited to a maximum number, removing the
+ * least recently used). Changes are appended to a log file (written
+ * shortly after changing), which is read when the cache is opened. When the
+ * log contains a lot of lines that are outdated, it is rewritten with only the
+ * current entries.</p>
+ *
+ * <p>
+ * If no directory has been set, caches are only kept in memory.</p>
+ *
+ * @author tduva
+ */
+public class DiskCache {
+
+    private static final Logger LOGGER = Logger.getLogger(DiskCache.class.getName());
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * How long to wait after a change before writing to the file (in
+     * milliseconds).
+     */
+    private static final long WRITE_DELAY = 5000;
+
+    /**
+     * Rewrite the file when there are this many times more lines than entries
+     * (and at least {@link #COMPACT_MIN_LINES} lines).
+     */
+    private static final int COMPACT_RATIO = 2;
+    private static final int COMPACT_MIN_LINES = 1000;
+
+    private static final Map<String, DiskCache> caches = new HashMap<>();
+    private static Path directory;
+
+    /**
+     * Set the directory cache files are stored in. Caches opened before this
+     * is set are only kept in memory.
+     *
+     * @param dir The directory, or null to not store caches opened afterwards
+     */
+    public static synchronized void setDirectory(Path dir) {
+        directory = dir;
+    }
+
+    /**
+     * Get the cache with the given name, reading it from file if it hasn't
+     * been opened yet.
+     *
+     * @param name The name, also used as filename
+     * @param maxEntries The maximum number of entries kept
+     * @return The cache
+     */
+    public static synchronized DiskCache open(String name, int maxEntries) {
+        DiskCache cache = caches.get(name);
+        if (cache == null) {
+            Path file = null;
+            if (directory != null) {
+                try {
+                    Files.createDirectories(directory);
+                    file = directory.resolve(name);
+                }
+                catch (IOException ex) {
+                    LOGGER.warning("Error creating cache directory: "+ex);
+                }
+            }
+            cache = new DiskCache(file, maxEntries);
+            caches.put(name, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Write pending changes of all caches to file, should be called before
+     * exiting.
+     */
+    public static void flushAll() {
+        List<DiskCache> all;
+        synchronized (DiskCache.class) {
+            all = new ArrayList<>(caches.values());
+        }
+        for (DiskCache cache : all) {
+            cache.flush();
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final List<String> pendingLines = new ArrayList<>();
+    private int fileLines;
+
+    /**
+     * Held while writing the file, so writes happen in order. The cache
+     * itself is only locked while copying the lines to write.
+     */
+    private final Object fileLock = new Object();
+
+    DiskCache(Path file, int maxEntries) {
+        this.file = file;
+        this.entries = new LinkedHashMap<String, DiskCache.Entry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DiskCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if (load()) {
+            compact();
+        }
+    }
+
+    /**
+     * Get the value for the given key.
+     *
+     * @param key
+     * @return The value, or null if there is none or it has expired
+     */
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Get all entries that haven't expired yet.
+     *
+     * @return A new map
+     */
+    public synchronized Map<String, String> getAll() {
+        long now = System.currentTimeMillis();
+        Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (!entry.getValue().isExpired(now)) {
+                result.put(entry.getKey(), entry.getValue().value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Set the value for the given key.
+     *
+     * @param key The key (not null)
+     * @param value The value (not null)
+     * @param ttl How long the entry is valid (in milliseconds)
+     */
+    public synchronized void put(String key, String value, long ttl) {
+        Entry entry = new Entry(value, System.currentTimeMillis() + ttl);
+        Entry previous = entries.put(key, entry);
+        if (previous != null && previous.value.equals(value)
+                && entry.expires - previous.expires < ttl / 2) {
+            // No need to write if it would expire about the same time
+            entries.put(key, previous);
+            return;
+        }
+        append(entry.expires+"\t"+escape(key)+"\t"+escape(value));
+    }
+
+    public synchronized void remove(String key) {
+        if (entries.remove(key) != null) {
+            append("0\t"+escape(key));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Create a store that can be used as backing for a
+     * {@link CachedBulkManager}.
+     *
+     * @param <Item> The type of the values
+     * @param encoder Turns an item into a String
+     * @param decoder Turns a String back into an item, may return null if the
+     * String is invalid
+     * @param ttl How long stored items are valid (in milliseconds)
+     * @return The store
+     */
+    public <Item> CachedBulkManager.Store<String, Item> asStore(Function<Item, String> encoder,
+            Function<String, Item> decoder, long ttl) {
+        return new CachedBulkManager.Store<String, Item>() {
+
+            @Override
+            public Map<String, Item> load() {
+                Map<String, Item> result = new HashMap<>();
+                for (Map.Entry<String, String> entry : getAll().entrySet()) {
+                    Item item = decoder.apply(entry.getValue());
+                    if (item != null) {
+                        result.put(entry.getKey(), item);
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            public void put(String key, Item item) {
+                String value = item != null ? encoder.apply(item) : null;
+                if (value != null) {
+                    DiskCache.this.put(key, value, ttl);
+                }
+            }
+        };
+    }
+
+    //==========================
+    // File
+    //==========================
+
+    private void append(String line) {
+        if (file == null) {
+            return;
+        }
+        pendingLines.add(line);
+        Scheduler.scheduleCoalesced("DiskCache", this, WRITE_DELAY, this::flush);
+    }
+
+    /**
+     * Write pending changes to the file, rewriting it if it contains too many
+     * outdated lines. The lines to write are copied while holding the lock,
+     * but the file is written without it, so reading the cache isn't blocked.
+     */
+    public void flush() {
+        synchronized (fileLock) {
+            List<String> lines;
+            boolean rewrite;
+            synchronized (this) {
+                if (file == null || pendingLines.isEmpty()) {
+                    return;
+                }
+                rewrite = fileLines + pendingLines.size() > Math.max(COMPACT_MIN_LINES, entries.size() * COMPACT_RATIO);
+                if (rewrite) {
+                    lines = getCurrentLines();
+                }
+                else {
+                    lines = new ArrayList<>(pendingLines);
+                    pendingLines.clear();
+                }
+            }
+            if (rewrite) {
+                writeCompacted(lines);
+                return;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file, CHARSET,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+                synchronized (this) {
+                    fileLines += lines.size();
+                }
+            }
+            catch (IOException ex) {
+                LOGGER.warning("Error writing cache "+file+": "+ex);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the file with only the current entries.
+     */
+    void compact() {
+        synchronized (fileLock) {
+            List<String> lines;
+            synchronized (this) {
+                if (file == null) {
+                    return;
+                }
+                lines = getCurrentLines();
+            }
+            writeCompacted(lines);
+        }
+    }
+
+    /**
+     * Get the lines for all current entries, which replace any pending lines.
+     */
+    private List<String> getCurrentLines() {
+        pendingLines.clear();
+        long now = System.currentTimeMillis();
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry e = entry.getValue();
+            if (!e.isExpired(now)) {
+                result.add(e.expires+"\t"+escape(entry.getKey())+"\t"+escape(e.value));
+            }
+        }
+        return result;
+    }
+
+    private void writeCompacted(List<String> lines) {
+        Path temp = file.resolveSibling(file.getFileName()+".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, CHARSET)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                fileLines = lines.size();
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error writing cache "+file+": "+ex);
+        }
+    }
+
+    /**
+     * Read the entries from the file.
+     *
+     * @return true if the file should be rewritten
+     */
+    private synchronized boolean load() {
+        if (file == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, CHARSET)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                String[] split = line.split("\t", 3);
+                try {
+                    long expires = Long.parseLong(split[0]);
+                    String key = unescape(split[1]);
+                    if (split.length == 3 && expires > now) {
+                        entries.put(key, new Entry(unescape(split[2]), expires));
+                    }
+                    else {
+                        entries.remove(key);
+                    }
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                    // Ignore invalid line (e.g. partially written)
+                }
+            }
+        }
+        catch (NoSuchFileException ex) {
+            // Not created yet
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error reading cache "+file+": "+ex);
+        }
+        fileLines = lines;
+        LOGGER.info(String.format("Loaded %d entries from %s (%d lines)",
+                entries.size(), file, lines));
+        return lines > Math.max(COMPACT_MIN_LINES, entries.size() * COMPACT_RATIO);
+    }
+
+    static String escape(String input) {
+        StringBuilder b = new StringBuilder(input.length());
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            switch (c) {
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                default:
+                    b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    static String unescape(String input) {
+        if (input.indexOf('\\') == -1) {
+            return input;
+        }
+        StringBuilder b = new StringBuilder(input.length());
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '\\' && i + 1 < input.length()) {
+                char next = input.charAt(++i);
+                switch (next) {
+                    case 't':
+                        b.append('\t');
+                        break;
+                    case 'n':
+                        b.append('\n');
+                        break;
+                    case 'r':
+                        b.append('\r');
+                        break;
+                    default:
+                        b.append(next);
+                }
+            }
+            else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    private static class Entry {
+
+        private final String value;
+        private final long expires;
+
+        Entry(String value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires <= now;
+        }
+
+    }
+
+}
@@ -42,8 +42,7 @@ public class FileWatcher implements Runnable {
         }
         try {
             FileWatcher watcher = new FileWatcher(file, listener);
-            Thread thread = new Thread(watcher);
-            thread.start();
+            TaskRunner.startThread(TaskRunner.Category.LONG_RUNNING, "FileWatcher", watcher);
             LOGGER.info("Added file watcher for: "+file.toAbsolutePath());
             return true;
         } catch (IOException ex) {
@@ -0,0 +1,288 @@
+
+package chatty.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs HTTP requests on a shared pool of threads, instead of each request
+ * type creating its own threads.
+ *
+ * <p>
+ * The number of requests running at the same time is limited in total (by
+ * the number of threads) as well as per host, so that e.g. loading a lot of
+ * images doesn't delay API requests too much. The per host limit also matches
+ * the number of connections kept alive per host (set via the
+ * "http.maxConnections" property), so connections can be reused.</p>
+ *
+ * <p>
+ * Identical GET requests that are already running can be coalesced, so that
+ * only one request is actually performed and all listeners receive the same
+ * result. Requests should report their results via
+ * {@link #record(String, long, long, boolean)} for statistics.</p>
+ *
+ * @author tduva
+ */
+public class HttpService {
+
+    private static final int NUM_THREADS = 20;
+
+    /**
+     * Maximum number of requests to the same host running at the same time.
+     */
+    public static final int MAX_PER_HOST = 8;
+
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    private static final Map<String, Host> hosts = new HashMap<>();
+
+    /**
+     * Running coalesced requests by key.
+     */
+    private static final Map<String, CompletableFuture<?>> inFlight = new HashMap<>();
+
+    private static final AtomicLong coalescedCount = new AtomicLong();
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Http-"+count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run the given task in the pool, waiting until less than
+     * {@link #MAX_PER_HOST} tasks for the same host are running.
+     *
+     * @param url The URL that will be requested (used to get the host, may be
+     * null if unknown)
+     * @param task The task, should perform the request
+     */
+    public static void execute(String url, Runnable task) {
+        String host = getHost(url);
+        synchronized (hosts) {
+            Host h = getHostData(host);
+            if (h.active >= MAX_PER_HOST) {
+                h.waiting.add(task);
+                return;
+            }
+            h.active++;
+        }
+        EXECUTOR.execute(new HostTask(host, task));
+    }
+
+    /**
+     * Run the given task in the pool (see {@link #execute(String, Runnable)}).
+     *
+     * @param <T> The type of the result
+     * @param url The URL that will be requested
+     * @param task Performs the request and returns the result
+     * @return A future that is completed with the result in the pool thread
+     */
+    public static <T> CompletableFuture<T> submit(String url, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(url, () -> {
+            try {
+                future.complete(task.get());
+            }
+            catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Run the given task in the pool, unless a task with the same key is
+     * already running, in which case the listener only receives the result of
+     * that task. This should only be used for requests that don't change
+     * anything, like GET requests.
+     *
+     * @param <T> The type of the result
+     * @param key The key, e.g. the URL (including anything else that affects
+     * the result)
+     * @param url The URL that will be requested
+     * @param task Performs the request and returns the result
+     * @param listener Receives the result in the pool thread (also if an
+     * exception occured, the result is null then)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void coalesced(String key, String url, Supplier<T> task, Consumer<T> listener) {
+        CompletableFuture<T> future;
+        synchronized (inFlight) {
+            future = (CompletableFuture<T>) inFlight.get(key);
+            if (future != null) {
+                /**
+                 * Added while it's still in the map, so it's not completed
+                 * yet and the listener will run in the pool thread.
+                 */
+                coalescedCount.incrementAndGet();
+                future.whenComplete((result, ex) -> listener.accept(result));
+                return;
+            }
+            future = new CompletableFuture<>();
+            future.whenComplete((result, ex) -> listener.accept(result));
+            inFlight.put(key, future);
+        }
+        CompletableFuture<T> f = future;
+        execute(url, () -> {
+            T result = null;
+            try {
+                result = task.get();
+            }
+            finally {
+                synchronized (inFlight) {
+                    inFlight.remove(key);
+                }
+                f.complete(result);
+            }
+        });
+    }
+
+    /**
+     * Record the result of a request for the statistics.
+     *
+     * @param url The requested URL
+     * @param startNanos When the request was started, in
+     * {@link System#nanoTime()}
+     * @param bytes How much data was received (chars for text is fine)
+     * @param error Whether the request failed
+     */
+    public static void record(String url, long startNanos, long bytes, boolean error) {
+        long duration = (System.nanoTime() - startNanos) / 1000;
+        synchronized (hosts) {
+            Host h = getHostData(getHost(url));
+            h.requests++;
+            if (error) {
+                h.errors++;
+            }
+            if (bytes > 0) {
+                h.bytes += bytes;
+            }
+            h.latency.add(duration);
+        }
+    }
+
+    /**
+     * Per host statistics, for display.
+     *
+     * @return A multi-line String
+     */
+    public static String getInfo() {
+        StringBuilder b = new StringBuilder();
+        synchronized (hosts) {
+            b.append(String.format(Locale.ROOT, "Threads: %d/%d, queued: %d, coalesced: %d",
+                    EXECUTOR.getActiveCount(), EXECUTOR.getPoolSize(),
+                    EXECUTOR.getQueue().size(), coalescedCount.get()));
+            b.append("\nHost: active/waiting, requests (errors), KB, latency p50/p90/p99/max ms");
+            for (Map.Entry<String, Host> entry : new TreeMap<>(hosts).entrySet()) {
+                Host h = entry.getValue();
+                b.append(String.format(Locale.ROOT, "\n%s: %d/%d, %d (%d), %d, %.1f/%.1f/%.1f/%.1f",
+                        entry.getKey(),
+                        h.active, h.waiting.size(),
+                        h.requests, h.errors, h.bytes / 1024,
+                        h.latency.getPercentile(50) / 1000.0,
+                        h.latency.getPercentile(90) / 1000.0,
+                        h.latency.getPercentile(99) / 1000.0,
+                        h.latency.getMax() / 1000.0));
+            }
+        }
+        return b.toString();
+    }
+
+    static String getHost(String url) {
+        if (url == null) {
+            return "";
+        }
+        try {
+            String host = new URL(url).getHost();
+            return host != null ? StringUtil.toLowerCase(host) : "";
+        }
+        catch (MalformedURLException ex) {
+            return "";
+        }
+    }
+
+    /**
+     * Must be called while synchronized on {@link #hosts}.
+     */
+    private static Host getHostData(String host) {
+        Host h = hosts.get(host);
+        if (h == null) {
+            h = new Host();
+            hosts.put(host, h);
+        }
+        return h;
+    }
+
+    /**
+     * Runs a task and then starts the next waiting task for the same host
+     * (if any) in the same slot.
+     */
+    private static class HostTask implements Runnable {
+
+        private final String host;
+        private final Runnable task;
+
+        HostTask(String host, Runnable task) {
+            this.host = host;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            }
+            finally {
+                Runnable next;
+                synchronized (hosts) {
+                    Host h = getHostData(host);
+                    next = h.waiting.poll();
+                    if (next == null) {
+                        h.active--;
+                    }
+                }
+                if (next != null) {
+                    EXECUTOR.execute(new HostTask(host, next));
+                }
+            }
+        }
+
+    }
+
+    private static class Host {
+
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private int active;
+        private long requests;
+        private long errors;
+        private long bytes;
+
+    }
+
+}
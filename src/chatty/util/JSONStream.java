@@ -0,0 +1,218 @@
+
+package chatty.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Parses JSON from a Reader without building the whole tree, only building
+ * the elements of certain arrays one by one.
+ *
+ * <p>
+ * For example, for the path "emote_set.emotes" each element of the "emotes"
+ * array in the "emote_set" object in the root object is given to the listener
+ * as soon as it has been parsed (as JSONObject, JSONArray or value, like
+ * JSONParser would create it). Everything that is not part of such an array
+ * is skipped. The empty path "" refers to an array that is the root.</p>
+ *
+ * <p>
+ * This is useful for large lists that are read directly from a connection,
+ * since only one element has to be kept in memory at a time, instead of the
+ * whole text and the whole tree.</p>
+ *
+ * @author tduva
+ */
+public class JSONStream {
+
+    public interface ElementListener {
+
+        /**
+         * Receives an element of one of the requested arrays.
+         *
+         * @param path The path of the array, as given when parsing
+         * @param element The element
+         */
+        public void element(String path, Object element);
+    }
+
+    /**
+     * Parse the JSON from the given Reader.
+     *
+     * @param reader The Reader, is not closed
+     * @param listener Receives the array elements, in the parsing thread
+     * @param paths The paths of the arrays whose elements should be given to
+     * the listener (keys separated by ".")
+     * @throws IOException If an error occured reading
+     * @throws ParseException If the JSON is invalid
+     */
+    public static void parse(Reader reader, ElementListener listener, String... paths) throws IOException, ParseException {
+        new JSONParser().parse(reader, new Handler(listener, paths));
+    }
+
+    private static class Frame {
+
+        private final boolean isArray;
+
+        /**
+         * The path, if this is an array whose elements should be given to the
+         * listener.
+         */
+        private final String targetPath;
+
+        /**
+         * The container being built, if inside an element.
+         */
+        private final Object value;
+
+        private String key;
+
+        Frame(boolean isArray, String targetPath, Object value) {
+            this.isArray = isArray;
+            this.targetPath = targetPath;
+            this.value = value;
+        }
+
+        /**
+         * Whether values in this frame should be built.
+         */
+        boolean building() {
+            return targetPath != null || value != null;
+        }
+
+    }
+
+    private static class Handler implements ContentHandler {
+
+        private final ElementListener listener;
+        private final Set<String> paths;
+        private final List<Frame> stack = new ArrayList<>();
+
+        Handler(ElementListener listener, String[] paths) {
+            this.listener = listener;
+            this.paths = new HashSet<>(Arrays.asList(paths));
+        }
+
+        @Override
+        public void startJSON() {
+        }
+
+        @Override
+        public void endJSON() {
+        }
+
+        @Override
+        public boolean startObject() {
+            start(false);
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            end();
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            top().key = key;
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            top().key = null;
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            start(true);
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            end();
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            Frame parent = top();
+            if (parent != null && parent.building()) {
+                add(parent, value);
+            }
+            return true;
+        }
+
+        private Frame top() {
+            return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void start(boolean isArray) {
+            Frame parent = top();
+            if (parent != null && parent.building()) {
+                stack.add(new Frame(isArray, null, isArray ? new JSONArray() : new JSONObject()));
+            }
+            else if (isArray) {
+                stack.add(new Frame(true, getTargetPath(), null));
+            }
+            else {
+                stack.add(new Frame(false, null, null));
+            }
+        }
+
+        private void end() {
+            Frame frame = stack.remove(stack.size() - 1);
+            Frame parent = top();
+            if (frame.value != null && parent != null) {
+                add(parent, frame.value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Frame parent, Object value) {
+            if (parent.targetPath != null) {
+                listener.element(parent.targetPath, value);
+            }
+            else if (parent.value instanceof JSONArray) {
+                ((JSONArray) parent.value).add(value);
+            }
+            else if (parent.value instanceof JSONObject) {
+                ((JSONObject) parent.value).put(parent.key, value);
+            }
+        }
+
+        /**
+         * Get the path at the current position, if it's one of the requested
+         * paths (only objects are allowed on the way, no arrays).
+         */
+        private String getTargetPath() {
+            StringBuilder b = new StringBuilder();
+            for (Frame frame : stack) {
+                if (frame.isArray) {
+                    return null;
+                }
+                if (b.length() > 0) {
+                    b.append(".");
+                }
+                b.append(frame.key);
+            }
+            String path = b.toString();
+            return paths.contains(path) ? path : null;
+        }
+
+    }
+
+}
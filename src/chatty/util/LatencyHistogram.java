@@ -0,0 +1,144 @@
+
+package chatty.util;
+
+import java.util.Locale;
+
+/**
+ * Histogram of latencies with logarithmic buckets (each power of two split
+ * into 8 linear sub-buckets), so percentiles have a relative error of at most
+ * 12.5% while using a small fixed amount of memory, similar to HdrHistogram
+ * with low precision.
+ *
+ * <p>
+ * Values are in microseconds. Methods are synchronized, although the
+ * histogram will usually only be used from one thread.</p>
+ *
+ * @author tduva
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits for the sub-buckets (8 sub-buckets per power of two).
+     */
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * Values below this are counted exactly.
+     */
+    private static final int LINEAR = SUB_COUNT * 2;
+
+    /**
+     * Up to 2^40 microseconds (about 12 days), which is plenty.
+     */
+    private static final int MAX_EXP = 40;
+
+    private final long[] counts = new long[LINEAR + (MAX_EXP - SUB_BITS) * SUB_COUNT];
+    private long count;
+    private long total;
+    private long max;
+
+    public synchronized void add(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts[index(micros)]++;
+        count++;
+        total += micros;
+        max = Math.max(max, micros);
+    }
+
+    public synchronized void add(LatencyHistogram other) {
+        synchronized (other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count > 0 ? total / (double) count : 0;
+    }
+
+    /**
+     * Get the value at the given percentile. The result is the upper end of
+     * the bucket the percentile falls in (but never more than the actual
+     * maximum).
+     *
+     * @param percentile The percentile (0-100)
+     * @return The value in microseconds, or 0 if empty
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Short summary of count and the most interesting percentiles, in
+     * milliseconds.
+     *
+     * @return
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "%7d %8.2f %8.2f %8.2f %8.2f",
+                count,
+                getPercentile(50) / 1000.0,
+                getPercentile(90) / 1000.0,
+                getPercentile(99) / 1000.0,
+                max / 1000.0);
+    }
+
+    static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        if (exp >= MAX_EXP) {
+            return LINEAR + (MAX_EXP - SUB_BITS - 1) * SUB_COUNT + SUB_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return LINEAR + (exp - SUB_BITS - 1) * SUB_COUNT + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exp = (index - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+        int sub = (index - LINEAR) % SUB_COUNT;
+        long bucketSize = 1L << (exp - SUB_BITS);
+        return (1L << exp) + (sub + 1) * bucketSize - 1;
+    }
+
+}
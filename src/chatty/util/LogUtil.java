@@ -48,14 +48,8 @@ public class LogUtil {
      * Log JVM memory information every 15 minutes.
      */
     public static void startMemoryUsageLogging() {
-        Timer t = new Timer(true);
-        t.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                logMemoryUsage();
-            }
-        }, 10*1000, 900*1000);
+        Scheduler.scheduleRepeating("MemoryUsageLogging", 10*1000, 900*1000,
+                () -> logMemoryUsage());
     }
     
     public static void logDeadlocks() {
@@ -86,7 +80,8 @@ public class LogUtil {
     
     public static void startDeadlockDetection() {
         LOGGER.info("Started Thread Deadlock Detection");
-        Timer t = new Timer(true);
+        // Uses a separate thread, so it still works if the Scheduler is stuck
+        Timer t = new Timer("DeadlockDetection", true);
         t.schedule(new TimerTask() {
 
             @Override
@@ -0,0 +1,308 @@
+
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JComponent;
+
+/**
+ * Opt-in measuring of where the time goes between a chat message being read
+ * from the socket and it being painted.
+ *
+ * <p>
+ * When enabled, a {@link Trace} is started for each line read by the
+ * connection thread and kept in a ThreadLocal while the line is processed, so
+ * the parsing and dispatching code can add timestamps without passing it
+ * around. When a chat message is handed to the EDT for output the trace is
+ * taken along, and once the message is inserted (or dropped) the durations of
+ * each stage are added to histograms (per channel and overall). The time until
+ * the text pane the message was inserted into is painted the next time is
+ * added separately, once that happens.</p>
+ *
+ * <p>
+ * When disabled, the hooks only read a volatile field.</p>
+ *
+ * @author tduva
+ */
+public class MessageLatency {
+
+    public enum Stage {
+        READ("Socket read"),
+        PARSE("Parse"),
+        DISPATCH("Dispatch"),
+        PRINT("EDT queue"),
+        CHECK("Ignore/Highlight"),
+        INSERT("Doc insert"),
+        PAINT("First paint");
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final String ALL = "All channels";
+
+    /**
+     * Maximum number of inserted messages waiting for a paint per component,
+     * so messages in a tab that isn't shown don't pile up.
+     */
+    private static final int MAX_PENDING_PAINT = 1000;
+
+    private static final ThreadLocal<Trace> current = new ThreadLocal<>();
+
+    /**
+     * Histograms for each stage (except READ, which is the start), plus the
+     * total, by channel. Only accessed while synchronized on itself.
+     */
+    private static final Map<String, LatencyHistogram[]> stats = new TreeMap<>();
+
+    /**
+     * Only accessed from the EDT.
+     */
+    private static final Map<JComponent, List<Trace>> pendingPaint = new WeakHashMap<>();
+
+    private static volatile boolean enabled;
+
+    public static void setEnabled(boolean enabled) {
+        MessageLatency.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A line has been read by the connection thread, which starts a new trace
+     * for the current thread, if enabled.
+     */
+    public static void read() {
+        if (enabled) {
+            current.set(new Trace());
+        }
+    }
+
+    /**
+     * Processing of the line on the current thread is done, so remove the
+     * trace for it (it may still be used if it was taken along).
+     */
+    public static void done() {
+        if (enabled) {
+            current.remove();
+        }
+    }
+
+    /**
+     * Add the current time for the given stage to the trace of the current
+     * thread, if there is one.
+     *
+     * @param stage
+     */
+    public static void mark(Stage stage) {
+        if (enabled) {
+            mark(current.get(), stage);
+        }
+    }
+
+    /**
+     * Set the channel of the trace of the current thread and add the current
+     * time for the dispatch stage.
+     *
+     * @param channel
+     */
+    public static void dispatch(String channel) {
+        if (enabled) {
+            Trace trace = current.get();
+            if (trace != null) {
+                trace.channel = channel;
+                trace.mark(Stage.DISPATCH);
+            }
+        }
+    }
+
+    /**
+     * Get the trace of the current thread, so it can be taken along to
+     * another thread.
+     *
+     * @return The trace, or null if not enabled or not started
+     */
+    public static Trace current() {
+        return enabled ? current.get() : null;
+    }
+
+    /**
+     * Add the current time for the given stage to the given trace.
+     *
+     * @param trace The trace, may be null
+     * @param stage
+     */
+    public static void mark(Trace trace, Stage stage) {
+        if (trace != null) {
+            trace.mark(stage);
+        }
+    }
+
+    /**
+     * Record the trace (should be called in the EDT). If the message was
+     * inserted into a component, the time until it is painted will be added
+     * once {@link #painted(JComponent)} is called for it.
+     *
+     * @param trace The trace, may be null
+     * @param component The component the message was inserted in, or null if
+     * it wasn't inserted
+     */
+    public static void finish(Trace trace, JComponent component) {
+        if (trace == null || !enabled) {
+            return;
+        }
+        record(trace);
+        if (component != null && trace.times[Stage.INSERT.ordinal()] != 0) {
+            List<Trace> pending = pendingPaint.computeIfAbsent(component, k -> new ArrayList<>());
+            if (pending.size() < MAX_PENDING_PAINT) {
+                pending.add(trace);
+            }
+        }
+    }
+
+    /**
+     * The given component has been painted, which records the paint stage of
+     * any messages that were inserted into it since the last paint. Should be
+     * called in the EDT.
+     *
+     * @param component
+     */
+    public static void painted(JComponent component) {
+        if (!enabled || pendingPaint.isEmpty()) {
+            return;
+        }
+        List<Trace> pending = pendingPaint.remove(component);
+        if (pending == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (stats) {
+            for (Trace trace : pending) {
+                long micros = toMicros(now - trace.times[Stage.INSERT.ordinal()]);
+                get(trace.channel)[Stage.PAINT.ordinal()].add(micros);
+                get(ALL)[Stage.PAINT.ordinal()].add(micros);
+            }
+        }
+    }
+
+    private static void record(Trace trace) {
+        synchronized (stats) {
+            record(trace, get(trace.channel));
+            record(trace, get(ALL));
+        }
+    }
+
+    private static void record(Trace trace, LatencyHistogram[] histograms) {
+        long previous = trace.times[Stage.READ.ordinal()];
+        long last = previous;
+        for (Stage stage : Stage.values()) {
+            long time = trace.times[stage.ordinal()];
+            if (stage == Stage.READ || stage == Stage.PAINT || time == 0) {
+                continue;
+            }
+            histograms[stage.ordinal()].add(toMicros(time - previous));
+            previous = time;
+            last = time;
+        }
+        histograms[0].add(toMicros(last - trace.times[Stage.READ.ordinal()]));
+    }
+
+    private static LatencyHistogram[] get(String channel) {
+        if (channel == null) {
+            channel = "-";
+        }
+        LatencyHistogram[] result = stats.get(channel);
+        if (result == null) {
+            result = new LatencyHistogram[Stage.values().length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new LatencyHistogram();
+            }
+            stats.put(channel, result);
+        }
+        return result;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public static void reset() {
+        synchronized (stats) {
+            stats.clear();
+        }
+    }
+
+    public static Collection<String> getChannels() {
+        synchronized (stats) {
+            List<String> result = new ArrayList<>(stats.keySet());
+            result.remove(ALL);
+            return result;
+        }
+    }
+
+    /**
+     * Get a table of the latency of each stage, for all channels or a single
+     * channel.
+     *
+     * @param channel The channel, or null for all channels
+     * @return A multi-line String
+     */
+    public static String getReport(String channel) {
+        Map<String, String> rows = new LinkedHashMap<>();
+        synchronized (stats) {
+            LatencyHistogram[] histograms = stats.get(channel == null ? ALL : channel);
+            if (histograms == null) {
+                return String.format("No latency data%s%s",
+                        channel != null ? " for "+channel : "",
+                        enabled ? "" : " (not enabled, use /perf on)");
+            }
+            for (Stage stage : Stage.values()) {
+                if (stage != Stage.READ) {
+                    rows.put(stage.label, histograms[stage.ordinal()].toString());
+                }
+            }
+            rows.put("Total (to insert)", histograms[0].toString());
+        }
+        StringBuilder b = new StringBuilder();
+        b.append(String.format(Locale.ROOT, "Message latency (%s%s), in ms:%n",
+                channel == null ? ALL : channel,
+                enabled ? "" : ", not enabled"));
+        b.append(String.format(Locale.ROOT, "%-18s %7s %8s %8s %8s %8s",
+                "Stage", "Count", "p50", "p90", "p99", "Max"));
+        for (Map.Entry<String, String> row : rows.entrySet()) {
+            b.append(String.format(Locale.ROOT, "%n%-18s %s", row.getKey(), row.getValue()));
+        }
+        return b.toString();
+    }
+
+    /**
+     * The times at which a single message reached each stage.
+     */
+    public static class Trace {
+
+        private final long[] times = new long[Stage.values().length];
+        private String channel;
+
+        private Trace() {
+            times[Stage.READ.ordinal()] = System.nanoTime();
+        }
+
+        private void mark(Stage stage) {
+            times[stage.ordinal()] = System.nanoTime();
+        }
+
+    }
+
+}
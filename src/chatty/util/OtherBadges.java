@@ -47,7 +47,7 @@ public class OtherBadges {
          * A solution similar to emotes might be better, where the images load
          * on demand, but this will do for now.
          */
-        new Thread(() -> {
+        TaskRunner.execute(TaskRunner.Category.IO, "OtherBadges", () -> {
             if (forcedRefresh || !cache.load()) {
                 String url = "https://tduva.com/res/badges";
                 //url = "http://127.0.0.1/twitch/badges/badges";
@@ -57,7 +57,7 @@ public class OtherBadges {
                     cache.dataReceived(result, forcedRefresh);
                 });
             }
-        }).start();
+        });
     }
     
     private static List<Usericon> parseUsericons(String json) {
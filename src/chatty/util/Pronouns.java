@@ -5,6 +5,7 @@ import chatty.Helper;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 import javax.swing.Timer;
@@ -38,6 +39,17 @@ public class Pronouns {
     
     private static final String NOT_FOUND = "__EMPTY_RESULT__";
     
+    /**
+     * How long to keep the pronouns of a user when stored.
+     */
+    private static final long CACHE_TIME = TimeUnit.DAYS.toMillis(1);
+    
+    /**
+     * Entries kept in memory and in the disk cache (should be the same, so
+     * stored entries aren't evicted right after loading).
+     */
+    private static final int CACHE_SIZE = 20000;
+    
     public Pronouns() {
         data = new CachedBulkManager<>(new CachedBulkManager.Requester<String, String>() {
             @Override
@@ -66,6 +78,8 @@ public class Pronouns {
                 });
             }
         }, CachedBulkManager.DAEMON | CachedBulkManager.UNIQUE);
+        data.setCacheLimits(CACHE_SIZE, CACHE_TIME);
+        data.setStore(DiskCache.open("pronouns", CACHE_SIZE).asStore(v -> v, v -> v, CACHE_TIME));
         requestPronouns();
     }
     
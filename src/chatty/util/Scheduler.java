@@ -0,0 +1,301 @@
+
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Shared scheduling service, replacing the separate {@link java.util.Timer}
+ * threads that were previously created by many classes.
+ *
+ * <p>
+ * Tasks are given a name, which is used for debug output. Delayed tasks can
+ * also be scheduled with a key, in which case scheduling a task with the same
+ * key while one is still pending will not schedule another one (coalescing).
+ * </p>
+ *
+ * <p>
+ * Tasks should not block for long, since they share a small number of
+ * threads. Exceptions thrown by a task are logged and don't affect other
+ * tasks (repeating tasks continue to be scheduled).
+ * </p>
+ *
+ * @author tduva
+ */
+public class Scheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(Scheduler.class.getName());
+
+    private static final int NUM_THREADS = 2;
+
+    /**
+     * A task taking longer than this (in milliseconds) is logged, since it may
+     * delay other tasks.
+     */
+    private static final long SLOW_TASK_WARNING = 2000;
+
+    private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+    /**
+     * All currently scheduled tasks (not yet run or repeating), for debugging.
+     */
+    private static final Set<Task> tasks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Pending tasks by coalescing key.
+     */
+    private static final Map<Object, Task> coalesced = new HashMap<>();
+
+    /**
+     * Statistics of all tasks that have run, by name.
+     */
+    private static final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    static {
+        EXECUTOR = new ScheduledThreadPoolExecutor(NUM_THREADS, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Scheduler-"+count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Run the given task once after the given delay.
+     *
+     * @param name The name of the task (for debugging)
+     * @param delay The delay in milliseconds
+     * @param runnable What to run
+     * @return The scheduled task, which can be used to cancel it
+     */
+    public static Task schedule(String name, long delay, Runnable runnable) {
+        Task task = new Task(name, null, runnable, 0);
+        task.future = EXECUTOR.schedule(task, delay, TimeUnit.MILLISECONDS);
+        return task;
+    }
+
+    /**
+     * Run the given task repeatedly, with a fixed delay between the end of one
+     * run and the start of the next.
+     *
+     * @param name The name of the task (for debugging)
+     * @param initialDelay The delay until the first run in milliseconds
+     * @param delay The delay between runs in milliseconds
+     * @param runnable What to run
+     * @return The scheduled task, which can be used to cancel it
+     */
+    public static Task scheduleRepeating(String name, long initialDelay, long delay, Runnable runnable) {
+        Task task = new Task(name, null, runnable, delay);
+        task.future = EXECUTOR.scheduleWithFixedDelay(task, initialDelay, delay, TimeUnit.MILLISECONDS);
+        return task;
+    }
+
+    /**
+     * Run the given task once after the given delay, unless a task with the
+     * same key is already pending, in which case nothing is scheduled.
+     *
+     * @param name The name of the task (for debugging)
+     * @param key The key for coalescing tasks (compared with equals)
+     * @param delay The delay in milliseconds
+     * @param runnable What to run
+     * @return true if the task was scheduled, false if a task with the same
+     * key was already pending
+     */
+    public static boolean scheduleCoalesced(String name, Object key, long delay, Runnable runnable) {
+        synchronized (coalesced) {
+            if (coalesced.containsKey(key)) {
+                count(name).addCoalesced();
+                return false;
+            }
+            Task task = new Task(name, key, runnable, 0);
+            coalesced.put(key, task);
+            task.future = EXECUTOR.schedule(task, delay, TimeUnit.MILLISECONDS);
+            return true;
+        }
+    }
+
+    /**
+     * Check whether a task with the given coalescing key is currently pending.
+     *
+     * @param key The key
+     * @return true if a task with the key is pending
+     */
+    public static boolean isPending(Object key) {
+        synchronized (coalesced) {
+            return coalesced.containsKey(key);
+        }
+    }
+
+    /**
+     * Run the given task in the EDT, after the given delay.
+     *
+     * @param name The name of the task (for debugging)
+     * @param delay The delay in milliseconds
+     * @param runnable What to run
+     * @return The scheduled task, which can be used to cancel it
+     */
+    public static Task scheduleEdt(String name, long delay, Runnable runnable) {
+        return schedule(name, delay, () -> SwingUtilities.invokeLater(runnable));
+    }
+
+    private static Stats count(String name) {
+        return stats.computeIfAbsent(name, k -> new Stats());
+    }
+
+    /**
+     * Get a summary of all currently scheduled tasks and statistics about the
+     * run times of all tasks that have run so far.
+     *
+     * @return A multi-line String
+     */
+    public static String getDebugInfo() {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("Scheduler: %d threads (%d active), %d queued, %d completed",
+                EXECUTOR.getPoolSize(),
+                EXECUTOR.getActiveCount(),
+                EXECUTOR.getQueue().size(),
+                EXECUTOR.getCompletedTaskCount()));
+        List<Task> scheduled = new ArrayList<>(tasks);
+        scheduled.sort(Comparator.comparingLong(t -> t.getDelay()));
+        b.append("\nScheduled (").append(scheduled.size()).append("):");
+        for (Task task : scheduled) {
+            b.append("\n ").append(task);
+        }
+        List<Map.Entry<String, Stats>> entries = new ArrayList<>(stats.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        b.append("\nRuns:");
+        for (Map.Entry<String, Stats> entry : entries) {
+            b.append("\n ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return b.toString();
+    }
+
+    /**
+     * A scheduled task, which can be cancelled.
+     */
+    public static class Task implements Runnable {
+
+        private final String name;
+        private final Object key;
+        private final Runnable runnable;
+        private final long period;
+        private volatile ScheduledFuture<?> future;
+
+        private Task(String name, Object key, Runnable runnable, long period) {
+            this.name = name;
+            this.key = key;
+            this.runnable = runnable;
+            this.period = period;
+            tasks.add(this);
+        }
+
+        @Override
+        public void run() {
+            if (key != null) {
+                synchronized (coalesced) {
+                    coalesced.remove(key);
+                }
+            }
+            if (period <= 0) {
+                tasks.remove(this);
+            }
+            long start = System.nanoTime();
+            try {
+                runnable.run();
+            }
+            catch (Throwable ex) {
+                LOGGER.log(Level.WARNING, "Error running scheduled task "+name, ex);
+            }
+            long duration = System.nanoTime() - start;
+            count(name).add(duration);
+            if (duration > TimeUnit.MILLISECONDS.toNanos(SLOW_TASK_WARNING)) {
+                LOGGER.warning(String.format("Scheduled task %s took %dms",
+                        name, TimeUnit.NANOSECONDS.toMillis(duration)));
+            }
+        }
+
+        /**
+         * Cancel the task, so it won't run anymore (a run currently in
+         * progress is not interrupted).
+         */
+        public void cancel() {
+            tasks.remove(this);
+            if (key != null) {
+                synchronized (coalesced) {
+                    coalesced.remove(key, this);
+                }
+            }
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        /**
+         * The time in milliseconds until the next run.
+         *
+         * @return The delay, or 0 if not scheduled yet
+         */
+        public long getDelay() {
+            ScheduledFuture<?> f = future;
+            return f != null ? f.getDelay(TimeUnit.MILLISECONDS) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s in %s%s",
+                    name,
+                    DateTime.duration(getDelay()),
+                    period > 0 ? " (every "+DateTime.duration(period)+")" : "");
+        }
+
+    }
+
+    private static class Stats {
+
+        private long runs;
+        private long totalNanos;
+        private long maxNanos;
+        private long coalesced;
+
+        private synchronized void add(long nanos) {
+            runs++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        private synchronized void addCoalesced() {
+            coalesced++;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d runs, avg %.2fms, max %.2fms%s",
+                    runs,
+                    runs > 0 ? totalNanos / (double) runs / 1000000 : 0,
+                    maxNanos / 1000000.0,
+                    coalesced > 0 ? ", "+coalesced+" coalesced" : "");
+        }
+
+    }
+
+}
@@ -85,13 +85,7 @@ public class SimpleCache2 {
      * @see load()
      */
     public void asyncLoad() {
-        new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-                load();
-            }
-        }).start();
+        TaskRunner.execute(TaskRunner.Category.IO, "SimpleCache", this::load);
     }
     
     /**
@@ -148,13 +142,7 @@ public class SimpleCache2 {
      * @see refresh()
      */
     public void asyncRefresh() {
-        new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-                refresh();
-            }
-        }).start();
+        TaskRunner.execute(TaskRunner.Category.IO, "SimpleCache", this::refresh);
     }
     
     /**
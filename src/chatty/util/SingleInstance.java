@@ -57,7 +57,7 @@ public class SingleInstance {
                     }
                 }
             };
-            new Thread(connectionListener).start();
+            TaskRunner.startThread(TaskRunner.Category.LONG_RUNNING, "SingleInstance", connectionListener);
             LOGGER.info("Registered port "+port);
         } catch (IOException ex) {
             return false;
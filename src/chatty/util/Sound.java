@@ -1,15 +1,21 @@
 
 package chatty.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 import javax.sound.sampled.*;
@@ -64,15 +70,70 @@ public class Sound {
         get().setDeviceNameInternal(name);
     }
     
+    /**
+     * Latency from playing being requested until the sound started, for
+     * display.
+     * 
+     * @return 
+     */
+    public static String getInfo() {
+        return get().getInfoInternal();
+    }
+    
     //==========================
     // Class
     //==========================
+    
+    /**
+     * How many decoded sound files are kept in memory.
+     */
+    private static final int MAX_CACHED_SOUNDS = 20;
+    
+    /**
+     * How many opened clips per sound are kept for reuse after they finished
+     * playing.
+     */
+    private static final int MAX_IDLE_CLIPS = 2;
+    
+    /**
+     * How long clips that aren't used are kept open (in seconds).
+     */
+    private static final int IDLE_CLIP_TIMEOUT = 120;
+    
     private final Map<String, Long> lastPlayed = new HashMap<>();
-    private final List<Pair<Clip, ElapsedTime>> clips = new LinkedList<>();
+    
+    /**
+     * Decoded sound files, the least recently used are removed when there
+     * are too many.
+     */
+    private final Map<Path, SoundData> sounds = new LinkedHashMap<Path, SoundData>(16, 0.75f, true) {
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, SoundData> eldest) {
+            if (size() > MAX_CACHED_SOUNDS) {
+                eldest.getValue().closeIdleClips();
+                return true;
+            }
+            return false;
+        }
+    };
+    
+    /**
+     * Clips that are currently playing.
+     */
+    private final Set<PooledClip> playing = new HashSet<>();
+    
+    private final LatencyHistogram startLatency = new LatencyHistogram();
     
     private Mixer mixer;
     private String mixerName;
     
+    /**
+     * Increased when the device changes, so clips opened on the previous
+     * device aren't reused.
+     */
+    private int deviceGeneration;
+    
     Sound() {
         Timer timer = new Timer(10*1000, e -> {
             clearClips();
@@ -82,6 +143,7 @@ public class Sound {
     }
     
     public void playInternal(Path file, float volume, String id, int delay) throws Exception {
+        long triggered = System.nanoTime();
         if (lastPlayed.containsKey(id)) {
             long timePassed = (System.currentTimeMillis() - lastPlayed.get(id)) / 1000;
             if (timePassed < delay) {
@@ -94,9 +156,15 @@ public class Sound {
         }
         
         try {
-            Clip clip = createClip(file, id);
-            clips.add(new Pair<>(clip, new ElapsedTime(true)));
+            PooledClip pooled = getClip(file);
+            Clip clip = pooled.clip;
             String volumeInfo = setVolume(clip, volume);
+            synchronized (this) {
+                pooled.id = id;
+                pooled.triggered = triggered;
+                pooled.started = new ElapsedTime(true);
+                playing.add(pooled);
+            }
             clip.start();
             LOGGER.info(String.format("Playing[%s]: %sms %s (%s) EDT: %s",
                     id, clip.getMicrosecondLength() / 1000, file, volumeInfo, SwingUtilities.isEventDispatchThread()));
@@ -106,11 +174,37 @@ public class Sound {
         }
     }
     
-    private Clip createClip(Path file, String id) throws IOException, UnsupportedAudioFileException, LineUnavailableException {
-        // getAudioInputStream() also accepts a File or InputStream
-        AudioInputStream ais = AudioSystem.getAudioInputStream(file.toFile());
-
-        DataLine.Info info = new DataLine.Info(Clip.class, ais.getFormat());
+    /**
+     * Get an opened clip for the given file, either one that has been used
+     * before and is ready to play again or a new one. The file is only read
+     * if it hasn't been read before or has been modified since.
+     * 
+     * @param file
+     * @return
+     * @throws IOException
+     * @throws UnsupportedAudioFileException
+     * @throws LineUnavailableException 
+     */
+    private synchronized PooledClip getClip(Path file) throws IOException, UnsupportedAudioFileException, LineUnavailableException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        SoundData sound = sounds.get(file);
+        if (sound == null || sound.lastModified != lastModified) {
+            if (sound != null) {
+                sound.closeIdleClips();
+            }
+            sound = SoundData.load(file, lastModified);
+            sounds.put(file, sound);
+        }
+        PooledClip idle = sound.idle.poll();
+        if (idle != null) {
+            idle.clip.setFramePosition(0);
+            return idle;
+        }
+        return createClip(sound);
+    }
+    
+    private PooledClip createClip(SoundData sound) throws LineUnavailableException {
+        DataLine.Info info = new DataLine.Info(Clip.class, sound.format);
         final Clip clip;
         if (mixer != null) {
             clip = (Clip) mixer.getLine(info);
@@ -118,19 +212,56 @@ public class Sound {
         else {
             clip = (Clip) AudioSystem.getLine(info);
         }
-        clip.open(ais);
-
+        clip.open(sound.format, sound.data, 0, sound.data.length);
+        
+        PooledClip pooled = new PooledClip(clip, sound, deviceGeneration);
         clip.addLineListener(event -> {
             boolean simulateIssue = Debugging.isEnabled("soundNoStop") && ThreadLocalRandom.current().nextBoolean();
             if (simulateIssue && event.getType() == LineEvent.Type.STOP) {
                 return;
             }
-            LOGGER.info("LineEvent["+id+"]: " + event.getType());
+            LOGGER.info("LineEvent["+pooled.id+"]: " + event.getType());
+            if (event.getType() == LineEvent.Type.START) {
+                startLatency.add((System.nanoTime() - pooled.triggered) / 1000);
+            }
             if (event.getType() == LineEvent.Type.STOP) {
-                clip.close();
+                release(pooled);
             }
         });
-        return clip;
+        return pooled;
+    }
+    
+    /**
+     * The clip finished playing, so keep it for reuse if possible or close
+     * it.
+     * 
+     * @param pooled 
+     */
+    private synchronized void release(PooledClip pooled) {
+        if (!playing.remove(pooled)) {
+            return;
+        }
+        SoundData sound = pooled.sound;
+        if (pooled.clip.isOpen()
+                && pooled.generation == deviceGeneration
+                && sounds.get(sound.file) == sound
+                && sound.idle.size() < MAX_IDLE_CLIPS) {
+            pooled.lastUsed = new ElapsedTime(true);
+            sound.idle.add(pooled);
+        }
+        else {
+            pooled.clip.close();
+        }
+    }
+    
+    private synchronized String getInfoInternal() {
+        int idle = 0;
+        for (SoundData sound : sounds.values()) {
+            idle += sound.idle.size();
+        }
+        return String.format(Locale.ROOT, "Sounds cached: %d, clips playing: %d, idle: %d%n"
+                + "Start latency (count/p50/p90/p99/max ms): %s",
+                sounds.size(), playing.size(), idle, startLatency);
     }
     
     private String setVolume(Clip clip, float volume) {
@@ -193,11 +324,16 @@ public class Sound {
         return result;
     }
     
-    public void setDeviceNameInternal(String name) {
+    public synchronized void setDeviceNameInternal(String name) {
         if (mixerName != null && mixerName.equals(name)) {
             return;
         }
         mixerName = name;
+        // Clips opened on the previous device shouldn't be used anymore
+        deviceGeneration++;
+        for (SoundData sound : sounds.values()) {
+            sound.closeIdleClips();
+        }
         if (name == null || name.isEmpty()) {
             mixer = null;
             LOGGER.info("Set to default sound device");
@@ -216,24 +352,21 @@ public class Sound {
     
     /**
      * Backup for closing clips if the Stop event does not get received for some
-     * reason.
+     * reason. Also closes clips that haven't been used for a while.
      */
-    private void clearClips() {
-        if (clips.isEmpty()) {
-            return;
-        }
-        Iterator<Pair<Clip, ElapsedTime>> it = clips.iterator();
+    private synchronized void clearClips() {
+        Iterator<PooledClip> it = playing.iterator();
         int clipsClosed = 0;
         while (it.hasNext()) {
-            Pair<Clip, ElapsedTime> entry = it.next();
-            Clip clip = entry.key;
+            PooledClip entry = it.next();
+            Clip clip = entry.clip;
             if (!clip.isOpen()) {
                 it.remove();
             }
             else {
                 long clipLength = clip.getMicrosecondLength();
-                boolean clipLengthPassed = clipLength != AudioSystem.NOT_SPECIFIED && entry.value.millisElapsed(clipLength / 1000 + 1000);
-                if (clipLengthPassed || entry.value.secondsElapsed(120)) {
+                boolean clipLengthPassed = clipLength != AudioSystem.NOT_SPECIFIED && entry.started.millisElapsed(clipLength / 1000 + 1000);
+                if (clipLengthPassed || entry.started.secondsElapsed(120)) {
                     clipsClosed++;
                     clip.close();
                     it.remove();
@@ -243,6 +376,96 @@ public class Sound {
         if (clipsClosed > 0) {
             LOGGER.warning(String.format(Locale.ROOT, "%d clips closed which should already have been closed", clipsClosed));
         }
+        for (SoundData sound : sounds.values()) {
+            Iterator<PooledClip> idleIt = sound.idle.iterator();
+            while (idleIt.hasNext()) {
+                PooledClip idle = idleIt.next();
+                if (idle.lastUsed.secondsElapsed(IDLE_CLIP_TIMEOUT)) {
+                    idle.clip.close();
+                    idleIt.remove();
+                }
+            }
+        }
+    }
+    
+    /**
+     * A sound file decoded into memory, with clips that can be reused.
+     */
+    private static class SoundData {
+        
+        private final Path file;
+        private final long lastModified;
+        private final AudioFormat format;
+        private final byte[] data;
+        private final ArrayDeque<PooledClip> idle = new ArrayDeque<>();
+        
+        private SoundData(Path file, long lastModified, AudioFormat format, byte[] data) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.format = format;
+            this.data = data;
+        }
+        
+        static SoundData load(Path file, long lastModified) throws IOException, UnsupportedAudioFileException {
+            // getAudioInputStream() also accepts a File or InputStream
+            try (AudioInputStream input = AudioSystem.getAudioInputStream(file.toFile())) {
+                AudioInputStream ais = input;
+                AudioFormat format = ais.getFormat();
+                if (!format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+                        && !format.getEncoding().equals(AudioFormat.Encoding.PCM_UNSIGNED)) {
+                    // Clip would have to convert it anyway
+                    format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+                            format.getSampleRate(), 16, format.getChannels(),
+                            format.getChannels() * 2, format.getSampleRate(), false);
+                    ais = AudioSystem.getAudioInputStream(format, ais);
+                }
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = ais.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+                byte[] data = output.toByteArray();
+                int frameSize = format.getFrameSize();
+                if (frameSize > 0 && data.length % frameSize != 0) {
+                    data = Arrays.copyOf(data, data.length - data.length % frameSize);
+                }
+                LOGGER.info(String.format(Locale.ROOT, "Loaded sound %s (%d bytes, %s)",
+                        file, data.length, format));
+                return new SoundData(file, lastModified, format, data);
+            }
+        }
+        
+        void closeIdleClips() {
+            for (PooledClip pooled : idle) {
+                pooled.clip.close();
+            }
+            idle.clear();
+        }
+        
+    }
+    
+    /**
+     * An opened clip, with information about the current play.
+     */
+    private static class PooledClip {
+        
+        private final Clip clip;
+        private final SoundData sound;
+        private final int generation;
+        
+        // Set when playing, read when the line events are received
+        private volatile String id;
+        private volatile long triggered;
+        private ElapsedTime started;
+        private ElapsedTime lastUsed;
+        
+        PooledClip(Clip clip, SoundData sound, int generation) {
+            this.clip = clip;
+            this.sound = sound;
+            this.generation = generation;
+        }
+        
     }
     
 }
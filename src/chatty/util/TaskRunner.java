@@ -0,0 +1,268 @@
+
+package chatty.util;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Runs blocking tasks (file access, sockets, waiting for something), instead
+ * of each class creating it's own threads.
+ *
+ * <p>
+ * Tasks are run in a category, which has a bounded pool of platform threads,
+ * so that a lot of tasks at once don't create a lot of threads. When running
+ * on a Java version that supports virtual threads (21+), each task runs in
+ * it's own virtual thread instead, since blocking is cheap for those. Using
+ * virtual threads can be disabled by setting the "chatty.virtualThreads"
+ * system property to "false".</p>
+ *
+ * <p>
+ * Tasks that run for a long time (like a loop reading from a connection)
+ * should use {@link #newThread(Category, String, Runnable)} instead, so they
+ * don't take up a pool thread.</p>
+ *
+ * <p>
+ * Exceptions thrown by tasks are handled by the default uncaught exception
+ * handler, the same as for a separately created thread.</p>
+ *
+ * @author tduva
+ */
+public class TaskRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(TaskRunner.class.getName());
+
+    public enum Category {
+
+        /**
+         * Short blocking tasks, e.g. reading a file or waiting for a request.
+         */
+        IO("IO", 8),
+
+        /**
+         * Handling of incoming connections, e.g. for the local webserver.
+         */
+        CONNECTION("Connection", 16),
+
+        /**
+         * Requests triggered by the user that may block for a long time (e.g.
+         * custom commands with -async- replacements), each in it's own
+         * thread, so they don't delay other tasks.
+         */
+        USER_REQUEST("UserRequest", 0),
+
+        /**
+         * Threads that run as long as something is active, e.g. reading from
+         * a connection or playing an animation.
+         */
+        LONG_RUNNING("LongRunning", 0);
+
+        public final String label;
+        private final int maxThreads;
+
+        Category(String label, int maxThreads) {
+            this.label = label;
+            this.maxThreads = maxThreads;
+        }
+
+    }
+
+    private static final VirtualThreads VIRTUAL = VirtualThreads.create();
+
+    private static final Map<Category, Executor> executors = new ConcurrentHashMap<>();
+    private static final Map<Category, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Run the given task in the given category.
+     *
+     * @param category The category, which determines the number of threads
+     * ({@link Category#LONG_RUNNING} and {@link Category#USER_REQUEST} always
+     * run the task in a separate thread)
+     * @param name The name of the task (for the thread name when using
+     * virtual threads)
+     * @param task What to run
+     */
+    public static void execute(Category category, String name, Runnable task) {
+        if (VIRTUAL != null || category.maxThreads <= 0) {
+            startThread(category, category.label+"-"+name, task);
+        }
+        else {
+            Runnable wrapped = track(category, task);
+            executors.computeIfAbsent(category, TaskRunner::createExecutor).execute(wrapped);
+        }
+    }
+
+    /**
+     * Create a new (not yet started) daemon thread for a task that runs for a
+     * long time. This is a virtual thread if supported, so the priority and
+     * daemon status should not be changed.
+     *
+     * @param category The category (only used for statistics)
+     * @param name The name of the thread
+     * @param task What to run
+     * @return The thread, has to be started
+     */
+    public static Thread newThread(Category category, String name, Runnable task) {
+        Runnable wrapped = track(category, task);
+        if (VIRTUAL != null) {
+            return VIRTUAL.newThread(name, wrapped);
+        }
+        Thread thread = new Thread(wrapped, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Create and start a thread (see
+     * {@link #newThread(Category, String, Runnable)}).
+     *
+     * @param category The category (only used for statistics)
+     * @param name The name of the thread
+     * @param task What to run
+     * @return The started thread
+     */
+    public static Thread startThread(Category category, String name, Runnable task) {
+        Thread thread = newThread(category, name, task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Whether tasks are run in virtual threads.
+     *
+     * @return true if virtual threads are used
+     */
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL != null;
+    }
+
+    private static Executor createExecutor(Category category) {
+        int threads = category.maxThreads;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, category.label+"-"+count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Wrap the task so that it is counted in the statistics.
+     */
+    private static Runnable track(Category category, Runnable task) {
+        Stats s = stats.computeIfAbsent(category, c -> new Stats());
+        s.started.incrementAndGet();
+        return () -> {
+            s.running.incrementAndGet();
+            try {
+                task.run();
+            }
+            finally {
+                s.running.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Get the number of tasks started and currently running per category.
+     *
+     * @return A multi-line String
+     */
+    public static String getInfo() {
+        StringBuilder b = new StringBuilder();
+        b.append("Tasks (").append(VIRTUAL != null ? "virtual threads" : "platform threads").append("):");
+        for (Category category : Category.values()) {
+            Stats s = stats.get(category);
+            if (s != null) {
+                b.append(String.format("\n %s: %d started, %d running",
+                        category.label, s.started.get(), s.running.get()));
+                Executor executor = executors.get(category);
+                if (executor instanceof ThreadPoolExecutor) {
+                    ThreadPoolExecutor e = (ThreadPoolExecutor) executor;
+                    b.append(String.format(" (%d/%d threads, %d queued)",
+                            e.getPoolSize(), e.getMaximumPoolSize(), e.getQueue().size()));
+                }
+            }
+        }
+        return b.toString();
+    }
+
+    private static class Stats {
+
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicInteger running = new AtomicInteger();
+
+    }
+
+    /**
+     * Access to the virtual thread API through reflection, since the code has
+     * to run on Java 8 as well.
+     */
+    private static class VirtualThreads {
+
+        private final Method ofVirtual;
+        private final Method name;
+        private final Method unstarted;
+
+        private VirtualThreads(Method ofVirtual, Method name, Method unstarted) {
+            this.ofVirtual = ofVirtual;
+            this.name = name;
+            this.unstarted = unstarted;
+        }
+
+        /**
+         * Creates an instance if virtual threads are supported and enabled.
+         *
+         * @return The instance, or null
+         */
+        static VirtualThreads create() {
+            if ("false".equals(System.getProperty("chatty.virtualThreads"))) {
+                return null;
+            }
+            try {
+                Method ofVirtual = Thread.class.getMethod("ofVirtual");
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                VirtualThreads result = new VirtualThreads(ofVirtual,
+                        builder.getMethod("name", String.class),
+                        builder.getMethod("unstarted", Runnable.class));
+                // Make sure it actually works (e.g. not preview only)
+                result.newThread("Test", () -> {});
+                LOGGER.info("Using virtual threads for tasks");
+                return result;
+            }
+            catch (Exception | LinkageError ex) {
+                // Not supported
+                return null;
+            }
+        }
+
+        Thread newThread(String threadName, Runnable task) {
+            try {
+                Object builder = ofVirtual.invoke(null);
+                builder = name.invoke(builder, threadName);
+                return (Thread) unstarted.invoke(builder, task);
+            }
+            catch (ReflectiveOperationException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+    }
+
+}
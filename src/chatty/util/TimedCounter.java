@@ -38,24 +38,65 @@ public class TimedCounter {
      */
     public synchronized int getCount(boolean remove) {
         if (remove) {
-            clearUp();
+            clearUp(System.nanoTime());
         }
         return data.size();
     }
     
+    /**
+     * Gets the number of elements in the time window ending at the given
+     * time.
+     * 
+     * @param now The current time in nanoseconds
+     * @return The number of elements
+     */
+    public synchronized int getCount(long now) {
+        clearUp(now);
+        return data.size();
+    }
+    
     /**
      * Adds an element to the counter or caches it to be added.
      */
     public synchronized void increase() {
-        clearUp();
-        data.addFirst(System.nanoTime());
+        increase(System.nanoTime());
+    }
+    
+    /**
+     * Adds an element at the given time.
+     * 
+     * @param now The current time in nanoseconds
+     */
+    public synchronized void increase(long now) {
+        clearUp(now);
+        data.addFirst(now);
+    }
+    
+    /**
+     * Gets the time until the count will be below the given limit, so that
+     * another element can be added without exceeding it.
+     * 
+     * @param limit The maximum number of elements in the time window
+     * @param now The current time in nanoseconds
+     * @return The time in milliseconds, 0 if the count is already below the
+     * limit
+     */
+    public synchronized long getDelay(int limit, long now) {
+        clearUp(now);
+        int tooMany = data.size() - limit;
+        if (tooMany < 0) {
+            return 0;
+        }
+        // The element that has to leave the window (newest elements first)
+        long time = data.get(data.size() - 1 - tooMany);
+        return TimeUnit.NANOSECONDS.toMillis(time + interval - now) + 1;
     }
     
     /**
      * Removes old elements that are no longer in the time window.
      */
-    private void clearUp() {
-        while (!data.isEmpty() && System.nanoTime() - data.getLast() > interval) {
+    private void clearUp(long now) {
+        while (!data.isEmpty() && now - data.getLast() > interval) {
             data.removeLast();
         }
     }
@@ -67,6 +108,6 @@ public class TimedCounter {
      */
     public synchronized void setInterval(long interval) {
         this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
-        clearUp();
+        clearUp(System.nanoTime());
     }
 }
@@ -19,15 +19,11 @@ import static java.time.temporal.ChronoField.NANO_OF_SECOND;
 import static java.time.temporal.ChronoField.SECOND_OF_MINUTE;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,8 +39,15 @@ public class TimerCommand {
     
     private static final String SETTING_NAME = "timers";
     
+    /**
+     * The maximum delay the scheduler is used with, after which the target
+     * time is checked again. The scheduler doesn't use the wall clock, so this
+     * prevents long timers from drifting (e.g. when the computer was
+     * suspended).
+     */
+    private static final long MAX_SCHEDULE_DELAY = 60*1000;
+    
     private final List<TimerEntry> entries = new ArrayList<>();
-    private final Timer timer = new Timer("TimerCommand");
     private final TimerAction action;
     
     private final Map<String, Integer> idCounter = new HashMap<>();
@@ -204,7 +207,7 @@ public class TimerCommand {
     }
     
     public synchronized TimerEntry addEntry(String id, long targetTime, String command, String channel, Set<Option> options) {
-        TimerTask task = new TimerTask() {
+        Runnable task = new Runnable() {
             @Override
             public void run() {
                 /**
@@ -223,7 +226,6 @@ public class TimerCommand {
                 Parameters parameters = Parameters.create("");
                 parameters.put(TIMER_PARAMETERS_KEY, "true");
                 action.performAction(command, channel, parameters, options);
-                taskFinished(this);
             }
         };
         if (!isTargetInFuture(targetTime)) {
@@ -231,13 +233,36 @@ public class TimerCommand {
             return null;
         }
         else {
-            TimerEntry entry = new TimerEntry(id, targetTime, command, channel, options, task);
+            TimerEntry entry = new TimerEntry(id, targetTime, command, channel, options);
             entries.add(entry);
-            timer.schedule(task, new Date(targetTime));
+            schedule(entry, task);
             return entry;
         }
     }
     
+    /**
+     * Schedule the task for the given entry, rescheduling it if the target
+     * time hasn't been reached yet when it runs.
+     * 
+     * @param entry The entry (must have been added already)
+     * @param task What to run once the target time is reached
+     */
+    private synchronized void schedule(TimerEntry entry, Runnable task) {
+        long delay = Math.min(entry.targetTime - System.currentTimeMillis(), MAX_SCHEDULE_DELAY);
+        entry.task = Scheduler.schedule("TimerCommand", Math.max(delay, 0), () -> {
+            if (isTargetInFuture(entry.targetTime)) {
+                synchronized (this) {
+                    if (entries.contains(entry)) {
+                        schedule(entry, task);
+                    }
+                }
+            }
+            else if (taskFinished(entry)) {
+                task.run();
+            }
+        });
+    }
+    
     private synchronized boolean stopTimer(String id) {
         TimerEntry entry = getEntryById(id);
         if (entry != null) {
@@ -248,13 +273,15 @@ public class TimerCommand {
         return false;
     }
     
-    private synchronized void taskFinished(TimerTask task) {
-        Iterator<TimerEntry> it = entries.iterator();
-        while (it.hasNext()) {
-            if (it.next().task == task) {
-                it.remove();
-            }
-        }
+    /**
+     * Remove the entry once it has run.
+     * 
+     * @param entry The entry
+     * @return true if the entry was still active, false if it has been stopped
+     * in the meantime
+     */
+    private synchronized boolean taskFinished(TimerEntry entry) {
+        return entries.remove(entry);
     }
     
     public synchronized int getNumTimers() {
@@ -338,15 +365,14 @@ public class TimerCommand {
     
     public static class TimerEntry {
         
-        private final TimerTask task;
+        private Scheduler.Task task;
         public final String command;
         public final String channel;
         public final String id;
         public final long targetTime;
         public final Set<Option> options;
         
-        public TimerEntry(String id, long targetTime, String command, String channel, Set<Option> options, TimerTask task) {
-            this.task = task;
+        public TimerEntry(String id, long targetTime, String command, String channel, Set<Option> options) {
             this.command = command;
             this.channel = channel;
             this.id = id;
@@ -424,7 +450,7 @@ public class TimerCommand {
                 action.log("Restored timer: "+addedTimer);
             }
             else {
-                action.log("Executed restored timer: "+new TimerEntry(id, targetTime, command, channel, options, null));
+                action.log("Executed restored timer: "+new TimerEntry(id, targetTime, command, channel, options));
             }
         }
         return String.format("%d timer commands run, %d scheduled",
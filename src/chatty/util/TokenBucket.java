@@ -0,0 +1,102 @@
+
+package chatty.util;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket for rate limiting, which holds up to a certain number of
+ * tokens and refills them continuously at a certain rate. Starts full.
+ *
+ * <p>
+ * Times are given as nanoseconds (as returned by {@link System#nanoTime()}),
+ * so the bucket can be tested without waiting.</p>
+ *
+ * @author tduva
+ */
+public class TokenBucket {
+
+    private int capacity;
+    private double perSecond;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Create a new bucket.
+     *
+     * @param capacity The maximum number of tokens
+     * @param perSecond How many tokens are added per second
+     */
+    public TokenBucket(int capacity, double perSecond) {
+        this.capacity = capacity;
+        this.perSecond = perSecond;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Change the capacity and rate, keeping the fill ratio.
+     *
+     * @param capacity The maximum number of tokens
+     * @param perSecond How many tokens are added per second
+     */
+    public synchronized void setRate(int capacity, double perSecond) {
+        tokens = tokens / this.capacity * capacity;
+        this.capacity = capacity;
+        this.perSecond = perSecond;
+    }
+
+    /**
+     * Take a token if one is available.
+     *
+     * @param now The current time in nanoseconds
+     * @return true if a token was taken, false otherwise
+     */
+    public synchronized boolean tryTake(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The time until a token is available.
+     *
+     * @param now The current time in nanoseconds
+     * @return The time in milliseconds, 0 if a token is available
+     */
+    public synchronized long getDelay(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / perSecond * 1000);
+    }
+
+    /**
+     * Whether the bucket is full, so it makes no difference if it is removed
+     * and created again later.
+     *
+     * @param now The current time in nanoseconds
+     * @return
+     */
+    public synchronized boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * perSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefill = now;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "%.1f/%d", tokens, capacity);
+    }
+
+}
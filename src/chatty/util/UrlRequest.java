@@ -4,9 +4,11 @@ package chatty.util;
 import chatty.Chatty;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -67,20 +69,53 @@ public class UrlRequest {
         this.label = "["+label+"]";
     }
 
+    /**
+     * Perform the request in the {@link HttpService} pool. If a request for
+     * the same URL is already running, the listener receives the result of
+     * that request instead.
+     * 
+     * @param listener Receives the result in a pool thread
+     */
     public void async(ResultListener listener) {
-        new Thread(() -> {
-            FullResult result = new FullResult();
-            performRequest(result);
-            listener.result(result.getResult(), result.getResponseCode());
-        }).start();
+        HttpService.coalesced(url, url, this::sync, result -> {
+            if (result != null) {
+                listener.result(result.getResult(), result.getResponseCode());
+            }
+            else {
+                listener.result(null, 0);
+            }
+        });
     }
     
+    /**
+     * Perform the request in the {@link HttpService} pool.
+     * 
+     * @param listener Receives the result in a pool thread
+     */
     public void asyncLines(ResultLinesListener listener) {
-        new Thread(() -> {
+        HttpService.execute(url, () -> {
             LinesResult result = new LinesResult();
             performRequest(result);
             listener.result(result.getResult(), result.getResponseCode());
-        }).start();
+        });
+    }
+    
+    /**
+     * Perform the request in the {@link HttpService} pool, giving the
+     * response directly to the parser instead of reading it into a String
+     * first.
+     * 
+     * @param <T> The type of the parsed result
+     * @param parser Reads and parses the response, in a pool thread
+     * @param listener Receives the parsed result (null if the request or
+     * parsing failed) in a pool thread
+     */
+    public <T> void asyncParsed(Parser<T> parser, ParsedResultListener<T> listener) {
+        HttpService.execute(url, () -> {
+            ParsedResult<T> result = new ParsedResult<>(parser);
+            performRequest(result);
+            listener.result(result.getResult(), result.getResponseCode());
+        });
     }
     
     public FullResult sync() {
@@ -103,6 +138,7 @@ public class UrlRequest {
      */
     private void performRequest(Result result) {
         LOGGER.info("<"+label+" "+url);
+        long start = System.nanoTime();
         HttpURLConnection connection = null;
         try {
             connection = (HttpURLConnection) new URL(url).openConnection();
@@ -130,6 +166,7 @@ public class UrlRequest {
                     result.getLength(),
                     (encoding != null ? ", " + encoding : ""),
                     url));
+            HttpService.record(url, start, result.getLength(), false);
         } catch (IOException ex) {
             if (ex instanceof FileNotFoundException) {
                 result.responseCode = 404;
@@ -137,7 +174,11 @@ public class UrlRequest {
             LOGGER.warning(String.format("!%s (%s): %s",
                     label, ex, url));
             result.error = ex.getClass().getSimpleName()+" ("+ex.getLocalizedMessage()+")";
-        } finally {
+            HttpService.record(url, start, 0, true);
+            /**
+             * Only disconnect on error, since after reading and closing the
+             * input the connection can be kept alive and reused.
+             */
             if (connection != null) {
                 connection.disconnect();
             }
@@ -153,6 +194,22 @@ public class UrlRequest {
         public void result(List<String> lines, int responseCode);
     }
     
+    public interface ParsedResultListener<T> {
+        public void result(T result, int responseCode);
+    }
+    
+    public interface Parser<T> {
+        
+        /**
+         * Parse the response.
+         * 
+         * @param reader The response, should not be closed
+         * @return The result
+         * @throws IOException If an error occured reading
+         */
+        public T parse(Reader reader) throws IOException;
+    }
+    
     
     public static abstract class Result {
         
@@ -231,6 +288,65 @@ public class UrlRequest {
     }
     
     
+    public static class ParsedResult<T> extends Result {
+        
+        private final Parser<T> parser;
+        private T result;
+        
+        public ParsedResult(Parser<T> parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public void fill(BufferedReader reader, int responseCode) throws IOException {
+            this.responseCode = responseCode;
+            CountingReader counting = new CountingReader(reader);
+            result = parser.parse(counting);
+            length = counting.count;
+        }
+        
+        /**
+         * The parsed result of the request.
+         * 
+         * @return The result, or null if an error occured
+         */
+        public T getResult() {
+            return result;
+        }
+        
+    }
+    
+    /**
+     * Counts the read characters.
+     */
+    private static class CountingReader extends FilterReader {
+        
+        private int count;
+        
+        CountingReader(Reader reader) {
+            super(reader);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1) {
+                count++;
+            }
+            return c;
+        }
+        
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+        
+    }
+    
     public static void main(String[] args) {
         //UrlRequest request = new UrlRequest("http://tduva.com/res/emotesetinfo.txt");
         //UrlRequest request = new UrlRequest("https://google.de");
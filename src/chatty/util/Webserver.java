@@ -60,7 +60,7 @@ public class Webserver implements Runnable {
                 System.out.println("Save token and stuff");
             }
         });
-        new Thread(s).start();
+        TaskRunner.startThread(TaskRunner.Category.LONG_RUNNING, "Webserver", s);
     }
 
     /**
@@ -178,7 +178,7 @@ public class Webserver implements Runnable {
     private void newConnection(Socket clientSocket) {
         WebserverConnection connection =
                 new WebserverConnection(clientSocket, connectionCount++);
-        new Thread(connection).start();
+        TaskRunner.execute(TaskRunner.Category.CONNECTION, "Webserver", connection);
         connections.add(connection);
     }
     
@@ -1,6 +1,7 @@
 
 package chatty.util.api;
 
+import chatty.util.HttpService;
 import chatty.util.ImageCache;
 import chatty.util.ImageCache.ImageRequest;
 import chatty.util.ImageCache.ImageResult;
@@ -219,7 +220,8 @@ public class CachedImage<T> {
             loadingError = false;
             loadingAttempts++;
             lastLoadingAttempt = System.currentTimeMillis();
-            (new IconLoader(this)).execute();
+            // Run in the shared pool, done() is still executed in the EDT
+            HttpService.execute(requester.getImageUrl(1, imageType), new IconLoader(this));
             return true;
         }
         return false;
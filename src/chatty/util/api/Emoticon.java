@@ -3,6 +3,7 @@ package chatty.util.api;
 
 import chatty.Helper;
 import chatty.User;
+import chatty.util.ImageCache.ImageRequest;
 import chatty.util.ImageCache.ImageResult;
 import chatty.util.StringUtil;
 import chatty.util.api.CachedImage.ImageType;
@@ -706,6 +707,20 @@ public class Emoticon {
         }
         return new Dimension(width, height);
     }
+
+    /**
+     * Get the size the image returned by
+     * {@link #getIcon(float, int, ImageType, CachedImageUser)} is expected to
+     * have with the given scaling, without loading the image.
+     *
+     * @param scaleFactor Scale Factor, default (no scaling) should be 1
+     * @param maxHeight Maximum height in pixels, default (no max height) should
+     * be 0
+     * @return The expected size
+     */
+    public Dimension getScaledSize(float scaleFactor, int maxHeight) {
+        return ImageRequest.getScaledSize(getDefaultSize(), scaleFactor, maxHeight);
+    }
     
     @Override
     public String toString() {
@@ -2,10 +2,9 @@
 package chatty.util.api;
 
 import chatty.util.MiscUtil;
+import chatty.util.Scheduler;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 /**
@@ -56,15 +55,9 @@ public class EmoticonManager2 {
     public EmoticonManager2(TwitchApiResultListener listener, Requests requests) {
         this.requests = requests;
         
-        Timer timer = new Timer("RequestEmotesets");
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                checkRequest();
-            }
-        },
-                REQUEST_CHECK_INTERVAL, REQUEST_CHECK_INTERVAL);
+        Scheduler.scheduleRepeating("RequestEmotesets",
+                REQUEST_CHECK_INTERVAL, REQUEST_CHECK_INTERVAL,
+                () -> checkRequest());
     }
     
     //-------------------
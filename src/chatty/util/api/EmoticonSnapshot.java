@@ -0,0 +1,337 @@
+
+package chatty.util.api;
+
+import chatty.util.api.Emoticon.SubType;
+import chatty.util.api.Emoticon.Type;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the parsed emotes of third-party emote sources (e.g. BTTV global or
+ * channel emotes) in a compact binary file, so they can be added right away
+ * when starting, before the actual request has finished.
+ *
+ * <p>
+ * Each update is stored with a checksum of its content. When a new update is
+ * received it is compared to the checksum of the last update that was added
+ * for the same source and key in this session (from the snapshot or a
+ * previous request), so an update that didn't change anything can be
+ * skipped.</p>
+ *
+ * <p>
+ * If no directory has been set, nothing is stored or loaded, but unchanged
+ * updates are still detected.</p>
+ *
+ * @author tduva
+ */
+public class EmoticonSnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(EmoticonSnapshot.class.getName());
+
+    /**
+     * Should be increased when the format changes, so that old files are
+     * ignored.
+     */
+    private static final int VERSION = 1;
+
+    private static final int MAGIC = 0x43454d53;
+
+    /**
+     * Snapshots older than this are not loaded (in milliseconds).
+     */
+    private static final long MAX_AGE = 30L*24*60*60*1000;
+
+    /**
+     * Key for global emotes.
+     */
+    public static final String GLOBAL = "$global$";
+
+    private static final Comparator<Emoticon> ORDER = Comparator
+            .comparing((Emoticon e) -> e.type)
+            .thenComparing(e -> e.code)
+            .thenComparing(e -> e.stringId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(e -> e.url, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private static Path directory;
+
+    /**
+     * Checksums of the updates added in this session, by source and key.
+     */
+    private static final Map<String, Long> applied = new HashMap<>();
+
+    /**
+     * Set the directory to store snapshots in.
+     *
+     * @param dir The directory, or null to not store anything
+     */
+    public static synchronized void setDirectory(Path dir) {
+        directory = dir;
+    }
+
+    /**
+     * Load the snapshot for the given source and key, if there is one and if
+     * no update has been added for it yet in this session.
+     *
+     * @param source The source, e.g. "bttv"
+     * @param key The key, e.g. the channel name or {@link #GLOBAL}
+     * @return The update, or null if none should be added
+     */
+    public static synchronized EmoticonUpdate load(String source, String key) {
+        String id = makeId(source, key);
+        if (directory == null || applied.containsKey(id)) {
+            return null;
+        }
+        Path file = getFile(id);
+        try {
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+            if (age > MAX_AGE) {
+                return null;
+            }
+        }
+        catch (IOException ex) {
+            // No snapshot yet
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring emote snapshot with different version: "+file);
+                return null;
+            }
+            long checksum = in.readLong();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            if (checksum(data) != checksum) {
+                LOGGER.warning("Invalid emote snapshot: "+file);
+                return null;
+            }
+            EmoticonUpdate update = read(new DataInputStream(new ByteArrayInputStream(data)));
+            applied.put(id, checksum);
+            LOGGER.info(String.format("Loaded emote snapshot %s (%d emotes)",
+                    id, update.emotesToAdd.size()));
+            return update;
+        }
+        catch (IOException | RuntimeException ex) {
+            LOGGER.warning("Error loading emote snapshot "+file+": "+ex);
+        }
+        return null;
+    }
+
+    /**
+     * Store the given update for the given source and key, unless it's the
+     * same as the update that was last added for it in this session.
+     *
+     * @param source The source, e.g. "bttv"
+     * @param key The key, e.g. the channel name or {@link #GLOBAL}
+     * @param update The update
+     * @return true if the update changed anything and should be added, false
+     * if it is the same as the last one
+     */
+    public static synchronized boolean store(String source, String key, EmoticonUpdate update) {
+        String id = makeId(source, key);
+        byte[] data;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(update, new DataOutputStream(bytes));
+            data = bytes.toByteArray();
+        }
+        catch (IOException ex) {
+            // Shouldn't happen when writing to memory
+            LOGGER.warning("Error creating emote snapshot "+id+": "+ex);
+            return true;
+        }
+        long checksum = checksum(data);
+        Long previous = applied.put(id, checksum);
+        if (previous != null && previous == checksum) {
+            // Only update the time, so the snapshot doesn't become too old
+            if (directory != null) {
+                touchFile(getFile(id));
+            }
+            return false;
+        }
+        if (directory != null) {
+            writeFile(getFile(id), checksum, data);
+        }
+        return true;
+    }
+
+    private static void writeFile(Path file, long checksum, byte[] data) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName()+".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                DataOutputStream dataOut = new DataOutputStream(out);
+                dataOut.writeInt(MAGIC);
+                dataOut.writeInt(VERSION);
+                dataOut.writeLong(checksum);
+                dataOut.writeInt(data.length);
+                dataOut.write(data);
+                dataOut.flush();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error writing emote snapshot "+file+": "+ex);
+        }
+    }
+
+    private static void touchFile(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException ex) {
+            // Not that important, the snapshot just may not be loaded anymore
+        }
+    }
+
+    private static String makeId(String source, String key) {
+        return source+"_"+(key == null ? GLOBAL : key);
+    }
+
+    private static Path getFile(String id) {
+        return directory.resolve(id.replaceAll("[^a-zA-Z0-9_-]", "_")+".bin");
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    //=========
+    // Format
+    //=========
+
+    static void write(EmoticonUpdate update, DataOutputStream out) throws IOException {
+        out.writeUTF(update.source.name());
+        writeString(out, update.typeToRemove != null ? update.typeToRemove.id : null);
+        writeString(out, update.subTypeToRemove != null ? update.subTypeToRemove.name() : null);
+        writeString(out, update.roomToRemove);
+        // Sort so that the same emotes always result in the same data
+        List<Emoticon> emotes = new ArrayList<>(update.emotesToAdd);
+        emotes.sort(ORDER);
+        out.writeInt(emotes.size());
+        for (Emoticon emote : emotes) {
+            writeEmote(out, emote);
+        }
+    }
+
+    static EmoticonUpdate read(DataInputStream in) throws IOException {
+        EmoticonUpdate.Source source = EmoticonUpdate.Source.valueOf(in.readUTF());
+        String typeToRemove = readString(in);
+        String subTypeToRemove = readString(in);
+        String roomToRemove = readString(in);
+        int count = in.readInt();
+        Set<Emoticon> emotes = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            emotes.add(readEmote(in));
+        }
+        EmoticonUpdate.Builder builder = new EmoticonUpdate.Builder(emotes);
+        builder.setSource(source);
+        builder.setTypeToRemove(typeToRemove != null ? Type.fromId(typeToRemove) : null);
+        builder.setSubTypeToRemove(subTypeToRemove != null ? SubType.valueOf(subTypeToRemove) : null);
+        builder.setRoomToRemove(roomToRemove);
+        return builder.build();
+    }
+
+    private static void writeEmote(DataOutputStream out, Emoticon emote) throws IOException {
+        out.writeUTF(emote.type.id);
+        out.writeUTF(emote.code);
+        writeString(out, emote.url);
+        writeString(out, emote.urlX2);
+        writeString(out, emote.subType != null ? emote.subType.name() : null);
+        writeString(out, emote.regex);
+        writeString(out, emote.emoteset);
+        writeString(out, emote.stringId);
+        writeString(out, emote.stringIdAlias);
+        writeString(out, emote.creator);
+        writeString(out, emote.getStream());
+        writeString(out, emote.getEmotesetInfo());
+        out.writeBoolean(emote.literal);
+        out.writeBoolean(emote.isAnimated());
+        out.writeInt(emote.getWidth());
+        out.writeInt(emote.getHeight());
+        writeStrings(out, emote.getStreamRestrictions());
+        writeStrings(out, emote.getInfos());
+    }
+
+    private static Emoticon readEmote(DataInputStream in) throws IOException {
+        Type type = Objects.requireNonNull(Type.fromId(in.readUTF()));
+        String code = in.readUTF();
+        Emoticon.Builder b = new Emoticon.Builder(type, code, readString(in));
+        b.setX2Url(readString(in));
+        String subType = readString(in);
+        if (subType != null) {
+            b.setSubType(SubType.valueOf(subType));
+        }
+        b.setRegex(readString(in));
+        b.setEmoteset(readString(in));
+        b.setStringId(readString(in));
+        b.setStringIdAlias(readString(in));
+        b.setCreator(readString(in));
+        b.setStream(readString(in));
+        b.setEmotesetInfo(readString(in));
+        b.setLiteral(in.readBoolean());
+        b.setAnimated(in.readBoolean());
+        b.setSize(in.readInt(), in.readInt());
+        int restrictions = in.readInt();
+        for (int i = 0; i < restrictions; i++) {
+            b.addStreamRestriction(in.readUTF());
+        }
+        int infos = in.readInt();
+        for (int i = 0; i < infos; i++) {
+            b.addInfo(in.readUTF());
+        }
+        return b.build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        if (in.readBoolean()) {
+            return in.readUTF();
+        }
+        return null;
+    }
+
+    /**
+     * Write the given Strings sorted (null is written as empty).
+     */
+    private static void writeStrings(DataOutputStream out, Set<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(0);
+            return;
+        }
+        List<String> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        out.writeInt(sorted.size());
+        for (String value : sorted) {
+            out.writeUTF(value);
+        }
+    }
+
+}
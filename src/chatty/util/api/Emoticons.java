@@ -187,6 +187,11 @@ public class Emoticons {
     
     private final IgnoredEmotes ignoredEmotes = new IgnoredEmotes();
     
+    /**
+     * Increased when the usable emotes may have changed.
+     */
+    private int usableEmotesVersion;
+    
     private final EmoticonFavorites favorites = new EmoticonFavorites();
     
     private static final int DEFAULT_IMAGE_EXPIRE_MINUTES = 4*60;
@@ -256,6 +261,7 @@ public class Emoticons {
         if (update.typeToRemove == null) {
             return;
         }
+        usableEmotesVersion++;
         int removedCount = 0;
         if (update.typeToRemove == Emoticon.Type.FFZ
                 || update.typeToRemove == Emoticon.Type.BTTV
@@ -379,6 +385,7 @@ public class Emoticons {
                 globalTwitchEmotes.size(),
                 otherGlobalEmotes.size()));
         findFavorites();
+        usableEmotesVersion++;
     }
     
     /**
@@ -588,6 +595,16 @@ public class Emoticons {
         return usableGlobalEmotes.getOther();
     }
     
+    /**
+     * Changes when the usable emotes may have changed, so data based on them
+     * can be updated.
+     * 
+     * @return 
+     */
+    public int getUsableEmotesVersion() {
+        return usableEmotesVersion;
+    }
+    
     public Collection<Emoticon> getUsableEmotesByStream(String stream) {
         Collection<Emoticon> names = usableStreamEmotes.get(stream);
         return names == null ? EMPTY_SET : names;
@@ -601,6 +618,7 @@ public class Emoticons {
      * @param allEmotesets 
      */
     public void updateLocalEmotes(Set<String> emotesets, Set<String> allEmotesets) {
+        usableEmotesVersion++;
         /**
          * Global emotes use the "localEmotesets", which should more likely be
          * up-to-date in regards to non-channel-specific emotesets.
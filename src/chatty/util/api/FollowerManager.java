@@ -8,6 +8,7 @@ import chatty.util.api.Follower.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -47,11 +48,14 @@ public class FollowerManager {
     
     /**
      * Saves followers by name. Used to check if the same follower was already
-     * seen as following before and whether it was with the same time.
+     * seen as following before and whether it was with the same time. Limited
+     * to {@link #MAX_ALREADY_FOLLOWED} per stream (removing the ones that
+     * haven't been seen for the longest time).
      */
-    // TODO: Clear cache somehow, when too many elements?
     private final Map<String, Map<String, Follower>> alreadyFollowed = new HashMap<>();
     
+    private static final int MAX_ALREADY_FOLLOWED = 5000;
+    
     /**
      * Saves request errors per stream, so requests can be delayed if errors
      * occur (e.g. 404).
@@ -378,7 +382,13 @@ public class FollowerManager {
         stream = StringUtil.toLowerCase(stream);
         // Add map for this stream if not already added
         if (!alreadyFollowed.containsKey(stream)) {
-            alreadyFollowed.put(stream, new HashMap<>());
+            alreadyFollowed.put(stream, new LinkedHashMap<String, Follower>(16, 0.75f, true) {
+                
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Follower> eldest) {
+                    return size() > MAX_ALREADY_FOLLOWED;
+                }
+            });
         }
         // Check if this follower is already present
         Map<String,Follower> entries = alreadyFollowed.get(stream);
@@ -7,6 +7,7 @@ import chatty.Room;
 import chatty.lang.Language;
 import chatty.util.DateTime;
 import chatty.util.Debugging;
+import chatty.util.HttpService;
 import chatty.util.JSONUtil;
 import chatty.util.StringUtil;
 import chatty.util.api.BlockedTermsManager.BlockedTerm;
@@ -31,8 +32,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.json.simple.JSONObject;
@@ -57,13 +56,11 @@ public class Requests {
     
     private static final Logger LOGGER = Logger.getLogger(Requests.class.getName());
     
-    private final ExecutorService executor;
     private final TwitchApi api;
     private final QueuedApi newApi;
     private final TwitchApiResultListener listener;
     
     public Requests(TwitchApi api, TwitchApiResultListener listener) {
-        executor = Executors.newCachedThreadPool();
         this.api = api;
         this.listener = listener;
         this.newApi = new QueuedApi();
@@ -833,7 +830,7 @@ public class Requests {
                 listener.result(new RequestResult(result, responseCode));
             }
         });
-        executor.execute(request);
+        HttpService.execute(request.getRequestUrl(), request);
     }
     
     public interface RequestResultListener {
@@ -0,0 +1,609 @@
+
+package chatty.util.api;
+
+import chatty.util.Scheduler;
+import chatty.util.TaskRunner;
+import chatty.util.api.StreamInfo.StreamType;
+import chatty.util.api.StreamTagManager.StreamTag;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the stream info history (viewers, title, game etc.) of each stream
+ * in a file, so it's still available after a restart and doesn't all have to
+ * be kept in memory.
+ *
+ * <p>
+ * Each stream has it's own file that entries are appended to (in batches,
+ * shortly after they were added). The first entry written in a session
+ * contains all values, after that only the differences to the previous entry
+ * are written (time and viewercount as variable length numbers, other values
+ * only if they changed). Each entry is stored with it's length and a
+ * checksum, so damaged entries can be skipped, and anything incomplete at the
+ * end of a file is removed before appending to it. Once a day the files are
+ * rewritten without entries older than {@link #MAX_AGE}.</p>
+ *
+ * <p>
+ * If no directory has been set, nothing is stored or read.</p>
+ *
+ * @author tduva
+ */
+public class StreamHistoryStore {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamHistoryStore.class.getName());
+
+    /**
+     * Entries older than this are removed when compacting (in milliseconds).
+     */
+    private static final long MAX_AGE = 365L*24*60*60*1000;
+
+    private static final long COMPACT_DELAY = 24*60*60*1000;
+
+    private static final long WRITE_DELAY = 10*1000;
+
+    //--------------
+    // Entry types
+    //--------------
+    /**
+     * Online, absolute time and all values.
+     */
+    private static final int FULL = 1;
+
+    /**
+     * Online, differences to the previous online entry.
+     */
+    private static final int DELTA = 2;
+
+    /**
+     * Offline, absolute time.
+     */
+    private static final int OFFLINE_FULL = 3;
+
+    /**
+     * Offline, time difference to the previous entry.
+     */
+    private static final int OFFLINE_DELTA = 4;
+
+    /**
+     * Entries longer than this are considered invalid (in bytes).
+     */
+    private static final int MAX_ENTRY_LENGTH = 1024*1024;
+
+    //-------------------------
+    // Changed values (DELTA)
+    //-------------------------
+    private static final int CHANGED_STATUS = 1;
+    private static final int CHANGED_START = 2;
+    private static final int CHANGED_TAGS = 4;
+
+    private static volatile Path directory;
+
+    /**
+     * The last entry written for each stream in this session, which the next
+     * entry is based on.
+     */
+    private static final Map<String, StreamInfoHistoryItem> lastWritten = new HashMap<>();
+
+    /**
+     * Entries that haven't been written yet.
+     */
+    private static final Map<String, List<StreamInfoHistoryItem>> pending = new LinkedHashMap<>();
+
+    private static Scheduler.Task compactTask;
+
+    /**
+     * Set the directory to store the history in and start compacting the
+     * files regularly.
+     *
+     * @param dir The directory, or null to not store anything
+     */
+    public static synchronized void setDirectory(Path dir) {
+        directory = dir;
+        lastWritten.clear();
+        if (compactTask != null) {
+            compactTask.cancel();
+            compactTask = null;
+        }
+        if (dir != null) {
+            compactTask = Scheduler.scheduleRepeating("StreamHistory compact",
+                    10*60*1000, COMPACT_DELAY, () -> TaskRunner.execute(TaskRunner.Category.IO,
+                            "StreamHistory compact", () -> compactAll(System.currentTimeMillis() - MAX_AGE)));
+        }
+    }
+
+    public static boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Add an entry for the given stream. The entry is written to the file
+     * shortly after, together with other entries added in the meantime.
+     *
+     * @param stream The stream name
+     * @param item The entry, should be newer than the previously added one
+     */
+    public static void append(String stream, StreamInfoHistoryItem item) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.computeIfAbsent(stream, s -> new ArrayList<>()).add(item);
+        }
+        Scheduler.scheduleCoalesced("StreamHistory write", pending, WRITE_DELAY,
+                () -> TaskRunner.execute(TaskRunner.Category.IO, "StreamHistory", StreamHistoryStore::flush));
+    }
+
+    /**
+     * Write all pending entries to the files.
+     */
+    public static synchronized void flush() {
+        Map<String, List<StreamInfoHistoryItem>> toWrite;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            toWrite = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+        Path dir = directory;
+        if (dir == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error creating stream history directory: "+ex);
+            return;
+        }
+        for (Map.Entry<String, List<StreamInfoHistoryItem>> entry : toWrite.entrySet()) {
+            String stream = entry.getKey();
+            Path file = getFile(dir, stream);
+            try {
+                if (!lastWritten.containsKey(stream)) {
+                    // First write to this file in this session
+                    removeIncompleteEntries(file);
+                }
+            }
+            catch (IOException ex) {
+                LOGGER.warning("Error checking stream history "+file+": "+ex);
+                continue;
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+                StreamInfoHistoryItem prev = lastWritten.get(stream);
+                for (StreamInfoHistoryItem item : entry.getValue()) {
+                    writeEntry(out, prev, item);
+                    prev = item;
+                }
+                lastWritten.put(stream, prev);
+            }
+            catch (IOException ex) {
+                // Remove anything incomplete and write a full entry next time
+                lastWritten.remove(stream);
+                LOGGER.warning("Error writing stream history "+file+": "+ex);
+            }
+        }
+    }
+
+    /**
+     * Read the entries of the given stream within the given time range.
+     *
+     * <p>
+     * Since entries are based on the previous one, the file is always decoded
+     * from the start, so this takes time proportional to the file size (all
+     * entries up to {@link #MAX_AGE} old), no matter the range. The file is
+     * read without holding the lock, so writing and compacting aren't held
+     * up. An entry that is just being written is ignored, since it's still
+     * incomplete, and compacting replaces the file instead of changing it.</p>
+     *
+     * @param stream The stream name
+     * @param from The start of the range (inclusive, milliseconds)
+     * @param to The end of the range (inclusive, milliseconds)
+     * @return The entries, ordered by time (empty if none or not enabled)
+     */
+    public static LinkedHashMap<Long, StreamInfoHistoryItem> read(String stream, long from, long to) {
+        LinkedHashMap<Long, StreamInfoHistoryItem> result = new LinkedHashMap<>();
+        Path dir = directory;
+        if (dir == null) {
+            return result;
+        }
+        flush();
+        Path file = getFile(dir, stream);
+        if (!Files.exists(file)) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            readEntries(in, from, to, item -> result.put(item.getTime(), item));
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error reading stream history "+file+": "+ex);
+        }
+        return result;
+    }
+
+    /**
+     * Rewrite all files without entries older than the given time, removing
+     * files that don't contain any entries anymore.
+     *
+     * @param keepFrom Entries before this time are removed
+     */
+    static synchronized void compactAll(long keepFrom) {
+        Path dir = directory;
+        if (dir == null || !Files.isDirectory(dir)) {
+            return;
+        }
+        flush();
+        // Next entries will be written as full entries
+        lastWritten.clear();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.bin")) {
+            for (Path file : files) {
+                compact(file, keepFrom);
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error compacting stream history: "+ex);
+        }
+    }
+
+    private static void compact(Path file, long keepFrom) {
+        try {
+            List<StreamInfoHistoryItem> items = new ArrayList<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                readEntries(in, keepFrom, Long.MAX_VALUE, items::add);
+            }
+            if (items.isEmpty()) {
+                Files.delete(file);
+                return;
+            }
+            Path temp = file.resolveSibling(file.getFileName()+".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                StreamInfoHistoryItem prev = null;
+                for (StreamInfoHistoryItem item : items) {
+                    writeEntry(out, prev, item);
+                    prev = item;
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error compacting stream history "+file+": "+ex);
+        }
+    }
+
+    /**
+     * Cut off anything after the last complete entry, so that new entries
+     * aren't appended to an incomplete entry (e.g. if writing was interrupted
+     * by a crash).
+     *
+     * @param file The file
+     * @throws IOException
+     */
+    private static void removeIncompleteEntries(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long validLength;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            validLength = readEntries(in, Long.MAX_VALUE, Long.MAX_VALUE, item -> {});
+        }
+        if (validLength < Files.size(file)) {
+            LOGGER.warning("Removing incomplete data from stream history "+file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    private static Path getFile(Path dir, String stream) {
+        return dir.resolve(stream.replaceAll("[^a-zA-Z0-9_-]", "_")+".bin");
+    }
+
+    //=========
+    // Format
+    //=========
+
+    /**
+     * Write an entry, based on the previous entry. The entry is prefixed with
+     * it's length and followed by a checksum, so that damaged entries can be
+     * detected and skipped when reading.
+     *
+     * @param out Where to write to
+     * @param prev The previous entry in the same file, or null to write a
+     * full entry
+     * @param item The entry to write
+     * @throws IOException
+     */
+    static void writeEntry(DataOutputStream out, StreamInfoHistoryItem prev, StreamInfoHistoryItem item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeEntryData(new DataOutputStream(bytes), prev, item);
+        byte[] data = bytes.toByteArray();
+        writeVarLong(out, data.length);
+        out.write(data);
+        out.writeInt(checksum(data));
+    }
+
+    private static void writeEntryData(DataOutputStream out, StreamInfoHistoryItem prev, StreamInfoHistoryItem item) throws IOException {
+        boolean delta = prev != null && item.getTime() >= prev.getTime();
+        if (!item.isOnline()) {
+            if (delta) {
+                out.writeByte(OFFLINE_DELTA);
+                writeVarLong(out, item.getTime() - prev.getTime());
+            }
+            else {
+                out.writeByte(OFFLINE_FULL);
+                out.writeLong(item.getTime());
+            }
+        }
+        else if (delta && prev.isOnline()) {
+            out.writeByte(DELTA);
+            writeVarLong(out, item.getTime() - prev.getTime());
+            writeVarLong(out, zigZag(item.getViewers() - prev.getViewers()));
+            int changed = 0;
+            if (!Objects.equals(item.getStatus(), prev.getStatus())
+                    || !Objects.equals(item.getGame(), prev.getGame())
+                    || item.getStreamType() != prev.getStreamType()) {
+                changed |= CHANGED_STATUS;
+            }
+            if (item.getStreamStartTime() != prev.getStreamStartTime()
+                    || item.getStreamStartTimeWithPicnic() != prev.getStreamStartTimeWithPicnic()) {
+                changed |= CHANGED_START;
+            }
+            if (!Objects.equals(item.getCommunities(), prev.getCommunities())) {
+                changed |= CHANGED_TAGS;
+            }
+            out.writeByte(changed);
+            writeValues(out, item, changed);
+        }
+        else {
+            // Time is always absolute, in case the previous entry was offline
+            out.writeByte(FULL);
+            out.writeLong(item.getTime());
+            writeVarLong(out, zigZag(item.getViewers()));
+            writeValues(out, item, CHANGED_STATUS | CHANGED_START | CHANGED_TAGS);
+        }
+    }
+
+    private static void writeValues(DataOutputStream out, StreamInfoHistoryItem item, int changed) throws IOException {
+        if ((changed & CHANGED_STATUS) != 0) {
+            writeString(out, item.getStatus());
+            writeString(out, item.getGame());
+            writeString(out, item.getStreamType() != null ? item.getStreamType().name() : null);
+        }
+        if ((changed & CHANGED_START) != 0) {
+            out.writeLong(item.getStreamStartTime());
+            out.writeLong(item.getStreamStartTimeWithPicnic());
+        }
+        if ((changed & CHANGED_TAGS) != 0) {
+            List<StreamTag> tags = item.getCommunities();
+            if (tags == null) {
+                writeVarLong(out, 0);
+            }
+            else {
+                writeVarLong(out, tags.size() + 1);
+                for (StreamTag tag : tags) {
+                    writeString(out, tag != null ? tag.getId() : null);
+                    writeString(out, tag != null ? tag.getDisplayName() : null);
+                }
+            }
+        }
+    }
+
+    interface EntryListener {
+        void entry(StreamInfoHistoryItem item);
+    }
+
+    /**
+     * Read all entries, giving the ones in the given range to the listener.
+     *
+     * <p>
+     * An entry with a wrong checksum is skipped, as well as following entries
+     * that depend on it, until the next entry with absolute values. An
+     * incomplete entry at the end (e.g. if writing was interrupted) or an
+     * invalid length ends reading.</p>
+     *
+     * @return The length of the data up to the end of the last complete
+     * entry, which is where new entries can be appended
+     */
+    static long readEntries(DataInputStream in, long from, long to, EntryListener listener) throws IOException {
+        ReadState state = new ReadState();
+        long validLength = 0;
+        boolean skipDeltas = false;
+        while (true) {
+            byte[] data;
+            int checksum;
+            long length;
+            try {
+                length = readVarLong(in);
+                if (length <= 0 || length > MAX_ENTRY_LENGTH) {
+                    LOGGER.warning("Invalid stream history entry length: "+length);
+                    return validLength;
+                }
+                data = new byte[(int) length];
+                in.readFully(data);
+                checksum = in.readInt();
+            }
+            catch (EOFException ex) {
+                return validLength;
+            }
+            catch (IOException ex) {
+                // Invalid length
+                LOGGER.warning("Invalid stream history entry: "+ex);
+                return validLength;
+            }
+            validLength += varLongLength(length) + length + 4;
+            StreamInfoHistoryItem item = null;
+            if (checksum == checksum(data)) {
+                int entryType = data[0];
+                if (!skipDeltas || entryType == FULL || entryType == OFFLINE_FULL) {
+                    try {
+                        item = state.read(new DataInputStream(new ByteArrayInputStream(data)));
+                        skipDeltas = false;
+                    }
+                    catch (IOException | IllegalArgumentException ex) {
+                        LOGGER.warning("Invalid stream history entry: "+ex);
+                    }
+                }
+            }
+            if (item == null) {
+                // Following entries may depend on this one
+                skipDeltas = true;
+            }
+            else if (item.getTime() >= from && item.getTime() <= to) {
+                listener.entry(item);
+            }
+        }
+    }
+
+    /**
+     * The values of the previous entry, that the next entry may be based on.
+     */
+    private static class ReadState {
+
+        private long time;
+        private int viewers;
+        private String status;
+        private String game;
+        private StreamType type;
+        private long start = -1;
+        private long startWithPicnic = -1;
+        private List<StreamTag> tags;
+
+        StreamInfoHistoryItem read(DataInputStream in) throws IOException {
+            int entryType = in.readUnsignedByte();
+            switch (entryType) {
+                case OFFLINE_FULL:
+                case OFFLINE_DELTA:
+                    time = entryType == OFFLINE_FULL ? in.readLong() : time + readVarLong(in);
+                    return new StreamInfoHistoryItem(time);
+                case FULL:
+                case DELTA:
+                    int changed;
+                    if (entryType == FULL) {
+                        time = in.readLong();
+                        viewers = (int) unZigZag(readVarLong(in));
+                        changed = CHANGED_STATUS | CHANGED_START | CHANGED_TAGS;
+                    }
+                    else {
+                        time += readVarLong(in);
+                        viewers += (int) unZigZag(readVarLong(in));
+                        changed = in.readUnsignedByte();
+                    }
+                    if ((changed & CHANGED_STATUS) != 0) {
+                        status = readString(in);
+                        game = readString(in);
+                        String typeName = readString(in);
+                        type = typeName != null ? StreamType.valueOf(typeName) : null;
+                    }
+                    if ((changed & CHANGED_START) != 0) {
+                        start = in.readLong();
+                        startWithPicnic = in.readLong();
+                    }
+                    if ((changed & CHANGED_TAGS) != 0) {
+                        tags = readTags(in);
+                    }
+                    return new StreamInfoHistoryItem(time, viewers, status, game, type, tags, start, startWithPicnic);
+                default:
+                    throw new IOException("Invalid entry type: "+entryType);
+            }
+        }
+
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    private static int varLongLength(long value) {
+        int result = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            result++;
+        }
+        return result;
+    }
+
+    private static List<StreamTag> readTags(DataInputStream in) throws IOException {
+        int count = (int) readVarLong(in) - 1;
+        if (count < 0) {
+            return null;
+        }
+        List<StreamTag> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(new StreamTag(readString(in), readString(in)));
+        }
+        return result;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        if (in.readBoolean()) {
+            return in.readUTF();
+        }
+        return null;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Write a non-negative number with 7 bits per byte, so small numbers
+     * (like most time and viewercount differences) only take one or two
+     * bytes.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        while (shift < 64) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        throw new IOException("Invalid number");
+    }
+
+}
@@ -7,6 +7,7 @@ import chatty.util.ElapsedTime;
 import chatty.util.StringUtil;
 import chatty.util.api.StreamTagManager.StreamTag;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -92,6 +93,8 @@ public class StreamInfo {
     private static final int VIEWERSTATS_DELAY = 30*60*1000;
     // How long a stats range can be at most
     private static final int VIEWERSTATS_MAX_LENGTH = 35*60*1000;
+    // How long history is kept in memory, if it's also stored in files
+    public static final long HISTORY_MEMORY_LENGTH = 24*60*60*1000;
     
     private static final int RECHECK_OFFLINE_DELAY = 20*1000;
     
@@ -748,7 +751,18 @@ public class StreamInfo {
     private void addHistoryItem(Long time, StreamInfoHistoryItem item) {
         synchronized(history) {
             history.put(time, item);
+            if (StreamHistoryStore.isEnabled()) {
+                /**
+                 * Older entries can be read from the store when needed, so
+                 * only keep recent ones in memory.
+                 */
+                Iterator<Long> it = history.keySet().iterator();
+                while (it.hasNext() && time - it.next() > HISTORY_MEMORY_LENGTH) {
+                    it.remove();
+                }
+            }
         }
+        StreamHistoryStore.append(stream, item);
     }
     
     public LinkedHashMap<Long,StreamInfoHistoryItem> getHistory() {
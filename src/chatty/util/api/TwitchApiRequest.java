@@ -2,6 +2,7 @@
 package chatty.util.api;
 
 import chatty.Chatty;
+import chatty.util.HttpService;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
@@ -99,6 +100,10 @@ public class TwitchApiRequest implements Runnable {
     public void setOrigin(TwitchApiRequestResult origin) {
         this.origin = origin;
     }
+    
+    public String getRequestUrl() {
+        return url;
+    }
 
     @Override
     public void run() {
@@ -128,6 +133,8 @@ public class TwitchApiRequest implements Runnable {
         Charset charset = Charset.forName("UTF-8");
         URL url;
         HttpURLConnection connection = null;
+        long start = System.nanoTime();
+        boolean failed = true;
 
         try {
             url = new URL(targetUrl);
@@ -177,7 +184,8 @@ public class TwitchApiRequest implements Runnable {
                     response.append(line);
                 }
             }
-            
+            failed = false;
+            HttpService.record(targetUrl, start, response.length(), false);
             return response.toString();
         } catch (SocketTimeoutException ex) {
             error = ex.toString();
@@ -186,13 +194,23 @@ public class TwitchApiRequest implements Runnable {
             error = ex.toString();
             return null;
         } finally {
+            if (failed) {
+                HttpService.record(targetUrl, start, 0, true);
+            }
             if (connection != null) {
                 try {
                     responseCode = connection.getResponseCode();
                 } catch (IOException ex) {
 //                    LOGGER.warning("IOException2: " + ex);
                 }
-                connection.disconnect();
+                if (failed) {
+                    /**
+                     * Only disconnect on error, since after reading and
+                     * closing the input the connection can be kept alive and
+                     * reused.
+                     */
+                    connection.disconnect();
+                }
             }
         }
     }
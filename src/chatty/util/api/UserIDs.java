@@ -2,6 +2,8 @@
 package chatty.util.api;
 
 import chatty.Helper;
+import chatty.util.DiskCache;
+import chatty.util.Scheduler;
 import chatty.util.StringUtil;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -11,8 +13,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -30,6 +31,12 @@ public class UserIDs {
     private static final long REQUEST_DELAY = 5;
     private static final long ERROR_PENALTY = 30;
     
+    /**
+     * How long to keep ids when stored (a name could be used by a different
+     * account after a while).
+     */
+    private static final long CACHE_TIME = TimeUnit.DAYS.toMillis(14);
+    
     private final Data data = new Data();
     private final Collection<Request> requests = new LinkedList<>();
     private final Set<String> requestPending = new HashSet<>();
@@ -40,14 +47,9 @@ public class UserIDs {
     
     public UserIDs(TwitchApi api) {
         this.api = api;
-        Timer checkPending = new Timer("UserIDPending", true);
-        checkPending.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                checkRequest();
-            }
-        }, CHECK_PENDING_DELAY, CHECK_PENDING_DELAY);
+        Scheduler.scheduleRepeating("UserIDPending",
+                CHECK_PENDING_DELAY, CHECK_PENDING_DELAY,
+                () -> checkRequest());
     }
     
     /**
@@ -401,6 +403,18 @@ public class UserIDs {
         
         private final Map<String, Entry> data = new HashMap<>();
         
+        /**
+         * Found ids are stored, so they don't have to be requested again
+         * after a restart.
+         */
+        private final DiskCache store = DiskCache.open("userids", 50000);
+        
+        Data() {
+            for (Map.Entry<String, String> entry : store.getAll().entrySet()) {
+                data.put(entry.getKey(), new Entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        
         public synchronized void put(String name, Entry entry) {
             data.put(name, entry);
         }
@@ -416,6 +430,7 @@ public class UserIDs {
         public synchronized boolean setId(String name, String id) {
             if (!data.containsKey(name) || get(name).id == null) {
                 data.put(name, new Entry(name, id));
+                store.put(name, id, CACHE_TIME);
                 return true;
             }
             return false;
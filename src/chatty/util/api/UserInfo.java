@@ -4,8 +4,10 @@ package chatty.util.api;
 import chatty.util.DateTime;
 import chatty.util.JSONUtil;
 import chatty.util.StringUtil;
+import java.time.Instant;
 import java.util.logging.Logger;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 
 /**
  *
@@ -53,4 +55,39 @@ public class UserInfo {
         return null;
     }
     
+    /**
+     * Turn into JSON, in the same format as returned by the API, so it can be
+     * read with {@link #create(JSONObject)}.
+     * 
+     * @return The JSON String
+     */
+    @SuppressWarnings("unchecked")
+    public String toJSON() {
+        JSONObject data = new JSONObject();
+        data.put("id", id);
+        data.put("login", login);
+        data.put("display_name", displayName);
+        data.put("broadcaster_type", broadcasterType);
+        data.put("description", description);
+        data.put("profile_image_url", profileImageUrl);
+        data.put("created_at", Instant.ofEpochMilli(createdAt).toString());
+        data.put("view_count", views);
+        return data.toJSONString();
+    }
+    
+    /**
+     * Parse JSON created with {@link #toJSON()}.
+     * 
+     * @param json
+     * @return The UserInfo, or null if the JSON was invalid
+     */
+    public static UserInfo fromJSON(String json) {
+        try {
+            return create((JSONObject) new JSONParser().parse(json));
+        }
+        catch (Exception ex) {
+            return null;
+        }
+    }
+    
 }
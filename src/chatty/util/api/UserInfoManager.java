@@ -2,12 +2,14 @@
 package chatty.util.api;
 
 import chatty.util.CachedBulkManager;
+import chatty.util.DiskCache;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 import org.json.simple.JSONArray;
@@ -22,6 +24,11 @@ public class UserInfoManager {
     
     private static final Logger LOGGER = Logger.getLogger(UserInfoManager.class.getName());
 
+    /**
+     * How long to keep user info when stored.
+     */
+    private static final long CACHE_TIME = TimeUnit.DAYS.toMillis(1);
+
     private final CachedBulkManager<String, UserInfo> perLogin;
     
     public UserInfoManager(TwitchApi api) {
@@ -34,6 +41,9 @@ public class UserInfoManager {
             }
             
         }, CachedBulkManager.NONE);
+        perLogin.setCacheLimits(5000, CACHE_TIME);
+        perLogin.setStore(DiskCache.open("userinfo", 5000).asStore(
+                UserInfo::toJSON, UserInfo::fromJSON, CACHE_TIME));
     }
     
     public UserInfo getCachedOnly(String login) {
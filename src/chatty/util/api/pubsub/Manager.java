@@ -3,20 +3,27 @@ package chatty.util.api.pubsub;
 
 import chatty.Chatty;
 import chatty.gui.components.eventlog.EventLog;
+import chatty.util.DebugTap;
 import chatty.util.Debugging;
 import chatty.util.StringUtil;
 import chatty.util.api.TwitchApi;
 import chatty.util.jws.JWSClient;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -39,6 +46,36 @@ public class Manager {
     
     private final Set<Topic> pendingTopics = Collections.synchronizedSet(new HashSet<Topic>());
     
+    /**
+     * How long messages for the same channel are collected before they are
+     * given to the listener together (in milliseconds). During e.g. mass bans
+     * this reduces the number of separate updates.
+     */
+    private static final long BATCH_DELAY = 50;
+    
+    /**
+     * Key for collecting messages without a topic.
+     */
+    private static final String NO_TOPIC = "";
+    
+    /**
+     * Messages waiting to be given to the listener, by channel id. Only
+     * accessed in the delivery thread.
+     */
+    private final Map<String, List<Message>> pendingMessages = new HashMap<>();
+    
+    /**
+     * Parses messages and gives them to the listener, always in the same
+     * thread, so that messages are handled one after another in the order they
+     * were received (even if handling a batch takes longer than the batch
+     * delay).
+     */
+    private final ScheduledExecutorService delivery = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "PubSubMessages");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
     private volatile String token;
     private volatile String localUserId;
     private volatile String localUsername;
@@ -55,37 +92,17 @@ public class Manager {
                 
                 @Override
                 public void handleReceived(int id, String received) {
-                    listener.info(String.format(Locale.ROOT, "[%d(%d)/%d(%d)]--> %s",
-                            id,
-                            c.getNumTopics(id),
-                            c.getNumConnections(),
-                            c.getNumTopics(),
-                            StringUtil.trim(received)));
-                    Message message = Message.fromJson(received, userIds);
-                    if (message != null) {
-                        if (message.data instanceof ModeratorActionData) {
-                            ModeratorActionData data = (ModeratorActionData) message.data;
-                            if (data.type == ModeratorActionData.Type.UNMODDED) {
-                                unlistenModLog(data.stream);
-                            }
-                        }
-                        if (message.type.equals("MESSAGE")) {
-                            listener.messageReceived(message);
-                        }
-                        if (message.error != null && !message.error.isEmpty()) {
-                            LOGGER.warning("[PubSub]["+id+"] Errror: " + message);
-                        }
+                    if (DebugTap.PUBSUB.isActive()) {
+                        DebugTap.PUBSUB.add(debugPrefix(id, "-->"), StringUtil.trim(received));
                     }
+                    received(id, received);
                 }
                 
                 @Override
                 public void handleSent(int id, String sent) {
-                    listener.info(String.format(Locale.ROOT, "[%d(%d)/%d(%d)]<-- %s",
-                            id,
-                            c.getNumTopics(id),
-                            c.getNumConnections(),
-                            c.getNumTopics(),
-                            Helper.removeToken(token, sent)));
+                    if (DebugTap.PUBSUB.isActive()) {
+                        DebugTap.PUBSUB.add(debugPrefix(id, "<--"), Helper.removeToken(token, sent));
+                    }
                 }
                 
                 @Override
@@ -105,6 +122,82 @@ public class Manager {
         }
     }
     
+    /**
+     * Parse and handle a received message in the delivery thread, so that the
+     * connection thread isn't held up and messages stay in order.
+     * 
+     * @param id The connection id
+     * @param received The raw received text
+     */
+    void received(int id, String received) {
+        deliver(() -> {
+            Message message = Message.fromJson(received, userIds);
+            if (message != null) {
+                if (message.data instanceof ModeratorActionData) {
+                    ModeratorActionData data = (ModeratorActionData) message.data;
+                    if (data.type == ModeratorActionData.Type.UNMODDED) {
+                        unlistenModLog(data.stream);
+                    }
+                }
+                if (message.type.equals("MESSAGE")) {
+                    addMessage(message);
+                }
+                if (message.error != null && !message.error.isEmpty()) {
+                    LOGGER.warning("[PubSub]["+id+"] Errror: " + message);
+                }
+            }
+        }, 0);
+    }
+    
+    /**
+     * Collect the message to be given to the listener together with other
+     * messages for the same channel received shortly after. Messages without a
+     * topic are collected together as well, so they are not given to the
+     * listener before topic messages received earlier.
+     * 
+     * Only called in the delivery thread.
+     * 
+     * @param message The message
+     */
+    private void addMessage(Message message) {
+        String key = NO_TOPIC;
+        if (message.data != null && message.data.topic != null) {
+            // The channel id is the last part of the topic
+            String topic = message.data.topic;
+            key = topic.substring(topic.lastIndexOf('.') + 1);
+        }
+        List<Message> pending = pendingMessages.get(key);
+        if (pending == null) {
+            String batchKey = key;
+            pending = new ArrayList<>();
+            pendingMessages.put(key, pending);
+            deliver(() -> {
+                listener.messagesReceived(pendingMessages.remove(batchKey));
+            }, BATCH_DELAY);
+        }
+        pending.add(message);
+    }
+    
+    private void deliver(Runnable task, long delay) {
+        delivery.schedule(() -> {
+            try {
+                task.run();
+            }
+            catch (Throwable ex) {
+                LOGGER.log(Level.WARNING, "[PubSub] Error handling messages", ex);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private String debugPrefix(int id, String direction) {
+        return String.format(Locale.ROOT, "[%d(%d)/%d(%d)]%s ",
+                id,
+                c.getNumTopics(id),
+                c.getNumConnections(),
+                c.getNumTopics(),
+                direction);
+    }
+    
     /**
      * Only for testing. May cause issues.
      * 
@@ -1,6 +1,7 @@
 
 package chatty.util.api.pubsub;
 
+import chatty.util.Scheduler;
 import chatty.util.jws.JWSClient;
 import chatty.util.jws.MessageHandler;
 import java.net.URI;
@@ -11,8 +12,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * An implementation that is able to listen and unlisten to topics and do some
@@ -27,7 +26,8 @@ public class PubSub extends JWSClient {
     private final MessageHandler handler;
     private final Set<String> topics;
     
-    private volatile Timer pingTimer;
+    private volatile boolean pinging;
+    private volatile Scheduler.Task pingTask;
     private volatile String token;
     
     public PubSub(URI server, MessageHandler handler) {
@@ -133,8 +133,8 @@ public class PubSub extends JWSClient {
     }
     
     private void startPinging() {
-        if (pingTimer == null) {
-            pingTimer = new Timer("PubSubPing", true);
+        if (!pinging) {
+            pinging = true;
             schedulePing();
         }
     }
@@ -143,28 +143,23 @@ public class PubSub extends JWSClient {
      * Perform a ping with some delay, while scheduling another ping.
      */
     private void schedulePing() {
-        pingTimer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                sendPing();
-                schedulePing();
-                // Check on a delay if the ping received a response
-                pingTimer.schedule(new TimerTask() {
-
-                    @Override
-                    public void run() {
-                        if (getLastReceivedSecondsAgo() > 15) {
-                            /**
-                             * Checking 10s after PING was send if there was a
-                             * message received in the last 15s.
-                             */
-                            forceReconnect();
-                        }
-                    }
-                }, 10*1000);
+        pingTask = Scheduler.schedule("PubSubPing", 280*1000+(new Random()).nextInt(5000), () -> { // Random Jitter
+            if (!pinging) {
+                return;
             }
-        }, 280*1000+(new Random()).nextInt(5000)); // Random Jitter
+            sendPing();
+            schedulePing();
+            // Check on a delay if the ping received a response
+            Scheduler.schedule("PubSubPingCheck", 10*1000, () -> {
+                if (pinging && getLastReceivedSecondsAgo() > 15) {
+                    /**
+                     * Checking 10s after PING was send if there was a message
+                     * received in the last 15s.
+                     */
+                    forceReconnect();
+                }
+            });
+        });
     }
     
     public void sendPing() {
@@ -174,8 +169,10 @@ public class PubSub extends JWSClient {
     }
     
     public void cleanup() {
-        if (pingTimer != null) {
-            pingTimer.cancel();
+        pinging = false;
+        Scheduler.Task task = pingTask;
+        if (task != null) {
+            task.cancel();
         }
     }
     
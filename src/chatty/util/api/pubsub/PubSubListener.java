@@ -1,11 +1,23 @@
-
 package chatty.util.api.pubsub;
 
+import java.util.List;
+
 /**
  *
  * @author tduva
  */
 public interface PubSubListener {
     public void messageReceived(Message message);
-    public void info(String info);
+    
+    /**
+     * Several messages received for the same channel within a short time, in
+     * the order they were received.
+     * 
+     * @param messages The messages
+     */
+    public default void messagesReceived(List<Message> messages) {
+        for (Message message : messages) {
+            messageReceived(message);
+        }
+    }
 }
@@ -2,11 +2,10 @@
 package chatty.util.api.queue;
 
 import chatty.util.Debugging;
+import chatty.util.HttpService;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
@@ -49,7 +48,6 @@ public class QueuedApi {
     private final Semaphore activeRequests = new Semaphore(10);
     
     public QueuedApi() {
-        ExecutorService executor = Executors.newCachedThreadPool();
         queue = new PriorityBlockingQueue<>();
         
         Thread thread = new Thread(new Runnable() {
@@ -68,7 +66,7 @@ public class QueuedApi {
                         //System.out.println("Entry taken: "+entry.request+" Permits: "+activeRequests.availablePermits());
                         entry.request.setResultListener((result, responseCode, errorResult, ratelimitRemaining) -> {
                             /**
-                             * Executed in an executor thread.
+                             * Executed in a HttpService thread.
                              */
                             // Get some data from the response and forward to external listener
                             QueuedApi.this.ratelimitRemaining = ratelimitRemaining;
@@ -81,7 +79,7 @@ public class QueuedApi {
                             removePending(entry);
                             //System.out.println("Entry done: "+entry.request+" Permits: "+activeRequests.availablePermits());
                         });
-                        executor.execute(entry.request);
+                        HttpService.execute(entry.request.getUrl(), entry.request);
                         
                     } catch (InterruptedException ex) {
                         // To stop the thread (currently not used)
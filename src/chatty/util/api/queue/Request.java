@@ -2,6 +2,7 @@
 package chatty.util.api.queue;
 
 import chatty.Chatty;
+import chatty.util.HttpService;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -73,6 +74,10 @@ public class Request implements Runnable {
         this.url = url;
     }
     
+    public String getUrl() {
+        return url;
+    }
+    
     public void setToken(String token) {
         this.token = token;
     }
@@ -132,6 +137,7 @@ public class Request implements Runnable {
                 requestMethod,
                 token != null ? " (auth) " : "",
                 url));
+        long start = System.nanoTime();
         
         RequestConfig config = RequestConfig.custom()
                 .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT))
@@ -183,7 +189,9 @@ public class Request implements Runnable {
                 responseEncoding != null ? ", " + responseEncoding : "",
                 url,
                 requestError != null ? " ["+requestError+"]" : ""));
-        
+        HttpService.record(url, start,
+                responseText != null ? responseText.length() : 0,
+                requestError != null);
         
         listener.requestResult(responseText, responseCode, errorText, ratelimitRemaining);
     }
@@ -222,6 +230,7 @@ public class Request implements Runnable {
                 requestMethod,
                 token != null ? " (auth) " : "",
                 url));
+        long start = System.nanoTime();
         
         HttpURLConnection connection = null;
         try {
@@ -274,7 +283,13 @@ public class Request implements Runnable {
                 } catch (IOException ex) {
                     // Do nothing, responseCode will simply be -1
                 }
-                connection.disconnect();
+                /**
+                 * Only disconnect on error, since after reading and closing
+                 * the input the connection can be kept alive and reused.
+                 */
+                if (requestError != null) {
+                    connection.disconnect();
+                }
             }
         }
         
@@ -288,6 +303,9 @@ public class Request implements Runnable {
                 responseEncoding != null ? ", " + responseEncoding : "",
                 url,
                 requestError != null ? " ["+requestError+"]" : ""));
+        HttpService.record(url, start,
+                responseText != null ? responseText.length() : 0,
+                requestError != null);
         
         listener.requestResult(responseText, responseCode, errorText, ratelimitRemaining);
     }
@@ -12,12 +12,13 @@ import chatty.util.irc.MsgTags;
 import chatty.util.settings.Settings;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import javax.swing.SwingUtilities;
 
@@ -49,22 +50,34 @@ public class UsericonManager {
     
     private final List<Usericon> thirdParty = new ArrayList<>();
     
-    private final Map<String, Usericon> channelLogos = new HashMap<>();
+    private final Map<String, Usericon> channelLogos = new ConcurrentHashMap<>();
 
     private final Settings settings;
     
+    /**
+     * The icons used for finding badges. This is replaced with a new object
+     * whenever icons are changed, so badges can be found without locking.
+     */
+    private volatile Compiled compiled = new Compiled(this);
+    
     public UsericonManager(Settings settings) {
         this.settings = settings;
     }
     
     public synchronized void addDefaultIcons(List<Usericon> icons) {
         for (Usericon icon : icons) {
-            addDefaultIcon(icon);
+            addDefaultIconInternal(icon);
         }
+        compile();
 //        debug();
     }
     
     public synchronized void addDefaultIcon(Usericon icon) {
+        addDefaultIconInternal(icon);
+        compile();
+    }
+    
+    private void addDefaultIconInternal(Usericon icon) {
         if (icon != null) {
             // Remove icon if it already exists, so it can actually be
             // updated if necessary.
@@ -79,6 +92,14 @@ public class UsericonManager {
         LOGGER.info(String.format(Locale.ROOT, "Added %d third-party badges", icons.size()));
         this.thirdParty.clear();
         this.thirdParty.addAll(icons);
+        compile();
+    }
+    
+    /**
+     * Must be called (while synchronized) after changing any of the icons.
+     */
+    private void compile() {
+        compiled = new Compiled(this);
     }
     
     /**
@@ -152,6 +173,7 @@ public class UsericonManager {
 //        System.out.println(blah);
 //        test.add(blah);
 //        addDefaultIcons(test);
+        compile();
     }
     
     private void addFallbackIcon(Usericon.Type type, String fileName) {
@@ -170,12 +192,14 @@ public class UsericonManager {
     public synchronized void setCustomData(List<Usericon> data) {
         customIcons.clear();
         customIcons.addAll(data);
+        compile();
         saveToSettings();
     }
     
     public synchronized void setHiddenBadgesData(List<Usericon> data) {
         hiddenBadges.clear();
         hiddenBadges.addAll(data);
+        compile();
         saveHiddenBadgesToSettings();
     }
     
@@ -190,7 +214,7 @@ public class UsericonManager {
         return result;
     }
     
-    public synchronized List<Usericon> getBadges(IrcBadges badgesDef,
+    public List<Usericon> getBadges(IrcBadges badgesDef,
             User user, User localUser, boolean botBadgeEnabled, MsgTags tags, boolean channelLogo) {
         List<Usericon> icons = getTwitchBadges(badgesDef, user, tags);
         if (user.isBot() && botBadgeEnabled) {
@@ -214,8 +238,11 @@ public class UsericonManager {
                 icons.add(0, icon);
             }
         }
-        if (channelLogo && channelLogos.containsKey(user.getChannel())) {
-            icons.add(0, channelLogos.get(user.getChannel()));
+        if (channelLogo) {
+            Usericon logo = channelLogos.get(user.getChannel());
+            if (logo != null) {
+                icons.add(0, logo);
+            }
         }
         return icons;
     }
@@ -254,12 +281,13 @@ public class UsericonManager {
      * @param tags The MsgTags (some tags are user-specific)
      * @return The matching icon or {@code null} if none matched
      */
-    public synchronized Usericon getIcon(Usericon.Type type,
+    public Usericon getIcon(Usericon.Type type,
             String id, String version, User user, MsgTags tags) {
+        Candidates candidates = compiled.get(type, id, version, user.getOwnerChannel());
         if (customUsericonsEnabled()) {
-            for (Usericon icon : customIcons) {
+            for (Usericon icon : candidates.custom) {
                 //System.out.println("A:"+" "+type+" "+icon.type+" "+iconsMatchesAdvancedType(icon, type, id, version)+" "+icon);
-                if (iconsMatchesAdvancedType(icon, type, id, version) && iconMatchesUser(icon, user, tags)) {
+                if (iconMatchesUserDetails(icon, user, tags)) {
                     if (icon.removeBadge) {
                         return icon;
                     } else if (icon.hasRegularImage) {
@@ -268,7 +296,7 @@ public class UsericonManager {
                         // If fileName is a reference, then check if an icon
                         // for that exists (only really applicable for FFZ Mod
                         // Icon at the moment)
-                        Usericon refIcon = getDefaultIcon(type, id, version, user, Usericon.SOURCE_FFZ);
+                        Usericon refIcon = getDefaultIcon(candidates, user, Usericon.SOURCE_FFZ);
                         if (refIcon != null) {
                             return refIcon;
                         }
@@ -277,12 +305,12 @@ public class UsericonManager {
                         // the Twitch Icon wasn't loaded or not loaded yet, and
                         // it should be replaced only when that happens.
                         
-                        Usericon refIcon = getDefaultIcon(type, id, version, user, Usericon.SOURCE_TWITCH2);
+                        Usericon refIcon = getDefaultIcon(candidates, user, Usericon.SOURCE_TWITCH2);
                         if (refIcon != null) {
                             return refIcon;
                         }
                     } else if (icon.fileName.equalsIgnoreCase("$default")) {
-                        Usericon refIcon = getDefaultIcon(type, id, version, user, Usericon.SOURCE_ANY);
+                        Usericon refIcon = getDefaultIcon(candidates, user, Usericon.SOURCE_ANY);
                         if (refIcon != null) {
                             return refIcon;
                         }
@@ -290,31 +318,23 @@ public class UsericonManager {
                 }
             }
         }
-        for (Usericon icon : hiddenBadges) {
-            if (iconsMatchesAdvancedType(icon, type, id, version)) {
-                return icon;
-            }
+        if (candidates.hidden != null) {
+            return candidates.hidden;
         }
-        return getDefaultIcon(type, id, version, user, Usericon.SOURCE_ANY);
+        return getDefaultIcon(candidates, user, Usericon.SOURCE_ANY);
     }
     
     /**
-     * Get a default icon for the given type and user, with {@code source}.
+     * Get a default icon for the given user, with {@code source}.
      * 
-     * @param type The type
+     * @param candidates The default icons for the type and channel
      * @param user The user it has to match
      * @param source The source, can be -1 to match any source
      * @return The {@code ImageIcon} or {@code null} if none was found
      */
-    private Usericon getDefaultIcon(Usericon.Type type, String id, String version, User user, int source) {
-        for (Usericon icon : defaultIcons) {
-            Usericon checked = checkIcon(icon, type, id, version, user, source);
-            if (checked != null) {
-                return checked;
-            }
-        }
-        for (Usericon icon : thirdParty) {
-            Usericon checked = checkIcon(icon, type, id, version, user, source);
+    private Usericon getDefaultIcon(Candidates candidates, User user, int source) {
+        for (Usericon icon : candidates.defaults) {
+            Usericon checked = checkIcon(icon, user, source);
             if (checked != null) {
                 return checked;
             }
@@ -322,8 +342,8 @@ public class UsericonManager {
         return null;
     }
     
-    private Usericon checkIcon(Usericon icon, Usericon.Type type, String id, String version, User user, int source) {
-        if (iconsMatchesAdvancedType(icon, type, id, version) && iconMatchesUser(icon, user, null)
+    private Usericon checkIcon(Usericon icon, User user, int source) {
+        if (iconMatchesUserDetails(icon, user, null)
                 && (source == Usericon.SOURCE_ANY || icon.source == source)) {
             // Skip FFZ if disabled
             if (icon.source == Usericon.SOURCE_FFZ && !settings.getBoolean("ffzModIcon")) {
@@ -340,9 +360,8 @@ public class UsericonManager {
     
     private void addAddonIcons(List<Usericon> icons, User user, MsgTags tags) {
         if (customUsericonsEnabled()) {
-            for (Usericon icon : customIcons) {
-                if (icon.type == Type.ADDON && iconMatchesUser(icon, user, tags)
-                        && icon.hasRegularImage) {
+            for (Usericon icon : compiled.addons) {
+                if (iconMatchesUser(icon, user, tags)) {
                     insert(icons, icon);
                     if (icon.stop) {
                         break;
@@ -353,7 +372,7 @@ public class UsericonManager {
     }
     
     private void addThirdPartyIcons(List<Usericon> icons, User user, MsgTags tags) {
-        for (Usericon icon : thirdParty) {
+        for (Usericon icon : compiled.thirdParty) {
             /**
              * Need to check eligibility here first, since a Custom Icon
              * matching this icon's type wouldn't have the same restrictions
@@ -408,7 +427,44 @@ public class UsericonManager {
      * @return {@code true} if this icon matches the user, {@code false}
      * otherwise
      */
-    private boolean iconMatchesUser(Usericon icon, User user, MsgTags tags) {
+    private static boolean iconMatchesUser(Usericon icon, User user, MsgTags tags) {
+        return iconMatchesChannel(icon, user.getOwnerChannel())
+                && iconMatchesUserDetails(icon, user, tags);
+    }
+    
+    /**
+     * Checks whether the channel restriction of the given {@code Usericon}
+     * matches the given channel.
+     * 
+     * @param icon The icon to check
+     * @param channel The channel (can be null)
+     * @return {@code true} if the channel restriction matches
+     */
+    private static boolean iconMatchesChannel(Usericon icon, String channel) {
+        if (!icon.channel.isEmpty()) {
+            if (icon.channel.equalsIgnoreCase(channel)) {
+                if (icon.channelInverse) {
+                    return false;
+                }
+            } else {
+                if (!icon.channelInverse) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks whether the given {@code Usericon} matches the given {@code User},
+     * except for the channel restriction (which has to be checked separately).
+     * 
+     * @param icon The icon to check
+     * @param user The user to check against
+     * @return {@code true} if this icon matches the user, {@code false}
+     * otherwise
+     */
+    private static boolean iconMatchesUserDetails(Usericon icon, User user, MsgTags tags) {
         if (icon.badgeTypeRestriction.id != null) {
             IrcBadges badges = user.getTwitchBadges();
             String id = icon.badgeTypeRestriction.id;
@@ -424,18 +480,6 @@ public class UsericonManager {
             }
         }
         
-        // If channelRestriction doesn't match, don't have to continue
-        if (!icon.channel.isEmpty()) {
-            if (icon.channel.equalsIgnoreCase(user.getOwnerChannel())) {
-                if (icon.channelInverse) {
-                    return false;
-                }
-            } else {
-                if (!icon.channelInverse) {
-                    return false;
-                }
-            }
-        }
         // Username/id restriction (can fail only if non-null)
         boolean usernameR = icon.usernames == null || (user.getName() != null && icon.usernames.contains(user.getName()));
         boolean useridR = icon.userids == null || (user.getId() != null  && icon.userids.contains(user.getId()));
@@ -479,7 +523,7 @@ public class UsericonManager {
         return false;
     }
     
-    private boolean iconsMatchesAdvancedType(Usericon icon,
+    private static boolean iconsMatchesAdvancedType(Usericon icon,
             Usericon.Type requestedType, String id, String version) {
         if (icon.type == Type.ALL) {
             return true;
@@ -519,6 +563,7 @@ public class UsericonManager {
                 LOGGER.warning("Usericons: Couldn't load entry "+entryToLoad);
             }
         }
+        compile();
         LOGGER.info("Usericons: Loaded "+count+"/"+entriesToLoad.size());
     }
     
@@ -535,6 +580,7 @@ public class UsericonManager {
                 LOGGER.warning("Hidden Usericons: Couldn't load entry "+entryToLoad);
             }
         }
+        compile();
         LOGGER.info("Hidden Usericons: Loaded "+count+"/"+entriesToLoad.size());
     }
     
@@ -615,10 +661,138 @@ public class UsericonManager {
         if (!alreadyHidden) {
             Usericon customUsericon = UsericonFactory.createCustomIcon(usericon.type, usericon.badgeType.id, "", "", "", "");
             hiddenBadges.add(0, customUsericon);
+            compile();
             saveHiddenBadgesToSettings();
             return true;
         }
         return false;
     }
     
+    /**
+     * A copy of all icons, with the icons that may match a certain badge (type,
+     * id, version) in a certain channel cached, so that only the
+     * user-dependant restrictions have to be checked for each message.
+     */
+    private static class Compiled {
+        
+        /**
+         * Clear cached badges when there are more than this.
+         */
+        private static final int MAX_CACHED = 10000;
+        
+        private final List<Usericon> custom;
+        private final List<Usericon> hidden;
+        private final List<Usericon> defaults;
+        private final List<Usericon> thirdParty;
+        private final List<Usericon> addons;
+        private final Map<Key, Candidates> cache = new ConcurrentHashMap<>();
+        
+        /**
+         * Must be called while synchronized on the manager.
+         */
+        Compiled(UsericonManager m) {
+            custom = new ArrayList<>(m.customIcons);
+            hidden = new ArrayList<>(m.hiddenBadges);
+            defaults = new ArrayList<>(m.defaultIcons);
+            defaults.addAll(m.thirdParty);
+            thirdParty = new ArrayList<>(m.thirdParty);
+            addons = new ArrayList<>();
+            for (Usericon icon : custom) {
+                if (icon.type == Type.ADDON && icon.hasRegularImage) {
+                    addons.add(icon);
+                }
+            }
+        }
+        
+        Candidates get(Usericon.Type type, String id, String version, String channel) {
+            Key key = new Key(type, id, version, channel);
+            Candidates result = cache.get(key);
+            if (result == null) {
+                if (cache.size() > MAX_CACHED) {
+                    cache.clear();
+                }
+                result = new Candidates(this, key);
+                cache.put(key, result);
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * The icons that match a certain badge in a certain channel, in the order
+     * they should be checked.
+     */
+    private static class Candidates {
+        
+        private final List<Usericon> custom = new ArrayList<>(1);
+        private final Usericon hidden;
+        private final List<Usericon> defaults = new ArrayList<>(1);
+        
+        Candidates(Compiled c, Key key) {
+            for (Usericon icon : c.custom) {
+                if (iconsMatchesAdvancedType(icon, key.type, key.id, key.version)
+                        && iconMatchesChannel(icon, key.channel)) {
+                    custom.add(icon);
+                }
+            }
+            Usericon hiddenIcon = null;
+            for (Usericon icon : c.hidden) {
+                if (iconsMatchesAdvancedType(icon, key.type, key.id, key.version)) {
+                    hiddenIcon = icon;
+                    break;
+                }
+            }
+            hidden = hiddenIcon;
+            for (Usericon icon : c.defaults) {
+                if (iconsMatchesAdvancedType(icon, key.type, key.id, key.version)
+                        && iconMatchesChannel(icon, key.channel)) {
+                    defaults.add(icon);
+                }
+            }
+        }
+        
+    }
+    
+    private static class Key {
+        
+        private final Usericon.Type type;
+        private final String id;
+        private final String version;
+        private final String channel;
+        
+        Key(Usericon.Type type, String id, String version, String channel) {
+            this.type = type;
+            this.id = id;
+            this.version = version;
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return type == other.type
+                    && Objects.equals(id, other.id)
+                    && Objects.equals(version, other.version)
+                    && Objects.equals(channel, other.channel);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 29 * hash + Objects.hashCode(type);
+            hash = 29 * hash + Objects.hashCode(id);
+            hash = 29 * hash + Objects.hashCode(version);
+            hash = 29 * hash + Objects.hashCode(channel);
+            return hash;
+        }
+        
+    }
+    
 }
@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -20,31 +21,31 @@ public abstract class ColorCorrector {
     public static final List<String> ACTIVE_TYPES = new ArrayList<>();
     
     static {
-        TYPES.put("normal", new ColorCorrector() {
+        TYPES.put("normal", new Cached(new ColorCorrector() {
 
             @Override
             public Color correctColor(Color foreground, Color background) {
                 return ColorCorrectionNew.correctReadability(foreground, background, 60);
             }
-        });
+        }));
         
-        TYPES.put("strong", new ColorCorrector() {
+        TYPES.put("strong", new Cached(new ColorCorrector() {
 
             @Override
             public Color correctColor(Color foreground, Color background) {
                 return ColorCorrectionNew.correctReadability(foreground, background, 140);
             }
-        });
+        }));
         
-        TYPES.put("old", new ColorCorrector() {
+        TYPES.put("old", new Cached(new ColorCorrector() {
 
             @Override
             public Color correctColor(Color foreground, Color background) {
                 return ColorCorrection.correctReadability(foreground, background);
             }
-        });
+        }));
         
-        TYPES.put("gray", new ColorCorrector() {
+        TYPES.put("gray", new Cached(new ColorCorrector() {
 
             @Override
             public Color correctColor(Color foreground, Color background) {
@@ -52,7 +53,7 @@ public abstract class ColorCorrector {
                 int brightness = ColorCorrection.getBrightness(foreground);
                 return new Color(brightness, brightness, brightness);
             }
-        });
+        }));
         
         TYPES.put("off", new ColorCorrector() {
 
@@ -76,4 +77,53 @@ public abstract class ColorCorrector {
         return TYPES.get(type);
     }
     
+    /**
+     * Remove all cached corrected colors, for example when the background
+     * color changed, so that colors that aren't used anymore don't stay in
+     * memory.
+     */
+    public static void clearCache() {
+        for (ColorCorrector corrector : TYPES.values()) {
+            if (corrector instanceof Cached) {
+                ((Cached) corrector).cache.clear();
+            }
+        }
+    }
+    
+    /**
+     * Caches the corrected colors by foreground and background, since the
+     * same few user colors are corrected over and over again and the
+     * correction itself is fairly expensive.
+     */
+    private static class Cached extends ColorCorrector {
+        
+        /**
+         * If the cache grows larger than this it is cleared, should normally
+         * not happen since there are only so many different colors used.
+         */
+        private static final int MAX_CACHED = 5000;
+        
+        private final ColorCorrector corrector;
+        private final Map<Long, Color> cache = new ConcurrentHashMap<>();
+        
+        Cached(ColorCorrector corrector) {
+            this.corrector = corrector;
+        }
+        
+        @Override
+        public Color correctColor(Color foreground, Color background) {
+            long key = ((long) foreground.getRGB() << 32) | (background.getRGB() & 0xFFFFFFFFL);
+            Color result = cache.get(key);
+            if (result == null) {
+                result = corrector.correctColor(foreground, background);
+                if (cache.size() > MAX_CACHED) {
+                    cache.clear();
+                }
+                cache.put(key, result);
+            }
+            return result;
+        }
+        
+    }
+    
 }
@@ -9,6 +9,7 @@ import chatty.TwitchCommands;
 import chatty.gui.components.eventlog.EventLog;
 import chatty.util.DateTime;
 import chatty.util.StringUtil;
+import chatty.util.TaskRunner;
 import chatty.util.api.StreamInfo;
 import chatty.util.api.TwitchApi;
 import chatty.util.settings.Settings;
@@ -129,10 +130,10 @@ public class CustomCommands {
         
         // Actual replacement taking place
         if (performAsync) {
-            new Thread(() -> {
+            TaskRunner.execute(TaskRunner.Category.USER_REQUEST, "CustomCommand", () -> {
                 addCustomIdentifiers(customIdentifiersCommands, parameters);
                 result.accept(command.replace(parameters));
-            }, "CustomCommand").start();
+            });
         }
         else {
             addCustomIdentifiers(customIdentifiersCommands, parameters);
@@ -3,10 +3,12 @@ package chatty.util.ffz;
 
 import chatty.Helper;
 import chatty.util.RetryManager;
+import chatty.util.Scheduler;
 import chatty.util.api.usericons.Usericon;
 import chatty.util.StringUtil;
 import chatty.util.UrlRequest;
 import chatty.util.api.Emoticon;
+import chatty.util.api.EmoticonSnapshot;
 import chatty.util.api.EmoticonUpdate;
 import chatty.util.api.TwitchApi;
 import chatty.util.api.usericons.UsericonFactory;
@@ -28,6 +30,8 @@ public class FrankerFaceZ {
     
     private enum Type { GLOBAL, ROOM, FEATURE_FRIDAY };
     
+    private static final String SNAPSHOT_SOURCE = "ffz";
+    
     private final FrankerFaceZListener listener;
     
     // State
@@ -98,6 +102,9 @@ public class FrankerFaceZ {
             return;
         }
         String username = stream;
+        if (!forcedUpdate) {
+            loadSnapshot(username);
+        }
         api.getUserId(r -> {
             if (!r.hasError()) {
                 request(Type.ROOM, username, r.getId(username), forcedUpdate);
@@ -117,6 +124,9 @@ public class FrankerFaceZ {
      * only requests the emotes when not already requested this session
      */
     public synchronized void requestGlobalEmotes(boolean forcedUpdate) {
+        if (!forcedUpdate) {
+            loadSnapshot(null);
+        }
         request(Type.GLOBAL, null, null, forcedUpdate);
         requestFeatureFridayEmotes(forcedUpdate);
     }
@@ -130,14 +140,9 @@ public class FrankerFaceZ {
             return;
         }
         featureFridayTimerStarted = true;
-        Timer timer = new Timer("FFZ Feature Friday", true);
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                requestFeatureFridayEmotes(true);
-            }
-        }, FEATURE_FRIDAY_UPDATE_DELAY, FEATURE_FRIDAY_UPDATE_DELAY);
+        Scheduler.scheduleRepeating("FFZ Feature Friday",
+                FEATURE_FRIDAY_UPDATE_DELAY, FEATURE_FRIDAY_UPDATE_DELAY,
+                () -> requestFeatureFridayEmotes(true));
     }
     
     /**
@@ -170,14 +175,27 @@ public class FrankerFaceZ {
             String id, boolean forcedUpdate) {
         final String url = getUrl(type, id);
         if (forcedUpdate) {
-            requestNow(type, stream, id, url);
+            requestNow(type, stream, id, url, true);
         }
         else {
-            RetryManager.getInstance().retry(url, k -> requestNow(type, stream, id, url));
+            RetryManager.getInstance().retry(url, k -> requestNow(type, stream, id, url, false));
         }
     }
     
-    private void requestNow(final Type type, final String stream, String id, String url) {
+    /**
+     * Add the emotes stored from the previous session for the given stream
+     * (or global emotes if {@code null}), if not already added.
+     * 
+     * @param stream 
+     */
+    private void loadSnapshot(String stream) {
+        EmoticonUpdate update = EmoticonSnapshot.load(SNAPSHOT_SOURCE, stream);
+        if (update != null) {
+            listener.channelEmoticonsReceived(update);
+        }
+    }
+    
+    private void requestNow(final Type type, final String stream, String id, String url, boolean forcedUpdate) {
         // Create request and run it in a separate thread
         UrlRequest request = new UrlRequest();
         request.setLabel("FFZ/"+stream);
@@ -192,7 +210,7 @@ public class FrankerFaceZ {
             else {
                 RetryManager.getInstance().setSuccess(url);
             }
-            parseResult(type, stream, id, result);
+            parseResult(type, stream, id, result, forcedUpdate);
         });
     }
     
@@ -228,8 +246,10 @@ public class FrankerFaceZ {
      * @param id The id of the resource that was requested, depending on the
      * type (e.g. room id or emote set)
      * @param result The result JSON, may be null if the request failed
+     * @param forcedUpdate If false, global and room emotes are only updated
+     * if they changed
      */
-    private void parseResult(Type type, String stream, String id, String result) {
+    private void parseResult(Type type, String stream, String id, String result, boolean forcedUpdate) {
         if (result == null) {
             return;
         }
@@ -294,7 +314,12 @@ public class FrankerFaceZ {
         else if (type == Type.GLOBAL) {
             updateBuilder.setSubTypeToRemove(Emoticon.SubType.REGULAR);
         }
-        listener.channelEmoticonsReceived(updateBuilder.build());
+        EmoticonUpdate update = updateBuilder.build();
+        if (type == Type.FEATURE_FRIDAY
+                || EmoticonSnapshot.store(SNAPSHOT_SOURCE, stream, update)
+                || forcedUpdate) {
+            listener.channelEmoticonsReceived(update);
+        }
         // Return icons if mod icon was found (will be empty otherwise)
         listener.usericonsReceived(usericons);
     }
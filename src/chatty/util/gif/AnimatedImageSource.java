@@ -2,6 +2,7 @@
 package chatty.util.gif;
 
 import chatty.util.ElapsedTime;
+import chatty.util.TaskRunner;
 import java.awt.Dimension;
 import java.awt.image.ColorModel;
 import java.awt.image.ImageConsumer;
@@ -87,7 +88,8 @@ public class AnimatedImageSource implements ImageProducer {
             return;
         }
         if (thread == null || !thread.isAlive()) {
-            thread = new Thread(() -> {
+            String name = "AnimatedImage"+(image.getName() != null ? "-"+image.getName() : "");
+            thread = TaskRunner.newThread(TaskRunner.Category.LONG_RUNNING, name, () -> {
                 do {
                     if (isActive()) {
                         nextFrame();
@@ -128,9 +130,9 @@ public class AnimatedImageSource implements ImageProducer {
                         return;
                     }
                 } while (true);
-            }, "AnimatedImage"+(image.getName() != null ? "-"+image.getName() : ""));
-            thread.setDaemon(true);
+            });
             // ImageFetcher is setting a lower priority, so may make sense?
+            // (Ignored for virtual threads)
             thread.setPriority(2);
             thread.start();
         }
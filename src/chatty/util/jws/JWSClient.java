@@ -3,10 +3,10 @@ package chatty.util.jws;
 
 import chatty.util.DateTime;
 import chatty.util.ElapsedTime;
+import chatty.util.Scheduler;
+import chatty.util.TaskRunner;
 import chatty.util.TimedCounter;
 import java.net.URI;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
@@ -121,17 +121,12 @@ public class JWSClient implements MessageHandler {
             private void reconnectTimer() {
                 long interval = increaseAndGetReconnectWaitSeconds();
                 LOGGER.info(debugPrefix+"Reconnecting in "+interval+"s..");
-                Timer timer = new Timer(false);
-                timer.schedule(new TimerTask() {
-
-                    @Override
-                    public void run() {
-                        LOGGER.info(debugPrefix+"Trying to reconnect to "+c.getURI());
-                        // For better debug output on failing to reconnect
-                        lastConnectionAttempt.setSync();
-                        reconnect();
-                    }
-                }, interval*1000);
+                Scheduler.schedule("JWSReconnect", interval*1000, () -> {
+                    LOGGER.info(debugPrefix+"Trying to reconnect to "+c.getURI());
+                    // For better debug output on failing to reconnect
+                    lastConnectionAttempt.setSync();
+                    reconnect();
+                });
             }
         };
     }
@@ -163,7 +158,7 @@ public class JWSClient implements MessageHandler {
     }
     
     private void startConsumer() {
-        readerThread = new Thread(() -> {
+        readerThread = TaskRunner.newThread(TaskRunner.Category.LONG_RUNNING, debugPrefix+"WS-Reader", () -> {
             while (true) {
                 try {
                     Received r = received.poll(10, TimeUnit.SECONDS);
@@ -185,10 +180,10 @@ public class JWSClient implements MessageHandler {
                     return;
                 }
             }
-        }, debugPrefix+"WS-Reader");
+        });
         readerThread.start();
         
-        writerThread = new Thread(() -> {
+        writerThread = TaskRunner.newThread(TaskRunner.Category.LONG_RUNNING, debugPrefix+"WS-Writer", () -> {
             while (true) {
                 try {
                     String message = sending.poll(10, TimeUnit.SECONDS);
@@ -205,7 +200,7 @@ public class JWSClient implements MessageHandler {
                     return;
                 }
             }
-        }, debugPrefix+"WS-Writer");
+        });
         writerThread.start();
     }
     
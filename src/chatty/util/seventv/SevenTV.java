@@ -4,19 +4,22 @@ package chatty.util.seventv;
 import chatty.Helper;
 import chatty.util.Debugging;
 import chatty.util.EmoticonListener;
+import chatty.util.JSONStream;
 import chatty.util.JSONUtil;
 import chatty.util.RetryManager;
 import chatty.util.StringUtil;
 import chatty.util.UrlRequest;
 import chatty.util.api.Emoticon;
+import chatty.util.api.EmoticonSnapshot;
 import chatty.util.api.EmoticonUpdate;
 import chatty.util.api.TwitchApi;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 /**
@@ -31,6 +34,8 @@ public class SevenTV {
         GLOBAL, CHANNEL
     }
     
+    private static final String SNAPSHOT_SOURCE = "7tv";
+    
     private final EmoticonListener listener;
     private final TwitchApi api;
 
@@ -53,6 +58,9 @@ public class SevenTV {
         if (StringUtil.isNullOrEmpty(channel)) {
             // Global
             WebPUtil.runIfWebPAvailable(() -> {
+                if (!forcedUpdate) {
+                    loadSnapshot(null);
+                }
                 requestEmotes(Type.GLOBAL, null, null, forcedUpdate);
             });
         }
@@ -60,6 +68,9 @@ public class SevenTV {
             // Channel
             String stream = channel;
             WebPUtil.runIfWebPAvailable(() -> {
+                if (!forcedUpdate) {
+                    loadSnapshot(stream);
+                }
                 api.getUserId(r -> {
                     if (!r.hasError()) {
                         requestEmotes(Type.CHANNEL, stream, r.getId(stream), forcedUpdate);
@@ -72,10 +83,23 @@ public class SevenTV {
     private void requestEmotes(Type type, String stream, String streamId, boolean forcedUpdate) {
         String url = getUrl(type, streamId);
         if (forcedUpdate) {
-            requestNow(type, stream, url);
+            requestNow(type, stream, url, true);
         }
         else {
-            RetryManager.getInstance().retry(url, k -> requestNow(type, stream, url));
+            RetryManager.getInstance().retry(url, k -> requestNow(type, stream, url, false));
+        }
+    }
+    
+    /**
+     * Add the emotes stored from the previous session for the given stream
+     * (or global emotes if {@code null}), if not already added.
+     * 
+     * @param stream 
+     */
+    private void loadSnapshot(String stream) {
+        EmoticonUpdate update = EmoticonSnapshot.load(SNAPSHOT_SOURCE, stream);
+        if (update != null) {
+            listener.receivedEmoticons(update);
         }
     }
     
@@ -90,12 +114,12 @@ public class SevenTV {
         return null;
     }
     
-    private void requestNow(final Type type, final String stream, String url) {
+    private void requestNow(final Type type, final String stream, String url, boolean forcedUpdate) {
         // Create request and run it in a separate thread
         UrlRequest request = new UrlRequest();
         request.setLabel("SevenTV/"+stream);
         request.setUrl(url);
-        request.async((result, responseCode) -> {
+        request.asyncParsed(reader -> parseEmoteList(type, stream, reader), (result, responseCode) -> {
             if (Integer.toString(responseCode).startsWith("4")) {
                 RetryManager.getInstance().setNotFound(url);
             }
@@ -105,15 +129,14 @@ public class SevenTV {
             else {
                 RetryManager.getInstance().setSuccess(url);
             }
-            parseResult(type, stream, result);
+            parseResult(type, stream, result, forcedUpdate);
         });
     }
     
-    private void parseResult(Type type, String stream, String json) {
-        if (json == null) {
+    private void parseResult(Type type, String stream, Set<Emoticon> emotes, boolean forcedUpdate) {
+        if (emotes == null) {
             return;
         }
-        Set<Emoticon> emotes = parseEmoteList(type, stream, json);
         LOGGER.info(String.format("|[SevenTV] (%s): %d emotes received.",
                 stream, emotes.size()));
         
@@ -122,32 +145,39 @@ public class SevenTV {
         if (type == Type.CHANNEL) {
             updateBuilder.setRoomToRemove(stream);
         }
-        listener.receivedEmoticons(updateBuilder.build());
+        EmoticonUpdate update = updateBuilder.build();
+        // Unless forced, only update if something changed
+        if (EmoticonSnapshot.store(SNAPSHOT_SOURCE, stream, update) || forcedUpdate) {
+            listener.receivedEmoticons(update);
+        }
     }
     
-    private Set<Emoticon> parseEmoteList(Type type, String stream, String json) {
+    /**
+     * Parse the emotes, reading directly from the response without building
+     * the whole JSON tree first.
+     * 
+     * @param type The type of request
+     * @param stream The channel, null for global emotes
+     * @param reader The response
+     * @return The emotes (empty if the JSON is invalid)
+     * @throws IOException If an error occured reading
+     */
+    private Set<Emoticon> parseEmoteList(Type type, String stream, Reader reader) throws IOException {
         Set<Emoticon> result = new HashSet<>();
+        String path = type == Type.CHANNEL ? "emote_set.emotes" : "emotes";
         try {
-            JSONParser parser = new JSONParser();
-            JSONObject root = (JSONObject) parser.parse(json);
-            JSONObject set = root;
-            if (type == Type.CHANNEL) {
-                set = (JSONObject) root.get("emote_set");
-            }
-            if (set != null) {
-                JSONArray emotes = (JSONArray) set.get("emotes");
-                for (Object o : emotes) {
-                    if (o instanceof JSONObject) {
-                        Emoticon emote = parseEmote(stream, (JSONObject) o);
-                        if (emote != null) {
-                            result.add(emote);
-                        }
+            JSONStream.parse(reader, (p, o) -> {
+                if (o instanceof JSONObject) {
+                    Emoticon emote = parseEmote(stream, (JSONObject) o);
+                    if (emote != null) {
+                        result.add(emote);
                     }
                 }
-            }
+            }, path);
         }
-        catch (Exception ex) {
+        catch (ParseException ex) {
             LOGGER.warning("Error parsing SevenTV emote list: "+ex);
+            result.clear();
         }
         return result;
     }
@@ -5,6 +5,7 @@ import chatty.Helper;
 import chatty.util.ImageCache.ImageRequest;
 import chatty.util.ImageCache.ImageResult;
 import chatty.util.MiscUtil;
+import chatty.util.TaskRunner;
 import chatty.util.gif.GifUtil;
 import chatty.util.gif.ListAnimatedImage;
 import chatty.util.gif.ListAnimatedImageFrame;
@@ -50,7 +51,7 @@ public class WebPUtil {
                 if (!checking) {
                     // Not checking yet, so check now
                     checking = true;
-                    new Thread(() -> {
+                    TaskRunner.execute(TaskRunner.Category.IO, "WebP Check", () -> {
                         boolean success = check();
                         
                         // After check, see if and what to run
@@ -77,7 +78,7 @@ public class WebPUtil {
                             }
                             waitingRunnable.run();
                         }
-                    }, "WebP Check").start();
+                    });
                 }
             }
         }
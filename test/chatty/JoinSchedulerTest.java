@@ -0,0 +1,144 @@
+
+package chatty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class JoinSchedulerTest {
+    
+    private static class TestIrc extends Irc {
+
+        TestIrc(String id, boolean registered) {
+            super(id);
+            if (registered) {
+                setState(STATE_REGISTERED);
+            }
+        }
+
+        @Override
+        public void debug(String line) {
+        }
+        
+    }
+    
+    @Test
+    public void testBatching() {
+        JoinScheduler s = new JoinScheduler();
+        Irc a = new TestIrc("a", true);
+        Irc b = new TestIrc("b", true);
+        s.queue(a, "a1", JoinScheduler.Priority.NEW);
+        s.queue(b, "#b1", JoinScheduler.Priority.NEW);
+        s.queue(a, "#a2", JoinScheduler.Priority.NEW);
+        s.queue(a, "#a2", JoinScheduler.Priority.NEW);
+        List<JoinScheduler.Batch> batches = s.takeBatches(System.nanoTime());
+        assertEquals(2, batches.size());
+        assertSame(a, batches.get(0).irc);
+        assertEquals(Arrays.asList("#a1", "#a2"), batches.get(0).channels);
+        assertSame(b, batches.get(1).irc);
+        assertEquals(Arrays.asList("#b1"), batches.get(1).channels);
+        assertEquals(0, s.getNumPending());
+    }
+    
+    @Test
+    public void testPriority() {
+        JoinScheduler s = new JoinScheduler();
+        s.setLimit(2);
+        Irc a = new TestIrc("a", true);
+        s.queue(a, "#retry", JoinScheduler.Priority.RETRY);
+        s.queue(a, "#new", JoinScheduler.Priority.NEW);
+        s.queue(a, "#open", JoinScheduler.Priority.OPEN);
+        s.queue(a, "#visible", JoinScheduler.Priority.NEW);
+        // Raises priority of existing entry
+        s.queue(a, "#visible", JoinScheduler.Priority.VISIBLE);
+        List<JoinScheduler.Batch> batches = s.takeBatches(System.nanoTime());
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList("#visible", "#open"), batches.get(0).channels);
+        assertEquals(2, s.getNumPending());
+    }
+    
+    @Test
+    public void testRateLimit() {
+        JoinScheduler s = new JoinScheduler();
+        s.setLimit(20);
+        Irc a = new TestIrc("a", true);
+        for (int i = 0; i < 100; i++) {
+            s.queue(a, "#c"+i, JoinScheduler.Priority.NEW);
+        }
+        long start = System.nanoTime();
+        assertEquals(20, count(s.takeBatches(start)));
+        assertEquals(80, s.getNumPending());
+        assertEquals(0, count(s.takeBatches(start + TimeUnit.MILLISECONDS.toNanos(500))));
+        // Next join possible once the first ones have left the window
+        long delay = s.getDelayForNextJoin(start);
+        assertTrue(delay > 9000 && delay <= 10001);
+        
+        // Join all, always waiting the requested delay
+        List<Long> joinTimes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            joinTimes.add(start);
+        }
+        long now = start;
+        while (s.getNumPending() > 0) {
+            now += TimeUnit.MILLISECONDS.toNanos(Math.max(1, s.getDelayForNextJoin(now)));
+            int joined = count(s.takeBatches(now));
+            for (int i = 0; i < joined; i++) {
+                joinTimes.add(now);
+            }
+        }
+        assertEquals(100, joinTimes.size());
+        // No 10 second window contains more than the limit
+        for (long time : joinTimes) {
+            int inWindow = 0;
+            for (long other : joinTimes) {
+                if (other >= time && other - time <= TimeUnit.SECONDS.toNanos(10)) {
+                    inWindow++;
+                }
+            }
+            assertTrue(inWindow <= 20);
+        }
+        // Not much slower than the limit allows
+        assertTrue(now - start < TimeUnit.SECONDS.toNanos(41));
+    }
+    
+    @Test
+    public void testNotRegistered() {
+        JoinScheduler s = new JoinScheduler();
+        Irc a = new TestIrc("a", false);
+        s.queue(a, "#a", JoinScheduler.Priority.NEW);
+        assertEquals(0, count(s.takeBatches(System.nanoTime())));
+        assertEquals(0, s.getNumPending());
+    }
+    
+    @Test
+    public void testLineLength() {
+        JoinScheduler s = new JoinScheduler();
+        s.setLimit(100);
+        Irc a = new TestIrc("a", true);
+        for (int i = 0; i < 40; i++) {
+            s.queue(a, "#channel_name_"+i, JoinScheduler.Priority.NEW);
+        }
+        List<JoinScheduler.Batch> batches = s.takeBatches(System.nanoTime());
+        assertTrue(batches.size() > 1);
+        assertEquals(40, count(batches));
+        for (JoinScheduler.Batch batch : batches) {
+            assertTrue(String.join(",", batch.channels).length() < 450);
+        }
+    }
+    
+    private static int count(List<JoinScheduler.Batch> batches) {
+        int result = 0;
+        for (JoinScheduler.Batch batch : batches) {
+            result += batch.channels.size();
+        }
+        return result;
+    }
+    
+}
@@ -0,0 +1,164 @@
+
+package chatty;
+
+import chatty.util.irc.MsgTags;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class OutboundQueueTest {
+    
+    private static class TestOutput implements OutboundQueue.Output {
+        
+        private final List<String> sent = new ArrayList<>();
+        private final List<String> dropped = new ArrayList<>();
+        private boolean privileged;
+
+        @Override
+        public boolean isPrivileged(String channel) {
+            return privileged;
+        }
+
+        @Override
+        public void send(List<OutboundQueue.Message> messages) {
+            for (OutboundQueue.Message message : messages) {
+                sent.add(message.text);
+            }
+        }
+
+        @Override
+        public void dropped(OutboundQueue.Message message) {
+            dropped.add(message.text);
+        }
+        
+    }
+    
+    private static SpamProtection limit(String value) {
+        SpamProtection result = new SpamProtection();
+        result.setLinesPerSeconds(value);
+        return result;
+    }
+    
+    private static OutboundQueue.Message add(OutboundQueue q, String channel, String text, OutboundQueue.Lane lane) {
+        return q.add(channel, text, false, MsgTags.EMPTY, lane);
+    }
+    
+    @Test
+    public void testSendImmediately() {
+        TestOutput output = new TestOutput();
+        OutboundQueue q = new OutboundQueue(output, limit("10/30"), limit("10/30"));
+        assertTrue(add(q, "#a", "1", OutboundQueue.Lane.USER).isSent());
+        assertTrue(add(q, "#b", "2", OutboundQueue.Lane.USER).isSent());
+        assertEquals(0, q.getNumQueued());
+        assertEquals(2, output.sent.size());
+    }
+    
+    @Test
+    public void testGlobalLimit() {
+        TestOutput output = new TestOutput();
+        OutboundQueue q = new OutboundQueue(output, limit("2/30"), limit("10/30"));
+        add(q, "#a", "1", OutboundQueue.Lane.USER);
+        add(q, "#b", "2", OutboundQueue.Lane.USER);
+        OutboundQueue.Message m = add(q, "#c", "3", OutboundQueue.Lane.USER);
+        assertNotNull(m);
+        assertFalse(m.isSent());
+        assertEquals(1, q.getNumQueued());
+        
+        // Privileged channels use the other limit
+        output.privileged = true;
+        assertTrue(add(q, "#d", "4", OutboundQueue.Lane.USER).isSent());
+        q.clear();
+    }
+    
+    @Test
+    public void testGlobalLimitCombined() {
+        TestOutput output = new TestOutput();
+        OutboundQueue q = new OutboundQueue(output, limit("2/30"), limit("10/30"));
+        output.privileged = true;
+        assertTrue(add(q, "#mod", "1", OutboundQueue.Lane.USER).isSent());
+        assertTrue(add(q, "#mod2", "2", OutboundQueue.Lane.USER).isSent());
+        
+        // Messages to privileged channels count for the regular limit as well
+        output.privileged = false;
+        assertFalse(add(q, "#a", "3", OutboundQueue.Lane.USER).isSent());
+        assertEquals(1, q.getNumQueued());
+        q.clear();
+    }
+    
+    @Test
+    public void testOnSent() {
+        TestOutput output = new TestOutput();
+        OutboundQueue q = new OutboundQueue(output, limit("1/30"), limit("1/30"));
+        List<String> sent = new ArrayList<>();
+        q.add("#a", "1", false, MsgTags.EMPTY, OutboundQueue.Lane.USER, () -> sent.add("1"));
+        q.add("#a", "2", false, MsgTags.EMPTY, OutboundQueue.Lane.USER, () -> sent.add("2"));
+        // Only run for the message that was actually sent
+        assertEquals(1, sent.size());
+        assertEquals("1", sent.get(0));
+        assertEquals(1, q.getNumQueued());
+        q.clear();
+    }
+    
+    @Test
+    public void testChannelLimit() {
+        TestOutput output = new TestOutput();
+        OutboundQueue q = new OutboundQueue(output, limit("100/30"), limit("100/30"));
+        for (int i = 0; i < 5; i++) {
+            add(q, "#a", "a"+i, OutboundQueue.Lane.USER);
+        }
+        // Other channels aren't affected
+        assertTrue(add(q, "#b", "b", OutboundQueue.Lane.USER).isSent());
+        assertEquals(2, q.getNumQueued());
+        
+        // Next message allowed after a second, in order
+        List<OutboundQueue.Message> send = new ArrayList<>();
+        long delay = q.select(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1100), send, new ArrayList<>());
+        assertEquals(1, send.size());
+        assertEquals("a3", send.get(0).text);
+        assertTrue(delay > 0);
+        q.clear();
+    }
+    
+    @Test
+    public void testLanes() {
+        TestOutput output = new TestOutput();
+        OutboundQueue q = new OutboundQueue(output, limit("1/30"), limit("2/30"));
+        add(q, "#a", "first", OutboundQueue.Lane.USER);
+        add(q, "#a", "timer", OutboundQueue.Lane.TIMER);
+        add(q, "#a", "user", OutboundQueue.Lane.USER);
+        add(q, "#a", "mod", OutboundQueue.Lane.MOD);
+        assertEquals(3, q.getNumQueued());
+        
+        // Use the other limit to simulate the global limit allowing again
+        output.privileged = true;
+        List<OutboundQueue.Message> send = new ArrayList<>();
+        q.select(System.nanoTime() + TimeUnit.SECONDS.toNanos(5), send, new ArrayList<>());
+        assertEquals(1, send.size());
+        assertEquals("mod", send.get(0).text);
+        q.clear();
+    }
+    
+    @Test
+    public void testMaxAge() {
+        TestOutput output = new TestOutput();
+        OutboundQueue q = new OutboundQueue(output, limit("1/30"), limit("1/30"));
+        add(q, "#a", "first", OutboundQueue.Lane.USER);
+        add(q, "#a", "timer", OutboundQueue.Lane.TIMER);
+        add(q, "#a", "mod", OutboundQueue.Lane.MOD);
+        
+        List<OutboundQueue.Message> dropped = new ArrayList<>();
+        long delay = q.select(System.nanoTime() + TimeUnit.SECONDS.toNanos(20), new ArrayList<>(), dropped);
+        assertEquals(1, dropped.size());
+        assertEquals("timer", dropped.get(0).text);
+        assertEquals(1, q.getNumQueued());
+        assertTrue(delay > 0);
+        q.clear();
+    }
+    
+}
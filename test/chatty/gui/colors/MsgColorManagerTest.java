@@ -1,6 +1,9 @@
 
 package chatty.gui.colors;
 
+import chatty.Room;
+import chatty.User;
+import chatty.gui.Highlighter.HighlightItem;
 import chatty.util.settings.Setting;
 import chatty.util.settings.Settings;
 import java.awt.Color;
@@ -8,6 +11,7 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  * Test loading and saving of settings.
@@ -48,6 +52,30 @@ public class MsgColorManagerTest {
                 });
     }
     
+    @Test
+    public void testMatching() {
+        Settings settings = new Settings(null, null);
+        settings.addBoolean("msgColorsEnabled", true);
+        settings.addList("msgColors", new LinkedList(), Setting.STRING);
+        MsgColorManager manager = new MsgColorManager(settings);
+        assertTrue(manager.getInfoColor("abc", -2, -2, "#test", null, null, null, null).isEmpty());
+        
+        MsgColorItem info = new MsgColorItem("config:info start:abc", Color.RED, true, null, false);
+        MsgColorItem any = new MsgColorItem("config:any start:abcd", Color.GREEN, true, null, false);
+        MsgColorItem regular = new MsgColorItem("start:abc", Color.BLUE, true, null, false);
+        manager.setData(Arrays.asList(info, any, regular));
+        
+        User user = new User("test", Room.createRegular("#test"));
+        assertSame(regular, manager.getMsgColor(user, null, "abc", -2, -2, null));
+        assertSame(any, manager.getMsgColor(user, null, "abcd", -2, -2, null));
+        assertTrue(manager.getMsgColor(user, null, "ab", -2, -2, null).isEmpty());
+        assertSame(info, manager.getInfoColor("abcd", -2, -2, "#test", null, null, null, null));
+        assertSame(info, manager.getColor(HighlightItem.Type.ANY, user, null, "abcd", -2, -2, "#test", null, null));
+        
+        settings.setBoolean("msgColorsEnabled", false);
+        assertTrue(manager.getMsgColor(user, null, "abc", -2, -2, null).isEmpty());
+    }
+    
     private void testLoadingAndSaving(String[] testData, MsgColorItem[] expectedData) {
         // Define settings
         Settings settings = new Settings(null, null);
@@ -0,0 +1,66 @@
+
+package chatty.gui.colors;
+
+import chatty.Room;
+import chatty.User;
+import chatty.util.settings.Setting;
+import chatty.util.settings.Settings;
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.LinkedList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class UsercolorManagerTest {
+    
+    private static final Color RED = new Color(255, 0, 0);
+    private static final Color GREEN = new Color(0, 255, 0);
+    private static final Color BLUE = new Color(0, 0, 255);
+    
+    private static UsercolorManager create(String... items) {
+        Settings settings = new Settings(null, null);
+        settings.addBoolean("customUsercolors", true);
+        settings.addList("usercolors", new LinkedList(), Setting.STRING);
+        settings.putList("usercolors", Arrays.asList(items));
+        return new UsercolorManager(settings);
+    }
+    
+    private static User createUser(String name, Color color, boolean mod) {
+        User user = new User(name, Room.createRegular("#test"));
+        if (color != null) {
+            user.setColor(color);
+        }
+        user.setModerator(mod);
+        return user;
+    }
+    
+    @Test
+    public void testOrder() {
+        UsercolorManager m = create(
+                "abc,#FF0000",
+                "$mod,#00FF00",
+                "#0000FF,#FF0000",
+                "Def,#0000FF",
+                "$all,#00FF00",
+                "abc,#0000FF");
+        
+        assertEquals(RED, m.getColor(createUser("abc", null, true)));
+        assertEquals(RED, m.getColor(createUser("ABC", BLUE, false)));
+        assertEquals(GREEN, m.getColor(createUser("def", null, true)));
+        assertEquals(BLUE, m.getColor(createUser("def", null, false)));
+        assertEquals(RED, m.getColor(createUser("def", BLUE, false)));
+        assertEquals(GREEN, m.getColor(createUser("other", RED, false)));
+        
+        m.setData(Arrays.asList(new UsercolorItem("$defaultcolor", RED)));
+        assertEquals(RED, m.getColor(createUser("abc", null, false)));
+        assertNull(m.getColor(createUser("abc", BLUE, false)));
+        
+        m.setData(Arrays.asList());
+        assertNull(m.getColor(createUser("abc", null, false)));
+    }
+    
+}
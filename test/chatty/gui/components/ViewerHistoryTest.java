@@ -0,0 +1,35 @@
+
+package chatty.gui.components;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class ViewerHistoryTest {
+    
+    @Test
+    public void testDownsample() {
+        List<Long> times = new ArrayList<>(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L));
+        List<Point> points = new ArrayList<>(Arrays.asList(
+                new Point(0, 10), new Point(0, 5), new Point(0, 20), new Point(0, 8),
+                new Point(1, 3),
+                new Point(2, 4), new Point(2, 4)));
+        List<Boolean> changed = new ArrayList<>(Arrays.asList(
+                false, false, false, true,
+                false,
+                false, true));
+        ViewerHistory.downsample(times, points, changed);
+        assertEquals(Arrays.asList(2L, 3L, 5L, 6L), times);
+        assertEquals(Arrays.asList(new Point(0, 5), new Point(0, 20), new Point(1, 3), new Point(2, 4)), points);
+        // Changes of entries that were removed are kept for the column
+        assertEquals(Arrays.asList(true, false, false, true), changed);
+    }
+    
+}
@@ -0,0 +1,78 @@
+
+package chatty.gui.components.completion;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class CompletionIndexTest {
+
+    @Test
+    public void testPrefix() {
+        CompletionIndex<String> index = new CompletionIndex<>();
+        index.add("joshWithIt", "joshWithIt");
+        index.add("Kappa", "Kappa");
+        index.add("KappaPride", "KappaPride");
+        index.add("kappa2", "kappa");
+        index.add("abc", "abc");
+        assertEquals(Arrays.asList("Kappa", "kappa2", "KappaPride"), index.findPrefix("kap"));
+        assertEquals(Arrays.asList("joshWithIt"), index.findPrefix("josh"));
+        assertEquals(Collections.emptyList(), index.findPrefix("x"));
+        assertEquals(5, index.findPrefix("").size());
+
+        index.remove("Kappa");
+        assertEquals(Arrays.asList("kappa2", "KappaPride"), index.findPrefix("kap"));
+        index.add("kappa2", "other");
+        assertEquals(Arrays.asList("KappaPride"), index.findPrefix("kap"));
+        assertEquals(4, index.size());
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(Collections.emptyList(), index.findPrefix("kap"));
+    }
+
+    @Test
+    public void testMultipleKeys() {
+        CompletionIndex<Integer> index = new CompletionIndex<>();
+        index.add(1, "name", "Name", "custom", null, "");
+        index.add(2, "other", "Custom2");
+        assertEquals(Arrays.asList(1), index.findPrefix("name"));
+        assertEquals(Arrays.asList(1, 2), index.findPrefix("cust"));
+        assertEquals(Arrays.asList(1, 2), index.findContaining("ustom"));
+        index.remove(1);
+        assertEquals(Arrays.asList(2), index.findPrefix("cust"));
+        assertTrue(index.findPrefix("name").isEmpty());
+    }
+
+    @Test
+    public void testContaining() {
+        CompletionIndex<String> index = new CompletionIndex<>();
+        for (String item : new String[]{"joshWithIt", "withIt", "Kappa", "itsBoshyTime", "abc"}) {
+            index.add(item, item);
+        }
+        assertEquals(Arrays.asList("itsBoshyTime", "joshWithIt", "withIt"), index.findContaining("it"));
+        assertEquals(Arrays.asList("joshWithIt", "withIt"), index.findContaining("withit"));
+        assertEquals(Arrays.asList("itsBoshyTime", "joshWithIt"), index.findContaining("osh"));
+        assertEquals(Collections.emptyList(), index.findContaining("xyz"));
+        assertEquals(Collections.emptyList(), index.findContaining("withitx"));
+        index.remove("joshWithIt");
+        assertEquals(Arrays.asList("withIt"), index.findContaining("withit"));
+    }
+
+    @Test
+    public void testUses() {
+        CompletionIndex<String> index = new CompletionIndex<>();
+        index.add("Kappa", "Kappa");
+        assertEquals(0, index.getUses("Kappa"));
+        index.use("Kappa");
+        index.use("kappa");
+        assertEquals(2, index.getUses("KAPPA"));
+        index.clear();
+        assertEquals(2, index.getUses("Kappa"));
+    }
+
+}
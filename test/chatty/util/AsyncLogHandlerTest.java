@@ -0,0 +1,138 @@
+
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class AsyncLogHandlerTest {
+
+    private static class CollectingHandler extends Handler {
+
+        final List<String> output = new ArrayList<>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        volatile CountDownLatch release;
+
+        @Override
+        public void publish(LogRecord record) {
+            if (release != null) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (output) {
+                output.add(getFormatter().format(record));
+            }
+        }
+
+        String getOutput() {
+            synchronized (output) {
+                return String.join("", output);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws SecurityException {
+        }
+
+    }
+
+    private static class CountingFormatter extends Formatter {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public String format(LogRecord record) {
+            count.incrementAndGet();
+            return record.getMessage()+"\n";
+        }
+
+    }
+
+    @Test
+    public void testWrite() {
+        CollectingHandler target = new CollectingHandler();
+        target.setFormatter(new CountingFormatter());
+        AsyncLogHandler handler = new AsyncLogHandler("test", target, 100);
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.INFO, "line"+i));
+        }
+        handler.flush();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            expected.append("line").append(i).append("\n");
+        }
+        assertEquals(expected.toString(), target.getOutput());
+        handler.close();
+    }
+
+    @Test
+    public void testFiltered() {
+        CollectingHandler target = new CollectingHandler();
+        CountingFormatter formatter = new CountingFormatter();
+        target.setFormatter(formatter);
+        target.setLevel(Level.INFO);
+        target.setFilter(record -> !record.getMessage().startsWith("ignore"));
+        AsyncLogHandler handler = new AsyncLogHandler("test", target, 100);
+        handler.publish(new LogRecord(Level.FINE, "fine"));
+        handler.publish(new LogRecord(Level.INFO, "ignore this"));
+        handler.publish(new LogRecord(Level.WARNING, "warning"));
+        handler.flush();
+        assertEquals("warning\n", target.getOutput());
+        // Filtered records are not formatted
+        assertEquals(1, formatter.count.get());
+        handler.close();
+    }
+
+    @Test
+    public void testDropped() throws InterruptedException {
+        CollectingHandler target = new CollectingHandler();
+        target.setFormatter(new CountingFormatter());
+        target.release = new CountDownLatch(1);
+        AsyncLogHandler handler = new AsyncLogHandler("test", target, 3);
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        // Wait for the writer to be stuck writing the first record
+        assertTrue(target.blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            handler.publish(new LogRecord(Level.INFO, "line"+i));
+        }
+        target.release.countDown();
+        handler.flush();
+        assertEquals("first\n[2 log records dropped (queue full)]\nline2\nline3\nline4\n",
+                target.getOutput().replace(System.lineSeparator(), "\n"));
+        assertTrue(handler.getInfo().endsWith("dropped 2"));
+        handler.close();
+    }
+
+    @Test
+    public void testClosed() {
+        CollectingHandler target = new CollectingHandler();
+        target.setFormatter(new CountingFormatter());
+        AsyncLogHandler handler = new AsyncLogHandler("test", target, 100);
+        handler.publish(new LogRecord(Level.INFO, "before"));
+        handler.close();
+        handler.publish(new LogRecord(Level.INFO, "after"));
+        assertEquals("before\n", target.getOutput());
+    }
+
+}
@@ -0,0 +1,70 @@
+
+package chatty.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class BoundedCacheTest {
+
+    @Test
+    public void testGetPut() {
+        BoundedCache<String, String> cache = new BoundedCache<>(0, 0);
+        cache.put("a", "1");
+        cache.put("b", null);
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertTrue(cache.containsKey("b"));
+        assertFalse(cache.containsKey("c"));
+        assertNull(cache.get("c"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.putIfAbsent("a", "2");
+        assertEquals("1", cache.get("a"));
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMaxSize() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(100, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() <= 100);
+        assertTrue(cache.size() >= 50);
+        assertEquals(1000 - cache.size(), cache.getEvictions());
+        // Recently added are kept
+        assertEquals(Integer.valueOf(999), cache.get(999));
+    }
+
+    @Test
+    public void testLeastRecentlyUsed() {
+        // Keys 0 and 16 end up in the same segment, which holds one entry
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(16, 0);
+        cache.put(0, 0);
+        cache.put(16, 16);
+        assertNull(cache.get(0));
+        assertEquals(Integer.valueOf(16), cache.get(16));
+    }
+
+    @Test
+    public void testExpire() {
+        BoundedCache<String, String> cache = new BoundedCache<>(0, -1);
+        cache.put("a", "1");
+        assertFalse(cache.containsKey("a"));
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getExpirations());
+
+        cache.setLimits(0, 60*1000);
+        cache.put("b", "2");
+        cache.cleanUp();
+        assertEquals("2", cache.get("b"));
+    }
+
+}
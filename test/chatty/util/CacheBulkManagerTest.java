@@ -685,6 +685,31 @@ public class CacheBulkManagerTest {
         
     }
     
+    @Test
+    public void testCacheLimits() {
+        MyRequester requester = makeRequester(new String[][][]{
+        });
+        CachedBulkManager<String, String> m = new CachedBulkManager<>(requester, DAEMON);
+        m.setCacheLimits(16, 0);
+        for (int i = 0; i < 100; i++) {
+            m.setResult("key"+i, "value"+i);
+        }
+        int cached = 0;
+        for (int i = 0; i < 100; i++) {
+            if (m.get("key"+i) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached <= 16);
+        
+        // Expired items are queried again
+        m.setCacheLimits(100, -1);
+        m.setResult("a", "r.a");
+        assertNull(m.get("a"));
+        m.query(null, NONE, "a");
+        assertTrue(m.hasQueryKey("a"));
+    }
+    
     @Test
     public void testB() {
         Requester requester = new CachedBulkManager.Requester<String, String>() {
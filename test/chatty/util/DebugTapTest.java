@@ -0,0 +1,52 @@
+
+package chatty.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class DebugTapTest {
+    
+    @Test
+    public void test() {
+        DebugTap tap = DebugTap.PUBSUB;
+        StringBuilder b = new StringBuilder();
+        
+        // Inactive
+        tap.add("a", "b");
+        tap.setActive(true);
+        assertEquals(0, tap.drain(b, 100));
+        
+        // Active
+        tap.add("--> ", "abc");
+        tap.add(null, "def");
+        assertEquals(2, tap.drain(b, 100));
+        String[] lines = b.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].endsWith("] --> abc"));
+        assertTrue(lines[1].endsWith("] def"));
+        assertEquals(0, tap.drain(b, 100));
+        
+        // More than max lines
+        long droppedBefore = tap.getDropped();
+        for (int i = 0; i < 10; i++) {
+            tap.add(null, String.valueOf(i));
+        }
+        b.setLength(0);
+        assertEquals(3, tap.drain(b, 3));
+        assertEquals(7, tap.getDropped() - droppedBefore);
+        assertTrue(b.toString().endsWith("] 9\n"));
+        
+        // Lines added before deactivating are skipped
+        tap.add(null, "abc");
+        tap.setActive(false);
+        assertEquals(0, tap.drain(b, 100));
+        tap.setActive(true);
+        assertEquals(0, tap.drain(b, 100));
+        tap.setActive(false);
+    }
+    
+}
@@ -0,0 +1,127 @@
+
+package chatty.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class DiskCacheTest {
+
+    private static final long TTL = 60*1000;
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("chatty-diskcache");
+        file = dir.resolve("test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testPutGet() {
+        DiskCache cache = new DiskCache(null, 10);
+        cache.put("a", "1", TTL);
+        cache.put("b", "2", TTL);
+        assertEquals("1", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertNull(cache.get("c"));
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpired() {
+        DiskCache cache = new DiskCache(null, 10);
+        cache.put("a", "1", -1);
+        cache.put("b", "2", TTL);
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getAll().size());
+    }
+
+    @Test
+    public void testMaxEntries() {
+        DiskCache cache = new DiskCache(null, 2);
+        cache.put("a", "1", TTL);
+        cache.put("b", "2", TTL);
+        cache.get("a");
+        cache.put("c", "3", TTL);
+        // "b" was used least recently
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        DiskCache cache = new DiskCache(file, 10);
+        cache.put("a", "1", TTL);
+        cache.put("b", "with\ttab\nand newline \\", TTL);
+        cache.put("c", "3", TTL);
+        cache.put("d", "4", -1);
+        cache.remove("c");
+        cache.flush();
+
+        DiskCache loaded = new DiskCache(file, 10);
+        Map<String, String> all = loaded.getAll();
+        assertEquals(2, all.size());
+        assertEquals("1", all.get("a"));
+        assertEquals("with\ttab\nand newline \\", all.get("b"));
+
+        // Partially written line is ignored
+        Files.write(file, "123".getBytes("UTF-8"), StandardOpenOption.APPEND);
+        assertEquals(2, new DiskCache(file, 10).size());
+    }
+
+    @Test
+    public void testSameValueNotWritten() throws IOException {
+        DiskCache cache = new DiskCache(file, 10);
+        cache.put("a", "1", TTL);
+        cache.put("a", "1", TTL);
+        cache.flush();
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        DiskCache cache = new DiskCache(file, 10);
+        for (int i = 0; i < 2000; i++) {
+            cache.put("key"+(i % 5), String.valueOf(i), TTL);
+        }
+        cache.flush();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(5, lines.size());
+        assertEquals(5, new DiskCache(file, 10).size());
+        assertEquals("1999", new DiskCache(file, 10).get("key4"));
+    }
+
+    @Test
+    public void testEscape() {
+        String[] values = new String[]{"", "abc", "\\", "\\t", "a\tb\r\nc\\\\"};
+        for (String value : values) {
+            String escaped = DiskCache.escape(value);
+            assertFalse(escaped.contains("\t"));
+            assertFalse(escaped.contains("\n"));
+            assertEquals(value, DiskCache.unescape(escaped));
+        }
+    }
+
+}
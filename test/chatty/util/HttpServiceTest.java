@@ -0,0 +1,78 @@
+
+package chatty.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class HttpServiceTest {
+
+    @Test
+    public void testGetHost() {
+        assertEquals("api.twitch.tv", HttpService.getHost("https://API.twitch.tv/helix/users?id=123"));
+        assertEquals("", HttpService.getHost(null));
+        assertEquals("", HttpService.getHost("not a url"));
+    }
+
+    @Test
+    public void testHostLimit() throws InterruptedException {
+        String url = "https://limit.example.com/";
+        int count = HttpService.MAX_PER_HOST + 5;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            HttpService.execute(url, () -> {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                try {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= HttpService.MAX_PER_HOST);
+    }
+
+    @Test
+    public void testCoalesced() throws InterruptedException {
+        String url = "https://coalesced.example.com/";
+        AtomicInteger performed = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        AtomicInteger received = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            HttpService.coalesced(url, url, () -> {
+                performed.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "result";
+            }, result -> {
+                if ("result".equals(result)) {
+                    received.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, performed.get());
+        assertEquals(3, received.get());
+    }
+
+}
@@ -0,0 +1,104 @@
+
+package chatty.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class JSONStreamTest {
+
+    private static List<String> parse(String json, String... paths) throws IOException, ParseException {
+        List<String> result = new ArrayList<>();
+        JSONStream.parse(new StringReader(json), (path, element) -> {
+            String value;
+            if (element instanceof JSONObject) {
+                value = ((JSONObject) element).toJSONString();
+            }
+            else if (element instanceof JSONArray) {
+                value = ((JSONArray) element).toJSONString();
+            }
+            else {
+                value = String.valueOf(element);
+            }
+            result.add(path+"="+value);
+        }, paths);
+        return result;
+    }
+
+    @Test
+    public void testRootArray() throws Exception {
+        assertEquals(list("=1", "=abc", "={\"a\":null}", "=[1,[2]]", "=true"),
+                parse("[1, \"abc\", {\"a\": null}, [1, [2]], true]", ""));
+        // Not an array
+        assertEquals(list(), parse("{\"a\": [1]}", ""));
+    }
+
+    @Test
+    public void testPaths() throws Exception {
+        String json = "{\"id\": 1,"
+                + "\"list\": [{\"code\": \"a\", \"user\": {\"name\": \"b\"}}, {\"code\": \"c\"}],"
+                + "\"other\": [5, 6],"
+                + "\"set\": {\"list\": [\"x\"], \"nested\": [{\"list\": [\"y\"]}]},"
+                + "\"bots\": [\"bot\"]}";
+        assertEquals(list("list={\"code\":\"a\",\"user\":{\"name\":\"b\"}}", "list={\"code\":\"c\"}",
+                "set.list=x", "bots=bot"),
+                parse(json, "list", "set.list", "bots"));
+        // Arrays inside arrays are not matched by path
+        assertEquals(list(), parse(json, "set.nested.list", "id", "missing"));
+        assertEquals(list("other=5", "other=6"), parse(json, "other"));
+        assertEquals(list("set.nested={\"list\":[\"y\"]}"), parse(json, "set.nested"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalid() throws Exception {
+        parse("{\"list\": [1, 2", "list");
+    }
+
+    @Test
+    public void testBTTV() throws Exception {
+        String json = "{\"id\":\"1\",\"bots\":[\"bot1\",\"bot2\"],"
+                + "\"channelEmotes\":[{\"id\":\"a1\",\"code\":\"Emote1\",\"imageType\":\"gif\",\"userId\":\"1\"}],"
+                + "\"sharedEmotes\":[{\"id\":\"a2\",\"code\":\"Emote2\",\"imageType\":\"png\",\"user\":{\"name\":\"other\"}},"
+                + "{\"id\":\"\",\"code\":\"Invalid\"}]}";
+        BTTVEmotes.Parsed parsed = BTTVEmotes.parse(new StringReader(json), "channel");
+        assertEquals(2, parsed.emotes.size());
+        assertEquals(2, parsed.bots.size());
+        assertTrue(parsed.bots.contains("bot2"));
+        for (chatty.util.api.Emoticon emote : parsed.emotes) {
+            assertTrue(emote.streamRestrictionContains("channel"));
+            if (emote.code.equals("Emote1")) {
+                assertTrue(emote.isAnimated());
+            }
+            else {
+                assertEquals("Emote2", emote.code);
+                assertEquals("other", emote.creator);
+            }
+        }
+
+        BTTVEmotes.Parsed global = BTTVEmotes.parse(new StringReader(
+                "[{\"id\":\"b1\",\"code\":\"Global\",\"imageType\":\"png\",\"userId\":\"1\"}]"), BTTVEmotes.GLOBAL);
+        assertEquals(1, global.emotes.size());
+        assertFalse(global.emotes.iterator().next().hasStreamRestrictions());
+
+        assertNull(BTTVEmotes.parse(new StringReader("[{"), BTTVEmotes.GLOBAL));
+    }
+
+    private static List<String> list(String... values) {
+        List<String> result = new ArrayList<>();
+        for (String value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+}
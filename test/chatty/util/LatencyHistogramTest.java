@@ -0,0 +1,50 @@
+
+package chatty.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 1000000; value += value / 7 + 1) {
+            int index = LatencyHistogram.index(value);
+            long upper = LatencyHistogram.upperBound(index);
+            assertTrue(value+" "+upper, upper >= value);
+            assertTrue(value+" "+upper, upper <= value * 1.125 + 1);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBound(index - 1) < value);
+            }
+        }
+        assertEquals(LatencyHistogram.index(Long.MAX_VALUE), LatencyHistogram.index(1L << 50));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            h.add(i * 1000);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(100000, h.getMax());
+        assertEquals(50500, h.getMean(), 0.1);
+        assertEquals(50000, h.getPercentile(50), 50000 * 0.125);
+        assertEquals(99000, h.getPercentile(99), 99000 * 0.125);
+        assertEquals(100000, h.getPercentile(100));
+
+        LatencyHistogram h2 = new LatencyHistogram();
+        h2.add(5);
+        h2.add(h);
+        assertEquals(101, h2.getCount());
+        assertEquals(5, h2.getPercentile(0));
+        h2.reset();
+        assertEquals(0, h2.getCount());
+    }
+
+}
@@ -0,0 +1,79 @@
+
+package chatty.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class SchedulerTest {
+
+    @Test
+    public void testCoalesced() throws InterruptedException {
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        Object key = new Object();
+        assertTrue(Scheduler.scheduleCoalesced("test", key, 100, () -> {
+            count.incrementAndGet();
+            latch.countDown();
+        }));
+        assertTrue(Scheduler.isPending(key));
+        assertFalse(Scheduler.scheduleCoalesced("test", key, 100, () -> count.incrementAndGet()));
+        assertFalse(Scheduler.scheduleCoalesced("test", key, 0, () -> count.incrementAndGet()));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, count.get());
+        assertFalse(Scheduler.isPending(key));
+
+        // Can be scheduled again after running
+        CountDownLatch latch2 = new CountDownLatch(1);
+        assertTrue(Scheduler.scheduleCoalesced("test", key, 0, () -> latch2.countDown()));
+        assertTrue(latch2.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicInteger count = new AtomicInteger();
+        Scheduler.Task task = Scheduler.schedule("test", 100, () -> count.incrementAndGet());
+        task.cancel();
+        Thread.sleep(200);
+        assertEquals(0, count.get());
+
+        Scheduler.Task repeating = Scheduler.scheduleRepeating("test", 0, 10, () -> {
+            if (count.incrementAndGet() == 3) {
+                throw new RuntimeException("Should not stop repeating");
+            }
+        });
+        Thread.sleep(200);
+        repeating.cancel();
+        int countAfterCancel = count.get();
+        assertTrue(countAfterCancel > 3);
+        Thread.sleep(100);
+        assertTrue(count.get() <= countAfterCancel + 1);
+    }
+
+    @Test
+    public void testDelayedActionQueue() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(3);
+        StringBuilder b = new StringBuilder();
+        DelayedActionQueue<String> q = DelayedActionQueue.create(item -> {
+            synchronized (b) {
+                b.append(item);
+            }
+            latch.countDown();
+        }, 20);
+        q.add("a");
+        q.add("b");
+        q.add("c");
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        synchronized (b) {
+            assertEquals("abc", b.toString());
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+
+package chatty.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class TaskRunnerTest {
+
+    @Test
+    public void testExecute() throws InterruptedException {
+        int count = 30;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            TaskRunner.execute(TaskRunner.Category.IO, "Test", () -> {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                try {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        if (!TaskRunner.usesVirtualThreads()) {
+            // Bounded by the pool
+            assertTrue(maxRunning.get() <= 8);
+        }
+        assertTrue(TaskRunner.getInfo().contains("IO: "));
+    }
+
+    @Test
+    public void testNewThread() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = TaskRunner.newThread(TaskRunner.Category.LONG_RUNNING, "TestThread", done::countDown);
+        assertEquals("TestThread", thread.getName());
+        assertTrue(thread.isDaemon());
+        assertFalse(thread.isAlive());
+        thread.start();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+    }
+
+}
@@ -0,0 +1,103 @@
+
+package chatty.util.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class EmoticonSnapshotTest {
+
+    private static Emoticon createEmote(String code, String id) {
+        Emoticon.Builder b = new Emoticon.Builder(Emoticon.Type.BTTV, code,
+                "https://cdn.betterttv.net/emote/{{id}}/{{image}}");
+        b.setStringId(id);
+        b.setLiteral(true);
+        b.setCreator("creator");
+        b.addStreamRestriction("abc");
+        b.setStream("abc");
+        b.setAnimated(true);
+        b.addInfo("info");
+        return b.build();
+    }
+
+    private static EmoticonUpdate createUpdate(Emoticon... emotes) {
+        EmoticonUpdate.Builder b = new EmoticonUpdate.Builder(new HashSet<>(Arrays.asList(emotes)));
+        b.setTypeToRemove(Emoticon.Type.BTTV);
+        b.setRoomToRemove("abc");
+        return b.build();
+    }
+
+    @Test
+    public void testFormat() throws IOException {
+        EmoticonUpdate update = createUpdate(createEmote("Kappa", "1"), createEmote("(ditto)", "2"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EmoticonSnapshot.write(update, new DataOutputStream(bytes));
+        EmoticonUpdate result = EmoticonSnapshot.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(Emoticon.Type.BTTV, result.typeToRemove);
+        assertNull(result.subTypeToRemove);
+        assertEquals("abc", result.roomToRemove);
+        assertEquals(EmoticonUpdate.Source.OTHER, result.source);
+        assertEquals(2, result.emotesToAdd.size());
+        Emoticon emote = null;
+        for (Emoticon e : result.emotesToAdd) {
+            if (e.code.equals("(ditto)")) {
+                emote = e;
+            }
+        }
+        assertNotNull(emote);
+        assertEquals("2", emote.stringId);
+        assertEquals("creator", emote.creator);
+        assertEquals("abc", emote.getStream());
+        assertTrue(emote.literal);
+        assertTrue(emote.isAnimated());
+        assertTrue(emote.streamRestrictionContains("abc"));
+        assertEquals(new HashSet<>(Arrays.asList("info")), emote.getInfos());
+        assertEquals("https://cdn.betterttv.net/emote/2/1x", emote.getEmoteUrl(1, null));
+    }
+
+    @Test
+    public void testStoreLoad() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        try {
+            EmoticonSnapshot.setDirectory(dir);
+            EmoticonUpdate update = createUpdate(createEmote("Kappa", "1"));
+            assertTrue(EmoticonSnapshot.store("test", "storeload", update));
+            // Unchanged
+            assertFalse(EmoticonSnapshot.store("test", "storeload", createUpdate(createEmote("Kappa", "1"))));
+            // Changed
+            assertTrue(EmoticonSnapshot.store("test", "storeload", createUpdate(createEmote("Kappa", "1"), createEmote("Keepo", "2"))));
+            // Already added in this session
+            assertNull(EmoticonSnapshot.load("test", "storeload"));
+            assertNull(EmoticonSnapshot.load("test", "other"));
+
+            // Copy file for a key that hasn't been used yet
+            Files.copy(dir.resolve("test_storeload.bin"), dir.resolve("test_copy.bin"));
+            EmoticonUpdate loaded = EmoticonSnapshot.load("test", "copy");
+            assertNotNull(loaded);
+            assertEquals(2, loaded.emotesToAdd.size());
+            // Same as loaded
+            assertFalse(EmoticonSnapshot.store("test", "copy", createUpdate(createEmote("Keepo", "2"), createEmote("Kappa", "1"))));
+        }
+        finally {
+            EmoticonSnapshot.setDirectory(null);
+            for (Path file : Files.newDirectoryStream(dir)) {
+                Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
+}
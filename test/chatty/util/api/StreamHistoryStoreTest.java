@@ -0,0 +1,209 @@
+
+package chatty.util.api;
+
+import chatty.util.api.StreamInfo.StreamType;
+import chatty.util.api.StreamTagManager.StreamTag;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class StreamHistoryStoreTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("streamhistory");
+        StreamHistoryStore.setDirectory(dir);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        StreamHistoryStore.setDirectory(null);
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(dir);
+    }
+
+    private static StreamInfoHistoryItem online(long time, int viewers, String status, String game) {
+        return new StreamInfoHistoryItem(time, viewers, status, game, StreamType.LIVE,
+                Arrays.asList(new StreamTag("1", "Tag")), 500, 400);
+    }
+
+    private static void assertItem(StreamInfoHistoryItem expected, StreamInfoHistoryItem actual) {
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.isOnline(), actual.isOnline());
+        assertEquals(expected.getViewers(), actual.getViewers());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getGame(), actual.getGame());
+        assertEquals(expected.getStreamType(), actual.getStreamType());
+        assertEquals(expected.getCommunities(), actual.getCommunities());
+        assertEquals(expected.getStreamStartTime(), actual.getStreamStartTime());
+        assertEquals(expected.getStreamStartTimeWithPicnic(), actual.getStreamStartTimeWithPicnic());
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        List<StreamInfoHistoryItem> items = new ArrayList<>();
+        items.add(online(1000, 10, "Title", "Game"));
+        items.add(online(121000, 5, "Title", "Game"));
+        items.add(online(241000, 50000, null, "Other Game"));
+        items.add(new StreamInfoHistoryItem(300000));
+        items.add(new StreamInfoHistoryItem(420000));
+        items.add(new StreamInfoHistoryItem(2000000000000L, 0, "Title", "",
+                StreamType.RERUN, null, -1, -1));
+        items.add(online(100, 3, "Earlier", "Game"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        StreamInfoHistoryItem prev = null;
+        for (StreamInfoHistoryItem item : items) {
+            StreamHistoryStore.writeEntry(out, prev, item);
+            prev = item;
+        }
+        out.flush();
+        byte[] data = bytes.toByteArray();
+
+        List<StreamInfoHistoryItem> result = read(data, 0, Long.MAX_VALUE);
+        assertEquals(items.size(), result.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertItem(items.get(i), result.get(i));
+        }
+
+        // Range
+        result = read(data, 121000, 300000);
+        assertEquals(3, result.size());
+        assertEquals(121000, result.get(0).getTime());
+        assertEquals(300000, result.get(2).getTime());
+
+        // Incomplete last entry
+        result = read(Arrays.copyOf(data, data.length - 3), 0, Long.MAX_VALUE);
+        assertEquals(items.size() - 1, result.size());
+    }
+
+    @Test
+    public void testDeltaSize() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        StreamInfoHistoryItem prev = online(1000, 1000, "Title", "Game");
+        StreamHistoryStore.writeEntry(out, null, prev);
+        int fullSize = bytes.size();
+        StreamHistoryStore.writeEntry(out, prev, online(121000, 1010, "Title", "Game"));
+        // Length, type, time, viewers, changed flags, checksum
+        assertEquals(11, bytes.size() - fullSize);
+    }
+
+    @Test
+    public void testDamaged() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        StreamHistoryStore.writeEntry(out, null, online(1000, 10, "Title", "Game"));
+        int damagedPos = bytes.size() + 3;
+        StreamHistoryStore.writeEntry(out, online(1000, 10, "Title", "Game"), online(2000, 20, "Title", "Game"));
+        StreamHistoryStore.writeEntry(out, online(2000, 20, "Title", "Game"), online(3000, 30, "Title", "Game"));
+        StreamHistoryStore.writeEntry(out, null, online(4000, 40, "Title", "Game"));
+        StreamHistoryStore.writeEntry(out, online(4000, 40, "Title", "Game"), online(5000, 50, "Title", "Game"));
+        byte[] data = bytes.toByteArray();
+        data[damagedPos]++;
+
+        // Damaged entry and the delta entry after it are skipped
+        List<StreamInfoHistoryItem> result = read(data, 0, Long.MAX_VALUE);
+        assertEquals(3, result.size());
+        assertEquals(1000, result.get(0).getTime());
+        assertItem(online(4000, 40, "Title", "Game"), result.get(1));
+        assertItem(online(5000, 50, "Title", "Game"), result.get(2));
+    }
+
+    @Test
+    public void testAppendAfterIncomplete() throws Exception {
+        StreamHistoryStore.append("abc", online(1000, 10, "Title", "Game"));
+        StreamHistoryStore.append("abc", online(2000, 20, "Title", "Game"));
+        StreamHistoryStore.flush();
+
+        // Cut off part of the last entry, as if writing was interrupted
+        Path file = dir.resolve("abc.bin");
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 2));
+
+        // New session
+        StreamHistoryStore.setDirectory(dir);
+        StreamHistoryStore.append("abc", online(3000, 30, "Title 2", "Game"));
+        StreamHistoryStore.append("abc", online(4000, 40, "Title 2", "Game"));
+        LinkedHashMap<Long, StreamInfoHistoryItem> result = StreamHistoryStore.read("abc", 0, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(1000L, 3000L, 4000L), new ArrayList<>(result.keySet()));
+        assertItem(online(3000, 30, "Title 2", "Game"), result.get(3000L));
+        assertItem(online(4000, 40, "Title 2", "Game"), result.get(4000L));
+    }
+
+    @Test
+    public void testStore() {
+        StreamHistoryStore.append("abc", online(1000, 10, "Title", "Game"));
+        StreamHistoryStore.append("abc", online(2000, 20, "Title", "Game"));
+        StreamHistoryStore.append("other", online(1500, 5, "Other", "Game"));
+        StreamHistoryStore.append("abc", new StreamInfoHistoryItem(3000));
+
+        LinkedHashMap<Long, StreamInfoHistoryItem> result = StreamHistoryStore.read("abc", 0, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L), new ArrayList<>(result.keySet()));
+        assertEquals(20, result.get(2000L).getViewers());
+        assertFalse(result.get(3000L).isOnline());
+        assertEquals(1, StreamHistoryStore.read("other", 0, Long.MAX_VALUE).size());
+        assertTrue(StreamHistoryStore.read("missing", 0, Long.MAX_VALUE).isEmpty());
+
+        // Appending after reading continues with the same file
+        StreamHistoryStore.append("abc", online(4000, 40, "Title 2", "Game"));
+        result = StreamHistoryStore.read("abc", 2500, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(3000L, 4000L), new ArrayList<>(result.keySet()));
+        assertEquals("Title 2", result.get(4000L).getStatus());
+    }
+
+    @Test
+    public void testCompact() {
+        StreamHistoryStore.append("abc", online(1000, 10, "Title", "Game"));
+        StreamHistoryStore.append("abc", online(2000, 20, "Title", "Game"));
+        StreamHistoryStore.append("abc", online(3000, 30, "Title", "Game"));
+        StreamHistoryStore.append("old", online(1000, 5, "Other", "Game"));
+
+        StreamHistoryStore.compactAll(2000);
+        LinkedHashMap<Long, StreamInfoHistoryItem> result = StreamHistoryStore.read("abc", 0, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(2000L, 3000L), new ArrayList<>(result.keySet()));
+        assertItem(online(2000, 20, "Title", "Game"), result.get(2000L));
+        assertFalse(Files.exists(dir.resolve("old.bin")));
+
+        StreamHistoryStore.append("abc", online(4000, 40, "Title", "Game"));
+        result = StreamHistoryStore.read("abc", 0, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(2000L, 3000L, 4000L), new ArrayList<>(result.keySet()));
+        assertEquals(40, result.get(4000L).getViewers());
+    }
+
+    @Test
+    public void testDisabled() {
+        StreamHistoryStore.setDirectory(null);
+        assertFalse(StreamHistoryStore.isEnabled());
+        StreamHistoryStore.append("abc", online(1000, 10, "Title", "Game"));
+        assertTrue(StreamHistoryStore.read("abc", 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    private static List<StreamInfoHistoryItem> read(byte[] data, long from, long to) throws Exception {
+        List<StreamInfoHistoryItem> result = new ArrayList<>();
+        StreamHistoryStore.readEntries(new DataInputStream(new ByteArrayInputStream(data)), from, to, result::add);
+        return result;
+    }
+
+}
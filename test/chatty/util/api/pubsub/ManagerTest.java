@@ -0,0 +1,67 @@
+
+package chatty.util.api.pubsub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class ManagerTest {
+
+    private static String frame(String topic, String message) {
+        return "{\"type\":\"MESSAGE\",\"data\":{\"topic\":\""+topic+"\",\"message\":\""+message+"\"}}";
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        Map<String, List<List<String>>> batches = new HashMap<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        Manager manager = new Manager("wss://localhost", new PubSubListener() {
+
+            @Override
+            public void messageReceived(Message message) {
+                fail("Single message");
+            }
+
+            @Override
+            public void messagesReceived(List<Message> messages) {
+                String topic = messages.get(0).data.topic;
+                List<String> batch = new ArrayList<>();
+                for (Message message : messages) {
+                    assertEquals(topic, message.data.topic);
+                    batch.add(message.data.message);
+                }
+                synchronized (batches) {
+                    batches.computeIfAbsent(topic, k -> new ArrayList<>()).add(batch);
+                }
+                latch.countDown();
+            }
+        }, null);
+
+        manager.received(0, frame("test.123", "a1"));
+        manager.received(0, frame("test.456", "b1"));
+        manager.received(1, frame("test.123", "a2"));
+        manager.received(0, "invalid");
+        manager.received(0, frame("test.456", "b2"));
+        manager.received(1, frame("test.123", "a3"));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // Wait in case of further (unexpected) batches
+        Thread.sleep(200);
+        synchronized (batches) {
+            assertEquals(2, batches.size());
+            assertEquals(Arrays.asList(Arrays.asList("a1", "a2", "a3")), batches.get("test.123"));
+            assertEquals(Arrays.asList(Arrays.asList("b1", "b2")), batches.get("test.456"));
+        }
+    }
+
+}
@@ -57,6 +57,47 @@ public class UsericonManagerTest {
         testThirdParty(m, usernames, userids, user, true, true, false, true);
     }
     
+    @Test
+    public void testChannelAndCustom() {
+        Settings settings = new Settings(null, null);
+        settings.addBoolean("ffzModIcon", false);
+        settings.addBoolean("customUsericonsEnabled", true);
+        settings.addList("customUsericons", new ArrayList<>(), Setting.LIST);
+        settings.addList("hiddenUsericons", new ArrayList<>(), Setting.LIST);
+        UsericonManager m = new UsericonManager(settings);
+        String url = MainGui.class.getResource("star.png").toString();
+        Usericon global = UsericonFactory.createTwitchBadge("subscriber", "0", url, null, null, "Global", null, null);
+        Usericon channel = UsericonFactory.createTwitchBadge("subscriber", "0", url, null, "abc", "Channel", null, null);
+        List<Usericon> defaults = new ArrayList<>();
+        defaults.add(global);
+        defaults.add(channel);
+        m.addDefaultIcons(defaults);
+        
+        IrcBadges badges = IrcBadges.parse("subscriber/0");
+        User userAbc = new User("test", Room.createRegular("#abc"));
+        User userDef = new User("test", Room.createRegular("#def"));
+        assertEquals(channel, m.getBadges(badges, userAbc, null, false, null, false).get(0));
+        assertEquals(global, m.getBadges(badges, userDef, null, false, null, false).get(0));
+        assertTrue(m.getBadges(IrcBadges.parse("subscriber/1"), userDef, null, false, null, false).isEmpty());
+        
+        // Custom icon removing the badge in #def
+        List<Usericon> custom = new ArrayList<>();
+        custom.add(UsericonFactory.createCustomIcon(Usericon.Type.TWITCH, "subscriber/0", "", "", "#def", ""));
+        m.setCustomData(custom);
+        assertEquals(channel, m.getBadges(badges, userAbc, null, false, null, false).get(0));
+        assertTrue(m.getBadges(badges, userDef, null, false, null, false).get(0).removeBadge);
+        
+        // Disabled
+        settings.setBoolean("customUsericonsEnabled", false);
+        assertEquals(global, m.getBadges(badges, userDef, null, false, null, false).get(0));
+        
+        // Hidden
+        List<Usericon> hidden = new ArrayList<>();
+        hidden.add(UsericonFactory.createCustomIcon(Usericon.Type.TWITCH, "subscriber", "", "", "", ""));
+        m.setHiddenBadgesData(hidden);
+        assertTrue(m.getBadges(badges, userAbc, null, false, null, false).get(0).removeBadge);
+    }
+    
     private void testThirdParty(UsericonManager m, Set<String> usernames, Set<String> userids, User user, boolean... results) {
         List<Usericon> thirdParty = setThirdParty(m, usernames, userids);
         List<Usericon> badges = m.getBadges(IrcBadges.parse(null), user, null, false, null, false);